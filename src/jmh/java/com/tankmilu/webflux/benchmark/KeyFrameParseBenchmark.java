@@ -0,0 +1,94 @@
+package com.tankmilu.webflux.benchmark;
+
+import com.tankmilu.webflux.cache.FFprobeJsonParser;
+import com.tankmilu.webflux.cache.KeyFrameIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ffprobe 키프레임 파싱 방식 비교 벤치마크 (2시간 영상 기준)
+ * <p>
+ * stringPath : 기존 방식처럼 CSV 출력을 StringBuilder 로 모은 후 줄/필드 split, List&lt;List&lt;String&gt;&gt; 생성, BigDecimal 로 세그먼트 구간 계산
+ * streamingParser : 같은 키프레임의 JSON 출력을 FFprobeJsonParser 로 토큰 단위 파싱해서 long 배열에 기록 후 세그먼트 구간 계산
+ * <p>
+ * 실행 : gradle jmh (할당량 비교는 jmh 설정에 profilers = ['gc'] 추가)
+ * keyFrames 7200 은 1초 간격 키프레임, 172800 은 모든 프레임(24fps)을 출력한 경우
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class KeyFrameParseBenchmark {
+
+    private static final int SEGMENT_LENGTH = 10;
+
+    @Param({"7200", "172800"})
+    public int keyFrames;
+
+    private byte[] csv;
+
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder csvBuilder = new StringBuilder();
+        StringBuilder jsonBuilder = new StringBuilder("{\"packets\":[");
+        double interval = 7200.0 / keyFrames;
+        long position = 48;
+        for (int i = 0; i < keyFrames; i++) {
+            String pts = String.format(Locale.ROOT, "%.6f", i * interval);
+            csvBuilder.append("frame,").append(pts).append(',').append(position).append('\n');
+            jsonBuilder.append(i == 0 ? "" : ",")
+                    .append("{\"codec_type\":\"video\",\"stream_index\":0,\"pts_time\":\"").append(pts)
+                    .append("\",\"pos\":\"").append(position).append("\",\"flags\":\"K__\"}");
+            position += ThreadLocalRandom.current().nextInt(10_000, 500_000);
+        }
+        jsonBuilder.append("],\"streams\":[{\"index\":0,\"codec_name\":\"h264\",\"codec_type\":\"video\",\"width\":1920,\"height\":1080}],")
+                .append("\"format\":{\"format_name\":\"matroska,webm\",\"duration\":\"7200.000000\"}}");
+        csv = csvBuilder.toString().getBytes(StandardCharsets.US_ASCII);
+        json = jsonBuilder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public int stringPath() throws IOException {
+        // FFmpegServiceProcessImpl.getVideoKeyFrame, parseFrames
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(csv)));
+        StringBuilder output = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            output.append(line).append("\n");
+        }
+        List<List<String>> frames = new ArrayList<>();
+        for (String frame : output.toString().split("\n")) {
+            frames.add(List.of(frame.split(",")));
+        }
+        // VideoService.getHlsM3u8 세그먼트 구간 계산
+        int segments = 0;
+        BigDecimal prevFrame = new BigDecimal("0.0");
+        BigDecimal segmentLength = new BigDecimal(SEGMENT_LENGTH);
+        for (List<String> frame : frames) {
+            BigDecimal nowFrame = new BigDecimal(frame.get(1));
+            if (nowFrame.compareTo(prevFrame.add(segmentLength)) >= 0) {
+                segments++;
+                prevFrame = nowFrame;
+            }
+        }
+        return segments;
+    }
+
+    @Benchmark
+    public int streamingParser() throws IOException {
+        KeyFrameIndex index = FFprobeJsonParser.parse(new ByteArrayInputStream(json), json.length, 0).keyFrameIndex();
+        return index.segmentBoundaries(SEGMENT_LENGTH).size();
+    }
+}
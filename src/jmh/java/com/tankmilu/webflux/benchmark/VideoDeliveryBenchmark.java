@@ -0,0 +1,139 @@
+package com.tankmilu.webflux.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /video/filerange 전송 방식 비교 벤치마크
+ * <p>
+ * zeroCopy : ZeroCopyHttpOutputMessage 와 동일하게 FileChannel.transferTo(sendfile)로 소켓에 전송
+ * heapBuffer : 기존 방식처럼 DataBufferUtils.read(..., 4096) 힙 버퍼로 읽어서 소켓에 전송
+ * <p>
+ * 실행 : gradle jmh
+ * 결과의 cpuNanos / (bytes * 8) * 1e9 = 1Gbit 전송에 사용된 CPU 시간(ns)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VideoDeliveryBenchmark {
+
+    @Param({"67108864"}) // 64MB
+    public long fileSize;
+
+    private Path videoFile;
+    private ServerSocketChannel server;
+    private SocketChannel client;
+    private Thread drainThread;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CpuCounters {
+        public long cpuNanos;   // 프로세스 전체 CPU 사용 시간
+        public long bytes;      // 전송 바이트
+
+        @TearDown(Level.Iteration)
+        public void report() {
+            if (bytes > 0) {
+                double cpuSecondsPerGbit = (cpuNanos / 1e9) / (bytes * 8 / 1e9);
+                System.out.printf("%n[cpu] %.4f cpu-sec/Gbit (%d bytes)%n", cpuSecondsPerGbit, bytes);
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        videoFile = Files.createTempFile("video-delivery-bench", ".mp4");
+        byte[] chunk = new byte[1024 * 1024];
+        ThreadLocalRandom.current().nextBytes(chunk);
+        try (FileChannel channel = FileChannel.open(videoFile, StandardOpenOption.WRITE)) {
+            for (long written = 0; written < fileSize; written += chunk.length) {
+                channel.write(ByteBuffer.wrap(chunk));
+            }
+        }
+
+        // 루프백 소켓으로 전송, 수신측은 읽고 버림
+        server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        client = SocketChannel.open(server.getLocalAddress());
+        SocketChannel accepted = server.accept();
+        drainThread = new Thread(() -> {
+            ByteBuffer sink = ByteBuffer.allocateDirect(256 * 1024);
+            try (accepted) {
+                while (accepted.read(sink) >= 0) {
+                    sink.clear();
+                }
+            } catch (IOException ignored) { }
+        }, "bench-drain");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+        Files.deleteIfExists(videoFile);
+    }
+
+    @Benchmark
+    public long zeroCopy(CpuCounters counters) throws IOException {
+        long cpuStart = processCpuTime();
+        long sent = 0;
+        try (FileChannel channel = FileChannel.open(videoFile, StandardOpenOption.READ)) {
+            while (sent < fileSize) {
+                sent += channel.transferTo(sent, fileSize - sent, client);
+            }
+        }
+        counters.cpuNanos += processCpuTime() - cpuStart;
+        counters.bytes += sent;
+        return sent;
+    }
+
+    @Benchmark
+    public long heapBuffer(CpuCounters counters) {
+        long cpuStart = processCpuTime();
+        Long sent = DataBufferUtils.read(new FileSystemResource(videoFile), 0, DefaultDataBufferFactory.sharedInstance, 4096)
+                .map(this::writeToClient)
+                .reduce(0L, Long::sum)
+                .block();
+        counters.cpuNanos += processCpuTime() - cpuStart;
+        counters.bytes += sent;
+        return sent;
+    }
+
+    private long writeToClient(DataBuffer dataBuffer) {
+        long written = 0;
+        try (DataBuffer.ByteBufferIterator iterator = dataBuffer.readableByteBuffers()) {
+            while (iterator.hasNext()) {
+                ByteBuffer byteBuffer = iterator.next();
+                while (byteBuffer.hasRemaining()) {
+                    written += client.write(byteBuffer);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            DataBufferUtils.release(dataBuffer);
+        }
+        return written;
+    }
+
+    private static long processCpuTime() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+    }
+}
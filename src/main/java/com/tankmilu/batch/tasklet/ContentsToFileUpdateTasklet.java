@@ -2,13 +2,17 @@ package com.tankmilu.batch.tasklet;
 
 import com.tankmilu.webflux.entity.ContentsFileEntity;
 import com.tankmilu.webflux.entity.ContentsObjectEntity;
+import com.tankmilu.webflux.entity.MediaProbeEntity;
 import com.tankmilu.webflux.entity.folder.FolderTreeEntity;
+import com.tankmilu.webflux.enums.FFmpegJobPriorityEnum;
 import com.tankmilu.webflux.enums.SubtitleExtensionEnum;
 import com.tankmilu.webflux.enums.VideoExtensionEnum;
 import com.tankmilu.webflux.repository.ContentsFileRepository;
 import com.tankmilu.webflux.repository.ContentsObjectRepository;
 import com.tankmilu.webflux.repository.folder.FolderTreeRepository;
+import com.tankmilu.webflux.service.FFmpegJobScheduler;
 import com.tankmilu.webflux.service.FFmpegServiceProcessImpl;
+import com.tankmilu.webflux.service.MediaProbeService;
 import com.tankmilu.webflux.service.VideoService;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -46,6 +50,7 @@ public class ContentsToFileUpdateTasklet<T extends FolderTreeEntity> implements
 
     private final FFmpegServiceProcessImpl fFmpegServiceProcess;
     private final VideoService videoService;
+    private final MediaProbeService mediaProbeService;
     
     // 배치 결과를 저장할 리스트 생성
     private final List<ContentsFileEntity> filesToInsert = new ArrayList<>();
@@ -223,6 +228,12 @@ public class ContentsToFileUpdateTasklet<T extends FolderTreeEntity> implements
                     }
 
 
+                    // 미디어 정보 저장 (없거나 원본이 바뀐 경우만 ffprobe). 해상도 컬럼이 비어있으면 함께 수정
+                    if (probeMedia(existingEntry.getValue(), Paths.get(folderPath, existingEntry.getValue().getFilePath()))) {
+                        existingEntry.getValue().setNewRecord(false);
+                        isUpdated = true;
+                    }
+
                     // 파일 경로나 자막 경로 중 하나라도 변경된 경우 업데이트 리스트에 추가
                     if (isUpdated) {
                         filesToUpdate.add(existingEntry.getValue());
@@ -236,7 +247,8 @@ public class ContentsToFileUpdateTasklet<T extends FolderTreeEntity> implements
                 if (!Files.exists(tempFile)) {
                     Path videoFile = Paths.get(folderPath, existingEntry.getValue().getFilePath());
                     try {
-                        if (Boolean.TRUE.equals(videoService.buildM3u8Content(existingEntry.getValue().getFileId(), videoFile).block())) {
+                        if (Boolean.TRUE.equals(videoService.buildM3u8Content(existingEntry.getValue().getFileId(), videoFile)
+                                .contextWrite(FFmpegJobScheduler.jobContext(FFmpegJobPriorityEnum.BATCH, "batch")).block())) {
                             log.info("m3u8 파일 생성 완료: {}", videoFile);
                         } else {
                             log.warn("m3u8 파일 생성 실패!!!!!!!!!!!!: {}", videoFile);
@@ -273,6 +285,8 @@ public class ContentsToFileUpdateTasklet<T extends FolderTreeEntity> implements
                     if (fileDTO[1]!=null){
                         newFile.setSubtitleCreatedAtNow();
                     }
+                    // 미디어 정보 저장 및 해상도 세팅
+                    probeMedia(newFile, Paths.get(folderPath, fileDTO[0]));
                     filesToInsert.add(newFile);
                     InsertOrUpdateFiles.add(newFile);
                 }
@@ -318,7 +332,9 @@ public class ContentsToFileUpdateTasklet<T extends FolderTreeEntity> implements
                             detectedEncoding = "CP949";
                         }
 
-                        fFmpegServiceProcess.convertSubtitleToAss(originalSubtitlePath, outputPath, "맑은 고딕", 20, detectedEncoding).block();
+                        fFmpegServiceProcess.convertSubtitleToAss(originalSubtitlePath, outputPath, "맑은 고딕", 20, detectedEncoding)
+                                .contextWrite(FFmpegJobScheduler.jobContext(FFmpegJobPriorityEnum.BATCH, "batch"))
+                                .block();
                     }
                 }
 
@@ -326,7 +342,8 @@ public class ContentsToFileUpdateTasklet<T extends FolderTreeEntity> implements
                 Path tempFile = Paths.get(tempHlsFolder, entity.getFileId() + ".0.hls.m3u8");
                 if (!Files.exists(tempFile)) {
                     Path videoFile = Paths.get(folderPath, entity.getFilePath());
-                    if(Boolean.TRUE.equals(videoService.buildM3u8Content(entity.getFileId(), videoFile).block())){
+                    if(Boolean.TRUE.equals(videoService.buildM3u8Content(entity.getFileId(), videoFile)
+                            .contextWrite(FFmpegJobScheduler.jobContext(FFmpegJobPriorityEnum.BATCH, "batch")).block())){
                         log.info("m3u8 파일 생성 완료: {}",videoFile);
                     } else {
                         log.warn("m3u8 파일 생성 실패!!!!!!!!!!!!: {}",videoFile);
@@ -385,4 +402,21 @@ public class ContentsToFileUpdateTasklet<T extends FolderTreeEntity> implements
         }
         return fileName; // 확장자가 없는 경우 원래 파일명 반환
     }
+
+    // media_probe 저장 (저장된 값이 없거나 원본이 바뀐 경우만 ffprobe 실행)
+    // 파일 엔티티의 해상도 값이 없으면 채우고 true 반환
+    private boolean probeMedia(ContentsFileEntity entity, Path videoFile) {
+        try {
+            MediaProbeEntity mediaProbe = mediaProbeService.refresh(entity.getFileId(), videoFile)
+                    .contextWrite(FFmpegJobScheduler.jobContext(FFmpegJobPriorityEnum.BATCH, "batch"))
+                    .block();
+            if (mediaProbe != null && entity.getResolution() == null) {
+                entity.setResolution(mediaProbe.getResolution());
+                return true;
+            }
+        } catch (Exception e) {
+            log.warn("미디어 정보 저장 실패: {}, {}", videoFile, e.getMessage());
+        }
+        return false;
+    }
 }
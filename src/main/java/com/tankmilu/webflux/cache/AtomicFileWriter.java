@@ -0,0 +1,36 @@
+package com.tankmilu.webflux.cache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * 캐시 파일을 원자적으로 저장
+ * 같은 폴더의 임시 파일에 먼저 쓰고 이름을 바꾸므로, 다른 요청이 쓰는 중인 파일을 읽거나 두 요청이 같은 파일에 섞어 쓰지 않음
+ * 블로킹 파일 IO 이므로 boundedElastic 에서 호출해야 함
+ */
+public final class AtomicFileWriter {
+
+    private AtomicFileWriter() {
+    }
+
+    public static Path write(Path target, byte[] bytes) throws IOException {
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        Path temp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.write(temp, bytes);
+            return Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public static Path writeString(Path target, String content) throws IOException {
+        return write(target, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
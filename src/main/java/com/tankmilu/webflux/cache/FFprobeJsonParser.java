@@ -0,0 +1,332 @@
+package com.tankmilu.webflux.cache;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.tankmilu.webflux.record.MediaProbeRecord;
+import com.tankmilu.webflux.record.SubtitleInfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ffprobe JSON 출력(-show_format -show_streams -show_entries packet=...) 스트리밍 파서
+ * 트리(JsonNode)나 패킷별 객체를 만들지 않고 토큰 단위로 읽어서 형식, 스트림 정보와 키프레임 인덱스를 한 번에 만듦
+ * 키프레임은 비디오 패킷 중 flags 에 K 가 있는 패킷이며, pts_time 은 KeyFrameIndex.toMicros 와 같은 마이크로초 반올림 값
+ * ffprobe 는 packets 를 streams 보다 먼저 출력하므로 키프레임은 스트림별로 기록해두고 마지막에 첫 비디오 스트림 것을 사용
+ */
+public final class FFprobeJsonParser {
+
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+            .build();
+
+    private static final long[] FRACTION_SCALE = {1_000_000, 100_000, 10_000, 1_000, 100, 10, 1};
+
+    private static final long INVALID_PTS = Long.MIN_VALUE;
+
+    private final List<Stream> streams = new ArrayList<>();
+
+    // 스트림 번호 -> 키프레임 (packets 가 없으면 비어있음)
+    private final Map<Integer, KeyFrames> keyFrames = new HashMap<>();
+
+    private boolean packetsScanned;
+
+    private String formatName;
+
+    private double duration;
+
+    private long bitrate;
+
+    /**
+     * 입력 스트림을 끝까지 읽어서 미디어 정보를 만듦 (스트림은 닫지 않음)
+     * 출력에 packets 가 없으면 키프레임 인덱스는 null
+     */
+    public static MediaProbeRecord parse(InputStream inputStream, long sourceLength, long sourceLastModified) throws IOException {
+        FFprobeJsonParser probe = new FFprobeJsonParser();
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("ffprobe 출력이 없습니다");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String section = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value != JsonToken.START_ARRAY && value != JsonToken.START_OBJECT) {
+                    continue;
+                }
+                switch (section) {
+                    case "packets" -> probe.packets(parser);
+                    case "streams" -> probe.streams(parser);
+                    case "format" -> probe.format(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return probe.finish(sourceLength, sourceLastModified);
+    }
+
+    private void packets(JsonParser parser) throws IOException {
+        packetsScanned = true;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            boolean video = true; // codec_type 을 출력하지 않으면 스트림 번호로만 구분
+            boolean keyFrame = false;
+            int streamIndex = -1;
+            long pts = INVALID_PTS;
+            long position = -1;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "codec_type" -> video = textEquals(parser, "video");
+                    case "stream_index" -> streamIndex = parser.getValueAsInt(-1);
+                    case "pts_time" -> pts = micros(parser);
+                    case "pos" -> position = position(parser);
+                    case "flags" -> keyFrame = textContains(parser, 'K');
+                    default -> parser.skipChildren();
+                }
+            }
+            if (video && keyFrame && streamIndex >= 0 && pts != INVALID_PTS) {
+                keyFrames.computeIfAbsent(streamIndex, index -> new KeyFrames()).append(pts, position);
+            }
+        }
+    }
+
+    private void streams(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            Stream stream = new Stream();
+            stream.index = streams.size();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "index" -> stream.index = parser.getValueAsInt(stream.index);
+                    case "codec_type" -> stream.codecType = parser.getValueAsString();
+                    case "codec_name" -> stream.codecName = parser.getValueAsString();
+                    case "width" -> stream.width = parser.getValueAsInt(0);
+                    case "height" -> stream.height = parser.getValueAsInt(0);
+                    case "pix_fmt" -> stream.pixFmt = parser.getValueAsString();
+                    case "tags" -> stream.language = language(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+            streams.add(stream);
+        }
+    }
+
+    private void format(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "format_name" -> formatName = parser.getValueAsString();
+                case "duration" -> duration = parser.getValueAsDouble(0);
+                case "bit_rate" -> bitrate = parser.getValueAsLong(0);
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private static String language(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+        String language = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String tag = parser.currentName();
+            parser.nextToken();
+            if ("language".equals(tag)) {
+                language = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return language;
+    }
+
+    private MediaProbeRecord finish(long sourceLength, long sourceLastModified) throws IOException {
+        Stream video = streams.stream()
+                .filter(stream -> "video".equals(stream.codecType))
+                .findFirst()
+                .orElseThrow(() -> new IOException("비디오 스트림이 없습니다"));
+        List<Stream> audios = streams.stream()
+                .filter(stream -> "audio".equals(stream.codecType))
+                .toList();
+        List<SubtitleInfo> subtitles = new ArrayList<>();
+        for (Stream stream : streams) {
+            if ("subtitle".equals(stream.codecType)) {
+                subtitles.add(new SubtitleInfo("v" + subtitles.size(), stream.language));
+            }
+        }
+
+        KeyFrameIndex keyFrameIndex = null;
+        if (packetsScanned) {
+            keyFrameIndex = keyFrames.getOrDefault(video.index, new KeyFrames()).toIndex(sourceLength, sourceLastModified);
+        }
+        return new MediaProbeRecord(
+                formatName,
+                duration,
+                bitrate,
+                video.width,
+                video.height,
+                video.codecName,
+                video.pixFmt,
+                audios.isEmpty() ? null : audios.get(0).codecName,
+                audios.stream().map(audio -> audio.language).toList(),
+                subtitles,
+                keyFrameIndex
+        );
+    }
+
+    // pts_time 문자열을 String, BigDecimal 없이 마이크로초로 변환 (7번째 자리 HALF_UP). 숫자가 아니면(N/A 등) INVALID_PTS
+    private static long micros(JsonParser parser) throws IOException {
+        if (!parser.currentToken().isScalarValue() || parser.currentToken() == JsonToken.VALUE_NULL) {
+            return INVALID_PTS;
+        }
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int end = offset + parser.getTextLength();
+        boolean negative = false;
+        boolean inFraction = false;
+        boolean hasDigit = false;
+        boolean roundUp = false;
+        long integerPart = 0;
+        long fractionPart = 0;
+        int fractionDigits = 0;
+        for (int i = offset; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                hasDigit = true;
+                int digit = c - '0';
+                if (!inFraction) {
+                    integerPart = integerPart * 10 + digit;
+                } else if (fractionDigits < 6) {
+                    fractionPart = fractionPart * 10 + digit;
+                    fractionDigits++;
+                } else if (fractionDigits == 6) {
+                    roundUp = digit >= 5; // 버리는 첫 자리 기준 반올림 (HALF_UP)
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !inFraction) {
+                inFraction = true;
+            } else if (c == '-' && i == offset) {
+                negative = true;
+            } else {
+                return INVALID_PTS;
+            }
+        }
+        if (!hasDigit) {
+            return INVALID_PTS;
+        }
+        long micros = integerPart * 1_000_000L + fractionPart * FRACTION_SCALE[Math.min(fractionDigits, 6)] + (roundUp ? 1 : 0);
+        return negative ? -micros : micros;
+    }
+
+    // 패킷 바이트 위치. 숫자가 아니면 -1
+    private static long position(JsonParser parser) throws IOException {
+        if (!parser.currentToken().isScalarValue() || parser.currentToken() == JsonToken.VALUE_NULL) {
+            return -1;
+        }
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        if (length == 0) {
+            return -1;
+        }
+        long position = 0;
+        for (int i = offset; i < offset + length; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            position = position * 10 + (c - '0');
+        }
+        return position;
+    }
+
+    private static boolean textEquals(JsonParser parser, String expected) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING || parser.getTextLength() != expected.length()) {
+            return false;
+        }
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        for (int i = 0; i < expected.length(); i++) {
+            if (chars[offset + i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean textContains(JsonParser parser, char expected) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            return false;
+        }
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        for (int i = offset; i < offset + parser.getTextLength(); i++) {
+            if (chars[i] == expected) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Stream {
+        private int index;
+        private String codecType;
+        private String codecName;
+        private int width;
+        private int height;
+        private String pixFmt;
+        private String language;
+    }
+
+    // 스트림 하나의 키프레임 (pts, 바이트 위치)
+    private static final class KeyFrames {
+
+        private long[] pts = new long[1024];
+
+        private long[] positions = new long[1024];
+
+        private int count;
+
+        private boolean ordered = true;
+
+        private void append(long ptsMicros, long packetPosition) {
+            if (count == pts.length) {
+                pts = Arrays.copyOf(pts, count * 2);
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            if (count > 0 && ptsMicros < pts[count - 1]) {
+                ordered = false;
+            }
+            pts[count] = ptsMicros;
+            positions[count] = packetPosition;
+            count++;
+        }
+
+        // 패킷은 디코딩 순서로 출력되므로 pts 가 역전된 경우만 정렬
+        private KeyFrameIndex toIndex(long sourceLength, long sourceLastModified) {
+            long[] sortedPts = Arrays.copyOf(pts, count);
+            long[] sortedPositions = Arrays.copyOf(positions, count);
+            if (!ordered) {
+                Integer[] order = new Integer[count];
+                for (int i = 0; i < count; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, (a, b) -> Long.compare(pts[a], pts[b]));
+                for (int i = 0; i < count; i++) {
+                    sortedPts[i] = pts[order[i]];
+                    sortedPositions[i] = positions[order[i]];
+                }
+            }
+            return KeyFrameIndex.wrap(sourceLength, sourceLastModified, sortedPts, sortedPositions);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.tankmilu.webflux.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 원본 비디오 파일 읽기용 FileChannel 공유 풀
+ * 같은 파일을 동시에 읽는 요청들이 하나의 채널을 참조 카운트로 공유하며, 위치 지정 읽기(pread)를 사용하므로 서로 간섭하지 않음
+ * 사용하지 않는 채널은 idle 시간이 지나면 닫고, 파일 버전(수정 시간)이 바뀌었거나 무효화된 채널은 마지막 사용자가 반납할 때 닫음
+ * 배치 작업(파일 교체, 경로 변경)은 웹 서버와 별도 프로세스에서 실행되므로 이 풀을 직접 무효화할 수 없음
+ * 파일 교체는 요청 시 전달되는 버전(MediaDescriptorCache 의 수정 시간)이 채널 버전과 다르면 감지하며,
+ * 경로 변경은 MediaDescriptorCache 만료(ttl_seconds) 후 새 경로로 조회되고 이전 경로 채널은 idle 시간이 지나면 닫힘
+ */
+@Slf4j
+@Component
+public class FileChannelPool {
+
+    // 버전 검사를 하지 않는 경우 (임시 파일 등)
+    public static final long ANY_VERSION = -1;
+
+    private final long idleTimeoutMillis;
+
+    private final Map<Path, PooledChannel> channels = new HashMap<>();
+
+    private final AtomicInteger openChannels = new AtomicInteger();
+
+    private final Counter hitCounter;
+
+    private final Counter missCounter;
+
+    private final Scheduler sweepScheduler;
+
+    private final Disposable sweepTask;
+
+    public FileChannelPool(MeterRegistry meterRegistry,
+                           @Value("${custom.io.channel_pool.idle_timeout_seconds:30}") long idleTimeoutSeconds) {
+        this.idleTimeoutMillis = TimeUnit.SECONDS.toMillis(idleTimeoutSeconds);
+        this.hitCounter = Counter.builder("video.channel.pool.hits")
+                .description("기존 채널을 재사용한 요청 수").register(meterRegistry);
+        this.missCounter = Counter.builder("video.channel.pool.misses")
+                .description("채널을 새로 연 요청 수").register(meterRegistry);
+        Gauge.builder("video.channel.pool.open", openChannels, AtomicInteger::get)
+                .description("열려있는 채널 수").register(meterRegistry);
+        Gauge.builder("video.channel.pool.hit.ratio", this, FileChannelPool::hitRatio)
+                .description("채널 재사용 비율").register(meterRegistry);
+        this.sweepScheduler = Schedulers.newSingle("file-channel-pool-sweeper", true);
+        long sweepInterval = Math.max(1000, idleTimeoutMillis / 2);
+        this.sweepTask = sweepScheduler.schedulePeriodically(this::closeIdleChannels, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 파일 채널을 빌려옴. 사용 후 반드시 Lease 를 닫아서 반납해야 함
+     * 채널을 새로 여는 경우 블로킹 IO 가 발생하므로 boundedElastic 에서 호출해야 함
+     *
+     * @param path 파일 경로
+     * @param version 파일 버전 (수정 시간). 풀의 채널과 다르면 새로 염. ANY_VERSION 이면 검사하지 않음
+     */
+    public Lease acquire(Path path, long version) throws IOException {
+        synchronized (this) {
+            PooledChannel pooled = channels.get(path);
+            if (pooled != null && pooled.channel.isOpen() && (version == ANY_VERSION || pooled.version == version)) {
+                pooled.refCount++;
+                hitCounter.increment();
+                return new Lease(pooled);
+            }
+            if (pooled != null) { // 파일이 교체되었거나 채널이 닫힘
+                retire(path, pooled);
+            }
+        }
+        missCounter.increment();
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        openChannels.incrementAndGet();
+        synchronized (this) {
+            PooledChannel existing = channels.get(path);
+            if (existing != null && existing.channel.isOpen() && (version == ANY_VERSION || existing.version == version)) {
+                // 동시에 다른 요청이 먼저 연 경우 그 채널을 사용
+                closeQuietly(channel);
+                existing.refCount++;
+                return new Lease(existing);
+            }
+            if (existing != null) {
+                retire(path, existing);
+            }
+            PooledChannel pooled = new PooledChannel(path, channel, version);
+            pooled.refCount = 1;
+            channels.put(path, pooled);
+            return new Lease(pooled);
+        }
+    }
+
+    /**
+     * 파일이 교체되거나 삭제된 경우 해당 경로의 채널을 무효화함 (사용 중이면 반납 시 닫힘)
+     */
+    public synchronized void invalidate(Path path) {
+        PooledChannel pooled = channels.get(path);
+        if (pooled != null) {
+            retire(path, pooled);
+        }
+    }
+
+    double hitRatio() {
+        double total = hitCounter.count() + missCounter.count();
+        return total == 0 ? 0 : hitCounter.count() / total;
+    }
+
+    int openChannelCount() {
+        return openChannels.get();
+    }
+
+    synchronized void closeIdleChannels() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledChannel> iterator = channels.values().iterator();
+        while (iterator.hasNext()) {
+            PooledChannel pooled = iterator.next();
+            if (pooled.refCount == 0 && now - pooled.lastReleased >= idleTimeoutMillis) {
+                iterator.remove();
+                close(pooled);
+            }
+        }
+    }
+
+    @PreDestroy
+    synchronized void shutdown() {
+        sweepTask.dispose();
+        sweepScheduler.dispose();
+        channels.values().forEach(pooled -> {
+            pooled.retired = true;
+            if (pooled.refCount == 0) {
+                close(pooled);
+            }
+        });
+        channels.clear();
+    }
+
+    // 풀에서 제거하고 사용 중이 아니면 바로 닫음
+    private void retire(Path path, PooledChannel pooled) {
+        channels.remove(path, pooled);
+        pooled.retired = true;
+        if (pooled.refCount == 0) {
+            close(pooled);
+        }
+    }
+
+    private synchronized void release(PooledChannel pooled) {
+        pooled.refCount--;
+        pooled.lastReleased = System.currentTimeMillis();
+        if (pooled.retired && pooled.refCount == 0) {
+            close(pooled);
+        }
+    }
+
+    private void close(PooledChannel pooled) {
+        if (!pooled.closed) {
+            pooled.closed = true;
+            openChannels.decrementAndGet();
+            closeQuietly(pooled.channel);
+        }
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("파일 채널 닫기 실패: {}", e.getMessage());
+        }
+    }
+
+    private static final class PooledChannel {
+        private final Path path;
+        private final FileChannel channel;
+        private final long version;
+        private int refCount;
+        private long lastReleased = System.currentTimeMillis();
+        private boolean retired;
+        private boolean closed;
+
+        private PooledChannel(Path path, FileChannel channel, long version) {
+            this.path = path;
+            this.channel = channel;
+            this.version = version;
+        }
+    }
+
+    /**
+     * 빌려온 채널. close() 로 반납 (여러 번 호출해도 한 번만 반납)
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final PooledChannel pooled;
+
+        private boolean released;
+
+        private Lease(PooledChannel pooled) {
+            this.pooled = pooled;
+        }
+
+        public FileChannel channel() {
+            return pooled.channel;
+        }
+
+        public Path path() {
+            return pooled.path;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(pooled);
+            }
+        }
+    }
+}
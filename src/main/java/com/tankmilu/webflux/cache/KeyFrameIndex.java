@@ -0,0 +1,213 @@
+package com.tankmilu.webflux.cache;
+
+import com.tankmilu.webflux.record.SegmentBoundaryRecord;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 비디오 파일의 키프레임 인덱스 (키프레임별 pts 마이크로초, pkt_pos 바이트 위치)
+ * 디스크에는 바이너리로 저장하고 메모리 매핑해서 읽으므로, 키프레임 수와 관계없이 힙을 거의 사용하지 않음
+ * 파일 형식 (big endian): magic(int) 형식 버전(int) 원본 길이(long) 원본 수정 시간(long) 키프레임 수(int) pts[](long) pkt_pos[](long)
+ */
+public final class KeyFrameIndex {
+
+    private static final int MAGIC = 0x4B46494E; // "KFIN"
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4;
+
+    private final long sourceLength;
+
+    private final long sourceLastModified;
+
+    private final LongBuffer ptsMicros;
+
+    private final LongBuffer positions;
+
+    private KeyFrameIndex(long sourceLength, long sourceLastModified, LongBuffer ptsMicros, LongBuffer positions) {
+        this.sourceLength = sourceLength;
+        this.sourceLastModified = sourceLastModified;
+        this.ptsMicros = ptsMicros;
+        this.positions = positions;
+    }
+
+    /**
+     * 키프레임 배열로 인덱스를 만듦. pts 는 오름차순이어야 하며, 위치를 모르는 키프레임은 -1
+     */
+    public static KeyFrameIndex of(long sourceLength, long sourceLastModified, long[] ptsMicros, long[] positions) {
+        if (ptsMicros.length != positions.length) {
+            throw new IllegalArgumentException("pts, pkt_pos 개수가 다릅니다. pts: " + ptsMicros.length + ", pkt_pos: " + positions.length);
+        }
+        return new KeyFrameIndex(sourceLength, sourceLastModified, LongBuffer.wrap(ptsMicros.clone()), LongBuffer.wrap(positions.clone()));
+    }
+
+    // 새로 만든 배열을 복사 없이 사용 (FFprobeJsonParser)
+    static KeyFrameIndex wrap(long sourceLength, long sourceLastModified, long[] ptsMicros, long[] positions) {
+        return new KeyFrameIndex(sourceLength, sourceLastModified, LongBuffer.wrap(ptsMicros), LongBuffer.wrap(positions));
+    }
+
+    /**
+     * 인덱스 파일을 메모리 매핑해서 읽음
+     */
+    static KeyFrameIndex map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // 매핑은 채널을 닫아도 유지됨
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("키프레임 인덱스 형식이 아닙니다 : " + path);
+            }
+            long sourceLength = buffer.getLong(8);
+            long sourceLastModified = buffer.getLong(16);
+            int count = buffer.getInt(24);
+            if ((long) HEADER_BYTES + 16L * count != buffer.limit()) {
+                throw new IOException("키프레임 인덱스 크기가 올바르지 않습니다 : " + path);
+            }
+            LongBuffer pts = buffer.slice(HEADER_BYTES, count * 8).asLongBuffer();
+            LongBuffer positions = buffer.slice(HEADER_BYTES + count * 8, count * 8).asLongBuffer();
+            return new KeyFrameIndex(sourceLength, sourceLastModified, pts, positions);
+        }
+    }
+
+    /**
+     * 디스크 저장 형식으로 변환
+     */
+    byte[] encode() {
+        int count = size();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + count * 16)
+                .putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putLong(sourceLength)
+                .putLong(sourceLastModified)
+                .putInt(count);
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(ptsMicros.get(i));
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(positions.get(i));
+        }
+        return buffer.array();
+    }
+
+    public int size() {
+        return ptsMicros.limit();
+    }
+
+    public long ptsMicros(int index) {
+        return ptsMicros.get(index);
+    }
+
+    // 키프레임 바이트 위치 (모르면 -1)
+    public long position(int index) {
+        return positions.get(index);
+    }
+
+    public long sourceLastModified() {
+        return sourceLastModified;
+    }
+
+    // 원본 파일이 인덱스를 만들 때와 같은지 확인 (길이가 음수면 수정 시간만 비교)
+    public boolean matches(long length, long lastModified) {
+        return sourceLastModified == lastModified && (length < 0 || sourceLength == length);
+    }
+
+    /**
+     * 시간 이하의 마지막 키프레임 위치 (탐색 위치 계산용). 첫 키프레임보다 앞이면 -1
+     */
+    public int floorIndex(long micros) {
+        int low = 0;
+        int high = size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (ptsMicros.get(mid) <= micros) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * HLS 세그먼트 구간. 이전 경계에서 segmentSeconds 이상 지난 첫 키프레임에서 자르고, 마지막 키프레임까지 포함함
+     */
+    public List<SegmentBoundaryRecord> segmentBoundaries(int segmentSeconds) {
+        long[] timeline = segmentTimeline(segmentSeconds);
+        List<SegmentBoundaryRecord> segments = new ArrayList<>(timeline.length - 1);
+        String prevTime = "0.0";
+        for (int i = 1; i < timeline.length; i++) {
+            String nowTime = formatSeconds(timeline[i]);
+            segments.add(new SegmentBoundaryRecord(prevTime, nowTime));
+            prevTime = nowTime;
+        }
+        return segments;
+    }
+
+    /**
+     * segmentBoundaries 와 같은 규칙의 세그먼트 경계 시간(마이크로초). 첫 값은 0 이고 세그먼트 수보다 하나 많음
+     */
+    public long[] segmentTimeline(int segmentSeconds) {
+        long segmentMicros = segmentSeconds * 1_000_000L;
+        long[] timeline = new long[8];
+        int count = 1;
+        long prev = 0;
+        long now = 0;
+        for (int i = 0; i < size(); i++) {
+            now = ptsMicros.get(i);
+            if (now >= prev + segmentMicros) {
+                timeline = append(timeline, count++, now);
+                prev = now;
+            }
+        }
+        if (now > prev) {
+            timeline = append(timeline, count++, now);
+        }
+        return Arrays.copyOf(timeline, count);
+    }
+
+    private static long[] append(long[] array, int index, long value) {
+        if (index == array.length) {
+            array = Arrays.copyOf(array, array.length * 2);
+        }
+        array[index] = value;
+        return array;
+    }
+
+    // 마이크로초를 ffprobe 출력과 같은 초 단위 문자열(소수점 6자리)로 변환
+    public static String formatSeconds(long micros) {
+        return appendSeconds(new StringBuilder(16), micros).toString();
+    }
+
+    /**
+     * 마이크로초를 초 단위 문자열(소수점 6자리)로 추가. 정수 연산만 사용함
+     */
+    public static StringBuilder appendSeconds(StringBuilder builder, long micros) {
+        if (micros < 0) {
+            builder.append('-');
+            micros = -micros;
+        }
+        long fraction = micros % 1_000_000;
+        builder.append(micros / 1_000_000).append('.');
+        for (long digit = 100_000; digit > 1 && digit > fraction; digit /= 10) {
+            builder.append('0');
+        }
+        return builder.append(fraction);
+    }
+
+    public static long toMicros(String seconds) {
+        return new BigDecimal(seconds.trim()).movePointRight(6).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+}
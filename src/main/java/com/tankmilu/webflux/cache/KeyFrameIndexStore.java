@@ -0,0 +1,90 @@
+package com.tankmilu.webflux.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * 파일별 키프레임 인덱스 저장소
+ * 배치 적재 시 또는 최초 플레이리스트 생성 시 ffprobe 결과를 {fileId}.kfi 로 저장하고, 이후에는 메모리 매핑한 인덱스를 사용함
+ * 인덱스에는 원본 길이와 수정 시간이 기록되어 있어 원본이 바뀌면 사용하지 않음
+ */
+@Slf4j
+@Component
+public class KeyFrameIndexStore {
+
+    private final Path indexFolder;
+
+    // 매핑한 인덱스 (fileId 별)
+    private final Cache<Long, KeyFrameIndex> mapped = Caffeine.newBuilder()
+            .maximumSize(1_000)
+            .build();
+
+    public KeyFrameIndexStore(@Value("${custom.keyframe_index.folder:/app/media/keyframe_index}") String indexFolder) {
+        this.indexFolder = Paths.get(indexFolder);
+    }
+
+    /**
+     * 원본 파일과 일치하는 인덱스를 조회함 (없거나 원본이 바뀌었으면 empty)
+     * 파일을 읽으므로 boundedElastic 에서 호출해야 함
+     *
+     * @param fileId 파일 ID
+     * @param sourceLength 원본 길이 (음수면 비교하지 않음)
+     * @param sourceLastModified 원본 수정 시간 epoch millis
+     */
+    public Optional<KeyFrameIndex> find(Long fileId, long sourceLength, long sourceLastModified) {
+        KeyFrameIndex index = mapped.getIfPresent(fileId);
+        if (index != null && index.matches(sourceLength, sourceLastModified)) {
+            return Optional.of(index);
+        }
+        // 다른 프로세스(배치)가 새로 저장했을 수 있으므로 디스크에서 다시 읽음
+        try {
+            index = KeyFrameIndex.map(pathOf(fileId));
+            mapped.put(fileId, index);
+        } catch (NoSuchFileException e) {
+            mapped.invalidate(fileId);
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("키프레임 인덱스를 읽을 수 없습니다. fileId: {}: {}", fileId, e.getMessage());
+            return Optional.empty();
+        }
+        return index.matches(sourceLength, sourceLastModified) ? Optional.of(index) : Optional.empty();
+    }
+
+    /**
+     * 인덱스를 저장하고 매핑한 인덱스를 반환함
+     */
+    public KeyFrameIndex save(Long fileId, KeyFrameIndex index) throws IOException {
+        Path path = pathOf(fileId);
+        AtomicFileWriter.write(path, index.encode());
+        KeyFrameIndex saved = KeyFrameIndex.map(path);
+        mapped.put(fileId, saved);
+        log.info("키프레임 인덱스 저장. fileId: {}, 키프레임 수: {}", fileId, saved.size());
+        return saved;
+    }
+
+    /**
+     * 원본 파일이 교체되거나 삭제된 경우 인덱스를 삭제함
+     */
+    public void invalidate(Long fileId) {
+        mapped.invalidate(fileId);
+        try {
+            Files.deleteIfExists(pathOf(fileId));
+        } catch (IOException e) {
+            log.warn("키프레임 인덱스 삭제 실패. fileId: {}: {}", fileId, e.getMessage());
+        }
+    }
+
+    private Path pathOf(Long fileId) {
+        return indexFolder.resolve(fileId + ".kfi");
+    }
+}
@@ -0,0 +1,225 @@
+package com.tankmilu.webflux.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * NAS 원본 파일을 로컬 SSD 에 복사해두는 읽기 캐시 계층
+ * 처음 조회된 파일을 백그라운드에서 복사하고, 복사가 끝나면 원자적으로 이름을 바꿔 공개함
+ * 이후 범위 요청과 FFmpeg 입력은 로컬 복사본을 사용하며, 디스크 예산을 넘으면 가장 오래 사용하지 않은 파일부터 삭제함
+ * 로컬 파일명 : {fileId}.{수정 시간}.{확장자}
+ */
+@Slf4j
+@Component
+public class LocalMediaTier {
+
+    private static final String PART_SUFFIX = ".part";
+
+    private final boolean enabled;
+
+    private final Path localFolder;
+
+    private final long maxBytes;
+
+    private final Scheduler copyScheduler;
+
+    // fileId 별 로컬 복사본 (접근 순서 유지, LRU)
+    private final LinkedHashMap<Long, LocalEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Set<Long> copying = ConcurrentHashMap.newKeySet();
+
+    // 로컬 복사본 삭제 시 실행할 작업 (fileId). 삭제된 로컬 경로를 캐싱한 곳을 무효화함
+    private final List<Consumer<Long>> evictionListeners = new CopyOnWriteArrayList<>();
+
+    private long usedBytes;
+
+    public LocalMediaTier(@Value("${custom.cache.local.enabled:false}") boolean enabled,
+                          @Value("${custom.cache.local.folder:/app/media/local_cache}") String localFolder,
+                          @Value("${custom.cache.local.max_bytes:107374182400}") long maxBytes,
+                          @Value("${custom.cache.local.copy_concurrency:2}") int copyConcurrency) {
+        this.enabled = enabled;
+        this.localFolder = Paths.get(localFolder);
+        this.maxBytes = maxBytes;
+        this.copyScheduler = Schedulers.newBoundedElastic(copyConcurrency, Integer.MAX_VALUE, "local-media-copy");
+    }
+
+    // 기존 로컬 복사본을 인덱스에 등록하고 완료되지 않은 임시 파일은 삭제
+    @PostConstruct
+    void loadIndex() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(localFolder);
+        try (Stream<Path> files = Files.list(localFolder)) {
+            files.sorted((a, b) -> Long.compare(lastModifiedQuietly(a), lastModifiedQuietly(b))).forEach(path -> {
+                String fileName = path.getFileName().toString();
+                String[] parts = fileName.split("\\.", 3);
+                try {
+                    if (fileName.endsWith(PART_SUFFIX) || parts.length < 2) {
+                        Files.deleteIfExists(path);
+                        return;
+                    }
+                    long size = Files.size(path);
+                    entries.put(Long.parseLong(parts[0]), new LocalEntry(path, Long.parseLong(parts[1]), size));
+                    usedBytes += size;
+                } catch (IOException | NumberFormatException e) {
+                    log.warn("로컬 캐시 파일을 등록할 수 없습니다 : {}: {}", path, e.getMessage());
+                }
+            });
+        }
+        log.info("로컬 캐시 등록 완료. 파일 수: {}, 사용량: {} bytes", entries.size(), usedBytes);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        copyScheduler.dispose();
+    }
+
+    /**
+     * 원본 파일 대신 사용할 경로를 반환함
+     * 같은 버전의 로컬 복사본이 있으면 로컬 경로를, 없으면 원본 경로를 반환하고 백그라운드 복사를 시작함
+     * 블로킹 파일 IO 가 발생하므로 boundedElastic 에서 호출해야 함
+     *
+     * @param fileId 비디오 파일 ID
+     * @param sourcePath NAS 원본 경로
+     * @param version 원본 파일 수정 시간
+     * @param length 원본 파일 길이
+     * @param onReady 복사 완료 시 실행할 작업 (경로 캐시 갱신 등)
+     * @return 실제로 읽을 파일 경로
+     */
+    public Path resolve(Long fileId, Path sourcePath, long version, long length, Runnable onReady) {
+        if (!enabled) {
+            return sourcePath;
+        }
+        LocalEntry entry;
+        synchronized (this) {
+            entry = entries.get(fileId); // LRU 순서 갱신
+        }
+        if (entry != null && entry.version() == version && Files.isReadable(entry.path())) {
+            return entry.path();
+        }
+        scheduleCopy(fileId, sourcePath, version, length, onReady);
+        return sourcePath;
+    }
+
+    /**
+     * 로컬 복사본을 삭제하기 전에 실행할 작업 등록
+     *
+     * @param listener 삭제되는 파일의 fileId 를 받는 작업
+     */
+    public void addEvictionListener(Consumer<Long> listener) {
+        evictionListeners.add(listener);
+    }
+
+    private void scheduleCopy(Long fileId, Path sourcePath, long version, long length, Runnable onReady) {
+        if (length <= 0 || length > maxBytes || !copying.add(fileId)) {
+            return;
+        }
+        Mono.fromRunnable(() -> copy(fileId, sourcePath, version, length))
+                .subscribeOn(copyScheduler)
+                .doOnSuccess(v -> onReady.run())
+                .doOnError(e -> log.warn("로컬 캐시 복사 실패. fileId: {}, path: {}: {}", fileId, sourcePath, e.getMessage()))
+                .doFinally(signal -> copying.remove(fileId))
+                .onErrorResume(e -> Mono.empty())
+                .subscribe();
+    }
+
+    private void copy(Long fileId, Path sourcePath, long version, long length) {
+        String fileName = sourcePath.getFileName().toString();
+        String extension = fileName.contains(".") ? fileName.substring(fileName.lastIndexOf('.') + 1) : "media";
+        Path target = localFolder.resolve(fileId + "." + version + "." + extension);
+        Path part = localFolder.resolve(target.getFileName() + PART_SUFFIX);
+
+        reserve(fileId, length);
+        boolean published = false;
+        try {
+            log.info("로컬 캐시 복사 시작. fileId: {}, {} -> {}", fileId, sourcePath, target);
+            Files.copy(sourcePath, part, StandardCopyOption.REPLACE_EXISTING);
+            // 복사 중 원본이 바뀌었으면 폐기
+            if (Files.size(part) != length || Files.getLastModifiedTime(sourcePath).toMillis() != version) {
+                throw new IOException("복사 중 원본 파일이 변경되었습니다.");
+            }
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            synchronized (this) {
+                entries.put(fileId, new LocalEntry(target, version, length));
+            }
+            published = true;
+            log.info("로컬 캐시 복사 완료. fileId: {}, size: {}", fileId, length);
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        } finally {
+            if (!published) {
+                synchronized (this) {
+                    usedBytes -= length;
+                }
+                deleteQuietly(part);
+            }
+        }
+    }
+
+    // 복사할 공간 확보. 같은 fileId 의 이전 버전과 오래 사용하지 않은 파일부터 삭제
+    private synchronized void reserve(Long fileId, long length) {
+        LocalEntry previous = entries.remove(fileId);
+        if (previous != null) {
+            evict(fileId, previous);
+        }
+        Iterator<Map.Entry<Long, LocalEntry>> iterator = entries.entrySet().iterator();
+        while (usedBytes + length > maxBytes && iterator.hasNext()) {
+            Map.Entry<Long, LocalEntry> eldest = iterator.next();
+            iterator.remove();
+            evict(eldest.getKey(), eldest.getValue());
+            log.info("로컬 캐시 용량 초과로 삭제 : {}", eldest.getValue().path());
+        }
+        usedBytes += length;
+    }
+
+    // 인덱스에서 제거된 복사본 삭제. 삭제 전에 로컬 경로를 캐싱한 곳을 먼저 무효화해서 이후 요청은 원본 경로를 사용함
+    private void evict(Long fileId, LocalEntry entry) {
+        usedBytes -= entry.size();
+        for (Consumer<Long> listener : evictionListeners) {
+            try {
+                listener.accept(fileId);
+            } catch (RuntimeException e) {
+                log.warn("로컬 캐시 삭제 작업 실패. fileId: {}: {}", fileId, e.getMessage());
+            }
+        }
+        deleteQuietly(entry.path());
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("로컬 캐시 파일 삭제 실패 : {}: {}", path, e.getMessage());
+        }
+    }
+
+    private long lastModifiedQuietly(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private record LocalEntry(Path path, long version, long size) {
+    }
+}
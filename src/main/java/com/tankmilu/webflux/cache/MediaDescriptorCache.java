@@ -0,0 +1,97 @@
+package com.tankmilu.webflux.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tankmilu.webflux.record.FileInfoRecord;
+import com.tankmilu.webflux.record.MediaDescriptorRecord;
+import com.tankmilu.webflux.repository.ContentsFileRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * fileId 별 미디어 파일 정보(경로, 구독 코드, 길이, 수정 시간, MIME 타입) 캐시
+ * 범위 요청, HLS 세그먼트, 자막, 플레이리스트 요청마다 수행되던 DB 조인 조회와 파일 stat 호출을 제거함
+ */
+@Slf4j
+@Component
+public class MediaDescriptorCache {
+
+    private final ContentsFileRepository contentsFileRepository;
+
+    private final LocalMediaTier localMediaTier;
+
+    private final AsyncCache<Long, MediaDescriptorRecord> cache;
+
+    public MediaDescriptorCache(ContentsFileRepository contentsFileRepository,
+                                LocalMediaTier localMediaTier,
+                                @Value("${custom.cache.descriptor.max_size:10000}") long maxSize,
+                                @Value("${custom.cache.descriptor.ttl_seconds:60}") long ttlSeconds) {
+        this.contentsFileRepository = contentsFileRepository;
+        this.localMediaTier = localMediaTier;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .buildAsync();
+        // 로컬 복사본이 삭제되면 로컬 경로를 가진 정보를 비워서 다음 요청부터 원본 경로 사용
+        localMediaTier.addEvictionListener(this::invalidate);
+    }
+
+    /**
+     * fileId 에 해당하는 미디어 정보를 반환. 캐시 미존재 시 DB 조회 후 파일 정보를 읽어서 캐싱
+     * 동시에 같은 fileId 를 요청하면 하나의 조회 결과를 공유함
+     *
+     * @param fileId 비디오 파일 ID
+     * @return 미디어 정보. 파일 정보가 DB 에 없으면 empty
+     */
+    public Mono<MediaDescriptorRecord> get(Long fileId) {
+        // 한 요청이 취소되어도 같은 조회를 기다리는 다른 요청에 영향이 없도록 취소 전파 차단
+        return Mono.fromFuture(cache.get(fileId, (key, executor) -> load(key).toFuture()), true);
+    }
+
+    // 파일이 교체되거나 DB 정보가 변경된 경우 호출
+    public void invalidate(Long fileId) {
+        cache.synchronous().invalidate(fileId);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    private Mono<MediaDescriptorRecord> load(Long fileId) {
+        log.debug("미디어 정보 캐시 미존재. DB 조회 : {}", fileId);
+        return contentsFileRepository.findFileWithContentInfo(fileId)
+                .flatMap(fileInfo -> Mono.fromCallable(() -> describe(fileInfo))
+                        .subscribeOn(Schedulers.boundedElastic())); // 파일 stat 은 블로킹 IO
+    }
+
+    private MediaDescriptorRecord describe(FileInfoRecord fileInfo) {
+        Path videoPath = Paths.get(fileInfo.getFullFilePath());
+        if (!Files.isReadable(videoPath)) {
+            return new MediaDescriptorRecord(fileInfo, videoPath, fileInfo.subscriptionCode(), false, -1, -1, null);
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(videoPath, BasicFileAttributes.class);
+            String contentType = Optional.ofNullable(Files.probeContentType(videoPath)).orElse("video/mp4");
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            // 로컬 복사본이 있으면 로컬 경로 사용 (복사 완료 시 캐시를 비워서 다음 요청부터 로컬 경로 사용)
+            Path readPath = localMediaTier.resolve(fileInfo.id(), videoPath, lastModified, attributes.size(),
+                    () -> invalidate(fileInfo.id()));
+            return new MediaDescriptorRecord(fileInfo, readPath, fileInfo.subscriptionCode(), true,
+                    attributes.size(), lastModified, contentType);
+        } catch (IOException e) {
+            log.warn("미디어 파일 정보 조회 실패. fileId: {}, path: {}: {}", fileInfo.id(), videoPath, e.getMessage());
+            return new MediaDescriptorRecord(fileInfo, videoPath, fileInfo.subscriptionCode(), false, -1, -1, null);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.tankmilu.webflux.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tankmilu.webflux.enums.SegmentFormatEnum;
+import com.tankmilu.webflux.record.PlaylistKeyRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HLS 미디어 플레이리스트 메모리 캐시
+ * 세그먼트 경계 시간은 파일당 한 번만 마이크로초 long 배열로 보관하고,
+ * 해상도별 플레이리스트는 인코딩된 byte[] 로 보관해서 요청 시 디스크 IO, 문자열 생성 없이 그대로 전송함
+ * 파일 수정 시간을 키에 포함하므로 파일이 교체되면 이전 플레이리스트는 사용되지 않고 자연히 제거됨
+ */
+@Component
+public class PlaylistCache {
+
+    private final Cache<PlaylistKeyRecord, byte[]> playlists;
+
+    // fileId -> 세그먼트 경계 (최신 버전 하나만 보관)
+    private final Cache<Long, Timeline> timelines;
+
+    private final Counter hitCounter;
+
+    private final Counter missCounter;
+
+    public PlaylistCache(MeterRegistry meterRegistry,
+                         @Value("${custom.cache.playlist.max_bytes:33554432}") long maxBytes,
+                         @Value("${custom.cache.playlist.timeline_max_bytes:16777216}") long timelineMaxBytes) {
+        this.playlists = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((PlaylistKeyRecord key, byte[] playlist) -> playlist.length)
+                .build();
+        this.timelines = Caffeine.newBuilder()
+                .maximumWeight(timelineMaxBytes)
+                .weigher((Long key, Timeline timeline) -> timeline.boundaries.length * Long.BYTES)
+                .build();
+        this.hitCounter = Counter.builder("video.hls.playlist.cache.hits")
+                .description("메모리 캐시에서 전송한 플레이리스트 요청 수").register(meterRegistry);
+        this.missCounter = Counter.builder("video.hls.playlist.cache.misses")
+                .description("새로 생성한 플레이리스트 수").register(meterRegistry);
+    }
+
+    /**
+     * 캐싱된 플레이리스트 조회 (블로킹 작업 없음)
+     *
+     * @return 플레이리스트 (없으면 null)
+     */
+    public byte[] getIfPresent(Long fileId, long version, String type, SegmentFormatEnum format) {
+        byte[] playlist = playlists.getIfPresent(new PlaylistKeyRecord(fileId, version, type, format));
+        if (playlist != null) {
+            hitCounter.increment();
+        }
+        return playlist;
+    }
+
+    /**
+     * 플레이리스트 조회. 없으면 세그먼트 경계(없으면 loader 로 조회)로 생성해서 캐싱함
+     * loader 가 파일 IO 를 수행할 수 있으므로 boundedElastic 에서 호출해야 함
+     *
+     * @param segmentUrl 세그먼트 요청 URL (쿼리 제외)
+     * @param initUrl CMAF 초기화 세그먼트 요청 URL (쿼리 제외, TS 는 null)
+     * @param loader 세그먼트 경계 시간 조회 (KeyFrameIndex.segmentTimeline)
+     */
+    public byte[] get(Long fileId, long version, String type, SegmentFormatEnum format, String segmentUrl, String initUrl,
+                      TimelineLoader loader) throws IOException {
+        byte[] cached = getIfPresent(fileId, version, type, format);
+        if (cached != null) {
+            return cached;
+        }
+        missCounter.increment();
+        Timeline timeline = timelines.getIfPresent(fileId);
+        if (timeline == null || timeline.version != version) {
+            timeline = new Timeline(version, loader.load());
+            timelines.put(fileId, timeline);
+        }
+        return put(fileId, version, type, format, render(timeline.boundaries, segmentUrl, initUrl, fileId, type));
+    }
+
+    /**
+     * 생성된 플레이리스트를 캐싱함 (키프레임 인덱스를 만들 수 없어 적재 시 만든 파일을 사용하는 경우)
+     */
+    public byte[] put(Long fileId, long version, String type, SegmentFormatEnum format, byte[] playlist) {
+        playlists.put(new PlaylistKeyRecord(fileId, version, type, format), playlist);
+        return playlist;
+    }
+
+    public void invalidate(Long fileId) {
+        timelines.invalidate(fileId);
+        playlists.asMap().keySet().removeIf(key -> key.fileId().equals(fileId));
+    }
+
+    /**
+     * 세그먼트 경계 시간으로 미디어 플레이리스트를 만듦. 시간은 정수 연산으로 소수점 6자리 문자열로 변환하며,
+     * 첫 세그먼트 시작은 기존 플레이리스트와 같은 URL 이 되도록 "0.0" 으로 표기함
+     *
+     * @param boundaries 세그먼트 경계 시간(마이크로초). 첫 값은 0
+     * @param initUrl CMAF 초기화 세그먼트 URL (쿼리 제외). null 이면 TS 플레이리스트
+     */
+    public static byte[] render(long[] boundaries, String segmentUrl, String initUrl, Long fileId, String type) {
+        StringBuilder m3u8Builder = new StringBuilder(160 + boundaries.length * (segmentUrl.length() + 80))
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:7\n")
+                .append("#EXT-X-TARGETDURATION:10\n")
+                .append("#EXT-X-PLAYLIST-TYPE:VOD\n")
+                .append("#EXT-X-MEDIA-SEQUENCE:0\n");
+        if (initUrl != null) {
+            // fMP4 세그먼트는 해상도별 초기화 세그먼트(ftyp, moov)를 공유함
+            m3u8Builder.append("#EXT-X-INDEPENDENT-SEGMENTS\n")
+                    .append("#EXT-X-MAP:URI=\"").append(initUrl)
+                    .append("?fileId=").append(fileId)
+                    .append("&type=").append(type)
+                    .append("\"\n");
+        }
+        for (int i = 1; i < boundaries.length; i++) {
+            m3u8Builder.append("#EXTINF:");
+            KeyFrameIndex.appendSeconds(m3u8Builder, boundaries[i] - boundaries[i - 1]).append(",\n")
+                    .append(segmentUrl)
+                    .append("?fileId=").append(fileId)
+                    .append("&ss=");
+            if (i == 1) {
+                m3u8Builder.append("0.0");
+            } else {
+                KeyFrameIndex.appendSeconds(m3u8Builder, boundaries[i - 1]);
+            }
+            m3u8Builder.append("&to=");
+            KeyFrameIndex.appendSeconds(m3u8Builder, boundaries[i])
+                    .append("&type=").append(type)
+                    .append('\n');
+        }
+        m3u8Builder.append("#EXT-X-ENDLIST");
+        return m3u8Builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 원본 파일의 바이트 범위(EXT-X-BYTERANGE)를 세그먼트로 사용하는 미디어 플레이리스트
+     * 세그먼트는 원본 파일 범위 요청 URL 로 전송되므로 FFmpeg 를 실행하지 않음
+     *
+     * @param boundaries 세그먼트 경계 시간(마이크로초). 첫 값은 0
+     * @param offsets 세그먼트 시작 위치(boundaries 와 같은 길이). 마지막 값은 마지막 세그먼트의 끝 위치
+     * @param initLength 초기화 구간(EXT-X-MAP) 길이. fMP4 는 ftyp, moov, MPEG-TS 는 PAT, PMT 패킷
+     * @param fileUrl 원본 파일 범위 요청 URL (쿼리 제외)
+     */
+    public static byte[] renderByteRange(long[] boundaries, long[] offsets, long initLength, String fileUrl, Long fileId) {
+        StringBuilder m3u8Builder = new StringBuilder(160 + boundaries.length * (fileUrl.length() + 80))
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:7\n")
+                .append("#EXT-X-TARGETDURATION:10\n")
+                .append("#EXT-X-PLAYLIST-TYPE:VOD\n")
+                .append("#EXT-X-MEDIA-SEQUENCE:0\n");
+        if (initLength > 0) {
+            m3u8Builder.append("#EXT-X-INDEPENDENT-SEGMENTS\n")
+                    .append("#EXT-X-MAP:URI=\"").append(fileUrl)
+                    .append("?fileId=").append(fileId)
+                    .append("\",BYTERANGE=\"").append(initLength).append("@0\"\n");
+        }
+        for (int i = 1; i < boundaries.length; i++) {
+            m3u8Builder.append("#EXTINF:");
+            KeyFrameIndex.appendSeconds(m3u8Builder, boundaries[i] - boundaries[i - 1]).append(",\n")
+                    .append("#EXT-X-BYTERANGE:").append(offsets[i] - offsets[i - 1])
+                    .append('@').append(offsets[i - 1]).append('\n')
+                    .append(fileUrl)
+                    .append("?fileId=").append(fileId)
+                    .append('\n');
+        }
+        m3u8Builder.append("#EXT-X-ENDLIST");
+        return m3u8Builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    public interface TimelineLoader {
+        long[] load() throws IOException;
+    }
+
+    private static final class Timeline {
+        private final long version;
+        private final long[] boundaries;
+
+        private Timeline(long version, long[] boundaries) {
+            this.version = version;
+            this.boundaries = boundaries;
+        }
+    }
+}
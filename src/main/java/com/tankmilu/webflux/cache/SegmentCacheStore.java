@@ -0,0 +1,214 @@
+package com.tankmilu.webflux.cache;
+
+import com.tankmilu.webflux.record.SegmentKeyRecord;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * 트랜스코딩한 HLS TS 세그먼트를 디스크에 보관하는 캐시
+ * 세그먼트는 (fileId, 원본 수정 시간, 시작, 종료, 해상도 타입)으로 구분하므로 원본이 교체되면 이전 세그먼트는 사용되지 않고 자연히 제거됨
+ * FFmpeg 출력은 임시 파일(.part)에 쓰고 완료 후 원자적으로 이름을 바꿔 공개하며, 디스크 예산을 넘으면 가장 오래 사용하지 않은 세그먼트부터 삭제함
+ */
+@Slf4j
+@Component
+public class SegmentCacheStore {
+
+    private static final String PART_SUFFIX = ".part";
+
+    // 재생 세션 트랜스코딩 출력 폴더 (세그먼트 공개 시 원자적 이동을 위해 캐시 폴더 안에 둠)
+    private static final String WORK_FOLDER = "work";
+
+    private final boolean enabled;
+
+    private final Path cacheFolder;
+
+    private final long maxBytes;
+
+    // 세그먼트 파일명 별 크기 (접근 순서 유지, LRU)
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private long usedBytes;
+
+    public SegmentCacheStore(@Value("${custom.cache.segment.enabled:false}") boolean enabled,
+                             @Value("${custom.cache.segment.folder:/app/media/segment_cache}") String cacheFolder,
+                             @Value("${custom.cache.segment.max_bytes:21474836480}") long maxBytes) {
+        this.enabled = enabled;
+        this.cacheFolder = Paths.get(cacheFolder);
+        this.maxBytes = maxBytes;
+    }
+
+    // 기존 세그먼트를 인덱스에 등록하고 완료되지 않은 임시 파일은 삭제
+    @PostConstruct
+    void loadIndex() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(cacheFolder);
+        FileSystemUtils.deleteRecursively(cacheFolder.resolve(WORK_FOLDER));
+        try (Stream<Path> files = Files.list(cacheFolder)) {
+            files.sorted((a, b) -> Long.compare(lastModifiedQuietly(a), lastModifiedQuietly(b))).forEach(path -> {
+                try {
+                    if (Files.isDirectory(path)) {
+                        return;
+                    }
+                    if (path.getFileName().toString().endsWith(PART_SUFFIX)) {
+                        Files.deleteIfExists(path);
+                        return;
+                    }
+                    long size = Files.size(path);
+                    entries.put(path.getFileName().toString(), size);
+                    usedBytes += size;
+                } catch (IOException e) {
+                    log.warn("세그먼트 캐시 파일을 등록할 수 없습니다 : {}: {}", path, e.getMessage());
+                }
+            });
+        }
+        evict(0);
+        log.info("세그먼트 캐시 등록 완료. 세그먼트 수: {}, 사용량: {} bytes", entries.size(), usedBytes);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 캐시된 세그먼트 경로를 조회함 (없으면 empty)
+     */
+    public Mono<Path> find(SegmentKeyRecord key) {
+        return Mono.fromCallable(() -> {
+                    String fileName = key.fileName();
+                    synchronized (this) {
+                        if (entries.get(fileName) == null) { // LRU 순서 갱신
+                            return null;
+                        }
+                    }
+                    Path path = cacheFolder.resolve(fileName);
+                    if (Files.isReadable(path)) {
+                        return path;
+                    }
+                    // 외부에서 삭제된 경우 인덱스에서 제거
+                    remove(fileName);
+                    return null;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * FFmpeg 출력용 임시 파일 경로. 같은 세그먼트를 동시에 만들어도 서로 덮어쓰지 않도록 고유 이름을 사용
+     */
+    public Path newPartPath(SegmentKeyRecord key) {
+        return cacheFolder.resolve(key.fileName() + "." + UUID.randomUUID() + PART_SUFFIX);
+    }
+
+    /**
+     * 재생 세션 트랜스코딩용 작업 폴더를 새로 만듦. 폴더의 파일은 publish 로 공개할 수 있으며, 사용 후 호출자가 삭제해야 함
+     */
+    public Path newWorkDirectory() throws IOException {
+        return Files.createDirectories(cacheFolder.resolve(WORK_FOLDER).resolve(UUID.randomUUID().toString()));
+    }
+
+    /**
+     * 완성된 임시 파일을 세그먼트로 공개함. 공간이 부족하면 오래 사용하지 않은 세그먼트부터 삭제함
+     *
+     * @param key 세그먼트 키
+     * @param partPath newPartPath 또는 newWorkDirectory 안의 완성된 출력
+     * @return 공개된 세그먼트 경로
+     */
+    public Mono<Path> publish(SegmentKeyRecord key, Path partPath) {
+        return Mono.fromCallable(() -> {
+                    String fileName = key.fileName();
+                    Path target = cacheFolder.resolve(fileName);
+                    try {
+                        long size = Files.size(partPath);
+                        if (size > maxBytes) {
+                            throw new IOException("세그먼트 크기가 캐시 예산보다 큽니다. size: " + size);
+                        }
+                        synchronized (this) {
+                            Long previous = entries.remove(fileName);
+                            if (previous != null) {
+                                usedBytes -= previous;
+                            }
+                            evict(size);
+                            // 이름 변경은 읽는 중인 이전 파일에 영향을 주지 않음
+                            Files.move(partPath, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                            entries.put(fileName, size);
+                            usedBytes += size;
+                        }
+                        log.debug("세그먼트 캐시 저장. {}, size: {}", fileName, size);
+                        return target;
+                    } finally {
+                        Files.deleteIfExists(partPath);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 원본 파일이 교체되거나 삭제된 경우 해당 파일의 세그먼트를 모두 삭제함
+     */
+    public synchronized void invalidate(Long fileId) {
+        String prefix = fileId + ".";
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (entry.getKey().startsWith(prefix)) {
+                iterator.remove();
+                usedBytes -= entry.getValue();
+                deleteQuietly(cacheFolder.resolve(entry.getKey()));
+            }
+        }
+    }
+
+    synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    // 새 세그먼트 크기만큼 공간 확보
+    private synchronized void evict(long incoming) {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (usedBytes + incoming > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            usedBytes -= eldest.getValue();
+            // 전송 중인 세그먼트는 열린 채널로 계속 읽을 수 있음
+            deleteQuietly(cacheFolder.resolve(eldest.getKey()));
+            log.debug("세그먼트 캐시 용량 초과로 삭제 : {}", eldest.getKey());
+        }
+    }
+
+    private synchronized void remove(String fileName) {
+        Long size = entries.remove(fileName);
+        if (size != null) {
+            usedBytes -= size;
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("세그먼트 캐시 파일 삭제 실패 : {}: {}", path, e.getMessage());
+        }
+    }
+
+    private long lastModifiedQuietly(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
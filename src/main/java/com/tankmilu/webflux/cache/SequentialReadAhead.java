@@ -0,0 +1,224 @@
+package com.tankmilu.webflux.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.tankmilu.webflux.record.VideoMetaRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * (사용자, fileId) 별 최근 범위 요청을 추적해서 순차 재생을 감지하고 다음 구간을 미리 읽음
+ * 블록 캐시 사용 시 블록 캐시에, 아니면 파일을 읽어서 OS 페이지 캐시에 올려둠 (posix_fadvise WILLNEED 대체)
+ * 선읽기 적중률과 사용되지 않은 선읽기 바이트는 Micrometer 지표로 기록함
+ */
+@Slf4j
+@Component
+public class SequentialReadAhead {
+
+    private static final int PAGE_CACHE_READ_SIZE = 1024 * 1024;
+
+    private final VideoBlockCache videoBlockCache;
+
+    private final FileChannelPool fileChannelPool;
+
+    private final boolean enabled;
+
+    private final long sequentialDistance;
+
+    private final long prefetchBytes;
+
+    private final int triggerCount;
+
+    private final Cache<String, AccessState> states;
+
+    private final Counter hitCounter;
+
+    private final Counter missCounter;
+
+    private final Counter prefetchedBytesCounter;
+
+    private final Counter wastedBytesCounter;
+
+    public SequentialReadAhead(VideoBlockCache videoBlockCache,
+                               FileChannelPool fileChannelPool,
+                               MeterRegistry meterRegistry,
+                               @Value("${custom.readahead.enabled:true}") boolean enabled,
+                               @Value("${custom.readahead.sequential_distance:67108864}") long sequentialDistance,
+                               @Value("${custom.readahead.prefetch_bytes:8388608}") long prefetchBytes,
+                               @Value("${custom.readahead.trigger_count:2}") int triggerCount) {
+        this.videoBlockCache = videoBlockCache;
+        this.fileChannelPool = fileChannelPool;
+        this.enabled = enabled;
+        this.sequentialDistance = sequentialDistance;
+        this.prefetchBytes = prefetchBytes;
+        this.triggerCount = triggerCount;
+        this.hitCounter = Counter.builder("video.readahead.hits")
+                .description("선읽기 구간에서 시작한 범위 요청 수").register(meterRegistry);
+        this.missCounter = Counter.builder("video.readahead.misses")
+                .description("선읽기 구간 밖에서 시작한 범위 요청 수").register(meterRegistry);
+        this.prefetchedBytesCounter = Counter.builder("video.readahead.prefetched.bytes")
+                .baseUnit("bytes").description("미리 읽은 바이트").register(meterRegistry);
+        this.wastedBytesCounter = Counter.builder("video.readahead.wasted.bytes")
+                .baseUnit("bytes").description("사용되지 않은 선읽기 바이트").register(meterRegistry);
+        Gauge.builder("video.readahead.hit.ratio", this, SequentialReadAhead::hitRatio)
+                .description("선읽기 적중률").register(meterRegistry);
+        this.states = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .removalListener((String key, AccessState state, RemovalCause cause) -> {
+                    if (state != null) {
+                        wastedBytesCounter.increment(state.unusedPrefetchBytes());
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * 범위 요청을 기록하고, 순차 재생으로 판단되면 다음 구간 선읽기를 비동기로 시작함
+     *
+     * @param username 사용자 ID
+     * @param videoMetaRecord 응답할 범위 정보
+     */
+    public void onRangeRequest(String username, VideoMetaRecord videoMetaRecord) {
+        if (!enabled || !videoMetaRecord.partial() || videoMetaRecord.isMultipart()) {
+            return;
+        }
+        AccessState state = states.get(username + ":" + videoMetaRecord.fileId(), key -> new AccessState());
+        long[] window;
+        synchronized (state) {
+            Boolean hit = state.checkPrefetchHit(videoMetaRecord.startByte());
+            if (hit != null) {
+                (hit ? hitCounter : missCounter).increment();
+            }
+            long wasted = state.unusedPrefetchBytesBefore(videoMetaRecord.startByte());
+            if (wasted > 0) {
+                wastedBytesCounter.increment(wasted);
+            }
+            window = state.record(videoMetaRecord.startByte(), videoMetaRecord.endByte(), videoMetaRecord.fileLength());
+        }
+        if (window != null) {
+            prefetch(videoMetaRecord, window[0], window[1]);
+        }
+    }
+
+    double hitRatio() {
+        double total = hitCounter.count() + missCounter.count();
+        return total == 0 ? 0 : hitCounter.count() / total;
+    }
+
+    private void prefetch(VideoMetaRecord videoMetaRecord, long start, long end) {
+        Mono<Long> prefetchMono = videoBlockCache.isEnabled()
+                ? videoBlockCache.prefetch(videoMetaRecord, start, end)
+                : readIntoPageCache(videoMetaRecord.videoPath(), videoMetaRecord.lastModified(), start, end);
+        prefetchMono
+                .doOnNext(prefetchedBytesCounter::increment)
+                .doOnError(e -> log.debug("선읽기 실패. fileId: {}, {}-{}: {}", videoMetaRecord.fileId(), start, end, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .subscribe();
+    }
+
+    // 파일 구간을 읽고 버려서 OS 페이지 캐시에 올림
+    private Mono<Long> readIntoPageCache(Path videoPath, long version, long start, long end) {
+        return Mono.fromCallable(() -> {
+                    long read = 0;
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(PAGE_CACHE_READ_SIZE);
+                    try (FileChannelPool.Lease lease = fileChannelPool.acquire(videoPath, version)) {
+                        FileChannel channel = lease.channel();
+                        long position = start;
+                        while (position <= end) {
+                            buffer.clear().limit((int) Math.min(PAGE_CACHE_READ_SIZE, end - position + 1));
+                            int n = channel.read(buffer, position);
+                            if (n < 0) {
+                                break;
+                            }
+                            position += n;
+                            read += n;
+                        }
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                    }
+                    return read;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * (사용자, fileId) 별 접근 기록
+     */
+    final class AccessState {
+        private long lastStart = -1;
+        private long lastEnd = -1;
+        private int sequentialCount;
+        private long prefetchStart = -1;
+        private long prefetchEnd = -1;
+        private boolean prefetchUsed;
+
+        // 선읽기 구간이 있으면 적중 여부 반환 (없으면 null)
+        Boolean checkPrefetchHit(long start) {
+            if (prefetchStart < 0) {
+                return null;
+            }
+            boolean hit = start >= prefetchStart && start <= prefetchEnd;
+            prefetchUsed |= hit;
+            return hit;
+        }
+
+        // 요청이 선읽기 구간을 지나쳤으면 사용되지 않은 선읽기 구간 크기를 반환하고 구간을 비움
+        long unusedPrefetchBytesBefore(long start) {
+            if (prefetchStart < 0 || start <= prefetchEnd) {
+                return 0;
+            }
+            long wasted = unusedPrefetchBytes();
+            prefetchStart = prefetchEnd = -1;
+            prefetchUsed = false;
+            return wasted;
+        }
+
+        long unusedPrefetchBytes() {
+            return prefetchStart < 0 || prefetchUsed ? 0 : prefetchEnd - prefetchStart + 1;
+        }
+
+        /**
+         * 요청을 기록하고 선읽기할 구간 {시작, 끝} 반환 (선읽기 불필요 시 null)
+         * 이전 요청 바로 뒤에서 시작하거나, 이전 시작 위치보다 앞으로 sequentialDistance 이내에서 시작하면 순차로 판단
+         * (플레이어는 bytes=N- 형태로 끝을 지정하지 않고 요청 후 연결을 끊는 경우가 많음)
+         */
+        long[] record(long start, long end, long fileLength) {
+            boolean contiguous = lastEnd >= 0 && start == lastEnd + 1;
+            boolean forward = lastStart >= 0 && start > lastStart && start - lastStart <= sequentialDistance;
+            sequentialCount = contiguous || forward ? sequentialCount + 1 : 0;
+            long stride = contiguous ? end - start + 1 : start - lastStart;
+            lastStart = start;
+            lastEnd = end;
+
+            if (sequentialCount < triggerCount) {
+                return null;
+            }
+            long from = start + Math.min(stride, sequentialDistance);
+            if (from >= fileLength || (from >= prefetchStart && from <= prefetchEnd)) {
+                return null; // 파일 끝이거나 이미 선읽기한 구간
+            }
+            long to = Math.min(from + prefetchBytes - 1, fileLength - 1);
+            if (unusedPrefetchBytes() > 0) {
+                wastedBytesCounter.increment(unusedPrefetchBytes());
+            }
+            prefetchStart = from;
+            prefetchEnd = to;
+            prefetchUsed = false;
+            return new long[]{from, to};
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.tankmilu.webflux.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 같은 키의 비용이 큰 작업(트랜스코딩, 플레이리스트 생성, ffprobe, 자막 추출)을 한 번만 실행하는 조정자
+ * 첫 요청이 작업을 시작하고, 작업이 끝나기 전에 들어온 같은 키의 요청은 진행 중인 결과를 함께 받음
+ * 작업은 요청 취소와 관계없이 끝까지 실행되므로 결과 캐시 파일이 중간에 끊기지 않음
+ * 키는 "종류:식별자" 형식으로 작업 종류별로 구분해서 사용
+ */
+@Slf4j
+@Component
+public class SingleFlight {
+
+    private final ConcurrentHashMap<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter leaderCounter;
+
+    private final Counter joinCounter;
+
+    public SingleFlight(MeterRegistry meterRegistry) {
+        this.leaderCounter = Counter.builder("media.singleflight.leaders")
+                .description("작업을 직접 실행한 요청 수").register(meterRegistry);
+        this.joinCounter = Counter.builder("media.singleflight.joins")
+                .description("진행 중인 작업 결과를 함께 받은 요청 수").register(meterRegistry);
+    }
+
+    /**
+     * 키에 해당하는 작업이 진행 중이면 그 결과를, 아니면 작업을 새로 실행한 결과를 반환함
+     *
+     * @param key 작업 키
+     * @param work 실행할 작업 (진행 중인 작업이 없을 때만 호출됨)
+     * @return 작업 결과 (작업 결과가 비어있으면 empty)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> execute(String key, Supplier<Mono<T>> work) {
+        return Mono.deferContextual(context -> {
+            CompletableFuture<T> created = new CompletableFuture<>();
+            CompletableFuture<T> existing = (CompletableFuture<T>) inFlight.putIfAbsent(key, created);
+            if (existing != null) {
+                joinCounter.increment();
+                log.debug("진행 중인 작업에 합류. key: {}", key);
+                return Mono.fromFuture(existing, true);
+            }
+            leaderCounter.increment();
+            // 맵 등록 후 구독해야 동기적으로 끝나는 작업도 결과가 전달됨
+            // 작업은 첫 요청의 Context (작업 우선순위 등)로 실행
+            Mono.defer(work)
+                    .doFinally(signal -> inFlight.remove(key, created))
+                    .contextWrite(context)
+                    .subscribe(created::complete, created::completeExceptionally, () -> created.complete(null));
+            return Mono.fromFuture(created, true);
+        });
+    }
+
+    /**
+     * 결과를 호출자에게 직접 전달하는 작업(스트리밍 트랜스코딩 등)의 실행권을 얻음
+     * 같은 키의 작업이 진행 중이면 null 을 반환하며, 이 경우 execute 로 진행 중인 결과를 받을 수 있음
+     * 반환된 Flight 는 작업 종료 시 반드시 complete 또는 fail 을 호출해야 함
+     *
+     * @param key 작업 키
+     * @return 실행권 (이미 진행 중이면 null)
+     */
+    public <T> Flight<T> lead(String key) {
+        CompletableFuture<T> created = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, created) != null) {
+            return null;
+        }
+        leaderCounter.increment();
+        return new Flight<>(key, created);
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * lead 로 얻은 작업 실행권. 완료 또는 실패 시 키를 해제하고 합류한 요청에 결과를 전달함
+     * 여러 번 호출해도 처음 호출만 반영됨
+     */
+    public final class Flight<T> {
+        private final String key;
+        private final CompletableFuture<T> future;
+
+        private Flight(String key, CompletableFuture<T> future) {
+            this.key = key;
+            this.future = future;
+        }
+
+        public void complete(T value) {
+            inFlight.remove(key, future);
+            future.complete(value);
+        }
+
+        public void fail(Throwable error) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(error);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.tankmilu.webflux.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tankmilu.webflux.record.VideoBlockKeyRecord;
+import com.tankmilu.webflux.record.VideoMetaRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 원본 비디오 파일을 고정 크기 블록 단위로 오프힙(다이렉트 버퍼)에 캐싱
+ * 블록은 (fileId, 파일 수정 시간, 블록 번호)로 구분하므로 파일이 교체되면 이전 블록은 사용되지 않고 자연히 제거됨
+ * 일반 블록은 바이트 예산 내에서 W-TinyLFU 로 제거하고,
+ * 파일 앞부분 블록(MP4 moov, MKV 헤더)은 별도 영역에 보관해서 다른 파일을 읽는 중에도 밀려나지 않도록 함
+ */
+@Slf4j
+@Component
+public class VideoBlockCache {
+
+    private final DataBufferFactory dataBufferFactory;
+
+    private final FileChannelPool fileChannelPool;
+
+    private final boolean enabled;
+
+    private final int blockSize;
+
+    private final int pinnedBlocks;
+
+    private final AsyncCache<VideoBlockKeyRecord, ByteBuffer> blockCache;
+
+    private final AsyncCache<VideoBlockKeyRecord, ByteBuffer> pinnedCache;
+
+    public VideoBlockCache(DataBufferFactory dataBufferFactory,
+                           FileChannelPool fileChannelPool,
+                           @Value("${custom.cache.block.enabled:false}") boolean enabled,
+                           @Value("${custom.cache.block.block_size:1048576}") int blockSize,
+                           @Value("${custom.cache.block.max_bytes:536870912}") long maxBytes,
+                           @Value("${custom.cache.block.pinned_blocks:2}") int pinnedBlocks,
+                           @Value("${custom.cache.block.pinned_max_bytes:134217728}") long pinnedMaxBytes,
+                           @Value("${custom.cache.block.pinned_ttl_minutes:1440}") long pinnedTtlMinutes) {
+        this.dataBufferFactory = dataBufferFactory;
+        this.fileChannelPool = fileChannelPool;
+        this.enabled = enabled;
+        this.blockSize = blockSize;
+        this.pinnedBlocks = pinnedBlocks;
+        this.blockCache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((VideoBlockKeyRecord key, ByteBuffer block) -> block.capacity())
+                .buildAsync();
+        // 최근 재생한 파일의 앞부분 블록 전용 영역
+        this.pinnedCache = Caffeine.newBuilder()
+                .maximumWeight(pinnedMaxBytes)
+                .weigher((VideoBlockKeyRecord key, ByteBuffer block) -> block.capacity())
+                .expireAfterAccess(Duration.ofMinutes(pinnedTtlMinutes))
+                .buildAsync();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 파일의 start ~ end(포함) 구간을 캐시된 블록에서 읽음. 캐시 미존재 블록은 파일에서 읽어서 캐싱함
+     * 반환되는 버퍼는 캐시 블록의 읽기 전용 뷰이므로 복사가 발생하지 않음
+     *
+     * @param videoMetaRecord 파일 정보 (fileId, 경로, 수정 시간, 파일 길이)
+     * @param start 시작 바이트
+     * @param end 종료 바이트 (포함)
+     * @return 구간 데이터 스트림
+     */
+    public Flux<DataBuffer> read(VideoMetaRecord videoMetaRecord, long start, long end) {
+        long firstBlock = start / blockSize;
+        long lastBlock = end / blockSize;
+        return Flux.range(0, (int) (lastBlock - firstBlock + 1))
+                .concatMap(i -> {
+                    long blockIndex = firstBlock + i;
+                    long blockStart = blockIndex * blockSize;
+                    return getBlock(videoMetaRecord, blockIndex)
+                            .map(block -> {
+                                int from = (int) (Math.max(start, blockStart) - blockStart);
+                                int to = (int) (Math.min(end + 1, blockStart + block.capacity()) - blockStart);
+                                return dataBufferFactory.wrap(block.slice(from, to - from).asReadOnlyBuffer());
+                            });
+                }, 1);
+    }
+
+    /**
+     * 구간에 해당하는 블록 중 캐시에 없는 블록을 미리 읽어둠
+     *
+     * @return 새로 읽은 바이트 수
+     */
+    public Mono<Long> prefetch(VideoMetaRecord videoMetaRecord, long start, long end) {
+        long firstBlock = start / blockSize;
+        long lastBlock = end / blockSize;
+        return Flux.range(0, (int) (lastBlock - firstBlock + 1))
+                .map(i -> firstBlock + i)
+                .filter(blockIndex -> !isCached(videoMetaRecord, blockIndex))
+                .concatMap(blockIndex -> getBlock(videoMetaRecord, blockIndex), 1)
+                .reduce(0L, (total, block) -> total + block.capacity());
+    }
+
+    // 파일이 교체된 경우 호출 (수정 시간이 키에 포함되므로 필수는 아님)
+    public void invalidate(Long fileId) {
+        blockCache.synchronous().asMap().keySet().removeIf(key -> key.fileId().equals(fileId));
+        pinnedCache.synchronous().asMap().keySet().removeIf(key -> key.fileId().equals(fileId));
+    }
+
+    private boolean isCached(VideoMetaRecord videoMetaRecord, long blockIndex) {
+        return cacheFor(blockIndex).getIfPresent(keyOf(videoMetaRecord, blockIndex)) != null;
+    }
+
+    private VideoBlockKeyRecord keyOf(VideoMetaRecord videoMetaRecord, long blockIndex) {
+        return new VideoBlockKeyRecord(videoMetaRecord.fileId(), videoMetaRecord.lastModified(), blockIndex);
+    }
+
+    // 앞부분 블록은 고정 영역, 나머지는 일반 영역
+    private AsyncCache<VideoBlockKeyRecord, ByteBuffer> cacheFor(long blockIndex) {
+        return blockIndex < pinnedBlocks ? pinnedCache : blockCache;
+    }
+
+    private Mono<ByteBuffer> getBlock(VideoMetaRecord videoMetaRecord, long blockIndex) {
+        VideoBlockKeyRecord key = keyOf(videoMetaRecord, blockIndex);
+        AsyncCache<VideoBlockKeyRecord, ByteBuffer> target = cacheFor(blockIndex);
+        // 같은 블록을 동시에 요청하면 한 번만 읽고, 한 요청이 취소되어도 읽기는 계속함
+        return Mono.fromFuture(target.get(key, (k, executor) ->
+                loadBlock(videoMetaRecord.videoPath(), videoMetaRecord.lastModified(), videoMetaRecord.fileLength(), blockIndex).toFuture()), true);
+    }
+
+    private Mono<ByteBuffer> loadBlock(Path videoPath, long version, long fileLength, long blockIndex) {
+        return Mono.fromCallable(() -> {
+                    long position = blockIndex * blockSize;
+                    int length = (int) Math.min(blockSize, fileLength - position);
+                    ByteBuffer block = ByteBuffer.allocateDirect(length);
+                    try (FileChannelPool.Lease lease = fileChannelPool.acquire(videoPath, version)) {
+                        while (block.hasRemaining()) {
+                            if (lease.channel().read(block, position + block.position()) < 0) {
+                                throw new EOFException("블록을 읽는 중 파일 끝에 도달했습니다. path: " + videoPath + ", block: " + blockIndex);
+                            }
+                        }
+                    }
+                    return block.flip();
+                })
+                .doOnError(IOException.class, e -> log.warn("블록 읽기 실패. path: {}, block: {}: {}", videoPath, blockIndex, e.getMessage()))
+                .subscribeOn(Schedulers.boundedElastic()); // 블로킹 파일 읽기
+    }
+}
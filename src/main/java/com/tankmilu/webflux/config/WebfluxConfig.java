@@ -1,15 +1,17 @@
 package com.tankmilu.webflux.config;
 
+import io.netty.buffer.PooledByteBufAllocator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.buffer.DataBufferFactory;
-import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
 
 @Configuration
 public class WebfluxConfig {
 
+    // 미디어 읽기 경로에서 사용하는 풀링 다이렉트 버퍼 팩토리 (사용 후 반드시 release 필요)
     @Bean
     public DataBufferFactory dataBufferFactory() {
-        return new DefaultDataBufferFactory();
+        return new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
     }
 }
@@ -1,5 +1,6 @@
 package com.tankmilu.webflux.controller;
 
+import com.tankmilu.webflux.enums.SegmentFormatEnum;
 import com.tankmilu.webflux.record.PlayListRecord;
 import com.tankmilu.webflux.record.SubtitleMetadataResponse;
 import com.tankmilu.webflux.record.VideoMonoRecord;
@@ -13,9 +14,11 @@ import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
@@ -24,6 +27,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 
 
 @RestController
@@ -46,28 +50,56 @@ public class VideoController {
 
     /**
      * 비디오 파일의 범위 요청을 처리함
-     * 
+     * 여러 범위가 요청되면 겹치거나 인접한 범위를 병합한 뒤 multipart/byteranges 로 응답함
+     * ETag, Last-Modified 를 전송하고 If-None-Match, If-Modified-Since 가 일치하면 304 로 응답함
+     * If-Range 가 현재 파일과 다르면 Range 를 무시하고 전체 파일을 200 으로 응답함
+     *
      * @param fileId 비디오 파일 ID
      * @param rangeHeader HTTP Range 헤더 값
+     * @param ifRangeHeader HTTP If-Range 헤더 값
      * @return 요청된 범위의 비디오 데이터 반환
      */
     @GetMapping("${app.video.urls.filerange}")
     public Mono<Void> getVideoRange(
             @RequestParam Long fileId,
             @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
-            ServerHttpResponse response,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRangeHeader,
+            ServerWebExchange exchange,
             @AuthenticationPrincipal CustomUserDetails userDetails) {
 
+        ServerHttpResponse response = exchange.getResponse();
 
-        return videoService.getVideoMeta(fileId, rangeHeader)
+        return videoService.getVideoMeta(fileId, userDetails.getUsername(), rangeHeader, ifRangeHeader)
                 .flatMap(videoMetaRecord -> {
-                    response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+                    // 조건부 요청 검증 (일치 시 304 상태와 ETag, Last-Modified 헤더가 설정됨)
+                    if (exchange.checkNotModified(videoMetaRecord.eTag(), Instant.ofEpochMilli(videoMetaRecord.lastModified()))) {
+                        return response.setComplete();
+                    }
+
+                    response.setStatusCode(videoMetaRecord.partial() ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK);
                     response.getHeaders().add(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+                    // 여러 범위 요청 시 multipart/byteranges 로 전송
+                    if (videoMetaRecord.isMultipart()) {
+                        response.getHeaders().add(HttpHeaders.CONTENT_TYPE, "multipart/byteranges; boundary=" + videoMetaRecord.boundary());
+                        response.getHeaders().add(HttpHeaders.CONTENT_LENGTH, String.valueOf(videoMetaRecord.contentLength()));
+                        return response.writeWith(videoService.getMultipartVideoDataBuffer(userDetails.getSubscriptionCode(), videoMetaRecord));
+                    }
+
+
                     response.getHeaders().add(HttpHeaders.CONTENT_TYPE, videoMetaRecord.contentType());
-                    response.getHeaders().add(HttpHeaders.CONTENT_RANGE, videoMetaRecord.contentRange());
+                    if (videoMetaRecord.partial()) {
+                        response.getHeaders().add(HttpHeaders.CONTENT_RANGE, videoMetaRecord.contentRange());
+                    }
                     response.getHeaders().add(HttpHeaders.CONTENT_LENGTH, String.valueOf(videoMetaRecord.contentLength()));
 
-                    Flux<DataBuffer> dataBufferFlux = videoService.getVideoDataBuffer(userDetails.getSubscriptionCode(), videoMetaRecord.videoPath(),videoMetaRecord.startByte(),videoMetaRecord.endByte());
+                    // 제로카피 전송이 가능하면 파일 구간을 sendfile(FileChannel.transferTo)로 바로 소켓에 전송
+                    if (videoService.isZeroCopyEnabled(userDetails.getSubscriptionCode()) && response instanceof ZeroCopyHttpOutputMessage zeroCopyResponse) {
+                        return zeroCopyResponse.writeWith(videoMetaRecord.videoPath(), videoMetaRecord.startByte(), videoMetaRecord.contentLength());
+                    }
+
+                    // 제로카피 미지원 시 힙 버퍼로 읽어서 전송
+                    Flux<DataBuffer> dataBufferFlux = videoService.getVideoDataBuffer(userDetails.getSubscriptionCode(), videoMetaRecord);
                     return response.writeWith(dataBufferFlux);
                 });
     }
@@ -80,13 +112,14 @@ public class VideoController {
      * @return HLS m3u8 플레이리스트 콘텐츠 반환
      */
     @GetMapping("${app.video.urls.hlsm3u8}")
-    public Mono<ResponseEntity<String>> getHlsM3u8(
+    public Mono<ResponseEntity<byte[]>> getHlsM3u8(
             @RequestParam Long fileId,
             @RequestParam(required = false, defaultValue = "0") String type) throws IOException {
-        return videoService.getHlsM3u8(fileId, type)   // Mono<String> 반환
+        return videoService.getHlsM3u8(fileId, type)   // 캐싱된 플레이리스트 바이트를 복사 없이 그대로 전송
                 .map(data -> {
                     HttpHeaders headers = new HttpHeaders();
                     headers.add(HttpHeaders.CONTENT_TYPE, "application/x-mpegURL");
+                    headers.setContentLength(data.length);
                     return new ResponseEntity<>(data, headers, HttpStatus.OK);
                 });
     }
@@ -95,11 +128,14 @@ public class VideoController {
      * HLS 마스터 플레이리스트를 제공함
      * 
      * @param fileId 비디오 파일 ID
+     * @param format 세그먼트 형식 (ts : MPEG-TS, m4s : fMP4(CMAF))
      * @return 다양한 해상도 옵션이 포함된 HLS 마스터 플레이리스트 반환
      */
     @GetMapping("${app.video.urls.hlsm3u8master}")
-    public Mono<ResponseEntity<String>> getHlsM3u8Master(@RequestParam Long fileId) {
-        return videoService.getHlsM3u8Master(fileId)   // Mono<String> 반환
+    public Mono<ResponseEntity<String>> getHlsM3u8Master(
+            @RequestParam Long fileId,
+            @RequestParam(required = false, defaultValue = "ts") String format) {
+        return videoService.getHlsM3u8Master(fileId, SegmentFormatEnum.fromExtension(format))   // Mono<String> 반환
                 .map(data -> {
                     HttpHeaders headers = new HttpHeaders();
                     headers.add(HttpHeaders.CONTENT_TYPE, "application/x-mpegURL");
@@ -138,10 +174,70 @@ public class VideoController {
             @RequestParam(required = false, defaultValue = "0") String type,
             @AuthenticationPrincipal CustomUserDetails userDetails) throws IOException {
         return videoService
-                .getHlsTs(fileId, ss, to, type, userDetails.getSubscriptionCode())
+                .getHlsTs(fileId, ss, to, type, userDetails.getUsername(), userDetails.getSubscriptionCode())
                 .subscribeOn(Schedulers.boundedElastic());
     }
 
+    /**
+     * HLS fMP4(CMAF) 미디어 플레이리스트를 제공함
+     *
+     * @param fileId 비디오 파일 ID
+     * @param type 비디오 해상도 타입
+     * @return 초기화 세그먼트(EXT-X-MAP)와 fMP4 세그먼트 목록이 포함된 플레이리스트 반환
+     */
+    @GetMapping("${app.video.urls.hlsm3u8fmp4}")
+    public Mono<ResponseEntity<byte[]>> getHlsM3u8Fmp4(
+            @RequestParam Long fileId,
+            @RequestParam(required = false, defaultValue = "0") String type) {
+        return videoService.getHlsM3u8Fmp4(fileId, type)
+                .map(data -> {
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.add(HttpHeaders.CONTENT_TYPE, "application/x-mpegURL");
+                    headers.setContentLength(data.length);
+                    return new ResponseEntity<>(data, headers, HttpStatus.OK);
+                });
+    }
+
+    /**
+     * HLS fMP4(CMAF) 초기화 세그먼트를 제공함
+     *
+     * @param fileId 비디오 파일 ID
+     * @param type 비디오 해상도 타입
+     * @return 해상도별 초기화 세그먼트(ftyp, moov) 반환
+     */
+    @GetMapping(
+            value    = "${app.video.urls.hlsinit}",
+            produces = "video/mp4"
+    )
+    public Flux<DataBuffer> getHlsInit(
+            @RequestParam Long fileId,
+            @RequestParam(required = false, defaultValue = "0") String type,
+            @AuthenticationPrincipal CustomUserDetails userDetails) {
+        return videoService.getHlsFmp4Init(fileId, type, userDetails.getUsername(), userDetails.getSubscriptionCode());
+    }
+
+    /**
+     * HLS fMP4(CMAF) 미디어 세그먼트를 제공함
+     *
+     * @param fileId 비디오 파일 ID
+     * @param ss 시작 시간(초)
+     * @param to 종료 시간(초)
+     * @param type 비디오 해상도 타입 (0: 원본 해상도, 1: 480p, 2: 720p, 3:1080p, 4:1440p)
+     * @return 요청된 시간 범위의 fMP4 세그먼트(moof, mdat) 반환
+     */
+    @GetMapping(
+            value    = "${app.video.urls.hlsfmp4}",
+            produces = "video/iso.segment"
+    )
+    public Flux<DataBuffer> getFmp4Video(
+            @RequestParam Long fileId,
+            @RequestParam String ss,
+            @RequestParam String to,
+            @RequestParam(required = false, defaultValue = "0") String type,
+            @AuthenticationPrincipal CustomUserDetails userDetails) {
+        return videoService.getHlsFmp4(fileId, ss, to, type, userDetails.getUsername(), userDetails.getSubscriptionCode());
+    }
+
     /**
      * 비디오의 자막 파일을 제공함
      * 
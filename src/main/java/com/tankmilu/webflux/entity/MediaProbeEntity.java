@@ -0,0 +1,170 @@
+package com.tankmilu.webflux.entity;
+
+import com.tankmilu.webflux.record.MediaProbeRecord;
+import com.tankmilu.webflux.record.SubtitleInfo;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.domain.Persistable;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 파일별 ffprobe 결과. 적재(batch) 시 저장하고, 없거나 원본이 바뀐 경우 요청 시 다시 조회해서 저장함
+ * 스트림 언어 목록은 스트림 순서대로 쉼표로 구분해서 저장 (언어를 모르면 빈 값, 스트림이 없으면 null)
+ */
+@Getter
+@Table("media_probe")
+public class MediaProbeEntity implements Persistable<Long> {
+
+    @Id
+    @Column("file_id")
+    private Long fileId;
+
+    @Column("source_path")
+    private String sourcePath;          // 원본 파일 경로
+
+    @Column("source_size")
+    private Long sourceSize;            // 조회 시 원본 파일 크기
+
+    @Column("source_last_modified")
+    private Long sourceLastModified;    // 조회 시 원본 파일 수정 시간 (epoch millis)
+
+    @Column("format_name")
+    private String formatName;
+
+    @Column("duration")
+    private Double duration;            // 재생 시간 (초)
+
+    @Column("bitrate")
+    private Long bitrate;
+
+    @Column("width")
+    private Integer width;
+
+    @Column("height")
+    private Integer height;
+
+    @Column("video_codec")
+    private String videoCodec;
+
+    @Column("pix_fmt")
+    private String pixFmt;
+
+    @Column("audio_codec")
+    private String audioCodec;
+
+    @Column("audio_languages")
+    private String audioLanguages;
+
+    @Column("subtitle_languages")
+    private String subtitleLanguages;
+
+    @Column("probed_at")
+    private LocalDateTime probedAt;
+
+    @Setter
+    @Transient
+    private boolean isNewRecord;
+
+    @Builder
+    public MediaProbeEntity(Long fileId,
+                            String sourcePath,
+                            Long sourceSize,
+                            Long sourceLastModified,
+                            String formatName,
+                            Double duration,
+                            Long bitrate,
+                            Integer width,
+                            Integer height,
+                            String videoCodec,
+                            String pixFmt,
+                            String audioCodec,
+                            String audioLanguages,
+                            String subtitleLanguages,
+                            LocalDateTime probedAt) {
+        this.fileId             = fileId;
+        this.sourcePath         = sourcePath;
+        this.sourceSize         = sourceSize;
+        this.sourceLastModified = sourceLastModified;
+        this.formatName         = formatName;
+        this.duration           = duration;
+        this.bitrate            = bitrate;
+        this.width              = width;
+        this.height             = height;
+        this.videoCodec         = videoCodec;
+        this.pixFmt             = pixFmt;
+        this.audioCodec         = audioCodec;
+        this.audioLanguages     = audioLanguages;
+        this.subtitleLanguages  = subtitleLanguages;
+        this.probedAt           = probedAt;
+        this.isNewRecord        = true;
+    }
+
+    public static MediaProbeEntity of(Long fileId, String sourcePath, long sourceSize, long sourceLastModified, MediaProbeRecord probe) {
+        return MediaProbeEntity.builder()
+                .fileId(fileId)
+                .sourcePath(sourcePath)
+                .sourceSize(sourceSize)
+                .sourceLastModified(sourceLastModified)
+                .formatName(probe.format())
+                .duration(probe.duration())
+                .bitrate(probe.bitrate())
+                .width(probe.width())
+                .height(probe.height())
+                .videoCodec(probe.videoCodec())
+                .pixFmt(probe.pixFmt())
+                .audioCodec(probe.audioCodec())
+                .audioLanguages(joinLanguages(probe.audioLanguages()))
+                .subtitleLanguages(joinLanguages(probe.subtitles().stream().map(SubtitleInfo::language).toList()))
+                .probedAt(LocalDateTime.now())
+                .build();
+    }
+
+    @Override
+    public Long getId() {
+        return this.fileId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return this.isNewRecord;
+    }
+
+    // 원본 파일이 조회할 때와 같은지 확인
+    public boolean matches(long size, long lastModified) {
+        return sourceSize != null && sourceSize == size
+                && sourceLastModified != null && sourceLastModified == lastModified;
+    }
+
+    // 가로x세로 (contents_file_entity.resolution 과 같은 형식)
+    public String getResolution() {
+        return width + "x" + height;
+    }
+
+    // 내장 자막 스트림 (자막 스트림 순서대로 v0, v1 ... 번호)
+    public List<SubtitleInfo> getSubtitles() {
+        List<SubtitleInfo> subtitles = new ArrayList<>();
+        if (subtitleLanguages == null) {
+            return subtitles;
+        }
+        String[] languages = subtitleLanguages.split(",", -1);
+        for (int i = 0; i < languages.length; i++) {
+            subtitles.add(new SubtitleInfo("v" + i, languages[i].isEmpty() ? null : languages[i]));
+        }
+        return subtitles;
+    }
+
+    private static String joinLanguages(List<String> languages) {
+        if (languages == null || languages.isEmpty()) {
+            return null;
+        }
+        return String.join(",", languages.stream().map(language -> language == null ? "" : language).toList());
+    }
+}
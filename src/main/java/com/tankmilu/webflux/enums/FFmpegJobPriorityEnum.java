@@ -0,0 +1,17 @@
+package com.tankmilu.webflux.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum FFmpegJobPriorityEnum {
+    INTERACTIVE("interactive"), // 사용자가 기다리는 요청 (세그먼트, 자막, 플레이리스트)
+    PREFETCH("prefetch"),       // 재생 중 다음 세그먼트 선트랜스코딩
+    BATCH("batch"),             // 배치 작업 (자막 변환, 플레이리스트 일괄 생성)
+    ;
+
+    private final String tag;
+
+    FFmpegJobPriorityEnum(String tag) {
+        this.tag = tag;
+    }
+}
@@ -0,0 +1,26 @@
+package com.tankmilu.webflux.enums;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+@Getter
+public enum SegmentFormatEnum {
+    TS("ts"),          // MPEG-TS 세그먼트
+    CMAF("m4s"),       // fMP4(CMAF) 미디어 세그먼트 (moof + mdat)
+    CMAF_INIT("mp4"),  // fMP4(CMAF) 초기화 세그먼트 (ftyp + moov), 해상도별 하나
+    ;
+
+    private final String extension;
+
+    SegmentFormatEnum(String extension) {
+        this.extension = extension;
+    }
+
+    public static SegmentFormatEnum fromExtension(String extension) {
+        return Arrays.stream(values())
+                .filter(f -> f.extension.equalsIgnoreCase(extension))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("존재하지 않는 세그먼트 형식 입니다 : " + extension));
+    }
+}
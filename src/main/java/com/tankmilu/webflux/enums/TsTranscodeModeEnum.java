@@ -0,0 +1,25 @@
+package com.tankmilu.webflux.enums;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+@Getter
+public enum TsTranscodeModeEnum {
+    TWO_PASS("two_pass"), // 오디오 인코딩(mkv 임시 파일) 후 비디오 인코딩(ts 임시 파일), 완료 후 전송
+    PIPE("pipe"),         // FFmpeg 한 번 실행, 표준 출력(pipe:1)으로 생성되는 대로 전송
+    ;
+
+    private final String mode;
+
+    TsTranscodeModeEnum(String mode) {
+        this.mode = mode;
+    }
+
+    public static TsTranscodeModeEnum fromMode(String mode) {
+        return Arrays.stream(values())
+                .filter(m -> m.mode.equalsIgnoreCase(mode))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("존재하지 않는 트랜스코딩 모드 입니다 : " + mode));
+    }
+}
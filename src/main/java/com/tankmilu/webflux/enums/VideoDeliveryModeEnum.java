@@ -0,0 +1,25 @@
+package com.tankmilu.webflux.enums;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+@Getter
+public enum VideoDeliveryModeEnum {
+    ZERO_COPY("zerocopy"), // FileChannel.transferTo(sendfile) 기반 전송
+    BUFFER("buffer"),      // DataBuffer 로 읽어서 전송 (fallback)
+    ;
+
+    private final String mode;
+
+    VideoDeliveryModeEnum(String mode) {
+        this.mode = mode;
+    }
+
+    public static VideoDeliveryModeEnum fromMode(String mode) {
+        return Arrays.stream(values())
+                .filter(m -> m.mode.equalsIgnoreCase(mode))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("존재하지 않는 전송 모드 입니다 : " + mode));
+    }
+}
@@ -0,0 +1,10 @@
+package com.tankmilu.webflux.record;
+
+public record ByteRangeRecord(
+        long startByte,     // 범위 시작 바이트 (포함)
+        long endByte        // 범위 마지막 바이트 (포함)
+) {
+    public long length() {
+        return endByte - startByte + 1;
+    }
+}
@@ -0,0 +1,27 @@
+package com.tankmilu.webflux.record;
+
+import java.nio.file.Path;
+
+public record MediaDescriptorRecord(
+        FileInfoRecord fileInfo,    // findFileWithContentInfo 조회 결과
+        Path videoPath,             // 실제로 읽을 비디오 파일 경로 (로컬 복사본이 있으면 로컬 경로)
+        String subscriptionCode,    // 컨텐츠 구독 코드
+        boolean readable,           // 파일 존재 및 읽기 가능 여부
+        long fileLength,            // 원본 파일 길이 (읽을 수 없으면 -1)
+        long lastModified,          // 원본 파일 수정 시간 epoch millis (읽을 수 없으면 -1)
+        String contentType          // 비디오의 MIME 타입 (예: video/mp4)
+) {
+    // FFmpeg 입력 등으로 사용할 경로 문자열
+    public String getFullFilePath() {
+        return videoPath.toString();
+    }
+
+    public Long fileId() {
+        return fileInfo.id();
+    }
+
+    // 파일이 교체되면 크기나 수정 시간이 바뀌므로 강한 ETag 로 사용
+    public String eTag() {
+        return "\"" + fileInfo.id() + "-" + Long.toHexString(fileLength) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+}
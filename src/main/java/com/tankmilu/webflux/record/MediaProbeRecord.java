@@ -0,0 +1,21 @@
+package com.tankmilu.webflux.record;
+
+import com.tankmilu.webflux.cache.KeyFrameIndex;
+
+import java.util.List;
+
+// ffprobe 한 번으로 조회한 미디어 정보 (키프레임 인덱스 외에는 media_probe 테이블에 저장)
+public record MediaProbeRecord(
+        String format,                  // 컨테이너 형식 (ffprobe format_name, 예: mov,mp4,m4a,3gp,3g2,mj2)
+        double duration,                // 재생 시간 (초)
+        long bitrate,                   // 전체 비트레이트 (bps)
+        int width,                      // 첫 비디오 스트림 가로 해상도
+        int height,                     // 첫 비디오 스트림 세로 해상도
+        String videoCodec,              // 첫 비디오 스트림 코덱
+        String pixFmt,                  // 첫 비디오 스트림 픽셀 형식
+        String audioCodec,              // 첫 오디오 스트림 코덱 (없으면 null)
+        List<String> audioLanguages,    // 오디오 스트림 언어 (스트림 순서, 모르면 null)
+        List<SubtitleInfo> subtitles,   // 내장 자막 스트림 (v0, v1 ...)
+        KeyFrameIndex keyFrameIndex     // 첫 비디오 스트림 키프레임 (패킷을 조회하지 않았으면 null)
+) {
+}
@@ -0,0 +1,11 @@
+package com.tankmilu.webflux.record;
+
+import com.tankmilu.webflux.enums.SegmentFormatEnum;
+
+public record PlaylistKeyRecord(
+        Long fileId,        // 비디오 파일 ID
+        long version,       // 파일 수정 시간 (파일 교체 시 이전 플레이리스트와 구분)
+        String type,        // 해상도 타입
+        SegmentFormatEnum format // 세그먼트 형식 (TS, CMAF)
+) {
+}
@@ -0,0 +1,7 @@
+package com.tankmilu.webflux.record;
+
+public record SegmentBoundaryRecord(
+        String start,       // 세그먼트 시작 시간(초), 플레이리스트의 ss 값
+        String to           // 세그먼트 종료 시간(초), 플레이리스트의 to 값
+) {
+}
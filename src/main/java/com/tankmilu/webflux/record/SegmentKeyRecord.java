@@ -0,0 +1,40 @@
+package com.tankmilu.webflux.record;
+
+import com.tankmilu.webflux.enums.SegmentFormatEnum;
+
+import java.math.BigDecimal;
+
+public record SegmentKeyRecord(
+        Long fileId,        // 비디오 파일 ID
+        long version,       // 원본 파일 수정 시간 (파일 교체 시 이전 세그먼트와 구분)
+        String start,       // 세그먼트 시작 시간(초)
+        String to,          // 세그먼트 종료 시간(초)
+        String type,        // 해상도 타입 (VideoResolutionEnum)
+        SegmentFormatEnum format // 세그먼트 형식 (TS, CMAF)
+) {
+    /**
+     * 시작, 종료 시간을 정규화해서 TS 세그먼트 키 생성 ("10.0" 과 "10" 은 같은 세그먼트)
+     * 숫자가 아니면 NumberFormatException 발생
+     */
+    public static SegmentKeyRecord of(Long fileId, long version, String start, String to, String type) {
+        return of(fileId, version, start, to, type, SegmentFormatEnum.TS);
+    }
+
+    public static SegmentKeyRecord of(Long fileId, long version, String start, String to, String type, SegmentFormatEnum format) {
+        return new SegmentKeyRecord(fileId, version, normalize(start), normalize(to), type, format);
+    }
+
+    // 해상도별 CMAF 초기화 세그먼트 키 (구간 없음)
+    public static SegmentKeyRecord cmafInit(Long fileId, long version, String type) {
+        return new SegmentKeyRecord(fileId, version, "0", "0", type, SegmentFormatEnum.CMAF_INIT);
+    }
+
+    // 캐시 파일명 : {fileId}.{수정 시간}.{시작}_{종료}.{타입}.{확장자}
+    public String fileName() {
+        return fileId + "." + version + "." + start + "_" + to + "." + type + "." + format.getExtension();
+    }
+
+    private static String normalize(String seconds) {
+        return new BigDecimal(seconds).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,8 @@
+package com.tankmilu.webflux.record;
+
+public record VideoBlockKeyRecord(
+        Long fileId,        // 비디오 파일 ID
+        long version,       // 파일 수정 시간 (파일 교체 시 이전 블록과 구분)
+        long blockIndex     // 블록 번호 (시작 바이트 / 블록 크기)
+) {
+}
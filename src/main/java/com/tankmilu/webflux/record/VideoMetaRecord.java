@@ -4,13 +4,24 @@ import org.springframework.core.io.buffer.DataBuffer;
 import reactor.core.publisher.Mono;
 
 import java.nio.file.Path;
+import java.util.List;
 
 public record VideoMetaRecord(
+        Long fileId,
         Path videoPath,
         String contentType,       // 비디오의 MIME 타입 (예: video/mp4)
         String contentRange,    // 비디오 데이터의 범위 (바이트 단위)
         long startByte,
         long endByte,
-        long contentLength      // 비디오 데이터의 길이 (바이트 단위)
+        long contentLength,      // 비디오 데이터의 길이 (바이트 단위)
+        long fileLength,         // 전체 파일 길이
+        List<ByteRangeRecord> ranges, // 병합된 요청 범위 목록 (2개 이상이면 multipart/byteranges 응답)
+        String boundary,         // multipart/byteranges 구분자 (단일 범위일 경우 null)
+        boolean partial,         // 206 부분 응답 여부 (false 면 전체 파일 200 응답)
+        String eTag,             // 강한 ETag (fileId, 파일 크기, 수정 시간 기반)
+        long lastModified        // 파일 수정 시간 epoch millis
 ) {
+    public boolean isMultipart() {
+        return ranges != null && ranges.size() > 1;
+    }
 }
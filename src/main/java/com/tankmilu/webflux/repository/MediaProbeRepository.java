@@ -0,0 +1,11 @@
+package com.tankmilu.webflux.repository;
+
+import com.tankmilu.webflux.entity.MediaProbeEntity;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+
+public interface MediaProbeRepository extends R2dbcRepository<MediaProbeEntity, Long> {
+
+    // 파일 탐색(FileSystemService) 은 fileId 를 모르므로 원본 경로로 조회
+    Flux<MediaProbeEntity> findBySourcePath(String sourcePath);
+}
@@ -0,0 +1,121 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.enums.SubscriptionCodeEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 구독 플랜별 전송 대역폭 제한
+ * 연결마다 플랜 속도의 토큰 버킷을 두고, 모든 연결이 공유하는 전역 버킷으로 전체 전송량 상한을 둠
+ * 버킷은 GCRA(가상 스케줄링) 방식으로 계산하며, 초과분은 Mono.delay 로 지연 전송해서 이벤트 루프를 막지 않음
+ * 속도가 0 이면 제한하지 않음
+ */
+@Slf4j
+@Component
+public class BandwidthShaper {
+
+    private final boolean enabled;
+
+    private final long burstSeconds;
+
+    private final Map<SubscriptionCodeEnum, Long> planRates = new EnumMap<>(SubscriptionCodeEnum.class);
+
+    private final TokenBucket globalBucket;
+
+    public BandwidthShaper(@Value("${custom.shaping.enabled:false}") boolean enabled,
+                           @Value("${custom.shaping.burst_seconds:4}") long burstSeconds,
+                           @Value("${custom.shaping.global_bytes_per_sec:0}") long globalRate,
+                           @Value("${custom.shaping.plan_bytes_per_sec.premium:0}") long premiumRate,
+                           @Value("${custom.shaping.plan_bytes_per_sec.standard:0}") long standardRate,
+                           @Value("${custom.shaping.plan_bytes_per_sec.basic:0}") long basicRate,
+                           @Value("${custom.shaping.plan_bytes_per_sec.lite:0}") long liteRate) {
+        this.enabled = enabled;
+        this.burstSeconds = burstSeconds;
+        planRates.put(SubscriptionCodeEnum.PREMIUM, premiumRate);
+        planRates.put(SubscriptionCodeEnum.STANDARD, standardRate);
+        planRates.put(SubscriptionCodeEnum.BASIC, basicRate);
+        planRates.put(SubscriptionCodeEnum.LITE, liteRate);
+        this.globalBucket = globalRate > 0 ? new TokenBucket(globalRate, globalRate * burstSeconds) : null;
+    }
+
+    /**
+     * 해당 플랜의 전송이 제한 대상인지 여부
+     * 제한 대상이면 전송량을 조절할 수 없는 제로카피(sendfile) 전송을 사용하면 안 됨
+     */
+    public boolean isShaped(String subscriptionCode) {
+        return enabled && (globalBucket != null || planRate(subscriptionCode) > 0);
+    }
+
+    /**
+     * 데이터 버퍼 스트림에 플랜별 대역폭 제한을 적용함
+     * 구독(연결)마다 새로운 버킷을 생성하므로 시작 시 burst 만큼은 지연 없이 전송됨
+     *
+     * @param dataBufferFlux 전송할 데이터 스트림
+     * @param subscriptionCode 사용자 구독 코드
+     * @return 제한이 적용된 데이터 스트림
+     */
+    public Flux<DataBuffer> shape(Flux<DataBuffer> dataBufferFlux, String subscriptionCode) {
+        if (!isShaped(subscriptionCode)) {
+            return dataBufferFlux;
+        }
+        long rate = planRate(subscriptionCode);
+        return Flux.defer(() -> {
+            TokenBucket connectionBucket = rate > 0 ? new TokenBucket(rate, rate * burstSeconds) : null;
+            // 지연 중인 버퍼가 쌓이지 않도록 하나씩 처리
+            return dataBufferFlux.concatMap(buffer -> {
+                long now = System.nanoTime();
+                int bytes = buffer.readableByteCount();
+                long delayNanos = Math.max(
+                        connectionBucket != null ? connectionBucket.reserve(bytes, now) : 0,
+                        globalBucket != null ? globalBucket.reserve(bytes, now) : 0);
+                if (delayNanos <= 0) {
+                    return Mono.just(buffer);
+                }
+                return Mono.delay(Duration.ofNanos(delayNanos))
+                        .map(tick -> buffer)
+                        .doOnCancel(() -> DataBufferUtils.release(buffer)); // 지연 중 연결 종료 시 버퍼 해제
+            }, 1);
+        });
+    }
+
+    private long planRate(String subscriptionCode) {
+        return planRates.getOrDefault(SubscriptionCodeEnum.fromPermissionLevel(subscriptionCode), 0L);
+    }
+
+    /**
+     * GCRA 기반 토큰 버킷
+     * 전송 가능 시점(theoretical arrival time)을 누적해서, 버스트 허용량을 넘는 만큼의 대기 시간을 반환함
+     */
+    static final class TokenBucket {
+
+        private final double nanosPerByte;
+
+        private final long toleranceNanos;
+
+        private long theoreticalArrivalTime = Long.MIN_VALUE;
+
+        TokenBucket(long bytesPerSecond, long burstBytes) {
+            this.nanosPerByte = 1_000_000_000d / bytesPerSecond;
+            this.toleranceNanos = (long) (burstBytes * nanosPerByte);
+        }
+
+        /**
+         * bytes 만큼 전송을 예약하고, 전송 전에 기다려야 하는 시간(ns)을 반환
+         */
+        synchronized long reserve(long bytes, long nowNanos) {
+            long increment = (long) (bytes * nanosPerByte);
+            long start = theoreticalArrivalTime == Long.MIN_VALUE ? nowNanos : Math.max(theoreticalArrivalTime, nowNanos);
+            theoreticalArrivalTime = start + increment;
+            return Math.max(0, theoreticalArrivalTime - toleranceNanos - nowNanos);
+        }
+    }
+}
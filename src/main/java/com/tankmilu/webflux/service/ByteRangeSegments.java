@@ -0,0 +1,196 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.cache.KeyFrameIndex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 원본 파일의 바이트 범위를 그대로 HLS 세그먼트로 사용하기 위한 세그먼트별 위치 (EXT-X-BYTERANGE)
+ * 세그먼트 경계 키프레임의 바이트 위치(pkt_pos)로 계산하므로 FFmpeg 실행 없이 원본 파일 범위 요청으로 전송 가능
+ * 세그먼트 시작이 키프레임 패킷(MPEG-TS) 또는 키프레임으로 시작하는 moof(fragmented MP4)와 맞지 않으면 사용하지 않음
+ * 중간 세그먼트만 받아도 재생할 수 있도록 초기화 구간(EXT-X-MAP)을 함께 제공함 (RFC 8216 3.2)
+ */
+final class ByteRangeSegments {
+
+    private static final int TS_PACKET_SIZE = 188;
+
+    // 파일 앞부분에서 PSI 패킷을 찾는 최대 패킷 수
+    private static final int TS_PSI_SCAN_PACKETS = 64;
+
+    // 초기화 구간 길이. fMP4 는 ftyp, moov, MPEG-TS 는 파일 앞의 PAT, PMT 등 PSI 패킷
+    final long initLength;
+
+    // 세그먼트 시작 위치. 마지막 값은 마지막 세그먼트의 끝 위치
+    final long[] offsets;
+
+    private ByteRangeSegments(long initLength, long[] offsets) {
+        this.initLength = initLength;
+        this.offsets = offsets;
+    }
+
+    /**
+     * MPEG-TS 원본. 세그먼트는 경계 키프레임 패킷부터 시작하므로 PAT, PMT 가 없을 수 있어서
+     * 파일 앞의 PSI 패킷(PAT, PMT 등)을 초기화 구간으로 사용함. 첫 세그먼트는 초기화 구간 다음부터, 마지막 세그먼트는 파일 끝까지
+     *
+     * @param boundaries 세그먼트 경계 시간(마이크로초, KeyFrameIndex.segmentTimeline)
+     * @return 세그먼트 위치 (파일이 PAT, PMT 로 시작하지 않거나 경계 키프레임 위치를 모르면 null)
+     */
+    static ByteRangeSegments mpegTs(KeyFrameIndex index, long[] boundaries, Path file, long fileLength) throws IOException {
+        if (boundaries.length < 2) {
+            return null;
+        }
+        long initLength;
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            initLength = programInfoLength(source);
+        }
+        if (initLength <= 0 || initLength >= fileLength) {
+            return null;
+        }
+        long[] offsets = new long[boundaries.length];
+        offsets[0] = initLength;
+        offsets[boundaries.length - 1] = fileLength;
+        for (int i = 1; i < boundaries.length - 1; i++) {
+            long position = keyFramePosition(index, boundaries[i]);
+            if (position <= offsets[i - 1] || position >= fileLength) {
+                return null;
+            }
+            offsets[i] = position;
+        }
+        return new ByteRangeSegments(initLength, offsets);
+    }
+
+    // 파일 처음부터 이어지는 PSI 패킷(PAT, PMT, SDT 등) 길이. PAT 와 PMT 가 모두 있어야 하며, 없으면 0
+    private static long programInfoLength(FileChannel source) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(TS_PACKET_SIZE * TS_PSI_SCAN_PACKETS);
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        Set<Integer> pmtPids = new HashSet<>();
+        boolean pmtFound = false;
+        int packets = 0;
+        while (buffer.remaining() >= TS_PACKET_SIZE) {
+            int packet = buffer.position();
+            if (buffer.get(packet) != 0x47) {
+                return 0;
+            }
+            int pid = ((buffer.get(packet + 1) & 0x1F) << 8) | (buffer.get(packet + 2) & 0xFF);
+            if (pid == 0) {
+                pmtPids.addAll(pmtPids(buffer, packet));
+            } else if (pmtPids.contains(pid)) {
+                pmtFound = true;
+            } else if (pid > 0x1F) {
+                break; // 미디어 패킷 시작
+            }
+            packets++;
+            buffer.position(packet + TS_PACKET_SIZE);
+        }
+        return pmtFound ? (long) packets * TS_PACKET_SIZE : 0;
+    }
+
+    // PAT 패킷의 프로그램별 PMT PID (프로그램 번호 0 은 NIT 이므로 제외)
+    private static List<Integer> pmtPids(ByteBuffer buffer, int packet) {
+        boolean unitStart = (buffer.get(packet + 1) & 0x40) != 0;
+        int adaptation = (buffer.get(packet + 3) >> 4) & 0x3;
+        if (!unitStart || (adaptation & 0x1) == 0) {
+            return List.of();
+        }
+        int section = packet + 4;
+        if (adaptation == 0x3) {
+            section += 1 + (buffer.get(section) & 0xFF);
+        }
+        section += 1 + (buffer.get(section) & 0xFF); // pointer_field
+        int packetEnd = packet + TS_PACKET_SIZE;
+        if (section + 8 > packetEnd || buffer.get(section) != 0x00) {
+            return List.of();
+        }
+        int sectionLength = ((buffer.get(section + 1) & 0x0F) << 8) | (buffer.get(section + 2) & 0xFF);
+        int programsEnd = Math.min(section + 3 + sectionLength - 4, packetEnd); // CRC 제외
+        List<Integer> pids = new ArrayList<>();
+        for (int entry = section + 8; entry + 4 <= programsEnd; entry += 4) {
+            int program = ((buffer.get(entry) & 0xFF) << 8) | (buffer.get(entry + 1) & 0xFF);
+            if (program != 0) {
+                pids.add(((buffer.get(entry + 2) & 0x1F) << 8) | (buffer.get(entry + 3) & 0xFF));
+            }
+        }
+        return pids;
+    }
+
+    /**
+     * fragmented MP4 원본. 세그먼트는 경계 키프레임을 포함한 moof 부터 시작하며, 그 moof 에 이전 세그먼트의 프레임이 없어야 함
+     *
+     * @param boundaries 세그먼트 경계 시간(마이크로초, KeyFrameIndex.segmentTimeline)
+     * @return 세그먼트 위치 (fragmented MP4 가 아니거나 조각이 키프레임 경계와 맞지 않으면 null)
+     */
+    static ByteRangeSegments fragmentedMp4(KeyFrameIndex index, long[] boundaries, Path file) throws IOException {
+        if (boundaries.length < 2) {
+            return null;
+        }
+        List<Fmp4BoxSplitter.Box> boxes;
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            boxes = Fmp4BoxSplitter.boxes(source);
+        }
+        long moovEnd = -1;
+        long mediaEnd = -1;
+        long[] moofs = new long[boxes.size()];
+        int moofCount = 0;
+        for (Fmp4BoxSplitter.Box box : boxes) {
+            if (box.type() == Fmp4BoxSplitter.MOOV) {
+                moovEnd = box.end();
+            } else if (box.type() == Fmp4BoxSplitter.MOOF) {
+                moofs[moofCount++] = box.offset();
+            } else if (box.type() == Fmp4BoxSplitter.MDAT) {
+                mediaEnd = box.end();
+            }
+        }
+        if (moovEnd < 0 || moofCount == 0 || moofs[0] < moovEnd || mediaEnd <= moofs[moofCount - 1]) {
+            return null;
+        }
+        moofs = Arrays.copyOf(moofs, moofCount);
+        long[] offsets = new long[boundaries.length];
+        offsets[0] = moofs[0];
+        offsets[boundaries.length - 1] = mediaEnd;
+        for (int i = 1; i < boundaries.length - 1; i++) {
+            int keyFrame = index.floorIndex(boundaries[i]);
+            long position = keyFramePosition(index, boundaries[i]);
+            long fragment = floor(moofs, position);
+            // 조각 안에 이전 키프레임이 있으면 이전 세그먼트의 프레임이 섞이므로 바이트 범위로 나눌 수 없음
+            if (fragment <= offsets[i - 1] || keyFrame < 1
+                    || index.position(keyFrame - 1) < 0 || index.position(keyFrame - 1) >= fragment) {
+                return null;
+            }
+            offsets[i] = fragment;
+        }
+        return new ByteRangeSegments(moovEnd, offsets);
+    }
+
+    // 경계 시간과 정확히 같은 키프레임의 바이트 위치 (없으면 -1)
+    private static long keyFramePosition(KeyFrameIndex index, long micros) {
+        int keyFrame = index.floorIndex(micros);
+        if (keyFrame < 0 || index.ptsMicros(keyFrame) != micros) {
+            return -1;
+        }
+        return index.position(keyFrame);
+    }
+
+    // position 이하의 마지막 moof 위치 (없으면 -1)
+    private static long floor(long[] moofs, long position) {
+        int found = Arrays.binarySearch(moofs, position);
+        if (found >= 0) {
+            return moofs[found];
+        }
+        int insertion = -found - 1;
+        return insertion == 0 ? -1 : moofs[insertion - 1];
+    }
+}
@@ -0,0 +1,106 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.cache.SegmentCacheStore;
+import com.tankmilu.webflux.cache.SingleFlight;
+import com.tankmilu.webflux.enums.SegmentFormatEnum;
+import com.tankmilu.webflux.record.MediaDescriptorRecord;
+import com.tankmilu.webflux.record.SegmentBoundaryRecord;
+import com.tankmilu.webflux.record.SegmentKeyRecord;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * HLS fMP4(CMAF) 세그먼트를 세그먼트 캐시에서 찾고, 없으면 만들어서 캐시에 저장함
+ * 세그먼트 구간은 TS 플레이리스트와 같은 키프레임 경계를 사용하며, FFmpeg 출력(fragmented MP4)을
+ * 초기화 세그먼트(ftyp, moov)와 미디어 세그먼트(.m4s)로 나눠서 저장함
+ * 초기화 세그먼트는 해상도별로 하나만 저장하고, 없으면 첫 세그먼트를 만들면서 함께 저장함
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CmafSegmentTranscoder {
+
+    private final FFmpegService ffmpegService;
+
+    private final SegmentCacheStore segmentCacheStore;
+
+    private final SingleFlight singleFlight;
+
+    private final StreamCopyPolicy streamCopyPolicy;
+
+    private final HlsPlaylistIndex hlsPlaylistIndex;
+
+    /**
+     * 해상도별 초기화 세그먼트 경로. 없으면 첫 세그먼트를 다시 만들면서 함께 저장함
+     */
+    public Mono<Path> getInit(MediaDescriptorRecord descriptor, String type) {
+        SegmentKeyRecord initKey = SegmentKeyRecord.cmafInit(descriptor.fileId(), descriptor.lastModified(), type);
+        return singleFlight.execute("segment:" + initKey.fileName(), () -> segmentCacheStore.find(initKey)
+                .switchIfEmpty(Mono.defer(() -> Mono.fromCallable(() -> hlsPlaylistIndex.boundaries(descriptor.fileId(), descriptor.lastModified(), type))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMap(segments -> {
+                            if (segments.isEmpty()) {
+                                return Mono.error(new IOException("세그먼트 구간이 없습니다. fileId: " + descriptor.fileId()));
+                            }
+                            // 첫 세그먼트가 캐시에 있어도 초기화 세그먼트만 삭제된 경우가 있으므로 다시 만듦
+                            SegmentBoundaryRecord first = segments.get(0);
+                            return transcode(descriptor, SegmentKeyRecord.of(descriptor.fileId(), descriptor.lastModified(),
+                                    first.start(), first.to(), type, SegmentFormatEnum.CMAF));
+                        })
+                        .then(segmentCacheStore.find(initKey))
+                        .switchIfEmpty(Mono.error(() -> new IOException("초기화 세그먼트를 만들 수 없습니다 : " + initKey.fileName()))))));
+    }
+
+    /**
+     * 캐시된 미디어 세그먼트 경로를 반환함. 캐시 미존재 시 만든 후 저장된 경로를 반환
+     *
+     * @param descriptor 원본 비디오 정보
+     * @param key CMAF 세그먼트 키
+     */
+    public Mono<Path> getOrTranscode(MediaDescriptorRecord descriptor, SegmentKeyRecord key) {
+        return singleFlight.execute("segment:" + key.fileName(), () -> segmentCacheStore.find(key)
+                .switchIfEmpty(Mono.defer(() -> transcode(descriptor, key))));
+    }
+
+    // FFmpeg 출력을 초기화, 미디어 세그먼트로 나눠서 저장
+    private Mono<Path> transcode(MediaDescriptorRecord descriptor, SegmentKeyRecord key) {
+        return streamCopyPolicy.canCopy(descriptor, key.type()).flatMap(copy -> {
+            SegmentKeyRecord initKey = SegmentKeyRecord.cmafInit(key.fileId(), key.version(), key.type());
+            Path outputPath = segmentCacheStore.newPartPath(key);
+            Path mediaPath = segmentCacheStore.newPartPath(key);
+            Path initPath = segmentCacheStore.newPartPath(initKey);
+            return ffmpegService.transcodeFmp4(descriptor.getFullFilePath(), key.start(), key.to(), key.type(), copy, outputPath)
+                    .then(Mono.fromCallable(() -> {
+                                Fmp4BoxSplitter.split(outputPath, initPath, mediaPath);
+                                return initPath;
+                            })
+                            .subscribeOn(Schedulers.boundedElastic()))
+                    .flatMap(init -> publishInit(initKey, init))
+                    .then(segmentCacheStore.publish(key, mediaPath))
+                    .doFinally(signal -> {
+                        deleteQuietly(outputPath);
+                        deleteQuietly(initPath);
+                        deleteQuietly(mediaPath);
+                    });
+        });
+    }
+
+    // 초기화 세그먼트는 같은 해상도의 모든 세그먼트에서 같으므로 처음 만든 것만 저장
+    private Mono<Path> publishInit(SegmentKeyRecord initKey, Path initPath) {
+        return segmentCacheStore.find(initKey)
+                .switchIfEmpty(Mono.defer(() -> segmentCacheStore.publish(initKey, initPath)));
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) { }
+    }
+}
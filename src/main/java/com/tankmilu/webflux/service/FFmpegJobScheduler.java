@@ -0,0 +1,260 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.enums.FFmpegJobPriorityEnum;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * FFmpeg, ffprobe 프로세스 실행 스케줄러
+ * 동시에 실행되는 프로세스 수를 제한하고, 대기 중인 작업은 우선순위(사용자 요청 > 선트랜스코딩 > 배치) 순으로 실행함
+ * 같은 우선순위 안에서는 사용자별로 번갈아 실행해서 한 사용자의 탐색(seek) 요청이 다른 사용자를 밀어내지 않도록 함
+ * 우선순위와 사용자는 Reactor Context 로 전달하며 (jobContext), 없으면 사용자 요청 우선순위로 처리함
+ */
+@Slf4j
+@Component
+public class FFmpegJobScheduler {
+
+    private static final String PRIORITY_KEY = FFmpegJobScheduler.class.getName() + ".priority";
+
+    private static final String OWNER_KEY = FFmpegJobScheduler.class.getName() + ".owner";
+
+    private static final String DEFAULT_OWNER = "anonymous";
+
+    private static final int QUEUED = 0;
+
+    private static final int GRANTED = 1;
+
+    private static final int CANCELLED = 2;
+
+    private final int maxConcurrency;
+
+    // 우선순위별, 사용자별 대기열 (사용자 순서는 라운드로빈)
+    private final EnumMap<FFmpegJobPriorityEnum, LinkedHashMap<String, ArrayDeque<Waiter>>> queues = new EnumMap<>(FFmpegJobPriorityEnum.class);
+
+    private final EnumMap<FFmpegJobPriorityEnum, Timer> queueTimers = new EnumMap<>(FFmpegJobPriorityEnum.class);
+
+    private final EnumMap<FFmpegJobPriorityEnum, Timer> runTimers = new EnumMap<>(FFmpegJobPriorityEnum.class);
+
+    private int running;
+
+    private int queued;
+
+    public FFmpegJobScheduler(MeterRegistry meterRegistry,
+                              @Value("${custom.ffmpeg.scheduler.max_concurrency:0}") int maxConcurrency) {
+        // 0 이면 코어 수 기준 (인코더 프로세스가 여러 스레드를 사용하므로 코어 수의 절반)
+        this.maxConcurrency = maxConcurrency > 0 ? maxConcurrency : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        for (FFmpegJobPriorityEnum priority : FFmpegJobPriorityEnum.values()) {
+            queues.put(priority, new LinkedHashMap<>());
+            queueTimers.put(priority, Timer.builder("ffmpeg.job.queue.time")
+                    .tag("priority", priority.getTag())
+                    .description("FFmpeg 작업 대기 시간").register(meterRegistry));
+            runTimers.put(priority, Timer.builder("ffmpeg.job.run.time")
+                    .tag("priority", priority.getTag())
+                    .description("FFmpeg 작업 실행 시간").register(meterRegistry));
+        }
+        Gauge.builder("ffmpeg.job.running", this, FFmpegJobScheduler::runningCount)
+                .description("실행 중인 FFmpeg 작업 수").register(meterRegistry);
+        Gauge.builder("ffmpeg.job.queued", this, FFmpegJobScheduler::queuedCount)
+                .description("대기 중인 FFmpeg 작업 수").register(meterRegistry);
+        log.info("FFmpeg 작업 동시 실행 수 : {}", this.maxConcurrency);
+    }
+
+    /**
+     * 작업 우선순위와 사용자를 지정하는 Context
+     * 예) ffmpegService.getTsData(...).contextWrite(FFmpegJobScheduler.jobContext(FFmpegJobPriorityEnum.INTERACTIVE, username))
+     */
+    public static Context jobContext(FFmpegJobPriorityEnum priority, String owner) {
+        return Context.of(PRIORITY_KEY, priority, OWNER_KEY, owner == null ? DEFAULT_OWNER : owner);
+    }
+
+    /**
+     * Context 의 작업 우선순위 (지정하지 않았으면 INTERACTIVE). 블로킹 작업(start)에 전달할 때 사용
+     */
+    public static FFmpegJobPriorityEnum priority(ContextView context) {
+        return context.getOrDefault(PRIORITY_KEY, FFmpegJobPriorityEnum.INTERACTIVE);
+    }
+
+    /**
+     * Context 의 작업 사용자 (지정하지 않았으면 기본 사용자)
+     */
+    public static String owner(ContextView context) {
+        return context.getOrDefault(OWNER_KEY, DEFAULT_OWNER);
+    }
+
+    /**
+     * 실행 슬롯을 얻은 후 작업을 구독하고, 작업 스트림이 종료(완료, 에러, 취소)되면 슬롯을 반납함
+     */
+    public <T> Flux<T> submitMany(Supplier<? extends Publisher<T>> work) {
+        return Flux.deferContextual(context -> Flux.usingWhen(
+                acquire(priority(context), owner(context)),
+                permit -> Flux.defer(work),
+                permit -> Mono.fromRunnable(permit::release),
+                (permit, error) -> Mono.fromRunnable(permit::release),
+                permit -> Mono.fromRunnable(permit::release)));
+    }
+
+    public <T> Mono<T> submit(Supplier<? extends Mono<T>> work) {
+        return submitMany(work).singleOrEmpty();
+    }
+
+    /**
+     * 슬롯을 얻은 후 프로세스를 시작하고, 프로세스가 종료되면 슬롯을 반납함
+     * 출력 스트림을 호출자가 직접 읽는 경우 사용. 슬롯을 얻을 때까지 현재 스레드를 대기시키므로 boundedElastic 에서 호출해야 함
+     */
+    public Process start(FFmpegJobPriorityEnum priority, String owner, ProcessBuilder processBuilder) throws IOException {
+        Permit permit = Objects.requireNonNull(acquire(priority, owner == null ? DEFAULT_OWNER : owner).block());
+        try {
+            Process process = processBuilder.start();
+            process.onExit().whenComplete((exited, error) -> permit.release());
+            return process;
+        } catch (IOException | RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+    }
+
+    synchronized int runningCount() {
+        return running;
+    }
+
+    synchronized int queuedCount() {
+        return queued;
+    }
+
+    int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    private Mono<Permit> acquire(FFmpegJobPriorityEnum priority, String owner) {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(priority, owner, sink);
+            sink.onCancel(() -> cancel(waiter));
+            enqueue(waiter);
+        });
+    }
+
+    private void enqueue(Waiter waiter) {
+        synchronized (this) {
+            queues.get(waiter.priority).computeIfAbsent(waiter.owner, key -> new ArrayDeque<>()).add(waiter);
+            queued++;
+        }
+        drain();
+    }
+
+    private void cancel(Waiter waiter) {
+        if (waiter.state.compareAndSet(QUEUED, CANCELLED)) {
+            synchronized (this) {
+                LinkedHashMap<String, ArrayDeque<Waiter>> owners = queues.get(waiter.priority);
+                ArrayDeque<Waiter> waiters = owners.get(waiter.owner);
+                if (waiters != null && waiters.remove(waiter)) {
+                    queued--;
+                    if (waiters.isEmpty()) {
+                        owners.remove(waiter.owner);
+                    }
+                }
+            }
+        } else if (waiter.state.get() == GRANTED) {
+            // 슬롯 할당과 취소가 겹친 경우 전달되지 못한 슬롯 반납
+            waiter.permit.release();
+        }
+    }
+
+    // 빈 슬롯만큼 대기 작업을 꺼내서 실행. 구독자 호출은 락 밖에서 수행
+    private void drain() {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            while (running < maxConcurrency) {
+                Waiter waiter = poll();
+                if (waiter == null) {
+                    break;
+                }
+                queued--;
+                // 취소 처리에서 볼 수 있도록 상태 변경 전에 슬롯을 만들어 둠
+                waiter.permit = new Permit(waiter.priority);
+                if (waiter.state.compareAndSet(QUEUED, GRANTED)) {
+                    running++;
+                    granted.add(waiter);
+                }
+            }
+        }
+        for (Waiter waiter : granted) {
+            queueTimers.get(waiter.priority).record(System.nanoTime() - waiter.enqueuedAt, TimeUnit.NANOSECONDS);
+            waiter.sink.success(waiter.permit);
+        }
+    }
+
+    // 높은 우선순위부터, 같은 우선순위에서는 가장 오래 기다린 사용자부터 하나씩 꺼내고 그 사용자는 맨 뒤로 보냄
+    private Waiter poll() {
+        for (LinkedHashMap<String, ArrayDeque<Waiter>> owners : queues.values()) {
+            Iterator<Map.Entry<String, ArrayDeque<Waiter>>> iterator = owners.entrySet().iterator();
+            if (!iterator.hasNext()) {
+                continue;
+            }
+            Map.Entry<String, ArrayDeque<Waiter>> first = iterator.next();
+            iterator.remove();
+            Waiter waiter = first.getValue().poll();
+            if (!first.getValue().isEmpty()) {
+                owners.put(first.getKey(), first.getValue());
+            }
+            return waiter;
+        }
+        return null;
+    }
+
+    private synchronized void releaseSlot() {
+        running--;
+    }
+
+    private static final class Waiter {
+        private final FFmpegJobPriorityEnum priority;
+        private final String owner;
+        private final MonoSink<Permit> sink;
+        private final long enqueuedAt = System.nanoTime();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private volatile Permit permit;
+
+        private Waiter(FFmpegJobPriorityEnum priority, String owner, MonoSink<Permit> sink) {
+            this.priority = priority;
+            this.owner = owner;
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * 실행 슬롯. release() 는 여러 번 호출해도 한 번만 반납함
+     */
+    private final class Permit {
+        private final FFmpegJobPriorityEnum priority;
+        private final long startedAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(FFmpegJobPriorityEnum priority) {
+            this.priority = priority;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                runTimers.get(priority).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                releaseSlot();
+                drain();
+            }
+        }
+    }
+}
@@ -1,31 +1,50 @@
 package com.tankmilu.webflux.service;
 
-import com.tankmilu.webflux.record.SubtitleInfo;
-import org.springframework.core.io.InputStreamResource;
+import com.tankmilu.webflux.enums.FFmpegJobPriorityEnum;
+import com.tankmilu.webflux.record.MediaProbeRecord;
+import com.tankmilu.webflux.record.SegmentBoundaryRecord;
 import org.springframework.core.io.buffer.DataBuffer;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 
 // 구현 방식에 따라 스트림기반, 파일기반으로 구현 가능
 public interface FFmpegService {
 
-    HashMap<String,String> getVideoMetaData(String videoPath) throws IOException;
+    // 형식, 해상도, 코덱, 오디오/자막 스트림 정보를 ffprobe 한 번으로 조회 (media_probe 테이블 저장용, 키프레임 인덱스는 null)
+    // 블로킹 호출이므로 작업 우선순위, 사용자를 직접 전달함 (FFmpegJobScheduler.priority, owner)
+    MediaProbeRecord getMediaProbe(String videoPath, FFmpegJobPriorityEnum priority, String owner) throws IOException;
 
-    List<SubtitleInfo> getSubtitleMetaData(String videoPath) throws IOException;
+    // 위 정보와 키프레임 인덱스를 ffprobe 한 번으로 조회 (JSON 출력을 스트리밍으로 파싱)
+    MediaProbeRecord getMediaProbe(String videoPath, long sourceLength, long sourceLastModified,
+                                   FFmpegJobPriorityEnum priority, String owner) throws IOException;
 
-    List<List<String>> getVideoKeyFrame(String videoPath) throws IOException;
+    Flux<DataBuffer> getTsData(String videoPath, String start, String end) throws IOException;
+    Flux<DataBuffer> getTsData(String videoPath, String start, String end, String type) throws IOException;
 
-    Double getVideoDuration(String videoPath) throws IOException;
+    // TS 세그먼트를 트랜스코딩해서 outputFile 에 저장
+    Mono<Void> transcodeTs(String videoPath, String start, String end, String type, Path outputFile);
 
-    InputStreamResource getInitData(String videoPath) throws IOException;
+    // 원본을 한 번만 디코딩해서 여러 해상도의 TS 세그먼트를 만듦 (-filter_complex split). outputFiles 는 해상도 타입 -> 저장 경로
+    Mono<Void> transcodeTsRenditions(String videoPath, String start, String end, Map<String, Path> outputFiles);
 
-    Flux<DataBuffer> getTsData(String videoPath, String start, String end) throws IOException;
-    Flux<DataBuffer> getTsData(String videoPath, String start, String end, String type) throws IOException;
+    // 재인코딩 없이(-c copy) TS 세그먼트를 만들어서 outputFile 에 저장. 시작, 종료 시간은 키프레임이어야 함
+    Mono<Void> remuxTs(String videoPath, String start, String end, Path outputFile);
 
-    Flux<DataBuffer> getSubtitleFromVideo(String videoPath, String subtitleId) throws IOException;
+    // 재인코딩 없이 만든 TS 세그먼트를 생성되는 대로 전송
+    Flux<DataBuffer> getRemuxTsData(String videoPath, String start, String end);
+
+    // fMP4(CMAF) 세그먼트를 만들어서 outputFile 에 저장. 출력은 초기화 부분(ftyp, moov) 뒤에 조각(moof, mdat)이 이어지는 fragmented MP4
+    // copy 면 재인코딩 없이 키프레임 경계로 자름 (StreamCopyPolicy)
+    Mono<Void> transcodeFmp4(String videoPath, String start, String end, String type, boolean copy, Path outputFile);
 
-    InputStreamResource getFmp4Data(String videoPath, String start, String end, String type) throws IOException;
+    // 재생 세션 연속 트랜스코딩. segments[startIndex] 부터 끝까지 세그먼트 구간에 맞춰 outputDirectory 에 {번호}.ts 로 저장
+    // 완성된 세그먼트는 segmentList 에 CSV 로 한 줄씩 추가됨
+    Mono<Void> transcodeHlsSession(String videoPath, List<SegmentBoundaryRecord> segments, int startIndex, String type, Path outputDirectory, Path segmentList);
+
+    Flux<DataBuffer> getSubtitleFromVideo(String videoPath, String subtitleId) throws IOException;
 }
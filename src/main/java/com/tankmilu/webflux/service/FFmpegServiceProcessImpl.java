@@ -1,16 +1,17 @@
 package com.tankmilu.webflux.service;
 
+import com.tankmilu.webflux.cache.AtomicFileWriter;
+import com.tankmilu.webflux.cache.FFprobeJsonParser;
+import com.tankmilu.webflux.cache.KeyFrameIndex;
+import com.tankmilu.webflux.enums.FFmpegJobPriorityEnum;
+import com.tankmilu.webflux.enums.TsTranscodeModeEnum;
 import com.tankmilu.webflux.enums.VideoResolutionEnum;
-import com.tankmilu.webflux.record.SubtitleInfo;
+import com.tankmilu.webflux.record.MediaProbeRecord;
+import com.tankmilu.webflux.record.SegmentBoundaryRecord;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import net.bramp.ffmpeg.FFprobe;
-import net.bramp.ffmpeg.probe.FFmpegProbeResult;
-import net.bramp.ffmpeg.probe.FFmpegStream;
-import net.bramp.ffmpeg.shared.CodecType;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.core.io.buffer.DataBufferUtils;
@@ -31,9 +32,7 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -55,165 +54,109 @@ public class FFmpegServiceProcessImpl implements FFmpegService {
     @Value("${custom.ffmpeg.audio_codec}")
     private String audioCodec;
 
+    // TS 세그먼트 트랜스코딩 방식 (two_pass | pipe)
+    @Value("${custom.ffmpeg.ts_mode:two_pass}")
+    private String tsMode;
+
+    private static final int TS_PIPE_READ_SIZE = 64 * 1024;
+
     private final DataBufferFactory dataBufferFactory;
 
+    private final MediaFileReader mediaFileReader;
+
+    private final FFmpegJobScheduler ffmpegJobScheduler;
+
     @Override
-    public HashMap<String, String> getVideoMetaData(String videoPath) throws IOException {
-        FFprobe ffprobe = new FFprobe(ffprobeDir);
-        log.info("ffprobe start. videoPath: {}", videoPath);
-//        String videoPath = new ClassPathResource("video/" + filename).getFile().getPath();
-        FFmpegProbeResult probeResult = ffprobe.probe(videoPath);
-
-        HashMap<String, String> metaData = new HashMap<>();
-
-        // 해시맵에 입력
-        metaData.put("format", probeResult.getFormat().format_name);
-        metaData.put("duration", String.valueOf(probeResult.getFormat().duration));
-        metaData.put("bitrate", String.valueOf(probeResult.getFormat().bit_rate));
-        metaData.put("size", String.valueOf(probeResult.getFormat().size));
-        // 비디오 해상도 추출
-        FFmpegStream stream = probeResult.getStreams().get(0);
-
-        if (stream != null) {
-            metaData.put("width", String.valueOf(stream.width));
-            metaData.put("height", String.valueOf(stream.height));
-            metaData.put("video_codec", stream.codec_name);
-        }
+    public MediaProbeRecord getMediaProbe(String videoPath, FFmpegJobPriorityEnum priority, String owner) throws IOException {
+        return probeMedia(videoPath, false, -1, -1, priority, owner);
+    }
+
+    @Override
+    public MediaProbeRecord getMediaProbe(String videoPath, long sourceLength, long sourceLastModified,
+                                          FFmpegJobPriorityEnum priority, String owner) throws IOException {
+        return probeMedia(videoPath, true, sourceLength, sourceLastModified, priority, owner);
+    }
 
-        log.info("ffmpeg probe result: {}", metaData);
-        return metaData;
+    // ffprobe 한 번으로 형식, 스트림 정보(와 키프레임 패킷)를 조회. 출력을 모으지 않고 읽는 대로 파싱
+    private MediaProbeRecord probeMedia(String videoPath, boolean keyFrames, long sourceLength, long sourceLastModified,
+                                        FFmpegJobPriorityEnum priority, String owner) throws IOException {
+        log.info("ffprobe start. videoPath: {}, keyFrames: {}", videoPath, keyFrames);
+        try (InputStream inputStream = executeCommand(new ProcessBuilder(probeCommand(videoPath, keyFrames)), priority, owner)) {
+            MediaProbeRecord mediaProbe = FFprobeJsonParser.parse(inputStream, sourceLength, sourceLastModified);
+            log.info("ffprobe media probe result. format: {}, {}x{}, video: {}, audio: {}, subtitles: {}, keyFrames: {}",
+                    mediaProbe.format(), mediaProbe.width(), mediaProbe.height(), mediaProbe.videoCodec(), mediaProbe.audioCodec(),
+                    mediaProbe.subtitles().size(), mediaProbe.keyFrameIndex() == null ? -1 : mediaProbe.keyFrameIndex().size());
+            return mediaProbe;
+        } catch (IOException e) {
+            log.error("FFprobe 에러: {}", e.getMessage(), e);
+            throw new IOException("FFprobe 실행 에러 : " + videoPath, e);
+        }
     }
 
-    public List<SubtitleInfo> getSubtitleMetaData(String videoPath) throws IOException {
-        FFprobe ffprobe = new FFprobe(ffprobeDir);
-        FFmpegProbeResult probeResult = ffprobe.probe(videoPath);
-
-        AtomicInteger counter = new AtomicInteger(0);
-
-        // subtitle 타입 스트림만 골라 Record로 맵핑
-        return probeResult.getStreams().stream()
-                .filter(stream -> stream.codec_type == CodecType.SUBTITLE)
-                .map(stream -> new SubtitleInfo(
-                        "v"+ counter.getAndIncrement(), // AtomicInteger를 이용해 스트림 내 가변변수 사용
-                        // tags가 null일 수 있으니 체크
-                        stream.tags != null ? stream.tags.get("language") : null
-                ))
-                .collect(Collectors.toList());
+    // ffprobe JSON 명령어. keyFrames 면 패킷(디코딩 없이 컨테이너 정보만 읽음)의 시간, 위치, 키프레임 여부를 함께 출력
+    List<String> probeCommand(String videoPath, boolean keyFrames) {
+        List<String> command = new ArrayList<>(List.of(
+                ffprobeDir,
+                "-v", "error",
+                "-print_format", "json",
+                "-show_format",
+                "-show_streams"));
+        if (keyFrames) {
+            command.add("-show_entries");
+            command.add("packet=codec_type,stream_index,pts_time,pos,flags");
+        }
+        command.add(videoPath);
+        return command;
     }
 
-    public InputStream executeCommand(ProcessBuilder processBuilder) throws IOException{
+    public InputStream executeCommand(ProcessBuilder processBuilder, FFmpegJobPriorityEnum priority, String owner) throws IOException{
         // 에러 출력 널라우팅
         if (System.getProperty("os.name").toLowerCase().contains("win")) {
             processBuilder.redirectError(new File("NUL")); // Windows
         } else {
             processBuilder.redirectError(new File("/dev/null")); // Unix/Linux
         }
-        Process process = processBuilder.start(); // 프로세스 실행
+        // 프로세스 실행 (우선순위, 사용자별 동시 실행 수 제한, 프로세스 종료 시 슬롯 반납)
+        Process process = ffmpegJobScheduler.start(priority, owner, processBuilder);
 
         // 종료 코드 확인
         return process.getInputStream();
     }
 
-
-
-    @Override
-    public List<List<String>> getVideoKeyFrame(String videoPath) throws IOException {
-        try {
-            // 비디오 파일 경로
-//            String videoPath = new ClassPathResource("video/" + filename).getFile().getPath();
-            log.info("Video path: {}", videoPath);
-            // FFprobe 명령어 생성
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                    ffprobeDir,
-                    "-select_streams" , "v:0",
-                    "-skip_frame", "nokey",
-                    "-show_entries" , "frame=pts_time,pkt_pos", // 각 키 프레임 시간, 해당 바이트 위치
-                    "-of", "csv",
-                    videoPath
-            );
-            InputStream inputStream = executeCommand(processBuilder);
-
-            // 프로세스 출력
-            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-            StringBuilder output = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
-
-            // 종료 코드 확인
-            return parseFrames(output.toString()); // 프로세스 출력 반환
-        } catch (Exception e) {
-            log.error("FFprobe 에러: {}", e.getMessage(), e);
-            throw new IOException("FFprobe 실행 에러", e);
-        }
-    }
-
     @Override
-    public Double getVideoDuration(String videoPath) throws IOException {
-        FFprobe ffprobe = new FFprobe(ffprobeDir);
-//        String videoPath = new ClassPathResource("video/" + filename).getFile().getPath();
-        FFmpegProbeResult probeResult = ffprobe.probe(videoPath);
-
-        return probeResult.getFormat().duration;
+    public Flux<DataBuffer> getTsData(String videoPath, String start, String to) {
+        return getTsData(videoPath, start, to, "0");
     }
 
-    public List<List<String>> parseFrames(String frames){
-        String[] frameArray = frames.split("\n");
 
-        List<List<String>> result = new ArrayList<>();
-        for (String frame : frameArray) {
-            String[] data = frame.split(",");
-            List<String> frameList = List.of(data);
-            result.add(frameList);
+    public Flux<DataBuffer> getTsData(String videoPath, String start, String to, String type) {
+        if (isPipeMode()) {
+            return streamTsData(videoPath, start, to, type);
         }
-        return result;
+        return Flux.defer(() -> {
+            final Path outputFile = generateTempFilePath("2","ts"); // 2단계 임시 파일
 
+            return transcodeTs(videoPath, start, to, type, outputFile)
+                    .thenMany(mediaFileReader.read(outputFile)) // 2단계 완료 후, 최종 생성된 파일을 읽어 Flux로 변환
+                    .doFinally(signalType -> { // 모든 작업 완료/실패 후 임시 파일 삭제
+                        try {
+                            Files.deleteIfExists(outputFile);
+                            log.info("임시 파일 삭제 완료: {}", outputFile.getFileName());
+                        } catch (IOException e) {
+                            log.error("임시 파일 삭제 실패", e);
+                        }
+                    });
+        });
     }
 
-    @Override
-    public InputStreamResource getInitData(String videoPath) throws IOException{
-        try {
-            // 비디오 파일 경로
-//            String videoPath = new ClassPathResource("video/" + filename).getFile().getPath();
-            log.info("Video path: {}", videoPath);
-            // FFmpeg 명령어 생성
-
-            List<String> command = new ArrayList<>(Arrays.asList(
-                    ffmpegDir,                           // ffmpeg 실행 파일 경로
-                    "-i", videoPath,                     // 입력 비디오 파일 경로
-                    "-c:v", "libx264",                   // 비디오 코덱
-                    "-c:a", "aac",                       // 오디오 코덱
-                    "-f", "hls",                         // 출력 형식: HLS
-                    "-hls_time", "10",                   // 세그먼트 길이: 10초
-                    "-t", "0.01",                        // 출력 길이: 0.01초 (초기화 파일만 생성)
-                    "-hls_segment_type", "fmp4",         // 세그먼트 형식: fMP4
-                    "-hls_fmp4_init_filename", "pipe:1", // 초기화 파일을 표준 출력으로 전송
-//                    "-hls_flags", "single_file",         // 단일 파일로 저장
-                    "-hls_playlist_type", "vod",         // VOD 모드 설정
-                    "-hls_segment_filename", "\"NUL %03d.m4s\"",   // 세그먼트를 파이프 출력
-                    "NUL"                                // 플레이리스트 파일 생성 방지
-            ));
-
-            ProcessBuilder processBuilder = new ProcessBuilder(command);
-
-            return new InputStreamResource(executeCommand(processBuilder)); // 프로세스 출력 반환
-        } catch (Exception e) {
-            log.error("FFmpeg 에러: {}", e.getMessage(), e);
-            throw new IOException("FFmpeg 실행 에러", e);
+    public Mono<Void> transcodeTs(String videoPath, String start, String to, String type, Path outputFile) {
+        if (isPipeMode()) {
+            // 임시 파일 없이 한 번에 outputFile 로 트랜스코딩
+            return ffmpegJobScheduler.submit(() -> runCommandAsync(singlePassTsCommand(videoPath, start, to, type, outputFile.toString())));
         }
-    }
-
-    public Flux<DataBuffer> getTsData(String videoPath, String start, String to) {
-        return getTsData(videoPath, start, to, "0");
-    }
-
-
-    public Flux<DataBuffer> getTsData(String videoPath, String start, String to, String type) {
-        return Flux.defer(() -> {
+        return Mono.defer(() -> {
 
             final Path intermediateFile1 = generateTempFilePath("1","mkv"); // 1단계 결과물
-            final Path intermediateFile2 = generateTempFilePath("2","ts"); // 2단계 임시 파일
 
             BigDecimal firstStart = new BigDecimal(start);
             firstStart = firstStart.add(new BigDecimal("-0.064001")); //48000 샘플링 기준
@@ -234,7 +177,7 @@ public class FFmpegServiceProcessImpl implements FFmpegService {
             ));
             
             // 2단계 FFmpeg 명령어 정의
-            // intermediateFile1을 입력으로 받아 정밀하게 트랜스코딩 후 intermediateFile2를 생성합니다.
+            // intermediateFile1을 입력으로 받아 정밀하게 트랜스코딩 후 outputFile을 생성합니다.
             List<String> secondCommand = new ArrayList<>(Arrays.asList(
                     ffmpegDir, "-y",
                     "-i", intermediateFile1.toString(),
@@ -250,25 +193,19 @@ public class FFmpegServiceProcessImpl implements FFmpegService {
                     "-c:a", "copy", // 오디오 코덱 샘플링 문제로 인코딩 시 밀림 현상 발생하므로 두번째에 copy
                     "-preset", "veryfast",
                     "-f", "mpegts",
-                    intermediateFile2.toString()
+                    outputFile.toString()
             ));
             // 해상도 옵션 동적으로 추가
             addResolutionOptions(secondCommand, type);
 
 
-            // 3. 리액티브 체인을 구성
-            return runCommandAsync(firstCommand)  // 1단계 실행
-                    .then(runCommandAsync(secondCommand)) // 1단계 완료 후 2단계 실행
-                    .thenMany(DataBufferUtils.read( // 2단계 완료 후, 최종 생성된 파일을 읽어 Flux로 변환
-                            intermediateFile2,
-                            this.dataBufferFactory,
-                            262144
-                    ))
-                    .doFinally(signalType -> { // 모든 작업 완료/실패 후 임시 파일 2개 모두 삭제
+            // 3. 리액티브 체인을 구성 (두 단계를 하나의 실행 슬롯에서 실행)
+            return ffmpegJobScheduler.submit(() -> runCommandAsync(firstCommand)  // 1단계 실행
+                            .then(runCommandAsync(secondCommand))) // 1단계 완료 후 2단계 실행
+                    .doFinally(signalType -> { // 완료/실패 후 1단계 임시 파일 삭제
                         try {
                             Files.deleteIfExists(intermediateFile1);
-                            Files.deleteIfExists(intermediateFile2);
-                            log.info("임시 파일 삭제 완료: {}, {}", intermediateFile1.getFileName(), intermediateFile2.getFileName());
+                            log.info("임시 파일 삭제 완료: {}", intermediateFile1.getFileName());
                         } catch (IOException e) {
                             log.error("임시 파일 삭제 실패", e);
                         }
@@ -276,63 +213,237 @@ public class FFmpegServiceProcessImpl implements FFmpegService {
         });
     }
 
-    public InputStreamResource getFmp4Data(String videoPath, String start, String to, String type) throws IOException {
-        try {
-            // 비디오 파일 경로
-//            String videoPath = new ClassPathResource("video/" + filename).getFile().getPath();
-            log.info("Video path: {}", videoPath);
+    /**
+     * FFmpeg 한 번 실행으로 TS 세그먼트를 트랜스코딩하고, 표준 출력으로 생성되는 대로 전송함
+     * 중간 파일이 없으므로 첫 바이트까지의 시간이 전체 인코딩 시간이 아닌 첫 패킷 생성 시간이 됨
+     */
+    private Flux<DataBuffer> streamTsData(String videoPath, String start, String to, String type) {
+        return streamCommand(singlePassTsCommand(videoPath, start, to, type, "pipe:1"));
+    }
 
-            // FFmpeg 명령어 생성
-            List<String> command = new ArrayList<>(Arrays.asList(
-                    ffmpegDir,
+    // FFmpeg 를 실행 슬롯에서 실행하고 표준 출력을 생성되는 대로 전송
+    private Flux<DataBuffer> streamCommand(List<String> command) {
+        return ffmpegJobScheduler.submitMany(() -> Flux.defer(() -> {
+                    log.info("command: {}", command);
+                    Process process;
+                    try {
+                        process = new ProcessBuilder(command).start();
+                    } catch (IOException e) {
+                        return Flux.error(e);
+                    }
+                    drainStreamAsync(process.getErrorStream());
+
+                    return DataBufferUtils.readInputStream(process::getInputStream, dataBufferFactory, TS_PIPE_READ_SIZE)
+                            // 출력이 끝난 후 종료 코드 확인 (비정상 종료 시 잘린 세그먼트가 캐싱되지 않도록 에러 전달)
+                            .concatWith(Mono.fromFuture(process.onExit())
+                                    .flatMap(exited -> exited.exitValue() == 0
+                                            ? Mono.<DataBuffer>empty()
+                                            : Mono.error(new IOException("FFmpeg 프로세스가 비정상 종료되었습니다. 종료 코드: " + exited.exitValue()))))
+                            .doFinally(sig -> {
+                                if (process.isAlive()) process.destroyForcibly();
+                            });
+                }))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<Void> remuxTs(String videoPath, String start, String to, Path outputFile) {
+        return ffmpegJobScheduler.submit(() -> runCommandAsync(remuxTsCommand(videoPath, start, to, outputFile.toString())));
+    }
+
+    @Override
+    public Flux<DataBuffer> getRemuxTsData(String videoPath, String start, String to) {
+        return streamCommand(remuxTsCommand(videoPath, start, to, "pipe:1"));
+    }
+
+    // 재인코딩 없이 TS 로 옮기는 명령어. 세그먼트 경계가 키프레임이므로 입력 탐색만으로 경계에서 잘림
+    // 경계 시간은 소수점 6자리로 반올림된 값이므로 시작은 1us 뒤, 종료는 1us 앞으로 잡아서 경계 키프레임이 두 세그먼트에 중복되지 않도록 함
+    // 타임스탬프는 트랜스코딩 세그먼트와 같은 방식(-copyts, -output_ts_offset)으로 맞춰서 해상도 전환 시 이어지도록 함
+    List<String> remuxTsCommand(String videoPath, String start, String to, String output) {
+        return new ArrayList<>(Arrays.asList(
+                ffmpegDir, "-y",
+                "-ss", KeyFrameIndex.formatSeconds(KeyFrameIndex.toMicros(start) + 1),
+                "-i", videoPath,
+                "-to", KeyFrameIndex.formatSeconds(KeyFrameIndex.toMicros(to) - 1),
+                "-output_ts_offset", start,
+                "-copyts",
+                "-c", "copy",
+                "-f", "mpegts",
+                output
+        ));
+    }
+
+    // 단일 실행 TS 트랜스코딩 명령어. 2단계 방식과 같은 오디오 선행 구간(-0.064001)과 타임스탬프 오프셋을 사용
+    private List<String> singlePassTsCommand(String videoPath, String start, String to, String type, String output) {
+        BigDecimal firstStart = new BigDecimal(start).add(new BigDecimal("-0.064001")); //48000 샘플링 기준
+        List<String> command = new ArrayList<>(Arrays.asList(
+                ffmpegDir, "-y",
+                "-ss", firstStart.toString(), // 입력 탐색 (트랜스코딩 시 정확한 탐색)
+                "-i", videoPath,
+                "-ss", start,                 // -copyts 로 원본 타임스탬프 기준 정밀 자르기
+                "-to", to,
+                "-output_ts_offset", start,
+                "-copyts",
+                "-c:v", videoCodec,
+                "-c:a", audioCodec,
+                "-ar", "48000",
+                "-preset", "veryfast",
+                "-f", "mpegts",
+                output
+        ));
+        // 해상도 옵션 동적으로 추가
+        addResolutionOptions(command, type);
+        return command;
+    }
+
+    @Override
+    public Mono<Void> transcodeTsRenditions(String videoPath, String start, String to, Map<String, Path> outputFiles) {
+        return ffmpegJobScheduler.submit(() -> runCommandAsync(multiRenditionTsCommand(videoPath, start, to, outputFiles)));
+    }
+
+    // 여러 해상도 TS 트랜스코딩 명령어. 디코딩한 영상을 split 으로 나눠서 해상도별로 scale 한 뒤 출력마다 인코딩함
+    // 자르기, 타임스탬프 오프셋은 출력 옵션이므로 출력마다 단일 실행 명령어와 같은 값을 지정함
+    List<String> multiRenditionTsCommand(String videoPath, String start, String to, Map<String, Path> outputFiles) {
+        BigDecimal firstStart = new BigDecimal(start).add(new BigDecimal("-0.064001")); //48000 샘플링 기준
+        StringBuilder filter = new StringBuilder("[0:v:0]split=").append(outputFiles.size());
+        for (int i = 0; i < outputFiles.size(); i++) {
+            filter.append("[v").append(i).append(']');
+        }
+        int index = 0;
+        for (String type : outputFiles.keySet()) {
+            String scaleValue = scaleFilter(type);
+            filter.append(';').append("[v").append(index).append(']')
+                    .append(scaleValue == null ? "null" : scaleValue)
+                    .append("[out").append(index).append(']');
+            index++;
+        }
+        List<String> command = new ArrayList<>(Arrays.asList(
+                ffmpegDir, "-y",
+                "-ss", firstStart.toString(),
+                "-i", videoPath,
+                "-copyts",
+                "-filter_complex", filter.toString()
+        ));
+        index = 0;
+        for (Path outputFile : outputFiles.values()) {
+            command.addAll(Arrays.asList(
+                    "-map", "[out" + index++ + "]",
+                    "-map", "0:a:0?",
                     "-ss", start,
-//                    "-itsoffset", start,
-                    "-i", videoPath,
-                    "-c:v", "libx264",                   // 비디오 코덱
-                    "-c:a", "aac",                       // 오디오 코덱
-                    "-f", "hls",                         // 출력 형식: HLS
-                    "-hls_time", "10",                   // 세그먼트 길이: 10초
-                    "-hls_segment_type", "fmp4",         // 세그먼트 형식: fMP4
-                    "-to", "10",                          // 종료 시간: 10초 (출력 길이)
-                    "-muxdelay", "0.1",
-//                    "-copyts",
-//                    "-hls_flags", "single_file",         // 단일 파일로 저장
-                    "-hls_fmp4_init_filename", "NUL",
-                    "-hls_playlist_type", "vod",         // VOD 모드 설정
-                    "-reset_timestamps","1",
-                    "-hls_segment_filename", "\"pipe:1_%03d.m4s\"",   // 세그먼트를 파이프 출력
-                    "NUL"                                // 플레이리스트 파일 출력 방지
+                    "-to", to,
+                    "-output_ts_offset", start,
+                    "-c:v", videoCodec,
+                    "-c:a", audioCodec,
+                    "-ar", "48000",
+                    "-preset", "veryfast",
+                    "-f", "mpegts",
+                    outputFile.toString()
             ));
+        }
+        return command;
+    }
+
+    @Override
+    public Mono<Void> transcodeHlsSession(String videoPath, List<SegmentBoundaryRecord> segments, int startIndex, String type, Path outputDirectory, Path segmentList) {
+        return ffmpegJobScheduler.submit(() -> runCommandAsync(hlsSessionCommand(videoPath, segments, startIndex, type, outputDirectory, segmentList)));
+    }
+
+    @Override
+    public Mono<Void> transcodeFmp4(String videoPath, String start, String to, String type, boolean copy, Path outputFile) {
+        return ffmpegJobScheduler.submit(() -> runCommandAsync(fmp4Command(videoPath, start, to, type, copy, outputFile.toString())));
+    }
 
+    // fMP4(CMAF) 세그먼트 명령어. 구간 자르기와 인코딩 옵션은 TS 세그먼트와 같고, 출력만 fragmented MP4 로 만듦
+    // 세그먼트마다 FFmpeg 를 따로 실행하므로 frag_discont 로 원본 타임스탬프(-copyts)를 tfdt 에 그대로 기록해서 세그먼트끼리 이어지도록 함
+    // 초기화 부분(moov)은 세그먼트와 관계없이 같아야 하므로 구간에 따라 달라지는 편집 목록(edts)은 쓰지 않음
+    List<String> fmp4Command(String videoPath, String start, String to, String type, boolean copy, String output) {
+        List<String> command;
+        if (copy) {
+            command = new ArrayList<>(Arrays.asList(
+                    ffmpegDir, "-y",
+                    "-ss", KeyFrameIndex.formatSeconds(KeyFrameIndex.toMicros(start) + 1),
+                    "-i", videoPath,
+                    "-to", KeyFrameIndex.formatSeconds(KeyFrameIndex.toMicros(to) - 1),
+                    "-copyts",
+                    "-c", "copy"
+            ));
+        } else {
+            BigDecimal firstStart = new BigDecimal(start).add(new BigDecimal("-0.064001")); //48000 샘플링 기준
+            command = new ArrayList<>(Arrays.asList(
+                    ffmpegDir, "-y",
+                    "-ss", firstStart.toString(),
+                    "-i", videoPath,
+                    "-ss", start,
+                    "-to", to,
+                    "-copyts",
+                    "-c:v", videoCodec,
+                    "-c:a", audioCodec,
+                    "-ar", "48000",
+                    "-preset", "veryfast"
+            ));
             // 해상도 옵션 동적으로 추가
-//            if (type.equals("1")) {
-//                command.add(command.indexOf("-c:v") + 2, "-vf");
-//                command.add(command.indexOf("-c:v") + 3, "scale=-2:480");
-//            } else if (type.equals("2")) {
-//                command.add(command.indexOf("-c:v") + 2, "-vf");
-//                command.add(command.indexOf("-c:v") + 3, "scale=-2:720");
-//            } else if (type.equals("3")) {
-//                command.add(command.indexOf("-c:v") + 2, "-vf");
-//                command.add(command.indexOf("-c:v") + 3, "scale=-2:1080");
-//            } else if (type.equals("4")) {
-//                command.add(command.indexOf("-c:v") + 2, "-vf");
-//                command.add(command.indexOf("-c:v") + 3, "scale=-2:1440");
-//            }
-
-            log.info("command: {}", command);
-
-            // ProcessBuilder 생성
-            ProcessBuilder processBuilder = new ProcessBuilder(command);
-
-            return new InputStreamResource(executeCommand(processBuilder)); // 프로세스 출력 반환
-        } catch (Exception e) {
-            log.error("FFmpeg 에러: {}", e.getMessage(), e);
-            throw new IOException("FFmpeg 실행 에러", e);
+            addResolutionOptions(command, type);
         }
+        command.addAll(List.of(
+                "-f", "mp4",
+                "-movflags", "+frag_keyframe+empty_moov+default_base_moof+frag_discont",
+                "-use_editlist", "0",
+                output
+        ));
+        return command;
+    }
+
+    // 재생 세션 명령어. 단일 실행 TS 와 같은 탐색/타임스탬프 옵션을 사용하고, segment 먹서로 플레이리스트 구간마다 파일을 나눔
+    List<String> hlsSessionCommand(String videoPath, List<SegmentBoundaryRecord> segments, int startIndex, String type, Path outputDirectory, Path segmentList) {
+        String start = segments.get(startIndex).start();
+        BigDecimal sessionStart = new BigDecimal(start);
+        BigDecimal firstStart = sessionStart.add(new BigDecimal("-0.064001")); //48000 샘플링 기준
+        StringJoiner segmentTimes = new StringJoiner(",");
+        StringJoiner keyFrameTimes = new StringJoiner(",");
+        for (int i = startIndex + 1; i < segments.size(); i++) {
+            BigDecimal boundary = new BigDecimal(segments.get(i).start());
+            segmentTimes.add(boundary.toPlainString());                           // 먹서 기준 (원본 타임스탬프)
+            keyFrameTimes.add(boundary.subtract(sessionStart).toPlainString());   // 인코더 기준 (출력 시작 기준)
+        }
+        List<String> command = new ArrayList<>(Arrays.asList(
+                ffmpegDir, "-y",
+                "-ss", firstStart.toString(),
+                "-i", videoPath,
+                "-ss", start,
+                "-output_ts_offset", start,
+                "-copyts",
+                "-c:v", videoCodec,
+                "-c:a", audioCodec,
+                "-ar", "48000",
+                "-preset", "veryfast"
+        ));
+        if (segmentTimes.length() > 0) {
+            // 세그먼트 경계에 키프레임을 만들어야 경계에서 잘림
+            command.addAll(List.of("-force_key_frames", keyFrameTimes.toString(),
+                    "-f", "segment", "-segment_times", segmentTimes.toString()));
+        } else {
+            // 마지막 세그먼트만 남은 경우 나누지 않음
+            command.addAll(List.of("-f", "segment", "-segment_time", "86400"));
+        }
+        command.addAll(List.of(
+                "-segment_format", "mpegts",
+                "-segment_start_number", String.valueOf(startIndex),
+                "-segment_list", segmentList.toString(),
+                "-segment_list_type", "csv",
+                outputDirectory.resolve("%d.ts").toString()
+        ));
+        // 해상도 옵션 동적으로 추가
+        addResolutionOptions(command, type);
+        return command;
+    }
+
+    private boolean isPipeMode() {
+        return TsTranscodeModeEnum.fromMode(tsMode) == TsTranscodeModeEnum.PIPE;
     }
 
     public Flux<DataBuffer> getSubtitleFromVideo(String videoPath, String subtitleId){
-        return Flux.defer(() -> {
+        // 프로세스 출력을 모두 읽을 때까지 실행 슬롯 사용
+        return ffmpegJobScheduler.submitMany(() -> Flux.defer(() -> {
             log.info("### FFmpegServiceProcessImpl.getSubtitleFromVideo. videoPath: {}, subtitleId: {}", videoPath, subtitleId);
             List<String> command = new ArrayList<>(Arrays.asList(
                     ffmpegDir,
@@ -371,12 +482,12 @@ public class FFmpegServiceProcessImpl implements FFmpegService {
                     .doFinally(sig -> {
                         if (process.isAlive()) process.destroyForcibly();
                     });
-        })
+        }))
         .subscribeOn(Schedulers.boundedElastic());
     }
 
     public Mono<Boolean> convertSubtitleToAss(String inputPath, String outputPath, String fontName, int fontSize, String charEncoding) {
-        return Flux.defer(() -> {
+        return ffmpegJobScheduler.submitMany(() -> Flux.defer(() -> {
                     log.info("### FFmpegServiceProcessImpl.convertSubtitleToAss. inputPath: {}, outputPath: {}, fontName: {}, fontSize: {}, charEncoding: {}", inputPath, outputPath, fontName, fontSize, charEncoding);
                     List<String> command = new ArrayList<>(Arrays.asList(
                             ffmpegDir,
@@ -414,33 +525,12 @@ public class FFmpegServiceProcessImpl implements FFmpegService {
                             .doFinally(sig -> {
                                 if (process.isAlive()) process.destroyForcibly();
                             });
-                })
+                }))
                 .subscribeOn(Schedulers.boundedElastic())
-                // pipe:1로 받은 데이터를 문자열로 변환하고 수정
-                .reduce(dataBufferFactory.wrap(new byte[0]), (buffer1, buffer2) -> {
-                    // 두 버퍼를 합치기
-                    byte[] bytes1 = new byte[buffer1.readableByteCount()];
-                    byte[] bytes2 = new byte[buffer2.readableByteCount()];
-                    buffer1.read(bytes1);
-                    buffer2.read(bytes2);
-
-                    byte[] combined = new byte[bytes1.length + bytes2.length];
-                    System.arraycopy(bytes1, 0, combined, 0, bytes1.length);
-                    System.arraycopy(bytes2, 0, combined, bytes1.length, bytes2.length);
-
-                    // 버퍼 해제
-                    DataBufferUtils.release(buffer1);
-                    DataBufferUtils.release(buffer2);
-
-                    return dataBufferFactory.wrap(combined);
-                })
-                .map(buffer -> {
-                    // DataBuffer를 문자열로 변환
-                    byte[] bytes = new byte[buffer.readableByteCount()];
-                    buffer.read(bytes);
-                    String content = new String(bytes, StandardCharsets.UTF_8);
-                    DataBufferUtils.release(buffer);
-
+                // pipe:1로 받은 데이터를 하나의 버퍼로 합친 뒤 문자열로 변환하고 수정
+                // join 은 에러나 취소 시에도 모아둔 버퍼를 해제함
+                .as(FFmpegServiceProcessImpl::joinToString)
+                .map(content -> {
                     // Style 라인 수정
                     String modifiedContent = content.replaceAll(
                             "(Style:[^,]*,)Arial(,[0-9]+)",
@@ -449,20 +539,30 @@ public class FFmpegServiceProcessImpl implements FFmpegService {
 
                     return modifiedContent;
                 })
-                .flatMap(content -> {
-                    // 수정된 내용을 파일로 저장
-                    DataBuffer buffer = dataBufferFactory.wrap(content.getBytes(StandardCharsets.UTF_8));
-                    return DataBufferUtils.write(
-                            Flux.just(buffer),
-                            Paths.get(outputPath),
-                            StandardOpenOption.CREATE,
-                            StandardOpenOption.TRUNCATE_EXISTING,
-                            StandardOpenOption.WRITE);
-                })
+                .flatMap(content ->
+                    // 수정된 내용을 파일로 저장 (임시 파일에 쓴 후 이름 변경)
+                    Mono.fromCallable(() -> AtomicFileWriter.writeString(Paths.get(outputPath), content))
+                            .subscribeOn(Schedulers.boundedElastic())
+                )
                 .then(Mono.just(true))  // 성공시 true 반환
                 .onErrorReturn(false);  // 실패시 false 반환
     }
 
+    /**
+     * 데이터 버퍼 스트림을 UTF-8 문자열로 합침. 합친 버퍼는 변환 후 해제함
+     */
+    static Mono<String> joinToString(Flux<DataBuffer> dataBufferFlux) {
+        return DataBufferUtils.join(dataBufferFlux)
+                .map(buffer -> {
+                    try {
+                        return buffer.toString(StandardCharsets.UTF_8);
+                    } finally {
+                        DataBufferUtils.release(buffer);
+                    }
+                })
+                .defaultIfEmpty("");
+    }
+
     /**
      * FFmpeg 명령어를 비동기적으로 실행하고, 프로세스가 종료되면 완료 신호를 보내는 Mono를 반환
      * @param command 실행할 명령어 리스트
@@ -476,10 +576,11 @@ public class FFmpegServiceProcessImpl implements FFmpegService {
 
                     drainStreamAsync(process.getErrorStream());
 
-                    // onExit()를 사용해 프로세스 종료를 나타내는 CompletableFuture
-                    return process.onExit();
+                    return process;
                 })
-                .flatMap(Mono::fromFuture) //
+                // onExit()를 사용해 프로세스 종료를 기다림. 취소 시 프로세스를 종료해서 실행 슬롯과 실제 프로세스 수를 맞춤
+                .flatMap(process -> Mono.fromFuture(process.onExit())
+                        .doOnCancel(process::destroyForcibly))
                 .flatMap(process -> {
                     if (process.exitValue() == 0) {
                         // 성공 시, 비어있는 Mono를 반환하여 onComplete 신호 발생
@@ -521,23 +622,27 @@ public class FFmpegServiceProcessImpl implements FFmpegService {
 
     // FFmpeg command에 해상도 옵션 더하는 메소드
     private void addResolutionOptions(List<String> command, String type) {
+        String scaleValue = scaleFilter(type);
+        if (scaleValue != null) {
+            int insertPos = command.indexOf("-c:v") + 2;
+            command.add(insertPos, "-vf");
+            command.add(insertPos + 1, scaleValue);
+        }
+    }
+
+    // 해상도 타입별 scale 필터 (원본 해상도는 null)
+    private static String scaleFilter(String type) {
 
         VideoResolutionEnum resolution = VideoResolutionEnum.fromType(type)
                 .orElse(null);
 
-        String scaleValue = switch (Objects.requireNonNull(resolution)) {
+        return switch (Objects.requireNonNull(resolution)) {
             case RES_480P -> "scale=-2:480";
             case RES_720P -> "scale=-2:720";
             case RES_1080P -> "scale=-2:1080";
             case RES_1440P -> "scale=-2:1440";
             default -> null;
         };
-
-        if (scaleValue != null) {
-            int insertPos = command.indexOf("-c:v") + 2;
-            command.add(insertPos, "-vf");
-            command.add(insertPos + 1, scaleValue);
-        }
     }
 
 }
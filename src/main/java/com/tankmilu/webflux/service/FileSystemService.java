@@ -31,7 +31,7 @@ public class FileSystemService {
     private final DramaFolderTreeRepository dramaFolderTreeRepository;
     private final MovieFolderTreeRepository movieFolderTreeRepository;
 
-    private final FFmpegService ffmpegService;
+    private final MediaProbeService mediaProbeService;
 
     // FolderTreeRepository를 구현하는 구현클래스(리파지토리)를 각 타입별 반환
     private FolderTreeRepository<? extends FolderTreeEntity> getFolderTreeRepository(String type) {
@@ -150,13 +150,9 @@ public class FileSystemService {
                     Mono<String> subtitleMono = checkSubtitle(folderPath, subPaths)
                             .defaultIfEmpty("-");
 
-                    // 동영상 해상도 조회 (병렬 처리 2)
-                    Mono<String> resolutionMono = Mono.fromCallable(() ->
-                                    ffmpegService.getVideoMetaData(filePath)
-                            )
-                            .map(meta -> meta.get("width") + "x" + meta.get("height"))
+                    // 동영상 해상도 조회 (병렬 처리 2, media_probe 에 없으면 ffprobe)
+                    Mono<String> resolutionMono = mediaProbeService.getResolution(filePath)
                             .onErrorReturn("-")
-                            .subscribeOn(Schedulers.boundedElastic())
                             .defaultIfEmpty("-");
 
                     // 두 결과 조합
@@ -0,0 +1,107 @@
+package com.tankmilu.webflux.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * fragmented MP4 파일을 초기화 세그먼트(ftyp, moov)와 미디어 세그먼트(moov 이후의 moof, mdat)로 나눔
+ * 최상위 박스 헤더만 읽고 내용은 FileChannel.transferTo 로 복사함
+ * 원본 fMP4 바이트 범위 재생(ByteRangeSegments)에서도 박스 위치 조회에 사용
+ */
+final class Fmp4BoxSplitter {
+
+    static final int MOOV = 0x6D6F6F76; // "moov"
+
+    static final int MOOF = 0x6D6F6F66; // "moof"
+
+    static final int MDAT = 0x6D646174; // "mdat"
+
+    private Fmp4BoxSplitter() {
+    }
+
+    /**
+     * @param fragmented FFmpeg 출력 (empty_moov fragmented MP4)
+     * @param initOutput 초기화 세그먼트 저장 경로
+     * @param mediaOutput 미디어 세그먼트 저장 경로
+     */
+    static void split(Path fragmented, Path initOutput, Path mediaOutput) throws IOException {
+        try (FileChannel source = FileChannel.open(fragmented, StandardOpenOption.READ)) {
+            long initEnd = initEnd(source);
+            long size = source.size();
+            if (initEnd >= size) {
+                throw new IOException("fMP4 출력에 미디어 조각이 없습니다 : " + fragmented);
+            }
+            copy(source, 0, initEnd, initOutput);
+            copy(source, initEnd, size - initEnd, mediaOutput);
+        }
+    }
+
+    // moov 박스가 끝나는 위치
+    private static long initEnd(FileChannel source) throws IOException {
+        for (Box box : boxes(source)) {
+            if (box.type() == MOOV) {
+                return box.end();
+            }
+        }
+        throw new IOException("fMP4 출력에 moov 박스가 없습니다.");
+    }
+
+    /**
+     * 최상위 박스 목록 (헤더만 읽음)
+     */
+    static List<Box> boxes(FileChannel source) throws IOException {
+        List<Box> boxes = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long position = 0;
+        long size = source.size();
+        while (position + 8 <= size) {
+            header.clear().limit(8);
+            readFully(source, header, position);
+            long boxSize = Integer.toUnsignedLong(header.getInt(0));
+            int boxType = header.getInt(4);
+            if (boxSize == 1) { // 64bit 크기
+                header.limit(16);
+                readFully(source, header, position);
+                boxSize = header.getLong(8);
+            } else if (boxSize == 0) { // 파일 끝까지
+                boxSize = size - position;
+            }
+            if (boxSize < 8 || position + boxSize > size) {
+                throw new IOException("MP4 박스 크기가 올바르지 않습니다. position: " + position + ", size: " + boxSize);
+            }
+            boxes.add(new Box(boxType, position, boxSize));
+            position += boxSize;
+        }
+        return boxes;
+    }
+
+    // 버퍼의 0번 위치가 파일의 position 에 대응하도록 남은 부분을 채움
+    private static void readFully(FileChannel source, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = source.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("MP4 박스 헤더를 읽을 수 없습니다. position: " + position);
+            }
+        }
+    }
+
+    private static void copy(FileChannel source, long position, long count, Path output) throws IOException {
+        try (FileChannel target = FileChannel.open(output, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long copied = 0;
+            while (copied < count) {
+                copied += source.transferTo(position + copied, count - copied, target);
+            }
+        }
+    }
+
+    record Box(int type, long offset, long size) {
+        long end() {
+            return offset + size;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.tankmilu.webflux.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tankmilu.webflux.cache.KeyFrameIndex;
+import com.tankmilu.webflux.cache.KeyFrameIndexStore;
+import com.tankmilu.webflux.record.SegmentBoundaryRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HLS 플레이리스트의 세그먼트 구간 조회
+ * 플레이리스트와 같은 기준으로 키프레임 인덱스에서 구간을 계산하고, 인덱스가 없으면 getHlsM3u8 이 생성한 플레이리스트를 읽음
+ * 선트랜스코딩과 재생 세션 트랜스코딩이 같은 세그먼트 구간을 사용하도록 구간 목록을 캐싱함
+ */
+@Component
+public class HlsPlaylistIndex {
+
+    // 플레이리스트 세그먼트 URL 의 ss, to 값
+    private static final Pattern SEGMENT_URL_PATTERN = Pattern.compile("[?&]ss=([0-9.]+)&to=([0-9.]+)");
+
+    // HLS 세그먼트 최소 길이 (초, 플레이리스트 생성 기준과 같음)
+    private static final int SEGMENT_LENGTH = 10;
+
+    private final Path hlsFolder;
+
+    private final KeyFrameIndexStore keyFrameIndexStore;
+
+    // (fileId, 원본 수정 시간, 타입) 별 세그먼트 구간
+    private final Cache<String, List<SegmentBoundaryRecord>> boundaries = Caffeine.newBuilder()
+            .maximumSize(1_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    public HlsPlaylistIndex(@Value("${custom.batch.hls_folder}") String hlsFolder,
+                            KeyFrameIndexStore keyFrameIndexStore) {
+        this.hlsFolder = Paths.get(hlsFolder);
+        this.keyFrameIndexStore = keyFrameIndexStore;
+    }
+
+    /**
+     * 플레이리스트의 세그먼트 구간 목록. 키프레임 인덱스와 플레이리스트가 모두 없으면 빈 목록
+     * 파일을 읽으므로 boundedElastic 에서 호출해야 함
+     *
+     * @param fileId 파일 ID
+     * @param version 원본 수정 시간 (키프레임 인덱스 유효성 확인용)
+     * @param type 해상도 타입
+     */
+    public List<SegmentBoundaryRecord> boundaries(Long fileId, long version, String type) throws IOException {
+        Path playlist = hlsFolder.resolve(fileId + "." + type + ".hls.m3u8");
+        String cacheKey = fileId + "." + version + "." + type;
+        List<SegmentBoundaryRecord> segments = boundaries.getIfPresent(cacheKey);
+        if (segments == null) {
+            Optional<KeyFrameIndex> index = keyFrameIndexStore.find(fileId, -1, version);
+            if (index.isPresent()) {
+                segments = index.get().segmentBoundaries(SEGMENT_LENGTH);
+            } else if (Files.exists(playlist)) {
+                segments = parseSegmentBoundaries(Files.readString(playlist));
+            } else {
+                return List.of();
+            }
+            boundaries.put(cacheKey, segments);
+        }
+        return segments;
+    }
+
+    /**
+     * 시작 시간이 같은 세그먼트의 위치. 없으면 -1
+     */
+    public static int indexOf(List<SegmentBoundaryRecord> segments, String start) {
+        BigDecimal target = new BigDecimal(start);
+        for (int i = 0; i < segments.size(); i++) {
+            if (new BigDecimal(segments.get(i).start()).compareTo(target) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 플레이리스트 내용에서 세그먼트 구간 목록을 추출함
+     */
+    static List<SegmentBoundaryRecord> parseSegmentBoundaries(String m3u8) {
+        List<SegmentBoundaryRecord> segments = new ArrayList<>();
+        for (String line : m3u8.split("\n")) {
+            if (line.startsWith("#")) {
+                continue;
+            }
+            Matcher matcher = SEGMENT_URL_PATTERN.matcher(line);
+            if (matcher.find()) {
+                segments.add(new SegmentBoundaryRecord(matcher.group(1), matcher.group(2)));
+            }
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,370 @@
+package com.tankmilu.webflux.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.tankmilu.webflux.cache.SegmentCacheStore;
+import com.tankmilu.webflux.enums.FFmpegJobPriorityEnum;
+import com.tankmilu.webflux.record.MediaDescriptorRecord;
+import com.tankmilu.webflux.record.SegmentBoundaryRecord;
+import com.tankmilu.webflux.record.SegmentKeyRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 재생 세션 단위 연속 HLS 트랜스코딩
+ * 세그먼트마다 FFmpeg 를 실행하지 않고, (fileId, 해상도 타입) 별로 FFmpeg 하나가 요청 위치부터 플레이리스트 구간에 맞춰
+ * 세그먼트를 계속 만들어 세그먼트 캐시에 저장함. 같은 구간을 보는 다른 사용자도 같은 세션 출력을 사용함
+ * 요청 세그먼트가 세션 출력 범위(시작 ~ 마지막 완성 세그먼트 + lookahead) 밖이면 요청 위치부터 새 세션을 시작하고,
+ * 요청한 사용자는 이전 세션에서 분리함 (탐색). 이전 세션은 idle 시간 안에 사용한 다른 사용자가 없을 때만 종료하며,
+ * 요청이 없는 세션은 idle 시간이 지나면 종료함
+ */
+@Slf4j
+@Component
+public class HlsSessionTranscoder {
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(250);
+
+    private final FFmpegService ffmpegService;
+
+    private final SegmentCacheStore segmentCacheStore;
+
+    private final HlsPlaylistIndex hlsPlaylistIndex;
+
+    private final boolean enabled;
+
+    private final int maxSessions;
+
+    private final int lookahead;
+
+    private final Duration waitTimeout;
+
+    // 세션을 최근에 사용한 사용자로 보는 시간 (idle 시간과 같음)
+    private final long viewerTimeoutNanos;
+
+    private final Cache<String, PlaybackSession> sessions;
+
+    private final Counter startedCounter;
+
+    private final Counter fallbackCounter;
+
+    public HlsSessionTranscoder(FFmpegService ffmpegService,
+                                SegmentCacheStore segmentCacheStore,
+                                HlsPlaylistIndex hlsPlaylistIndex,
+                                MeterRegistry meterRegistry,
+                                @Value("${custom.hls_session.enabled:false}") boolean enabled,
+                                @Value("${custom.hls_session.max_sessions:2}") int maxSessions,
+                                @Value("${custom.hls_session.lookahead:3}") int lookahead,
+                                @Value("${custom.hls_session.wait_seconds:30}") long waitSeconds,
+                                @Value("${custom.hls_session.idle_seconds:60}") long idleSeconds) {
+        this.ffmpegService = ffmpegService;
+        this.segmentCacheStore = segmentCacheStore;
+        this.hlsPlaylistIndex = hlsPlaylistIndex;
+        this.enabled = enabled;
+        this.maxSessions = maxSessions;
+        this.lookahead = lookahead;
+        this.waitTimeout = Duration.ofSeconds(waitSeconds);
+        this.viewerTimeoutNanos = Duration.ofSeconds(idleSeconds).toNanos();
+        this.startedCounter = Counter.builder("video.hls.session.started")
+                .description("시작한 재생 세션 트랜스코딩 수").register(meterRegistry);
+        this.fallbackCounter = Counter.builder("video.hls.session.fallbacks")
+                .description("재생 세션으로 처리하지 못하고 세그먼트 단위로 트랜스코딩한 요청 수").register(meterRegistry);
+        this.sessions = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofSeconds(idleSeconds))
+                .scheduler(Scheduler.systemScheduler()) // idle 세션을 요청이 없어도 종료
+                .removalListener((String key, PlaybackSession session, RemovalCause cause) -> {
+                    if (session != null) {
+                        session.close();
+                    }
+                })
+                .build();
+        Gauge.builder("video.hls.session.active", sessions, cache -> cache.estimatedSize())
+                .description("실행 중인 재생 세션 트랜스코딩 수").register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sessions.invalidateAll();
+    }
+
+    public boolean isEnabled() {
+        return enabled && segmentCacheStore.isEnabled();
+    }
+
+    /**
+     * 세그먼트 캐시 경로를 반환함. 캐시에 없으면 재생 세션이 세그먼트를 만들 때까지 기다림
+     * 플레이리스트에 없는 구간이거나, 세션을 더 시작할 수 없거나, 제한 시간 안에 만들어지지 않으면 empty
+     *
+     * @param username 사용자 ID
+     * @param descriptor 원본 비디오 정보
+     * @param key 요청된 세그먼트 키
+     * @return 세그먼트 캐시 파일 경로
+     */
+    public Mono<Path> awaitSegment(String username, MediaDescriptorRecord descriptor, SegmentKeyRecord key) {
+        return segmentCacheStore.find(key)
+                .switchIfEmpty(Mono.defer(() -> Mono.fromCallable(() -> hlsPlaylistIndex.boundaries(key.fileId(), key.version(), key.type()))
+                        .subscribeOn(Schedulers.boundedElastic()) // 플레이리스트 파일 읽기
+                        .flatMap(segments -> {
+                            int index = HlsPlaylistIndex.indexOf(segments, key.start());
+                            PlaybackSession session = index < 0 ? null : sessionFor(username, descriptor, key, segments, index);
+                            if (session == null) {
+                                return Mono.empty();
+                            }
+                            return session.await(index).then(segmentCacheStore.find(key));
+                        })
+                        .timeout(waitTimeout, Mono.empty())
+                        .switchIfEmpty(Mono.fromRunnable(fallbackCounter::increment))));
+    }
+
+    // 요청 세그먼트를 출력 범위에 포함하는 세션을 찾고, 없으면 요청 위치부터 새 세션을 시작함
+    private synchronized PlaybackSession sessionFor(String username, MediaDescriptorRecord descriptor, SegmentKeyRecord key,
+                                                    List<SegmentBoundaryRecord> segments, int index) {
+        long now = System.nanoTime();
+        PlaybackSession covering = null;
+        List<PlaybackSession> left = new ArrayList<>();
+        for (PlaybackSession session : sessions.asMap().values()) {
+            if (!session.sameSource(key)) {
+                continue;
+            }
+            if (covering == null && session.covers(index, lookahead)) {
+                covering = session;
+            } else if (session.watchedBy(username)) {
+                left.add(session);
+            }
+        }
+        // 출력 범위 밖으로 탐색한 사용자는 이전 세션에서 분리하고, 최근에 사용한 다른 사용자가 없는 세션만 종료
+        for (PlaybackSession session : left) {
+            session.detach(username);
+            if (!session.watchedSince(now - viewerTimeoutNanos)) {
+                sessions.invalidate(session.id);
+            }
+        }
+        if (covering != null) {
+            sessions.getIfPresent(covering.id); // idle 시간 갱신
+            covering.attach(username, now);
+            return covering;
+        }
+        if (sessions.estimatedSize() >= maxSessions) {
+            return null;
+        }
+        try {
+            PlaybackSession session = start(username, descriptor, key, segments, index);
+            session.attach(username, now);
+            return session;
+        } catch (IOException e) {
+            log.warn("재생 세션을 시작할 수 없습니다. fileId: {}: {}", key.fileId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private PlaybackSession start(String username, MediaDescriptorRecord descriptor, SegmentKeyRecord key,
+                                  List<SegmentBoundaryRecord> segments, int index) throws IOException {
+        Path workDirectory = segmentCacheStore.newWorkDirectory();
+        Path segmentList = workDirectory.resolve("segments.csv");
+        Files.createFile(segmentList);
+        PlaybackSession session = new PlaybackSession(UUID.randomUUID().toString(), key, segments, index, workDirectory, segmentList);
+        log.info("재생 세션 시작. fileId: {}, type: {}, 시작 세그먼트: {}", key.fileId(), key.type(), index);
+        startedCounter.increment();
+        // 프로세스가 바로 종료되는 경우에도 제거되도록 먼저 등록
+        sessions.put(session.id, session);
+
+        // 완성된 세그먼트를 주기적으로 확인해서 캐시에 공개
+        session.watcher = Flux.interval(POLL_INTERVAL, Schedulers.boundedElastic())
+                .onBackpressureDrop()
+                .concatMap(tick -> publishCompleted(session))
+                .subscribe();
+        session.process = ffmpegService.transcodeHlsSession(descriptor.getFullFilePath(), segments, index, key.type(), workDirectory, segmentList)
+                .contextWrite(FFmpegJobScheduler.jobContext(FFmpegJobPriorityEnum.INTERACTIVE, username))
+                .doOnError(e -> log.warn("재생 세션 트랜스코딩 실패. fileId: {}: {}", key.fileId(), e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then(Mono.defer(() -> {
+                    session.watcher.dispose();
+                    return publishCompleted(session); // 마지막 세그먼트 공개
+                }))
+                .subscribe(null, null, () -> sessions.invalidate(session.id));
+        return session;
+    }
+
+    private Mono<Void> publishCompleted(PlaybackSession session) {
+        return Mono.fromCallable(session::readCompleted)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(Flux::fromIterable)
+                .concatMap(completed -> segmentCacheStore.publish(session.keyOf(completed.index()), session.workDirectory.resolve(completed.fileName()))
+                        .doOnError(e -> log.debug("재생 세션 세그먼트 공개 실패. {}: {}", completed.fileName(), e.getMessage()))
+                        .onErrorResume(e -> Mono.empty())
+                        .doFinally(signal -> session.produced(completed.index())))
+                .then();
+    }
+
+    int sessionCount() {
+        sessions.cleanUp();
+        return (int) sessions.estimatedSize();
+    }
+
+    int viewerCount() {
+        return sessions.asMap().values().stream().mapToInt(session -> session.viewers.size()).sum();
+    }
+
+    /**
+     * 재생 세션. FFmpeg 출력 폴더와 세그먼트 목록 파일을 관리함
+     */
+    static final class PlaybackSession {
+        private final String id;
+        private final Long fileId;
+        private final long version;
+        private final String type;
+        private final List<SegmentBoundaryRecord> segments;
+        private final int startIndex;
+        private final Path workDirectory;
+        private final Path segmentList;
+        // 세션 출력을 사용하는 사용자 -> 마지막 요청 시간 (nanoTime)
+        private final Map<String, Long> viewers = new ConcurrentHashMap<>();
+        // 마지막으로 완성된 세그먼트 번호 (새 구독자에게도 전달)
+        private final Sinks.Many<Integer> completed = Sinks.many().replay().latest();
+        private volatile int producedIndex;
+        private volatile boolean closed;
+        private long listPosition;
+        private Disposable watcher;
+        private Disposable process;
+
+        private PlaybackSession(String id, SegmentKeyRecord key, List<SegmentBoundaryRecord> segments,
+                                int startIndex, Path workDirectory, Path segmentList) {
+            this.id = id;
+            this.fileId = key.fileId();
+            this.version = key.version();
+            this.type = key.type();
+            this.segments = segments;
+            this.startIndex = startIndex;
+            this.workDirectory = workDirectory;
+            this.segmentList = segmentList;
+            this.producedIndex = startIndex - 1;
+        }
+
+        boolean sameSource(SegmentKeyRecord key) {
+            return fileId.equals(key.fileId()) && version == key.version() && type.equals(key.type());
+        }
+
+        boolean covers(int index, int lookahead) {
+            return !closed && index >= startIndex && index <= producedIndex + 1 + lookahead;
+        }
+
+        void attach(String username, long now) {
+            viewers.put(String.valueOf(username), now);
+        }
+
+        void detach(String username) {
+            viewers.remove(String.valueOf(username));
+        }
+
+        boolean watchedBy(String username) {
+            return viewers.containsKey(String.valueOf(username));
+        }
+
+        // since 이후에 요청한 사용자가 있는지 여부
+        boolean watchedSince(long since) {
+            return viewers.values().stream().anyMatch(accessed -> accessed - since >= 0);
+        }
+
+        // 세그먼트가 완성될 때까지 기다림. 세션이 먼저 종료되면 empty
+        Mono<Integer> await(int index) {
+            return completed.asFlux().filter(produced -> produced >= index).next();
+        }
+
+        SegmentKeyRecord keyOf(int index) {
+            SegmentBoundaryRecord segment = segments.get(index);
+            return SegmentKeyRecord.of(fileId, version, segment.start(), segment.to(), type);
+        }
+
+        synchronized void produced(int index) {
+            producedIndex = Math.max(producedIndex, index);
+            completed.tryEmitNext(producedIndex);
+        }
+
+        // 세그먼트 목록 파일에 새로 추가된 완성 세그먼트 (줄 단위, 마지막 줄이 완성되지 않았으면 다음에 읽음)
+        synchronized List<CompletedSegment> readCompleted() throws IOException {
+            List<CompletedSegment> result = new ArrayList<>();
+            if (closed) {
+                return result;
+            }
+            try (RandomAccessFile file = new RandomAccessFile(segmentList.toFile(), "r")) {
+                if (file.length() <= listPosition) {
+                    return result;
+                }
+                byte[] bytes = new byte[(int) (file.length() - listPosition)];
+                file.seek(listPosition);
+                file.readFully(bytes);
+                String text = new String(bytes, StandardCharsets.UTF_8);
+                int lineEnd = text.lastIndexOf('\n');
+                if (lineEnd < 0) {
+                    return result;
+                }
+                listPosition += text.substring(0, lineEnd + 1).getBytes(StandardCharsets.UTF_8).length;
+                for (String line : text.substring(0, lineEnd).split("\n")) {
+                    CompletedSegment segment = CompletedSegment.parse(line.trim());
+                    if (segment != null && segment.index() < segments.size()) {
+                        result.add(segment);
+                    }
+                }
+            }
+            return result;
+        }
+
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (watcher != null) watcher.dispose();
+            if (process != null) process.dispose(); // 실행 중인 FFmpeg 프로세스 종료
+            completed.tryEmitComplete();
+            try {
+                FileSystemUtils.deleteRecursively(workDirectory);
+            } catch (IOException e) {
+                log.debug("재생 세션 폴더 삭제 실패 : {}", workDirectory);
+            }
+            log.info("재생 세션 종료. fileId: {}, type: {}, 완성 세그먼트: {} ~ {}", fileId, type, startIndex, producedIndex);
+        }
+    }
+
+    /**
+     * 세그먼트 목록 CSV 한 줄 (파일명,시작,종료)
+     */
+    record CompletedSegment(String fileName, int index) {
+        static CompletedSegment parse(String line) {
+            int comma = line.indexOf(',');
+            String fileName = comma < 0 ? line : line.substring(0, comma);
+            if (!fileName.endsWith(".ts")) {
+                return null;
+            }
+            try {
+                return new CompletedSegment(fileName, Integer.parseInt(fileName.substring(0, fileName.length() - 3)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.cache.FileChannelPool;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+
+/**
+ * 미디어 파일 구간을 DataBuffer 스트림으로 읽는 컴포넌트
+ * 첫 읽기는 작은 크기로 시작해서 첫 바이트 응답 시간을 줄이고, 이후 읽기마다 두배씩 늘려 최대 크기로 전송함
+ * 버퍼는 주입된 DataBufferFactory(풀링 다이렉트 버퍼)에서 할당하며, 소비자가 해제해야 함
+ * 원본 비디오는 readPooled 로 FileChannelPool 의 공유 채널을 사용함 (임시 파일, 자막은 전용 채널)
+ */
+@Slf4j
+@Component
+public class MediaFileReader {
+
+    private final DataBufferFactory dataBufferFactory;
+
+    private final FileChannelPool fileChannelPool;
+
+    private final int initialReadSize;
+
+    private final int maxReadSize;
+
+    public MediaFileReader(DataBufferFactory dataBufferFactory,
+                           FileChannelPool fileChannelPool,
+                           @Value("${custom.io.read.initial_size:16384}") int initialReadSize,
+                           @Value("${custom.io.read.max_size:1048576}") int maxReadSize) {
+        if (initialReadSize <= 0 || maxReadSize < initialReadSize) {
+            throw new IllegalArgumentException("읽기 크기 설정이 올바르지 않습니다. initial: " + initialReadSize + ", max: " + maxReadSize);
+        }
+        this.dataBufferFactory = dataBufferFactory;
+        this.fileChannelPool = fileChannelPool;
+        this.initialReadSize = initialReadSize;
+        this.maxReadSize = maxReadSize;
+    }
+
+    /**
+     * 파일 전체를 읽음
+     */
+    public Flux<DataBuffer> read(Path path) {
+        return read(path, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * 파일의 position 부터 count 바이트를 읽음 (파일 끝에 도달하면 종료)
+     *
+     * @param path 읽을 파일 경로
+     * @param position 시작 바이트 위치
+     * @param count 읽을 최대 바이트 수
+     * @return 읽은 데이터 버퍼 스트림
+     */
+    public Flux<DataBuffer> read(Path path, long position, long count) {
+        return read(() -> new DedicatedChannel(FileChannel.open(path, StandardOpenOption.READ)), position, count);
+    }
+
+    /**
+     * 채널 풀에서 공유 채널을 빌려서 원본 비디오 파일을 읽음
+     *
+     * @param path 읽을 파일 경로
+     * @param version 파일 버전 (수정 시간)
+     * @param position 시작 바이트 위치
+     * @param count 읽을 최대 바이트 수
+     * @return 읽은 데이터 버퍼 스트림
+     */
+    public Flux<DataBuffer> readPooled(Path path, long version, long position, long count) {
+        return read(() -> new PooledChannel(path, version, fileChannelPool.acquire(path, version)), position, count);
+    }
+
+    private Flux<DataBuffer> read(Callable<ChannelSource> channelSourceSupplier, long position, long count) {
+        return Flux.<DataBuffer, ReadState>generate(
+                        () -> new ReadState(channelSourceSupplier.call(), position, count, initialReadSize),
+                        (state, sink) -> {
+                            if (state.remaining <= 0) {
+                                sink.complete();
+                                return state;
+                            }
+                            DataBuffer buffer = dataBufferFactory.allocateBuffer((int) Math.min(state.readSize, state.remaining));
+                            try {
+                                int read = readInto(state, buffer);
+                                if (read < 0) { // 파일 끝
+                                    DataBufferUtils.release(buffer);
+                                    sink.complete();
+                                    return state;
+                                }
+                                state.position += read;
+                                state.remaining -= read;
+                                state.readSize = nextReadSize(state.readSize);
+                                sink.next(buffer);
+                            } catch (IOException e) {
+                                DataBufferUtils.release(buffer);
+                                sink.error(e);
+                            }
+                            return state;
+                        },
+                        state -> state.source.close())
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                // 블로킹 파일 읽기이므로 구독과 요청(request) 모두 boundedElastic 에서 처리
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // 다음 읽기 크기 (최대 크기까지 두배씩 증가)
+    int nextReadSize(int currentReadSize) {
+        return (int) Math.min((long) currentReadSize * 2, maxReadSize);
+    }
+
+    // 공유 채널이 다른 요청의 인터럽트로 닫힌 경우 한 번 다시 열어서 읽음
+    private int readInto(ReadState state, DataBuffer buffer) throws IOException {
+        try {
+            return readInto(state.source.channel(), buffer, state.position);
+        } catch (ClosedChannelException e) {
+            // 전용 채널은 요청 자신의 채널이므로 다시 열지 않음
+            if (Thread.currentThread().isInterrupted() || !(state.source instanceof PooledChannel pooled)) {
+                throw e;
+            }
+            log.debug("공유 채널이 닫혀 다시 엽니다 : {}", e.toString());
+            pooled.close();
+            state.source = pooled.reopen();
+            return readInto(state.source.channel(), buffer, state.position);
+        }
+    }
+
+    // 버퍼의 쓰기 가능 영역을 파일의 position 부터 채움. 파일 끝이면 -1 반환
+    private int readInto(FileChannel channel, DataBuffer buffer, long position) throws IOException {
+        int total = 0;
+        try (DataBuffer.ByteBufferIterator iterator = buffer.writableByteBuffers()) {
+            while (iterator.hasNext()) {
+                ByteBuffer byteBuffer = iterator.next();
+                while (byteBuffer.hasRemaining()) {
+                    int read = channel.read(byteBuffer, position + total);
+                    if (read < 0) {
+                        break;
+                    }
+                    total += read;
+                }
+            }
+        }
+        if (total == 0) {
+            return -1;
+        }
+        buffer.writePosition(buffer.writePosition() + total);
+        return total;
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("파일 채널 닫기 실패: {}", e.getMessage());
+        }
+    }
+
+    private static class ReadState {
+        private ChannelSource source;
+        private long position;
+        private long remaining;
+        private int readSize;
+
+        private ReadState(ChannelSource source, long position, long remaining, int readSize) {
+            this.source = source;
+            this.position = position;
+            this.remaining = remaining;
+            this.readSize = readSize;
+        }
+    }
+
+    // 읽기에 사용할 채널 (전용 채널 또는 풀에서 빌린 공유 채널)
+    private interface ChannelSource {
+        FileChannel channel();
+
+        void close();
+    }
+
+    private class DedicatedChannel implements ChannelSource {
+        private final FileChannel channel;
+
+        private DedicatedChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        public FileChannel channel() {
+            return channel;
+        }
+
+        public void close() {
+            closeQuietly(channel);
+        }
+    }
+
+    private class PooledChannel implements ChannelSource {
+        private final Path path;
+        private final long version;
+        private final FileChannelPool.Lease lease;
+
+        private PooledChannel(Path path, long version, FileChannelPool.Lease lease) {
+            this.path = path;
+            this.version = version;
+            this.lease = lease;
+        }
+
+        public FileChannel channel() {
+            return lease.channel();
+        }
+
+        // 같은 파일, 버전의 공유 채널을 풀에서 다시 빌림
+        private PooledChannel reopen() throws IOException {
+            return new PooledChannel(path, version, fileChannelPool.acquire(path, version));
+        }
+
+        public void close() {
+            lease.close();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.tankmilu.webflux.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tankmilu.webflux.cache.SingleFlight;
+import com.tankmilu.webflux.entity.MediaProbeEntity;
+import com.tankmilu.webflux.record.MediaDescriptorRecord;
+import com.tankmilu.webflux.record.MediaProbeRecord;
+import com.tankmilu.webflux.repository.MediaProbeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+
+/**
+ * 파일별 미디어 정보(media_probe 테이블) 조회
+ * 적재(batch) 시 저장한 값을 사용하므로 요청 경로에서는 ffprobe 를 실행하지 않으며,
+ * 저장된 값이 없거나 원본 파일이 바뀐 경우(크기, 수정 시간 비교)에만 ffprobe 후 저장함 (backfill)
+ */
+@Slf4j
+@Service
+public class MediaProbeService {
+
+    private final MediaProbeRepository mediaProbeRepository;
+
+    private final FFmpegService ffmpegService;
+
+    private final SingleFlight singleFlight;
+
+    // fileId -> 조회 결과. 원본 파일 정보가 다르면 테이블에서 다시 조회
+    private final Cache<Long, MediaProbeEntity> cache;
+
+    // (원본 경로, 크기, 수정 시간) -> 해상도. DB 에 등록되지 않은 파일 탐색용
+    private final Cache<String, String> unregisteredResolutions;
+
+    public MediaProbeService(MediaProbeRepository mediaProbeRepository,
+                             FFmpegService ffmpegService,
+                             SingleFlight singleFlight,
+                             @Value("${custom.cache.media_probe.max_size:10000}") long maxSize) {
+        this.mediaProbeRepository = mediaProbeRepository;
+        this.ffmpegService = ffmpegService;
+        this.singleFlight = singleFlight;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .build();
+        this.unregisteredResolutions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    /**
+     * 요청 경로용 미디어 정보. 원본 파일을 읽을 수 없으면 저장된 값을 그대로 사용
+     *
+     * @param descriptor 원본 비디오 정보
+     */
+    public Mono<MediaProbeEntity> get(MediaDescriptorRecord descriptor) {
+        if (!descriptor.readable()) {
+            return mediaProbeRepository.findById(descriptor.fileId());
+        }
+        return get(descriptor.fileId(), descriptor.fileInfo().getFullFilePath(), descriptor.videoPath(),
+                descriptor.fileLength(), descriptor.lastModified());
+    }
+
+    /**
+     * 적재(batch)용. 원본 파일 정보를 읽어서 저장된 값이 없거나 다르면 ffprobe 후 저장
+     *
+     * @param fileId 비디오 파일 ID
+     * @param videoPath 원본 파일 경로
+     */
+    public Mono<MediaProbeEntity> refresh(Long fileId, Path videoPath) {
+        return Mono.fromCallable(() -> Files.readAttributes(videoPath, BasicFileAttributes.class))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(attributes -> get(fileId, videoPath.toString(), videoPath,
+                        attributes.size(), attributes.lastModifiedTime().toMillis()));
+    }
+
+    /**
+     * 파일 탐색용 해상도 (가로x세로). 저장된 값도 원본 파일 정보(크기, 수정 시간)가 같을 때만 사용함
+     * DB 에 등록되지 않은 파일은 저장하지 않고 ffprobe 결과를 메모리 캐시에만 둠
+     *
+     * @param sourcePath 원본 파일 경로
+     */
+    public Mono<String> getResolution(String sourcePath) {
+        Path videoPath = Path.of(sourcePath);
+        return Mono.fromCallable(() -> Files.readAttributes(videoPath, BasicFileAttributes.class))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(attributes -> {
+                    long size = attributes.size();
+                    long lastModified = attributes.lastModifiedTime().toMillis();
+                    return mediaProbeRepository.findBySourcePath(sourcePath)
+                            .next()
+                            // 원본이 바뀌었으면 다시 조회해서 기존 행을 수정
+                            .flatMap(stored -> stored.matches(size, lastModified)
+                                    ? Mono.just(stored)
+                                    : get(stored.getFileId(), sourcePath, videoPath, size, lastModified))
+                            .map(MediaProbeEntity::getResolution)
+                            .switchIfEmpty(Mono.defer(() -> unregisteredResolution(sourcePath, size, lastModified)));
+                });
+    }
+
+    // 등록되지 않은 파일의 해상도. (경로, 크기, 수정 시간) 별로 캐싱해서 탐색할 때마다 ffprobe 하지 않음
+    private Mono<String> unregisteredResolution(String sourcePath, long size, long lastModified) {
+        String key = sourcePath + "." + size + "." + lastModified;
+        String cached = unregisteredResolutions.getIfPresent(key);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return singleFlight.execute("media-probe-path:" + key, () -> probe(sourcePath)
+                .map(probe -> probe.width() + "x" + probe.height())
+                .doOnNext(resolution -> unregisteredResolutions.put(key, resolution)));
+    }
+
+    /**
+     * 다른 경로(키프레임 인덱스 생성)에서 ffprobe 한 결과를 저장. 같은 원본을 다시 조회하지 않도록 함
+     *
+     * @param fileId 비디오 파일 ID
+     * @param sourcePath 원본 파일 경로
+     * @param size 조회 시 원본 파일 크기
+     * @param lastModified 조회 시 원본 파일 수정 시간
+     * @param probe ffprobe 결과
+     */
+    public Mono<MediaProbeEntity> put(Long fileId, String sourcePath, long size, long lastModified, MediaProbeRecord probe) {
+        MediaProbeEntity entity = MediaProbeEntity.of(fileId, sourcePath, size, lastModified, probe);
+        return mediaProbeRepository.existsById(fileId)
+                .flatMap(exists -> {
+                    entity.setNewRecord(!exists);
+                    return save(entity);
+                })
+                .doOnNext(saved -> cache.put(fileId, saved));
+    }
+
+    public void invalidate(Long fileId) {
+        cache.invalidate(fileId);
+    }
+
+    private Mono<MediaProbeEntity> get(Long fileId, String sourcePath, Path videoPath, long size, long lastModified) {
+        MediaProbeEntity cached = cache.getIfPresent(fileId);
+        if (cached != null && cached.matches(size, lastModified)) {
+            return Mono.just(cached);
+        }
+        // 같은 파일의 동시 조회는 한 번만 실행
+        return singleFlight.execute("media-probe:" + fileId + "." + lastModified, () -> mediaProbeRepository.findById(fileId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(stored -> {
+                    if (stored.isPresent() && stored.get().matches(size, lastModified)) {
+                        return Mono.just(stored.get());
+                    }
+                    log.info("미디어 정보 미존재 또는 원본 변경. ffprobe 후 저장 fileId: {}", fileId);
+                    return probe(videoPath.toString())
+                            .map(probe -> MediaProbeEntity.of(fileId, sourcePath, size, lastModified, probe))
+                            .flatMap(entity -> {
+                                entity.setNewRecord(stored.isEmpty());
+                                return save(entity);
+                            });
+                })
+                .doOnNext(entity -> cache.put(fileId, entity)));
+    }
+
+    // ffprobe 는 호출자 Context 의 작업 우선순위, 사용자로 실행 (적재는 BATCH, 선트랜스코딩은 PREFETCH)
+    private Mono<MediaProbeRecord> probe(String videoPath) {
+        return Mono.deferContextual(context -> Mono.fromCallable(() -> ffmpegService.getMediaProbe(videoPath,
+                        FFmpegJobScheduler.priority(context), FFmpegJobScheduler.owner(context)))
+                .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    // 저장에 실패해도 조회 결과는 사용 (메모리 캐시에서 제거된 후 다시 저장 시도)
+    private Mono<MediaProbeEntity> save(MediaProbeEntity entity) {
+        return mediaProbeRepository.save(entity)
+                .onErrorResume(e -> {
+                    log.warn("미디어 정보 저장 실패. fileId: {}, {}", entity.getFileId(), e.getMessage());
+                    return Mono.just(entity);
+                });
+    }
+}
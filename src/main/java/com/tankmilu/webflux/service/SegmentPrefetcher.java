@@ -0,0 +1,226 @@
+package com.tankmilu.webflux.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.tankmilu.webflux.cache.SegmentCacheStore;
+import com.tankmilu.webflux.enums.FFmpegJobPriorityEnum;
+import com.tankmilu.webflux.record.MediaDescriptorRecord;
+import com.tankmilu.webflux.record.SegmentBoundaryRecord;
+import com.tankmilu.webflux.record.SegmentKeyRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 재생 중인 세션의 다음 HLS 세그먼트를 미리 트랜스코딩해서 세그먼트 캐시에 저장
+ * 세그먼트 N 요청 시 getHlsM3u8 이 생성한 플레이리스트의 구간 기준으로 N+1 ~ N+window 를 낮은 우선순위 큐에 등록함
+ * 큐는 동시 실행 수를 제한해서 처리하며, 세션이 idle 상태가 되거나 다른 위치로 이동하면 대기 중인 작업은 실행하지 않음
+ * 선트랜스코딩 적중률은 Micrometer 지표로 기록함
+ */
+@Slf4j
+@Component
+public class SegmentPrefetcher {
+
+    private final SegmentTranscoder segmentTranscoder;
+
+    private final SegmentCacheStore segmentCacheStore;
+
+    private final boolean enabled;
+
+    private final int window;
+
+    // 다음 세그먼트를 원본 해상도 이하의 모든 해상도로 함께 만들지 여부 (해상도 전환 대비, 원본 디코딩은 한 번)
+    private final boolean ladder;
+
+    private final HlsPlaylistIndex hlsPlaylistIndex;
+
+    // (사용자, fileId, 타입) 별 재생 세션. idle 시간이 지나면 제거되면서 대기 중인 작업을 취소함
+    private final Cache<String, PrefetchSession> sessions;
+
+    // 선트랜스코딩을 요청한 세그먼트 (적중률 계산용)
+    private final Cache<SegmentKeyRecord, Boolean> prefetchedKeys;
+
+    private final Sinks.Many<PrefetchJob> queue = Sinks.many().unicast().onBackpressureBuffer();
+
+    private final Disposable worker;
+
+    private final Counter hitCounter;
+
+    private final Counter missCounter;
+
+    private final Counter skippedCounter;
+
+    public SegmentPrefetcher(SegmentTranscoder segmentTranscoder,
+                             SegmentCacheStore segmentCacheStore,
+                             MeterRegistry meterRegistry,
+                             @Value("${custom.segment_prefetch.enabled:true}") boolean enabled,
+                             @Value("${custom.segment_prefetch.window:2}") int window,
+                             @Value("${custom.segment_prefetch.concurrency:1}") int concurrency,
+                             @Value("${custom.segment_prefetch.idle_seconds:60}") long idleSeconds,
+                             @Value("${custom.segment_prefetch.ladder:false}") boolean ladder,
+                             HlsPlaylistIndex hlsPlaylistIndex) {
+        this.segmentTranscoder = segmentTranscoder;
+        this.segmentCacheStore = segmentCacheStore;
+        this.enabled = enabled;
+        this.window = window;
+        this.ladder = ladder;
+        this.hlsPlaylistIndex = hlsPlaylistIndex;
+        this.hitCounter = Counter.builder("video.segment.prefetch.hits")
+                .description("미리 트랜스코딩한 세그먼트 요청 수").register(meterRegistry);
+        this.missCounter = Counter.builder("video.segment.prefetch.misses")
+                .description("미리 트랜스코딩하지 않은 세그먼트 요청 수").register(meterRegistry);
+        this.skippedCounter = Counter.builder("video.segment.prefetch.skipped")
+                .description("세션 종료나 위치 이동으로 실행하지 않은 선트랜스코딩 수").register(meterRegistry);
+        Gauge.builder("video.segment.prefetch.hit.ratio", this, SegmentPrefetcher::hitRatio)
+                .description("선트랜스코딩 적중률").register(meterRegistry);
+        this.sessions = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterAccess(Duration.ofSeconds(idleSeconds))
+                .scheduler(Scheduler.systemScheduler()) // idle 세션을 요청이 없어도 제거
+                .removalListener((String key, PrefetchSession session, RemovalCause cause) -> {
+                    if (session != null) {
+                        session.cancel();
+                    }
+                })
+                .build();
+        this.prefetchedKeys = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofMinutes(30))
+                .build();
+        // 선트랜스코딩은 동시 실행 수를 제한하고, 실행 직전에 취소 여부를 확인함
+        this.worker = queue.asFlux()
+                .flatMap(this::run, Math.max(1, concurrency))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sessions.invalidateAll();
+        worker.dispose();
+    }
+
+    /**
+     * 세그먼트 요청을 기록하고 다음 세그먼트들의 선트랜스코딩을 등록함
+     *
+     * @param username 사용자 ID
+     * @param descriptor 원본 비디오 정보
+     * @param key 요청된 세그먼트 키
+     */
+    public void onSegmentRequest(String username, MediaDescriptorRecord descriptor, SegmentKeyRecord key) {
+        if (!enabled || !segmentCacheStore.isEnabled()) {
+            return;
+        }
+        (prefetchedKeys.getIfPresent(key) != null ? hitCounter : missCounter).increment();
+        if (window <= 0) {
+            return;
+        }
+        Mono.fromCallable(() -> nextSegments(key))
+                .subscribeOn(Schedulers.boundedElastic()) // 플레이리스트 파일 읽기
+                .subscribe(next -> enqueue(username, descriptor, key, next),
+                        e -> log.debug("선트랜스코딩 등록 실패. fileId: {}, type: {}: {}", key.fileId(), key.type(), e.getMessage()));
+    }
+
+    double hitRatio() {
+        double total = hitCounter.count() + missCounter.count();
+        return total == 0 ? 0 : hitCounter.count() / total;
+    }
+
+    private void enqueue(String username, MediaDescriptorRecord descriptor, SegmentKeyRecord current, List<SegmentKeyRecord> next) {
+        PrefetchSession session = sessions.get(username + ":" + current.fileId() + ":" + current.type(), k -> new PrefetchSession());
+        // 새 요청 기준 구간 밖의 대기 작업은 실행하지 않음 (다른 위치로 이동한 경우)
+        session.want(next);
+        for (SegmentKeyRecord key : next) {
+            if (prefetchedKeys.asMap().putIfAbsent(key, Boolean.TRUE) == null) {
+                emit(new PrefetchJob(session, username, descriptor, key));
+            }
+        }
+    }
+
+    private synchronized void emit(PrefetchJob job) {
+        queue.emitNext(job, Sinks.EmitFailureHandler.FAIL_FAST);
+    }
+
+    private Mono<Void> run(PrefetchJob job) {
+        if (!job.session().wants(job.key())) {
+            skippedCounter.increment();
+            prefetchedKeys.invalidate(job.key()); // 다시 등록할 수 있도록 제거
+            return Mono.empty();
+        }
+        log.debug("세그먼트 선트랜스코딩. {}", job.key().fileName());
+        return prefetch(job)
+                // 사용자 요청보다 낮은 우선순위로 실행
+                .contextWrite(FFmpegJobScheduler.jobContext(FFmpegJobPriorityEnum.PREFETCH, job.username()))
+                .doOnError(e -> {
+                    prefetchedKeys.invalidate(job.key());
+                    log.debug("세그먼트 선트랜스코딩 실패. {}: {}", job.key().fileName(), e.getMessage());
+                })
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    private Mono<Void> prefetch(PrefetchJob job) {
+        if (!ladder) {
+            return segmentTranscoder.getOrTranscode(job.descriptor(), job.key()).then();
+        }
+        return segmentTranscoder.renditionTypes(job.descriptor())
+                .flatMap(types -> {
+                    if (!types.contains(job.key().type())) {
+                        types.add(job.key().type());
+                    }
+                    return segmentTranscoder.getOrTranscodeRenditions(job.descriptor(), job.key(), types);
+                });
+    }
+
+    // 플레이리스트에서 현재 세그먼트 다음의 세그먼트 키를 찾음 (플레이리스트가 없거나 구간이 맞지 않으면 빈 목록)
+    private List<SegmentKeyRecord> nextSegments(SegmentKeyRecord current) throws IOException {
+        List<SegmentBoundaryRecord> segments = hlsPlaylistIndex.boundaries(current.fileId(), current.version(), current.type());
+        int index = HlsPlaylistIndex.indexOf(segments, current.start());
+        if (index < 0) {
+            return List.of();
+        }
+        List<SegmentKeyRecord> next = new ArrayList<>();
+        for (int j = index + 1; j <= index + window && j < segments.size(); j++) {
+            SegmentBoundaryRecord segment = segments.get(j);
+            next.add(SegmentKeyRecord.of(current.fileId(), current.version(), segment.start(), segment.to(), current.type()));
+        }
+        return next;
+    }
+
+    /**
+     * 재생 세션. 마지막 요청 기준으로 선트랜스코딩할 세그먼트를 유지함
+     */
+    static final class PrefetchSession {
+        private volatile Set<SegmentKeyRecord> wanted = Set.of();
+        private volatile boolean cancelled;
+
+        void want(List<SegmentKeyRecord> next) {
+            wanted = Set.copyOf(next);
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        boolean wants(SegmentKeyRecord key) {
+            return !cancelled && wanted.contains(key);
+        }
+    }
+
+    private record PrefetchJob(PrefetchSession session, String username, MediaDescriptorRecord descriptor, SegmentKeyRecord key) {
+    }
+}
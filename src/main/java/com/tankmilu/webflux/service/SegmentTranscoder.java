@@ -0,0 +1,291 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.cache.SegmentCacheStore;
+import com.tankmilu.webflux.cache.SingleFlight;
+import com.tankmilu.webflux.enums.TsTranscodeModeEnum;
+import com.tankmilu.webflux.enums.VideoResolutionEnum;
+import com.tankmilu.webflux.record.MediaDescriptorRecord;
+import com.tankmilu.webflux.record.SegmentKeyRecord;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * HLS TS 세그먼트를 세그먼트 캐시에서 찾고, 없으면 트랜스코딩해서 캐시에 저장함
+ * 같은 세그먼트의 동시 요청(재생 요청, 선트랜스코딩)은 하나의 트랜스코딩 결과를 함께 사용
+ * 브라우저 호환 원본의 원본 해상도 세그먼트는 재인코딩 없이(-c copy) 만듦 (StreamCopyPolicy)
+ * 여러 해상도를 함께 만들 때는 원본을 한 번만 디코딩함 (getOrTranscodeRenditions)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SegmentTranscoder {
+
+    private final FFmpegService ffmpegService;
+
+    private final SegmentCacheStore segmentCacheStore;
+
+    private final SingleFlight singleFlight;
+
+    private final MediaFileReader mediaFileReader;
+
+    private final StreamCopyPolicy streamCopyPolicy;
+
+    // TS 세그먼트 트랜스코딩 방식 (two_pass | pipe)
+    @Value("${custom.ffmpeg.ts_mode:two_pass}")
+    private String tsMode;
+
+    /**
+     * 캐시된 세그먼트 경로를 반환함. 캐시 미존재 시 트랜스코딩 후 저장된 경로를 반환
+     *
+     * @param descriptor 원본 비디오 정보
+     * @param key 세그먼트 키
+     * @return 세그먼트 캐시 파일 경로
+     */
+    public Mono<Path> getOrTranscode(MediaDescriptorRecord descriptor, SegmentKeyRecord key) {
+        return singleFlight.execute(flightKey(key), () -> segmentCacheStore.find(key)
+                .switchIfEmpty(streamCopyPolicy.canCopy(descriptor, key.type()).flatMap(copy -> {
+                    Path partPath = segmentCacheStore.newPartPath(key);
+                    // 브라우저 호환 원본은 재인코딩 없이 키프레임 경계로 잘라서 저장
+                    Mono<Void> output = copy
+                            ? ffmpegService.remuxTs(descriptor.getFullFilePath(), key.start(), key.to(), partPath)
+                            : ffmpegService.transcodeTs(descriptor.getFullFilePath(), key.start(), key.to(), key.type(), partPath);
+                    return output
+                            .then(segmentCacheStore.publish(key, partPath))
+                            .doOnError(e -> deleteQuietly(partPath));
+                })));
+    }
+
+    /**
+     * 같은 구간의 여러 해상도 세그먼트를 캐시에 저장함 (선트랜스코딩, 미리 만들기용)
+     * 캐시에 없는 해상도는 원본을 한 번만 디코딩하는 FFmpeg 실행 하나로 함께 트랜스코딩하고,
+     * 다른 요청이 생성 중인 해상도와 재인코딩 없이 만들 수 있는 원본 해상도는 세그먼트 단위로 처리함
+     *
+     * @param descriptor 원본 비디오 정보
+     * @param key 기준 세그먼트 키 (구간)
+     * @param types 만들 해상도 타입
+     */
+    public Mono<Void> getOrTranscodeRenditions(MediaDescriptorRecord descriptor, SegmentKeyRecord key, Collection<String> types) {
+        return Flux.fromIterable(types)
+                .map(type -> SegmentKeyRecord.of(key.fileId(), key.version(), key.start(), key.to(), type))
+                .filterWhen(rendition -> segmentCacheStore.find(rendition).hasElement().map(cached -> !cached))
+                .collectList()
+                .zipWith(streamCopyPolicy.canCopy(descriptor, VideoResolutionEnum.RES_ORIGINAL.getType()))
+                .flatMap(missing -> {
+                    List<SegmentKeyRecord> encode = new ArrayList<>();
+                    List<Mono<?>> works = new ArrayList<>();
+                    for (SegmentKeyRecord rendition : missing.getT1()) {
+                        if (missing.getT2() && VideoResolutionEnum.RES_ORIGINAL.getType().equals(rendition.type())) {
+                            works.add(getOrTranscode(descriptor, rendition));
+                        } else {
+                            encode.add(rendition);
+                        }
+                    }
+                    if (encode.size() == 1) {
+                        works.add(getOrTranscode(descriptor, encode.get(0)));
+                    } else if (!encode.isEmpty()) {
+                        works.add(transcodeRenditions(descriptor, encode));
+                    }
+                    return Mono.when(works);
+                });
+    }
+
+    /**
+     * 원본 높이보다 낮은 해상도와 원본 해상도 (마스터 플레이리스트와 같은 기준)
+     */
+    public Mono<List<String>> renditionTypes(MediaDescriptorRecord descriptor) {
+        return streamCopyPolicy.metaData(descriptor).map(probe -> {
+            int height = probe.getHeight() == null ? 0 : probe.getHeight();
+            List<String> types = new ArrayList<>();
+            for (VideoResolutionEnum resolution : VideoResolutionEnum.values()) {
+                if (height > resolution.getHeight() || resolution == VideoResolutionEnum.RES_ORIGINAL) {
+                    types.add(resolution.getType());
+                }
+            }
+            return types;
+        });
+    }
+
+    // 해상도별 세그먼트를 한 번의 FFmpeg 실행으로 만들고 각각 캐시에 저장
+    private Mono<Void> transcodeRenditions(MediaDescriptorRecord descriptor, List<SegmentKeyRecord> keys) {
+        return Mono.defer(() -> {
+            Map<SegmentKeyRecord, SingleFlight.Flight<Path>> flights = new LinkedHashMap<>();
+            List<Mono<?>> works = new ArrayList<>();
+            for (SegmentKeyRecord key : keys) {
+                SingleFlight.Flight<Path> flight = singleFlight.lead(flightKey(key));
+                if (flight != null) {
+                    flights.put(key, flight);
+                } else {
+                    // 다른 요청이 생성 중인 해상도는 그 결과를 기다림
+                    works.add(getOrTranscode(descriptor, key));
+                }
+            }
+            Map<String, Path> outputFiles = new LinkedHashMap<>();
+            flights.keySet().forEach(key -> outputFiles.put(key.type(), segmentCacheStore.newPartPath(key)));
+            if (flights.isEmpty()) {
+                return Mono.when(works);
+            }
+            SegmentKeyRecord first = keys.get(0);
+            works.add(ffmpegService.transcodeTsRenditions(descriptor.getFullFilePath(), first.start(), first.to(), outputFiles)
+                    .thenMany(Flux.fromIterable(flights.entrySet())
+                            .concatMap(entry -> segmentCacheStore.publish(entry.getKey(), outputFiles.get(entry.getKey().type()))
+                                    .doOnNext(entry.getValue()::complete)))
+                    .then()
+                    // 이미 완료된 Flight 에는 영향 없음
+                    .doOnError(e -> flights.values().forEach(flight -> flight.fail(e)))
+                    .doOnCancel(() -> flights.values().forEach(flight -> flight.fail(new CancellationException("세그먼트 생성이 취소되었습니다."))))
+                    .doFinally(signal -> outputFiles.values().forEach(SegmentTranscoder::deleteQuietly)));
+            return Mono.when(works);
+        });
+    }
+
+    /**
+     * 세그먼트 데이터를 전송함
+     * pipe 모드에서 캐시 미존재 시 FFmpeg 출력을 생성되는 대로 전송하면서 캐시 파일에도 기록하고, 정상 종료되면 캐시에 저장함
+     * 그 외에는 트랜스코딩 완료 후 캐시 파일을 전송
+     *
+     * @param descriptor 원본 비디오 정보
+     * @param key 세그먼트 키
+     * @return TS 데이터
+     */
+    public Flux<DataBuffer> stream(MediaDescriptorRecord descriptor, SegmentKeyRecord key) {
+        if (TsTranscodeModeEnum.fromMode(tsMode) != TsTranscodeModeEnum.PIPE) {
+            return getOrTranscode(descriptor, key).flatMapMany(this::readSegment);
+        }
+        return segmentCacheStore.find(key)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMapMany(cached -> {
+                    if (cached.isPresent()) {
+                        return readSegment(cached.get());
+                    }
+                    // 복사 여부(원본 정보 조회)를 먼저 확인하고 실행권을 얻음. 조회 중 취소되어도 실행권이 남지 않음
+                    return streamCopyPolicy.canCopy(descriptor, key.type()).flatMapMany(copy -> {
+                        SingleFlight.Flight<Path> flight = singleFlight.lead(flightKey(key));
+                        if (flight == null) {
+                            // 다른 요청(재생 또는 선트랜스코딩)이 생성 중이면 완료 후 캐시 파일 전송
+                            // 진행 중인 스트리밍이 취소/실패한 경우 다시 트랜스코딩
+                            return getOrTranscode(descriptor, key)
+                                    .onErrorResume(e -> getOrTranscode(descriptor, key))
+                                    .flatMapMany(this::readSegment);
+                        }
+                        return teeToCache(descriptor, key, flight, copy);
+                    });
+                });
+    }
+
+    // FFmpeg 표준 출력을 클라이언트로 전달하면서 같은 데이터를 캐시 임시 파일에 기록
+    private Flux<DataBuffer> teeToCache(MediaDescriptorRecord descriptor, SegmentKeyRecord key, SingleFlight.Flight<Path> flight, boolean copy) {
+        Path partPath = segmentCacheStore.newPartPath(key);
+        return Flux.defer(() -> {
+                    FileChannel channel = null;
+                    Flux<DataBuffer> tsData;
+                    try {
+                        channel = FileChannel.open(partPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                        tsData = copy
+                                ? ffmpegService.getRemuxTsData(descriptor.getFullFilePath(), key.start(), key.to())
+                                : ffmpegService.getTsData(descriptor.getFullFilePath(), key.start(), key.to(), key.type());
+                    } catch (Throwable e) {
+                        // 명령어 생성 중 런타임 예외도 실패 처리해야 세그먼트 키가 진행 중 상태로 남지 않음
+                        if (channel != null) {
+                            closeQuietly(channel);
+                        }
+                        deleteQuietly(partPath);
+                        flight.fail(e);
+                        return Flux.error(e);
+                    }
+                    FileChannel output = channel;
+                    // 캐시 기록 실패는 클라이언트 전송에 영향을 주지 않고, 캐시 저장만 하지 않음
+                    AtomicReference<IOException> teeError = new AtomicReference<>();
+                    return tsData
+                            .doOnNext(buffer -> {
+                                if (teeError.get() == null) {
+                                    try {
+                                        write(output, buffer);
+                                    } catch (IOException e) {
+                                        log.warn("세그먼트 캐시 기록 실패. key: {}", key.fileName(), e);
+                                        teeError.set(e);
+                                    }
+                                }
+                            })
+                            .concatWith(Mono.defer(() -> {
+                                        closeQuietly(output);
+                                        return teeError.get() == null
+                                                ? segmentCacheStore.publish(key, partPath)
+                                                : Mono.<Path>error(teeError.get());
+                                    })
+                                    .doOnNext(flight::complete)
+                                    .doOnError(e -> {
+                                        deleteQuietly(partPath);
+                                        flight.fail(e);
+                                    })
+                                    .onErrorResume(e -> Mono.empty())
+                                    .then(Mono.empty()))
+                            .doOnError(flight::fail)
+                            .doOnCancel(() -> flight.fail(new CancellationException("세그먼트 전송이 취소되었습니다.")))
+                            .doFinally(signal -> {
+                                closeQuietly(output);
+                                if (signal != SignalType.ON_COMPLETE) {
+                                    deleteQuietly(partPath);
+                                }
+                            });
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                // boundedElastic 에서 시작하기 전에 취소된 경우 (이미 완료/실패한 실행권에는 반영되지 않음)
+                .doOnCancel(() -> flight.fail(new CancellationException("세그먼트 전송이 취소되었습니다.")));
+    }
+
+    // 버퍼의 읽기 위치를 바꾸지 않고 기록 (같은 버퍼를 클라이언트로 전송)
+    private static void write(FileChannel channel, DataBuffer buffer) throws IOException {
+        try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+            while (iterator.hasNext()) {
+                ByteBuffer byteBuffer = iterator.next();
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer);
+                }
+            }
+        }
+    }
+
+    // 세그먼트 파일은 교체/삭제될 수 있으므로 공유 채널 대신 전용 채널로 읽음
+    private Flux<DataBuffer> readSegment(Path segmentPath) {
+        return mediaFileReader.read(segmentPath);
+    }
+
+    private static String flightKey(SegmentKeyRecord key) {
+        return "segment:" + key.fileName();
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) { }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) { }
+    }
+}
@@ -0,0 +1,82 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.entity.MediaProbeEntity;
+import com.tankmilu.webflux.enums.VideoResolutionEnum;
+import com.tankmilu.webflux.record.MediaDescriptorRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+/**
+ * 원본 해상도(type "0") 세그먼트를 재인코딩 없이(-c copy) 만들 수 있는지 판단
+ * 원본이 브라우저에서 바로 재생 가능한 코덱(H.264 8bit 4:2:0 + AAC)이면 키프레임 경계로 잘라서 mpegts 로 옮기기만 함
+ * 원본 정보는 media_probe 테이블 값을 사용함 (MediaProbeService)
+ */
+@Slf4j
+@Component
+public class StreamCopyPolicy {
+
+    private static final Set<String> VIDEO_CODECS = Set.of("h264");
+
+    // 10bit(yuv420p10le) 등은 브라우저에서 디코딩할 수 없음
+    private static final Set<String> PIXEL_FORMATS = Set.of("yuv420p", "yuvj420p");
+
+    private static final Set<String> AUDIO_CODECS = Set.of("aac");
+
+    private final MediaProbeService mediaProbeService;
+
+    private final boolean enabled;
+
+    public StreamCopyPolicy(MediaProbeService mediaProbeService,
+                            @Value("${custom.ffmpeg.stream_copy.enabled:true}") boolean enabled) {
+        this.mediaProbeService = mediaProbeService;
+        this.enabled = enabled;
+    }
+
+    /**
+     * 세그먼트를 재인코딩 없이 만들 수 있는지 여부. 원본 정보를 읽을 수 없으면 트랜스코딩(false)
+     *
+     * @param descriptor 원본 비디오 정보
+     * @param type 해상도 타입
+     */
+    public Mono<Boolean> canCopy(MediaDescriptorRecord descriptor, String type) {
+        if (!enabled || !VideoResolutionEnum.RES_ORIGINAL.getType().equals(type)) {
+            return Mono.just(false);
+        }
+        return copyableFormat(descriptor).hasElement();
+    }
+
+    /**
+     * 재인코딩 없이 전송 가능한 원본의 컨테이너 형식 (ffprobe format_name, 예: mpegts). 코덱이 호환되지 않거나 원본 정보를 읽을 수 없으면 empty
+     */
+    public Mono<String> copyableFormat(MediaDescriptorRecord descriptor) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return metaData(descriptor)
+                .filter(StreamCopyPolicy::isBrowserCompatible)
+                .map(probe -> probe.getFormatName() == null ? "" : probe.getFormatName())
+                .onErrorResume(e -> {
+                    log.warn("원본 코덱 조회 실패. 트랜스코딩으로 처리 fileId: {}, {}", descriptor.fileId(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * 원본 정보 (media_probe 테이블). 저장된 값이 없거나 원본이 바뀐 경우만 ffprobe 후 저장
+     */
+    public Mono<MediaProbeEntity> metaData(MediaDescriptorRecord descriptor) {
+        return mediaProbeService.get(descriptor);
+    }
+
+    // 첫 비디오, 오디오 스트림 기준. 오디오 스트림이 없는 파일도 복사 가능
+    static boolean isBrowserCompatible(MediaProbeEntity probe) {
+        String audioCodec = probe.getAudioCodec();
+        return VIDEO_CODECS.contains(probe.getVideoCodec())
+                && PIXEL_FORMATS.contains(probe.getPixFmt())
+                && (audioCodec == null || AUDIO_CODECS.contains(audioCodec));
+    }
+}
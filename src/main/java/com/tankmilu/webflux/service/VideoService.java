@@ -1,7 +1,20 @@
 package com.tankmilu.webflux.service;
 
+import com.tankmilu.webflux.cache.AtomicFileWriter;
+import com.tankmilu.webflux.cache.KeyFrameIndex;
+import com.tankmilu.webflux.cache.KeyFrameIndexStore;
+import com.tankmilu.webflux.cache.MediaDescriptorCache;
+import com.tankmilu.webflux.cache.PlaylistCache;
+import com.tankmilu.webflux.cache.SegmentCacheStore;
+import com.tankmilu.webflux.cache.SequentialReadAhead;
+import com.tankmilu.webflux.cache.SingleFlight;
+import com.tankmilu.webflux.cache.VideoBlockCache;
 import com.tankmilu.webflux.entity.ContentsFileEntity;
+import com.tankmilu.webflux.entity.MediaProbeEntity;
+import com.tankmilu.webflux.enums.FFmpegJobPriorityEnum;
+import com.tankmilu.webflux.enums.SegmentFormatEnum;
 import com.tankmilu.webflux.enums.SubscriptionCodeEnum;
+import com.tankmilu.webflux.enums.VideoDeliveryModeEnum;
 import com.tankmilu.webflux.enums.VideoResolutionEnum;
 import com.tankmilu.webflux.exception.RangeNotSatisfiableException;
 import com.tankmilu.webflux.record.*;
@@ -17,15 +30,19 @@ import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebInputException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
+import reactor.util.context.ContextView;
 
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -33,11 +50,15 @@ import java.math.RoundingMode;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousFileChannel;
 import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 
 @Slf4j
 @Service
@@ -52,6 +73,45 @@ public class VideoService {
 
     private final DataBufferFactory dataBufferFactory;
 
+    private final MediaDescriptorCache mediaDescriptorCache;
+
+    private final MediaFileReader mediaFileReader;
+
+    private final BandwidthShaper bandwidthShaper;
+
+    private final VideoBlockCache videoBlockCache;
+
+    private final SequentialReadAhead sequentialReadAhead;
+
+    private final SegmentCacheStore segmentCacheStore;
+
+    private final SingleFlight singleFlight;
+
+    private final SegmentTranscoder segmentTranscoder;
+
+    private final SegmentPrefetcher segmentPrefetcher;
+
+    private final HlsSessionTranscoder hlsSessionTranscoder;
+
+    private final KeyFrameIndexStore keyFrameIndexStore;
+
+    private final PlaylistCache playlistCache;
+
+    private final StreamCopyPolicy streamCopyPolicy;
+
+    private final CmafSegmentTranscoder cmafSegmentTranscoder;
+
+    private final MediaProbeService mediaProbeService;
+
+    private final HlsPlaylistIndex hlsPlaylistIndex;
+
+    // HLS 세그먼트 최소 길이 (초)
+    private static final int SEGMENT_LENGTH = 10;
+
+    // 세그먼트 구간(ss, to) 형식. 지수 표기 없이 자릿수를 제한한 0 이상의 십진수 (BigDecimal 변환 전에 검사)
+    // 소수 자릿수는 적재 시 10초 단위 플레이리스트의 종료 시간(double 의 BigDecimal 표현)까지 허용
+    private static final Pattern SEGMENT_TIME_PATTERN = Pattern.compile("\\d{1,7}(\\.\\d{1,64})?");
+
     @Value("${app.video.urls.base}")
     public String videoBaseUrl;
 
@@ -64,69 +124,130 @@ public class VideoService {
     @Value("${app.video.urls.hlsm3u8}")
     public String hlsm3u8Url;
 
+    @Value("${app.video.urls.hlsinit}")
+    public String hlsinitUrl;
+
+    @Value("${app.video.urls.hlsm3u8fmp4}")
+    public String hlsm3u8fmp4Url;
+
+    @Value("${app.video.urls.hlsfmp4}")
+    public String hlsfmp4Url;
+
     @Value("${custom.batch.subtitle_folder}")
     private String tempSubtitleFolder;
 
     @Value("${custom.batch.hls_folder}")
     private String tempHlsFolder;
 
+    // 원본 파일 범위 전송 방식 (zerocopy : sendfile, buffer : DataBuffer 복사)
+    @Value("${custom.video.delivery_mode:zerocopy}")
+    private String deliveryMode;
+
+    // 요청당 허용하는 최대 Range 개수 (multipart/byteranges)
+    @Value("${custom.video.max_ranges:8}")
+    private int maxRanges;
+
+    // 원본 해상도 플레이리스트를 원본 파일 바이트 범위로 생성할지 여부 (호환 코덱의 MPEG-TS, fragmented MP4 만 해당)
+    @Value("${custom.hls.byte_range.enabled:true}")
+    private boolean byteRangeEnabled;
+
+    /**
+     * 원본 파일 범위 요청을 제로카피(sendfile) 방식으로 전송할지 여부
+     * sendfile 은 전송 속도를 조절할 수 없으므로 대역폭 제한 대상 플랜은 사용하지 않음
+     * 블록 캐시 사용 시에는 NAS 재읽기를 줄이기 위해 블록 캐시에서 전송함
+     */
+    public boolean isZeroCopyEnabled(String subscriptionCode) {
+        return VideoDeliveryModeEnum.fromMode(deliveryMode) == VideoDeliveryModeEnum.ZERO_COPY
+                && !videoBlockCache.isEnabled()
+                && !bandwidthShaper.isShaped(subscriptionCode);
+    }
 
-    public Mono<VideoMetaRecord> getVideoMeta(Long fileId, String rangeHeader) {
-        return contentsFileRepository.findFileWithContentInfo(fileId)
+    // 캐싱된 미디어 정보에서 파일 정보 조회 (캐시 미존재 시에만 DB 조회)
+    private Mono<FileInfoRecord> findFileInfo(Long fileId) {
+        return mediaDescriptorCache.get(fileId).map(MediaDescriptorRecord::fileInfo);
+    }
+
+    /**
+     * 원본 파일 범위 요청에 대한 응답 정보를 생성함
+     * If-Range 값이 현재 파일의 ETag 또는 수정 시간과 다르면 Range 를 무시하고 전체 파일 정보를 반환함
+     *
+     * 사용자별 범위 요청을 기록해서 순차 재생이면 다음 구간을 미리 읽음
+     *
+     * @param fileId 비디오 파일 ID
+     * @param username 사용자 ID
+     * @param rangeHeader HTTP Range 헤더 값
+     * @param ifRangeHeader HTTP If-Range 헤더 값
+     * @return 응답 범위, 길이, 검증자(ETag, Last-Modified) 정보
+     */
+    public Mono<VideoMetaRecord> getVideoMeta(Long fileId, String username, String rangeHeader, String ifRangeHeader) {
+        return mediaDescriptorCache.get(fileId)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "콘텐츠 파일 정보를 찾을 수 없습니다. ID: " + fileId)))
-                .flatMap(fileInfo -> {
-                    Path videoPath = Paths.get(fileInfo.getFullFilePath());
+                .flatMap(descriptor -> {
+                    Path videoPath = descriptor.videoPath();
 
-                    if (!Files.exists(videoPath) || !Files.isReadable(videoPath)) {
+                    if (!descriptor.readable()) {
                         log.error("비디오 파일이 존재하지 않거나 읽을 수 없습니다: {}", videoPath);
+                        // 파일이 새로 추가되었을 수 있으므로 다음 요청에서 다시 확인하도록 캐시 제거
+                        mediaDescriptorCache.invalidate(fileId);
                         return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "비디오 파일을 찾을 수 없거나 접근할 수 없습니다."));
                     }
 
-                    Mono<Long> fileLengthMono = Mono.fromCallable(() -> Files.size(videoPath))
-                            .subscribeOn(Schedulers.boundedElastic());
+                    long fileLength = descriptor.fileLength();
+                    String contentType = descriptor.contentType();
+                    String eTag = descriptor.eTag();
+                    long lastModified = descriptor.lastModified();
 
-                    Mono<String> contentTypeMono = Mono.fromCallable(() ->
-                                    Optional.ofNullable(Files.probeContentType(videoPath)).orElse("video/mp4"))
-                            .subscribeOn(Schedulers.boundedElastic());
+                    // Range 헤더가 없거나 If-Range 검증에 실패하면(파일 변경) 전체 파일을 200 으로 응답
+                    if (rangeHeader == null || rangeHeader.isEmpty() || !isIfRangeMatched(ifRangeHeader, eTag, lastModified)) {
+                        return Mono.just(new VideoMetaRecord(fileId, videoPath, contentType, null, 0, fileLength - 1, fileLength,
+                                fileLength, List.of(new ByteRangeRecord(0, fileLength - 1)), null, false, eTag, lastModified));
+                    }
 
-                    return Mono.zip(fileLengthMono, contentTypeMono)
-                            .flatMap(tuple -> {
-                                long fileLength = tuple.getT1();
-                                String contentType = tuple.getT2();
+                    List<ByteRangeRecord> ranges;
+                    try {
+                        ranges = resolveRanges(rangeHeader, fileLength);
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Range 헤더를 처리할 수 없습니다. fileId: {}, range: {}: {}", fileId, rangeHeader, e.getMessage());
+                        return Mono.error(new RangeNotSatisfiableException("요청된 범위를 처리할 수 없습니다."));
+                    }
 
-                                long start = 0;
-                                long end = fileLength - 1; // 전체 파일의 마지막 바이트 인덱스
+                    // 병합 후에도 범위가 여러개면 multipart/byteranges 로 응답
+                    if (ranges.size() > 1) {
+                        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+                        long multipartLength = getMultipartLength(boundary, contentType, ranges, fileLength);
+                        return Mono.just(new VideoMetaRecord(fileId, videoPath, contentType, null,
+                                ranges.get(0).startByte(), ranges.get(ranges.size() - 1).endByte(),
+                                multipartLength, fileLength, ranges, boundary, true, eTag, lastModified));
+                    }
 
-                                if (rangeHeader != null && !rangeHeader.isEmpty()) {
-                                    List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
-                                    if (!ranges.isEmpty()) {
-                                        HttpRange range = ranges.get(0); // 첫 번째 범위만 사용
-                                        start = range.getRangeStart(fileLength);
-                                        end = range.getRangeEnd(fileLength); // 요청된 범위의 마지막 바이트 인덱스
-                                    }
-                                }
+                    long start = ranges.get(0).startByte();
+                    long end = ranges.get(0).endByte(); // 요청된 범위의 마지막 바이트 인덱스
 
-                                long currentChunkSize = end - start + 1;
+                    long currentChunkSize = end - start + 1;
 
-                                if (currentChunkSize <= 0) {
-                                    log.warn("계산된 청크 크기가 0 이하입니다. fileId: {}, range: {}, start: {}, end: {}, currentChunkSize: {}",
-                                            fileId, rangeHeader, start, end, currentChunkSize);
-                                    return Mono.error(new RangeNotSatisfiableException("계산된 청크 사이즈가 0 이하입니다."));
-                                }
+                    if (currentChunkSize <= 0) {
+                        log.warn("계산된 청크 크기가 0 이하입니다. fileId: {}, range: {}, start: {}, end: {}, currentChunkSize: {}",
+                                fileId, rangeHeader, start, end, currentChunkSize);
+                        return Mono.error(new RangeNotSatisfiableException("계산된 청크 사이즈가 0 이하입니다."));
+                    }
 
-                                String rangeResponse = "bytes " + start + "-" + end + "/" + fileLength;
+                    String rangeResponse = "bytes " + start + "-" + end + "/" + fileLength;
 
-                                return Mono.just(new VideoMetaRecord(videoPath, contentType, rangeResponse, start, end, currentChunkSize));
-                            })
-                            .onErrorResume(IOException.class, e -> {
-                                log.error("비디오 청크 처리 중 IOException 발생. fileId: {}, path: {}: {}", fileId, videoPath, e.getMessage());
-                                return Mono.error(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "비디오 파일 읽기 중 오류 발생", e));
-                            });
+                    return Mono.just(new VideoMetaRecord(fileId, videoPath, contentType, rangeResponse, start, end, currentChunkSize,
+                            fileLength, ranges, null, true, eTag, lastModified));
                 })
+                .doOnNext(videoMetaRecord -> sequentialReadAhead.onRangeRequest(username, videoMetaRecord))
                 .onErrorResume(ResponseStatusException.class, Mono::error); // 이미 ResponseStatusException인 경우 그대로 전파
     }
 
-    public Flux<DataBuffer> getVideoDataBuffer(String subscriptionCode, Path videoPath, long start, long end) {
+    public Flux<DataBuffer> getVideoDataBuffer(String subscriptionCode, VideoMetaRecord videoMetaRecord) {
+        return bandwidthShaper.shape(
+                readVideoRange(videoMetaRecord, videoMetaRecord.startByte(), videoMetaRecord.endByte()), subscriptionCode);
+    }
+
+    // 대역폭 제한 없이 파일 구간을 읽음 (블록 캐시 사용 시 캐시 우선)
+    private Flux<DataBuffer> readVideoRange(VideoMetaRecord videoMetaRecord, long start, long end) {
+        Path videoPath = videoMetaRecord.videoPath();
 
         // 실제 전송할 청크 크기
         long currentChunkSize = end - start + 1;
@@ -137,15 +258,10 @@ public class VideoService {
             return Flux.error(new RangeNotSatisfiableException("계산된 청크 사이즈가 0 이하입니다."));
         }
 
-        Resource videoResource = new FileSystemResource(videoPath);
-
-        // 데이터버퍼 플럭스 생성
-        Flux<DataBuffer> dataBufferFlux = DataBufferUtils.read(videoResource, start, dataBufferFactory, 4096);
-
-//        // 시작 바이트 스킵
-//        dataBufferFlux = DataBufferUtils.skipUntilByteCount(dataBufferFlux, start);
-        // 종료 바이트 잘라냄
-        dataBufferFlux = DataBufferUtils.takeUntilByteCount(dataBufferFlux, currentChunkSize);
+        // 데이터버퍼 플럭스 생성 (요청 범위만큼만 읽으므로 종료 바이트 잘라낼 필요 없음)
+        Flux<DataBuffer> dataBufferFlux = videoBlockCache.isEnabled()
+                ? videoBlockCache.read(videoMetaRecord, start, end)
+                : mediaFileReader.readPooled(videoPath, videoMetaRecord.lastModified(), start, currentChunkSize);
 
         return dataBufferFlux
                 .onErrorResume(ResponseStatusException.class, Flux::error) // 이미 ResponseStatusException인 경우 그대로 전파
@@ -155,114 +271,213 @@ public class VideoService {
                 });
     }
 
+    /**
+     * 여러 범위 요청에 대해 multipart/byteranges 본문을 스트림으로 생성
+     * 각 파트는 getVideoDataBuffer 로 읽은 구간 앞에 파트 헤더를 붙여서 전송
+     */
+    public Flux<DataBuffer> getMultipartVideoDataBuffer(String subscriptionCode, VideoMetaRecord videoMetaRecord) {
+        String boundary = videoMetaRecord.boundary();
+        Flux<DataBuffer> multipartFlux = Flux.fromIterable(videoMetaRecord.ranges())
+                .concatMap(range -> Flux.concat(
+                        Mono.fromSupplier(() -> dataBufferFactory.wrap(
+                                getMultipartHeader(boundary, videoMetaRecord.contentType(), range, videoMetaRecord.fileLength())
+                                        .getBytes(StandardCharsets.US_ASCII))),
+                        readVideoRange(videoMetaRecord, range.startByte(), range.endByte())
+                ))
+                .concatWith(Mono.fromSupplier(() -> dataBufferFactory.wrap(
+                        getMultipartEnd(boundary).getBytes(StandardCharsets.US_ASCII))));
+        // 응답 전체에 하나의 버킷을 적용 (범위마다 burst 가 반복되지 않도록)
+        return bandwidthShaper.shape(multipartFlux, subscriptionCode);
+    }
 
+    // Range 헤더를 파싱하여 겹치거나 인접한 범위를 병합한 목록 반환 (헤더가 없으면 전체 파일)
+    private List<ByteRangeRecord> resolveRanges(String rangeHeader, long fileLength) {
+        if (rangeHeader == null || rangeHeader.isEmpty()) {
+            return List.of(new ByteRangeRecord(0, fileLength - 1));
+        }
+        List<HttpRange> httpRanges = HttpRange.parseRanges(rangeHeader);
+        if (httpRanges.isEmpty()) {
+            return List.of(new ByteRangeRecord(0, fileLength - 1));
+        }
+        // 증폭 공격 방지를 위해 요청당 범위 개수 제한
+        if (httpRanges.size() > maxRanges) {
+            throw new IllegalArgumentException("요청 범위 개수가 최대치를 초과했습니다. count: " + httpRanges.size() + ", max: " + maxRanges);
+        }
 
-    public Mono<String> getHlsM3u8(Long fileId, String type) {
-        Path tempFile = Paths.get(tempHlsFolder, fileId + "." + type + ".hls.m3u8");
-        return contentsFileRepository.findFileWithContentInfo(fileId)
-                .flatMap(entity ->
-                        Mono.fromCallable(() -> Files.exists(tempFile))
-                                .subscribeOn(Schedulers.boundedElastic())
-                                .flatMap(exists -> {
-                                    if (exists) {
-                                        // 캐싱 파일 존재 시 파일을 읽어서 그대로 반환
-                                        log.info("M3U8 캐싱 파일 존재 : {}", tempFile);
-                                        return Mono.fromCallable(() -> Files.readString(tempFile))
-                                                .subscribeOn(Schedulers.boundedElastic());
-                                    } else { // 트랜스코딩 형식
-                                        // 캐싱 파일 미 존재 시 새로 생성 (트랜스코딩 형식)
-                                        return Mono.fromCallable(() -> {
-                                                    log.info("M3U8 캐싱 파일 미존재. 신규 생성 시도 : {}", tempFile);
-                                                    String videoPath   = entity.getFullFilePath();
-
-                                                    List<List<String>> keyFrameStrings = ffmpegService.getVideoKeyFrame(videoPath);
-//                                                    double videoDuration = ffmpegService.getVideoDuration(videoPath);
-
-                                                    StringBuilder m3u8Builder = new StringBuilder()
-                                                            .append("#EXTM3U\n")
-                                                            .append("#EXT-X-VERSION:7\n")
-                                                            .append("#EXT-X-TARGETDURATION:10\n")
-                                                            .append("#EXT-X-PLAYLIST-TYPE:VOD\n")
-                                                            .append("#EXT-X-MEDIA-SEQUENCE:0\n");
-
-                                                    final int SEGMENT_LENGTH = 10;
-
-                                                    BigDecimal prevFrame = new BigDecimal("0.0");
-                                                    BigDecimal nowFrame = new BigDecimal("0.0");;
-                                                    BigDecimal segmentLengthBD = new BigDecimal(SEGMENT_LENGTH);
-                                                    BigDecimal duration;
-
-                                                    // 각 키 프레임을 순차적으로 비교
-                                                    for (List<String> keyFrames : keyFrameStrings){
-                                                        // 키 프레임이 이전 프레임+10을 넘어가면 입력.
-                                                        nowFrame = new BigDecimal(keyFrames.get(1));
-                                                        if (nowFrame.compareTo(prevFrame.add(segmentLengthBD)) >= 0){
-                                                            duration = nowFrame.subtract(prevFrame);
-
-                                                            m3u8Builder.append("#EXTINF:")
-                                                                .append(duration.setScale(6, RoundingMode.HALF_UP).toPlainString()).append(",\n")
-                                                                .append(videoBaseUrl).append(hlstsUrl)
-                                                                .append("?fileId=").append(fileId)
-                                                                .append("&ss=").append(prevFrame.toPlainString())
-                                                                .append("&to=").append(nowFrame.toPlainString())
-                                                                .append("&type=").append(type)
-                                                                .append('\n');
-                                                            prevFrame = nowFrame;
-                                                        }
-                                                    }
-                                                    if (nowFrame.compareTo(prevFrame)>0){
-                                                        duration = nowFrame.subtract(prevFrame);
-
-                                                        m3u8Builder.append("#EXTINF:")
-                                                                .append(duration.setScale(6, RoundingMode.HALF_UP).toPlainString()).append(",\n")
-                                                                .append(videoBaseUrl).append(hlstsUrl)
-                                                                .append("?fileId=").append(fileId)
-                                                                .append("&ss=").append(prevFrame.toPlainString())
-                                                                .append("&to=").append(nowFrame.toPlainString())
-                                                                .append("&type=").append(type)
-                                                                .append('\n');
-                                                    }
-                                                    m3u8Builder.append("\n").append("#EXT-X-ENDLIST");
-                                                    return m3u8Builder.toString();
-                                                })
-                                                .subscribeOn(Schedulers.boundedElastic())
-                                                .doOnNext(m3u8 -> {
-                                                    try {
-                                                        Files.createDirectories(tempFile.getParent());
-                                                        Files.writeString(tempFile, m3u8, StandardOpenOption.CREATE,
-                                                                StandardOpenOption.TRUNCATE_EXISTING);
-                                                    } catch (IOException e) {
-                                                        log.error("Error M3U8 파일 생성 실패 {}: {}", tempFile, e.getMessage());
-                                                    }
-                                                });
-                                    }
-                                })
-                );
+        List<ByteRangeRecord> ranges = new ArrayList<>();
+        for (HttpRange httpRange : httpRanges) {
+            ranges.add(new ByteRangeRecord(httpRange.getRangeStart(fileLength), httpRange.getRangeEnd(fileLength)));
+        }
+        ranges.sort(Comparator.comparingLong(ByteRangeRecord::startByte));
+
+        List<ByteRangeRecord> merged = new ArrayList<>();
+        ByteRangeRecord current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            ByteRangeRecord next = ranges.get(i);
+            if (next.startByte() <= current.endByte() + 1) { // 겹치거나 인접한 경우 병합
+                current = new ByteRangeRecord(current.startByte(), Math.max(current.endByte(), next.endByte()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    // If-Range 검증. ETag 는 강한 비교, 날짜는 초 단위로 수정 시간과 일치해야 함 (헤더가 없으면 통과)
+    private boolean isIfRangeMatched(String ifRangeHeader, String eTag, long lastModified) {
+        if (ifRangeHeader == null || ifRangeHeader.isBlank()) {
+            return true;
+        }
+        String ifRange = ifRangeHeader.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(eTag); // 약한 ETag 는 If-Range 에 사용할 수 없으므로 불일치 처리
+        }
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.IF_RANGE, ifRange);
+            return headers.getFirstDate(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            log.debug("If-Range 날짜 형식을 해석할 수 없습니다 : {}", ifRange);
+            return false;
+        }
+    }
+
+    private String getMultipartHeader(String boundary, String contentType, ByteRangeRecord range, long fileLength) {
+        return "\r\n--" + boundary + "\r\n"
+                + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                + HttpHeaders.CONTENT_RANGE + ": bytes " + range.startByte() + "-" + range.endByte() + "/" + fileLength + "\r\n"
+                + "\r\n";
+    }
+
+    private String getMultipartEnd(String boundary) {
+        return "\r\n--" + boundary + "--\r\n";
+    }
+
+    // multipart/byteranges 본문 전체 길이 (Content-Length)
+    private long getMultipartLength(String boundary, String contentType, List<ByteRangeRecord> ranges, long fileLength) {
+        long length = getMultipartEnd(boundary).length();
+        for (ByteRangeRecord range : ranges) {
+            length += getMultipartHeader(boundary, contentType, range, fileLength).length() + range.length();
+        }
+        return length;
+    }
+
+
+
+    /**
+     * HLS 미디어 플레이리스트. 메모리 캐시에 있으면 디스크 IO 없이 인코딩된 바이트를 그대로 반환함
+     */
+    public Mono<byte[]> getHlsM3u8(Long fileId, String type) {
+        return getHlsM3u8(fileId, type, SegmentFormatEnum.TS);
+    }
+
+    /**
+     * fMP4(CMAF) 미디어 플레이리스트. 세그먼트 구간은 TS 플레이리스트와 같고 초기화 세그먼트(EXT-X-MAP)가 추가됨
+     */
+    public Mono<byte[]> getHlsM3u8Fmp4(Long fileId, String type) {
+        return getHlsM3u8(fileId, type, SegmentFormatEnum.CMAF);
+    }
+
+    private Mono<byte[]> getHlsM3u8(Long fileId, String type, SegmentFormatEnum format) {
+        if (!isSupportedType(type)) {
+            return Mono.error(unsupportedType(type));
+        }
+        return mediaDescriptorCache.get(fileId)
+                .flatMap(descriptor -> {
+                    byte[] cached = playlistCache.getIfPresent(fileId, descriptor.lastModified(), type, format);
+                    if (cached != null) {
+                        return Mono.just(cached);
+                    }
+                    // 같은 플레이리스트 동시 요청은 한 번만 생성
+                    return singleFlight.execute("m3u8:" + fileId + "." + type + "." + format.getExtension(), () ->
+                            compileByteRangePlaylist(descriptor, type, format)
+                                    .switchIfEmpty(Mono.deferContextual(context -> Mono.fromCallable(() -> compilePlaylist(fileId, descriptor, type, format, context))
+                                            .subscribeOn(Schedulers.boundedElastic()))));
+                });
+    }
+
+    /**
+     * 원본 해상도 세그먼트를 원본 파일 바이트 범위로 전송하는 플레이리스트 (FFmpeg 실행 없이 범위 요청 URL 로 재생)
+     * 원본이 호환 코덱의 MPEG-TS(TS 플레이리스트) 또는 fragmented MP4(CMAF 플레이리스트)이고,
+     * 세그먼트 경계가 키프레임 바이트 위치와 맞는 경우만 생성하며 그 외에는 empty (세그먼트 URL 플레이리스트 사용)
+     */
+    private Mono<byte[]> compileByteRangePlaylist(MediaDescriptorRecord descriptor, String type, SegmentFormatEnum format) {
+        if (!byteRangeEnabled || !VideoResolutionEnum.RES_ORIGINAL.getType().equals(type)) {
+            return Mono.empty();
+        }
+        return streamCopyPolicy.copyableFormat(descriptor)
+                .flatMap(container -> Mono.deferContextual(context -> Mono.fromCallable(() -> {
+                            KeyFrameIndex index = loadKeyFrameIndex(descriptor.fileId(), descriptor.fileInfo().getFullFilePath(), descriptor.videoPath(),
+                                    descriptor.fileLength(), descriptor.lastModified(), context);
+                            long[] timeline = index.segmentTimeline(SEGMENT_LENGTH);
+                            ByteRangeSegments segments = null;
+                            if (format == SegmentFormatEnum.TS && container.contains("mpegts")) {
+                                segments = ByteRangeSegments.mpegTs(index, timeline, descriptor.videoPath(), descriptor.fileLength());
+                            } else if (format == SegmentFormatEnum.CMAF && container.contains("mp4")) {
+                                segments = ByteRangeSegments.fragmentedMp4(index, timeline, descriptor.videoPath());
+                            }
+                            if (segments == null) {
+                                return null;
+                            }
+                            log.info("원본 바이트 범위 플레이리스트 생성. fileId: {}, format: {}", descriptor.fileId(), format);
+                            return playlistCache.put(descriptor.fileId(), descriptor.lastModified(), type, format,
+                                    PlaylistCache.renderByteRange(timeline, segments.offsets, segments.initLength,
+                                            videoBaseUrl + filerangeUrl, descriptor.fileId()));
+                        })
+                        .subscribeOn(Schedulers.boundedElastic())))
+                .onErrorResume(e -> {
+                    log.warn("원본 바이트 범위 플레이리스트 생성 실패. 세그먼트 플레이리스트 사용 fileId: {}, {}", descriptor.fileId(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    // 키프레임 인덱스 기준으로 플레이리스트 생성 (인덱스가 없으면 ffprobe 후 저장)
+    private byte[] compilePlaylist(Long fileId, MediaDescriptorRecord descriptor, String type, SegmentFormatEnum format, ContextView context) throws IOException {
+        boolean cmaf = format == SegmentFormatEnum.CMAF;
+        try {
+            return playlistCache.get(fileId, descriptor.lastModified(), type, format,
+                    videoBaseUrl + (cmaf ? hlsfmp4Url : hlstsUrl), cmaf ? videoBaseUrl + hlsinitUrl : null,
+                    () -> loadKeyFrameIndex(fileId, descriptor.fileInfo().getFullFilePath(), descriptor.videoPath(),
+                            descriptor.fileLength(), descriptor.lastModified(), context)
+                            .segmentTimeline(SEGMENT_LENGTH));
+        } catch (IOException | RuntimeException e) {
+            // 키프레임을 읽을 수 없는 파일은 적재 시 만든 10초 단위 플레이리스트 파일 사용 (TS 만 해당)
+            Path tempFile = Paths.get(tempHlsFolder, fileId + "." + type + ".hls.m3u8");
+            if (cmaf || !Files.exists(tempFile)) {
+                throw e;
+            }
+            log.warn("키프레임 인덱스 생성 실패. M3U8 캐싱 파일 사용 : {}, {}", tempFile, e.getMessage());
+            return playlistCache.put(fileId, descriptor.lastModified(), type, format, Files.readAllBytes(tempFile));
+        }
     }
 
 
-    public Mono<String> getHlsM3u8Master(Long fileId) {
+    /**
+     * HLS 마스터 플레이리스트
+     *
+     * @param format 미디어 플레이리스트 세그먼트 형식 (TS, CMAF)
+     */
+    public Mono<String> getHlsM3u8Master(Long fileId, SegmentFormatEnum format) {
         log.info("getHlsM3u8Master, fileId=" + fileId);
-        return contentsFileRepository.findFileWithContentInfo(fileId)
-                .flatMap(entity -> // IO에러 처리를 위해 flatMap -> fromCallable 사용
-                        Mono.fromCallable(() -> {
-                                    log.info("@@@@@@@@@@@@@@@@@@@@entity="+entity);
-                            String videoPath = entity.getFullFilePath();
+        String mediaPlaylistUrl = format == SegmentFormatEnum.CMAF ? hlsm3u8fmp4Url : hlsm3u8Url;
+        return mediaDescriptorCache.get(fileId)
+                .flatMap(descriptor -> mediaProbeService.get(descriptor)
+                        .map(mediaProbe -> {
                             StringBuilder m3u8Builder = new StringBuilder();
                             m3u8Builder.append("#EXTM3U\n");
                             m3u8Builder.append("#EXT-X-VERSION:7\n");
 
-                            Map<String, String> videoMetaData = ffmpegService.getVideoMetaData(videoPath);
-
                             // 지원 해상도 정보 추가
                             for (VideoResolutionEnum resolution : VideoResolutionEnum.values()) {
-                                if (Integer.parseInt(videoMetaData.get("height")) > resolution.getHeight()) {
+                                if (mediaProbe.getHeight() > resolution.getHeight()) {
                                     m3u8Builder.append("#EXT-X-STREAM-INF:BANDWIDTH=")
                                             .append(resolution.getBandwidth())
                                             .append(",RESOLUTION=")
                                             .append(resolution.getResolution())
                                             .append("\n")
-                                            .append(videoBaseUrl).append(hlsm3u8Url)
+                                            .append(videoBaseUrl).append(mediaPlaylistUrl)
                                             .append("?fileId=").append(fileId)
                                             .append("&type=").append(resolution.getType())
                                             .append("\n");
@@ -270,71 +485,210 @@ public class VideoService {
                             }
 
                             // 원본 해상도(지원 리스트에 없을 때) 추가
-                            int height = Integer.parseInt(videoMetaData.get("height"));
                             m3u8Builder.append("#EXT-X-STREAM-INF:BANDWIDTH=")
-                                    .append(videoMetaData.get("bandwidth"))
+                                    .append(mediaProbe.getBitrate())
                                     .append(",RESOLUTION=")
-                                    .append(videoMetaData.get("width")).append("x").append(videoMetaData.get("height"))
+                                    .append(mediaProbe.getResolution())
                                     .append("\n")
-                                    .append(videoBaseUrl).append(hlsm3u8Url)
+                                    .append(videoBaseUrl).append(mediaPlaylistUrl)
                                     .append("?fileId=").append(fileId)
                                     .append("&type=").append(VideoResolutionEnum.RES_ORIGINAL.getType())
                                     .append("\n");
 
                             return m3u8Builder.toString();
                         })
-                        // ffmpegService 같은 블로킹 IO는 boundedElastic 스케줄러로 실행
-                        .subscribeOn(Schedulers.boundedElastic())
                 );
     }
 
-
-    public Flux<DataBuffer> getHlsTs(Long fileId, String start, String end, String type, String userPlan) {
+    public Flux<DataBuffer> getHlsTs(Long fileId, String start, String end, String type, String username, String userPlan) {
         log.info("fileId={},start={},end={},type={}, userPlan={}", fileId, start, end, type, userPlan);
-        return contentsFileRepository.findFileWithContentInfo(fileId)
+        if (!isSupportedType(type)) {
+            return Flux.error(unsupportedType(type));
+        }
+        if (!isValidSegmentRange(start, end)) {
+            return Flux.error(invalidSegmentRange(start, end));
+        }
+        return mediaDescriptorCache.get(fileId)
                 // Mono -> Flux 변환
-                .flatMapMany(fileInfo  ->
+                .flatMapMany(descriptor  ->
                 {
-                    if (!SubscriptionCodeEnum.comparePermissionLevel(userPlan, fileInfo.subscriptionCode())) {
+                    if (!SubscriptionCodeEnum.comparePermissionLevel(userPlan, descriptor.subscriptionCode())) {
                         throw new AccessDeniedException("폴더에 대한 권한이 없습니다.");
                     }
-                    try {
-                        return ffmpegService.getTsData(fileInfo.getFullFilePath(),start,end,type);
-                    } catch (IOException e) {
-                        return Flux.error(e);
+                    Flux<DataBuffer> tsData = checkPlaylistSegment(descriptor, start, end, type)
+                            .thenMany(Flux.defer(() -> getCachedTsData(descriptor, start, end, type, username)))
+                            .contextWrite(FFmpegJobScheduler.jobContext(FFmpegJobPriorityEnum.INTERACTIVE, username));
+                    return bandwidthShaper.shape(tsData, userPlan);
+                });
+    }
+
+    /**
+     * fMP4(CMAF) 초기화 세그먼트 (해상도별 ftyp, moov)
+     */
+    public Flux<DataBuffer> getHlsFmp4Init(Long fileId, String type, String username, String userPlan) {
+        if (!isSupportedType(type)) {
+            return Flux.error(unsupportedType(type));
+        }
+        return getCmafSegment(fileId, userPlan, descriptor -> cmafSegmentTranscoder.getInit(descriptor, type))
+                .contextWrite(FFmpegJobScheduler.jobContext(FFmpegJobPriorityEnum.INTERACTIVE, username));
+    }
+
+    /**
+     * fMP4(CMAF) 미디어 세그먼트. 구간은 TS 세그먼트와 같은 키프레임 경계
+     */
+    public Flux<DataBuffer> getHlsFmp4(Long fileId, String start, String end, String type, String username, String userPlan) {
+        log.info("fileId={},start={},end={},type={}, userPlan={}", fileId, start, end, type, userPlan);
+        if (!isSupportedType(type)) {
+            return Flux.error(unsupportedType(type));
+        }
+        if (!isValidSegmentRange(start, end)) {
+            return Flux.error(invalidSegmentRange(start, end));
+        }
+        Flux<DataBuffer> fmp4Data = getCmafSegment(fileId, userPlan, descriptor -> checkPlaylistSegment(descriptor, start, end, type)
+                        .then(Mono.defer(() -> cmafSegmentTranscoder.getOrTranscode(descriptor,
+                                SegmentKeyRecord.of(descriptor.fileId(), descriptor.lastModified(), start, end, type, SegmentFormatEnum.CMAF)))))
+                .contextWrite(FFmpegJobScheduler.jobContext(FFmpegJobPriorityEnum.INTERACTIVE, username));
+        return bandwidthShaper.shape(fmp4Data, userPlan);
+    }
+
+    // 해상도 타입(VideoResolutionEnum) 검사. 정의되지 않은 타입은 세그먼트 키, FFmpeg 명령어를 만들기 전에 400 으로 응답
+    private static boolean isSupportedType(String type) {
+        return VideoResolutionEnum.fromType(type).isPresent();
+    }
+
+    private static ServerWebInputException unsupportedType(String type) {
+        return new ServerWebInputException("지원하지 않는 해상도 타입입니다. type: " + type);
+    }
+
+    // 세그먼트 구간 검사. 세그먼트 키, 키프레임 위치 계산, FFmpeg 명령어에 사용하기 전에 형식과 순서(ss < to)를 확인
+    static boolean isValidSegmentRange(String start, String end) {
+        if (start == null || end == null
+                || !SEGMENT_TIME_PATTERN.matcher(start).matches() || !SEGMENT_TIME_PATTERN.matcher(end).matches()) {
+            return false;
+        }
+        return new BigDecimal(start).compareTo(new BigDecimal(end)) < 0;
+    }
+
+    private static ServerWebInputException invalidSegmentRange(String start, String end) {
+        return new ServerWebInputException("세그먼트 구간이 올바르지 않습니다. ss: " + start + ", to: " + end);
+    }
+
+    // 플레이리스트의 세그먼트 구간인지 확인해서 임의 구간이 세그먼트 캐시를 채우지 않도록 함
+    // 구간 목록을 알 수 없으면(키프레임 인덱스, 적재 플레이리스트 모두 없음) 형식 검사만 적용
+    private Mono<Void> checkPlaylistSegment(MediaDescriptorRecord descriptor, String start, String end, String type) {
+        if (!descriptor.readable()) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> hlsPlaylistIndex.boundaries(descriptor.fileId(), descriptor.lastModified(), type))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(IOException.class, e -> {
+                    log.warn("세그먼트 구간 목록 조회 실패. fileId: {}: {}", descriptor.fileId(), e.getMessage());
+                    return Mono.just(List.of());
+                })
+                .flatMap(segments -> {
+                    if (segments.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    int index = HlsPlaylistIndex.indexOf(segments, start);
+                    if (index < 0 || new BigDecimal(segments.get(index).to()).compareTo(new BigDecimal(end)) != 0) {
+                        return Mono.error(invalidSegmentRange(start, end));
                     }
+                    return Mono.empty();
                 });
     }
 
-    public Mono<SubtitleMetadataResponse> getSubtitleMetadata(Long fileId, String userPlan) {
-        return contentsFileRepository.findFileWithContentInfo(fileId)
-                .map(fileInfo -> {
-                    List<SubtitleInfo> subtitleInfoList = new ArrayList<>();
-                    if (!SubscriptionCodeEnum.comparePermissionLevel(userPlan, fileInfo.subscriptionCode())) {
-                        throw new AccessDeniedException("폴더에 대한 권한이 없습니다.");
+    // CMAF 세그먼트는 초기화 세그먼트를 나눠서 저장해야 하므로 세그먼트 캐시가 필요함
+    private Flux<DataBuffer> getCmafSegment(Long fileId, String userPlan, Function<MediaDescriptorRecord, Mono<Path>> segment) {
+        return mediaDescriptorCache.get(fileId)
+                .flatMapMany(descriptor -> {
+                    if (!SubscriptionCodeEnum.comparePermissionLevel(userPlan, descriptor.subscriptionCode())) {
+                        return Flux.error(new AccessDeniedException("폴더에 대한 권한이 없습니다."));
                     }
-                    // 실제 자막 파일 존재시 첫 번째 항목에 추가
-                    if (fileInfo.subtitlePath() != null && !fileInfo.subtitlePath().isEmpty()) {
-                        subtitleInfoList.add(new SubtitleInfo("f", "kor"));
+                    if (!segmentCacheStore.isEnabled()) {
+                        return Flux.error(new ResponseStatusException(HttpStatus.NOT_IMPLEMENTED, "fMP4 세그먼트는 세그먼트 캐시를 사용해야 합니다."));
+                    }
+                    return segment.apply(descriptor)
+                            .flatMapMany(mediaFileReader::read)
+                            // 조회 직후 용량 초과로 삭제된 경우 다시 생성
+                            .onErrorResume(NoSuchFileException.class, e -> segment.apply(descriptor).flatMapMany(mediaFileReader::read));
+                });
+    }
+
+    /**
+     * 세그먼트 캐시에서 TS 데이터를 읽음. 캐시 미존재 시 트랜스코딩 결과를 캐시에 저장한 후 전송
+     * 캐시 적중 시에는 FFmpeg 프로세스를 실행하지 않으며, 재생 중인 세션의 다음 세그먼트는 미리 트랜스코딩함
+     */
+    private Flux<DataBuffer> getCachedTsData(MediaDescriptorRecord descriptor, String start, String end, String type, String username) {
+        if (!segmentCacheStore.isEnabled() || !descriptor.readable()) {
+            return transcodeTsData(descriptor, start, end, type);
+        }
+        SegmentKeyRecord key = SegmentKeyRecord.of(descriptor.fileId(), descriptor.lastModified(), start, end, type);
+        if (hlsSessionTranscoder.isEnabled()) {
+            // 재생 세션이 만든 세그먼트 전송. 재인코딩 없이 만들 수 있거나 세션으로 처리할 수 없으면 세그먼트 단위로 처리
+            return streamCopyPolicy.canCopy(descriptor, type)
+                    .flatMap(copy -> copy ? Mono.<Path>empty() : hlsSessionTranscoder.awaitSegment(username, descriptor, key))
+                    .flatMapMany(mediaFileReader::read)
+                    .switchIfEmpty(Flux.defer(() -> segmentTranscoder.stream(descriptor, key)))
+                    .onErrorResume(NoSuchFileException.class, e -> transcodeTsData(descriptor, start, end, type));
+        }
+        segmentPrefetcher.onSegmentRequest(username, descriptor, key);
+        // 같은 세그먼트 동시 요청은 하나의 트랜스코딩 결과를 함께 사용
+        return segmentTranscoder.stream(descriptor, key)
+                // 조회 직후 용량 초과로 삭제된 경우 캐시 없이 트랜스코딩
+                .onErrorResume(NoSuchFileException.class, e -> transcodeTsData(descriptor, start, end, type));
+    }
+
+    private Flux<DataBuffer> transcodeTsData(MediaDescriptorRecord descriptor, String start, String end, String type) {
+        return streamCopyPolicy.canCopy(descriptor, type)
+                .flatMapMany(copy -> {
+                    if (copy) {
+                        return ffmpegService.getRemuxTsData(descriptor.getFullFilePath(), start, end);
                     }
-                    // 비디오 내부 자막 스트림 정보 추가
                     try {
-                        subtitleInfoList.addAll(ffmpegService.getSubtitleMetaData(fileInfo.getFullFilePath()));
+                        return ffmpegService.getTsData(descriptor.getFullFilePath(), start, end, type);
                     } catch (IOException e) {
-                        log.error("getSubtitleMetadata", e);
+                        return Flux.error(e);
                     }
+                });
+    }
 
-                    String hasSubtitle = subtitleInfoList.isEmpty() ? "N" : "Y";
-                    int count = subtitleInfoList.size();
-
-                    return new SubtitleMetadataResponse(
-                            hasSubtitle,
-                            count,
-                            subtitleInfoList
-                    );
+    public Mono<SubtitleMetadataResponse> getSubtitleMetadata(Long fileId, String userPlan) {
+        return mediaDescriptorCache.get(fileId)
+                .flatMap(descriptor -> {
+                    if (!SubscriptionCodeEnum.comparePermissionLevel(userPlan, descriptor.subscriptionCode())) {
+                        return Mono.error(new AccessDeniedException("폴더에 대한 권한이 없습니다."));
+                    }
+                    // 비디오 내부 자막 스트림 정보 조회 (media_probe)
+                    return mediaProbeService.get(descriptor)
+                            .map(MediaProbeEntity::getSubtitles)
+                            .onErrorResume(e -> {
+                                log.error("getSubtitleMetadata", e);
+                                return Mono.just(List.of());
+                            })
+                            .defaultIfEmpty(List.of())
+                            .map(embeddedSubtitles -> buildSubtitleMetadata(descriptor, embeddedSubtitles));
                 });
     }
 
+    private SubtitleMetadataResponse buildSubtitleMetadata(MediaDescriptorRecord descriptor, List<SubtitleInfo> embeddedSubtitles) {
+        List<SubtitleInfo> subtitleInfoList = new ArrayList<>();
+        // 실제 자막 파일 존재시 첫 번째 항목에 추가
+        if (descriptor.fileInfo().subtitlePath() != null && !descriptor.fileInfo().subtitlePath().isEmpty()) {
+            subtitleInfoList.add(new SubtitleInfo("f", "kor"));
+        }
+        // 비디오 내부 자막 스트림 정보 추가
+        subtitleInfoList.addAll(embeddedSubtitles);
+
+        String hasSubtitle = subtitleInfoList.isEmpty() ? "N" : "Y";
+        int count = subtitleInfoList.size();
+
+        return new SubtitleMetadataResponse(
+                hasSubtitle,
+                count,
+                subtitleInfoList
+        );
+    }
+
     public Flux<DataBuffer> getSubtitle(Long fileId, String type, String userPlan) {
         log.info("fileId="+fileId+",type="+type);
         return switch (type.charAt(0)) {
@@ -350,7 +704,7 @@ public class VideoService {
 
     public Flux<DataBuffer> getSubtitleFromFile(Long fileId, String userPlan) {
         log.info("### getSubtitleFromFile. fileId="+fileId);
-        return contentsFileRepository.findFileWithContentInfo(fileId)
+        return findFileInfo(fileId)
                 // 파일이 없으면 404 에러 발생
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
                 .flatMapMany(fileInfo -> {
@@ -367,7 +721,7 @@ public class VideoService {
                     Path pathTemp = Paths.get(tempSubtitlePath);
                     if (Files.exists(pathTemp)) {
                         log.info("캐싱 자막 파일 존재 확인 : {}",tempSubtitlePath);
-                        return DataBufferUtils.read(pathTemp, dataBufferFactory, 4096);
+                        return mediaFileReader.read(pathTemp);
                     }
                     Path path = Paths.get(fileInfo.getFullSubtitlePath());
                     // 파일 미존재 시 404 에러 발생
@@ -375,7 +729,7 @@ public class VideoService {
                         return Flux.error(new ResponseStatusException(HttpStatus.NOT_FOUND));
                     }
                     log.info("캐싱 파일 미 존재. 기존 파일을 가져옵니다 : {}",path);
-                    return DataBufferUtils.read(path, dataBufferFactory, 4096);
+                    return mediaFileReader.read(path);
                 });
     }
 
@@ -384,10 +738,10 @@ public class VideoService {
         // 캐시 파일 경로
         Path tempCachePath = Paths.get(tempSubtitleFolder, fileId + ".v" + subtitleId + ".ass");
 
-        return contentsFileRepository.findFileWithContentInfo(fileId)
+        return mediaDescriptorCache.get(fileId)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "콘텐츠 정보를 찾을 수 없습니다. fileId: " + fileId)))
-                .flatMapMany(fileInfo -> {
-                    if (!SubscriptionCodeEnum.comparePermissionLevel(userPlan, fileInfo.subscriptionCode())) {
+                .flatMapMany(descriptor -> {
+                    if (!SubscriptionCodeEnum.comparePermissionLevel(userPlan, descriptor.subscriptionCode())) {
                         return Flux.error(new AccessDeniedException("요청된 콘텐츠에 대한 접근 권한이 없습니다."));
                     }
 
@@ -398,84 +752,73 @@ public class VideoService {
                                 if (isCached) {
                                     // 2-1. 캐시된 파일이 있으면 해당 파일 스트림 반환
                                     log.info("캐시된 자막 파일 사용: {}", tempCachePath);
-                                    return DataBufferUtils.read(tempCachePath, dataBufferFactory, 4096);
+                                    return mediaFileReader.read(tempCachePath);
                                 } else {
-                                    // 2-2. 캐시된 파일이 없으면 FFmpeg 통해 생성
+                                    // 2-2. 캐시된 파일이 없으면 FFmpeg 통해 생성 (동시 요청은 하나의 추출 결과를 함께 사용)
                                     log.info("캐시된 자막 파일 없음. FFmpeg 통해 생성 : {}", tempCachePath);
-
-                                    // FFmpeg 서비스로부터 자막 스트림 가져오기
-                                    Flux<DataBuffer> liveSubtitles;
-                                    try {
-                                        liveSubtitles = ffmpegService.getSubtitleFromVideo(fileInfo.getFullFilePath(), subtitleId)
-                                                .onErrorMap(originalError -> {
-                                                    // FFmpeg 서비스에서 발생한 원본 에러 로깅
-                                                    log.error("FFmpeg 자막 추출 중 오류 발생 (fileId: {}, subtitleId: {}): {}",
-                                                            fileId, subtitleId, originalError.getMessage(), originalError);
-                                                    // 클라이언트에게 전달될 에러로 변환
-                                                    return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "자막 스트림 생성 중 내부 오류가 발생했습니다.", originalError);
-                                                });
-                                    } catch (IOException e) {
-                                        throw new RuntimeException(e);
-                                    }
-
-                                    Flux<DataBuffer> streamToClientAndCache = liveSubtitles.cache();
-
-                                    // 캐싱 작업
-                                    DataBufferUtils.write(streamToClientAndCache, tempCachePath)
-                                            .subscribeOn(Schedulers.boundedElastic())
-                                            .doOnSuccess(v -> log.info("자막 캐싱 성공: {}", tempCachePath))
-                                            .doOnError(cacheErr -> log.error("자막 캐싱 실패 {}: {}", tempCachePath, cacheErr.getMessage(), cacheErr))
-                                            .onErrorResume(cacheErr -> Mono.empty()) //
-                                            .subscribe();
-
-                                    return streamToClientAndCache;
+                                    return singleFlight.execute("subtitle:" + tempCachePath.getFileName(), () ->
+                                                    // 앞선 추출이 방금 끝났으면 저장된 파일 사용
+                                                    Mono.fromCallable(() -> Files.exists(tempCachePath) ? Files.readAllBytes(tempCachePath) : null)
+                                                            .subscribeOn(Schedulers.boundedElastic())
+                                                            .switchIfEmpty(Mono.defer(() -> extractSubtitle(descriptor, subtitleId, tempCachePath))))
+                                            .map(dataBufferFactory::wrap)
+                                            .flux();
                                 }
                             });
                 });
     }
 
+    // FFmpeg 로 비디오 내부 자막을 추출해서 캐시 파일로 저장하고 내용을 반환
+    private Mono<byte[]> extractSubtitle(MediaDescriptorRecord descriptor, String subtitleId, Path tempCachePath) {
+        // FFmpeg 서비스로부터 자막 스트림 가져오기
+        Flux<DataBuffer> liveSubtitles;
+        try {
+            liveSubtitles = ffmpegService.getSubtitleFromVideo(descriptor.getFullFilePath(), subtitleId)
+                    .onErrorMap(originalError -> {
+                        // FFmpeg 서비스에서 발생한 원본 에러 로깅
+                        log.error("FFmpeg 자막 추출 중 오류 발생 (fileId: {}, subtitleId: {}): {}",
+                                descriptor.fileId(), subtitleId, originalError.getMessage(), originalError);
+                        // 클라이언트에게 전달될 에러로 변환
+                        return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "자막 스트림 생성 중 내부 오류가 발생했습니다.", originalError);
+                    });
+        } catch (IOException e) {
+            return Mono.error(e);
+        }
+
+        // 풀링 버퍼는 한 번만 해제할 수 있으므로 바이트 배열로 모은 뒤
+        // 캐시 파일 저장과 클라이언트 응답에 각각 사용
+        return DataBufferUtils.join(liveSubtitles)
+                .map(buffer -> {
+                    try {
+                        byte[] bytes = new byte[buffer.readableByteCount()];
+                        buffer.read(bytes);
+                        return bytes;
+                    } finally {
+                        DataBufferUtils.release(buffer);
+                    }
+                })
+                // 캐싱 작업. 임시 파일에 쓴 후 이름을 바꾸므로 다른 요청이 쓰는 중인 파일을 읽지 않음
+                .flatMap(bytes -> Mono.fromCallable(() -> AtomicFileWriter.write(tempCachePath, bytes))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .doOnSuccess(v -> log.info("자막 캐싱 성공: {}", tempCachePath))
+                        .doOnError(cacheErr -> log.error("자막 캐싱 실패 {}: {}", tempCachePath, cacheErr.getMessage(), cacheErr))
+                        .onErrorResume(cacheErr -> Mono.empty())
+                        .thenReturn(bytes));
+    }
+
     public Flux<PlayListRecord> getVideoPlayList(Long fileId){
-        return contentsFileRepository.findFileWithContentInfo(fileId)
+        return mediaDescriptorCache.get(fileId)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "콘텐츠 정보를 찾을 수 없습니다. fileId: " + fileId)))
-                .flatMapMany(entity -> {
+                .flatMapMany(descriptor -> {
                     String heightPixel;
-                    // DB에 픽셀 값이 저장되어있지 않을 경우
-                    if(entity.getHeightPixel()==null){
-                        log.info("fileId: {}의 해상도 값 미존재. FFMPEG를 통해서 받아옵니다.", fileId);
-                        try {
-                            Map<String, String> videoMetaData = ffmpegService.getVideoMetaData(entity.getFullFilePath());
-                            heightPixel =  videoMetaData.get("height");
-                            if (heightPixel == null) {
-                                log.error("fileId: {}에 대해 FFMPEG가 비디오 높이 정보를 반환하지 않았습니다.", fileId);
-                                return Flux.error(new RuntimeException("FFMPEG에서 비디오 높이 정보를 가져오지 못했습니다. fileId: " + fileId));
-                            }
-                            // db에 값 저장
-                            final String resolution = videoMetaData.get("width") + "x" + videoMetaData.get("height");
-                            log.debug("R2DBC - fileId: {}의 해상도 정보 '{}' 캐싱을 시도합니다.", fileId, resolution);
-
-                            return Flux.fromIterable(getPlayListRecords(fileId, heightPixel))
-                                    .publishOn(Schedulers.boundedElastic())
-                                    .doOnComplete(() -> { // 플레이리스트 생성이 성공적으로 완료된 후 DB 저장 시도
-                                        log.info("fileId : {}의 플레이리스트 생성 완료. 해상도 정보 ('{}') 캐싱을 시도합니다.", fileId, resolution);
-
-                                        contentsFileRepository.findById(fileId) // 엔티티를 다시 로드하여 업데이트
-                                                .flatMap(entityToUpdate -> {
-                                                    entityToUpdate.setResolution(resolution);
-                                                    entityToUpdate.setNewRecord(false);
-                                                    return contentsFileRepository.save(entityToUpdate);
-                                                })
-                                                .doOnSuccess(savedEntity -> log.info("R2DBC - fileId: {}의 해상도 정보 캐싱 성공.", fileId))
-                                                .doOnError(e -> log.error("R2DBC - fileId: {}의 해상도 정보 캐싱 실패. Error: {}", fileId, e.getMessage()))
-                                                .onErrorResume(e -> Mono.empty())
-                                                .subscribe();
-                                    });
-
-                        } catch (IOException e) {
-                            log.error("fileId: {}의 메타데이터 조회 중 FFMPEG IOException 발생: {}", fileId, e.getMessage());
-                            return Flux.error(new RuntimeException("FFMPEG 처리 중 오류 발생 fileId: " + fileId, e));
-                        }
+                    // DB에 픽셀 값이 저장되어있지 않을 경우 media_probe 사용 (없으면 조회 후 저장)
+                    if(descriptor.fileInfo().getHeightPixel()==null){
+                        log.info("fileId: {}의 해상도 값 미존재. 미디어 정보에서 조회합니다.", fileId);
+                        return mediaProbeService.get(descriptor)
+                                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "미디어 정보를 찾을 수 없습니다. fileId: " + fileId)))
+                                .flatMapMany(mediaProbe -> Flux.fromIterable(getPlayListRecords(fileId, String.valueOf(mediaProbe.getHeight()))));
                     } else {
-                        heightPixel = entity.getHeightPixel();
+                        heightPixel = descriptor.fileInfo().getHeightPixel();
                         log.info("fileId: {}의 해상도 값 존재. : {}", fileId,heightPixel);
                         return Flux.fromIterable(getPlayListRecords(fileId, heightPixel));
                     }
@@ -523,62 +866,56 @@ public class VideoService {
         return playListRecords;
     }
 
+    // 키프레임 인덱스 조회. 없거나 원본이 바뀌었으면 ffprobe 로 만들어서 저장 (파일 IO, boundedElastic 에서 호출)
+    // 같은 ffprobe 실행으로 읽은 형식, 스트림 정보는 media_probe 테이블에 저장
+    // sourcePath 는 저장용 원본(NAS) 경로, videoPath 는 ffprobe 입력 (로컬 사본일 수 있음). ffprobe 는 context 의 작업 우선순위로 실행
+    private KeyFrameIndex loadKeyFrameIndex(Long fileId, String sourcePath, Path videoPath, long sourceLength, long sourceLastModified,
+                                            ContextView context) throws IOException {
+        Optional<KeyFrameIndex> stored = keyFrameIndexStore.find(fileId, sourceLength, sourceLastModified);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+        MediaProbeRecord probe = ffmpegService.getMediaProbe(videoPath.toString(), sourceLength, sourceLastModified,
+                FFmpegJobScheduler.priority(context), FFmpegJobScheduler.owner(context));
+        try {
+            mediaProbeService.put(fileId, sourcePath, sourceLength, sourceLastModified, probe).block();
+        } catch (RuntimeException e) {
+            log.warn("미디어 정보 저장 실패. fileId: {}, {}", fileId, e.getMessage());
+        }
+        return keyFrameIndexStore.save(fileId, probe.keyFrameIndex());
+    }
+
+    // 재생 시간 (초). 키프레임 인덱스를 만들 때 저장한 미디어 정보를 사용하고, 없으면 ffprobe 후 저장
+    private double loadDuration(Long fileId, Path videoPath, ContextView context) {
+        MediaProbeEntity mediaProbe = mediaProbeService.refresh(fileId, videoPath).contextWrite(context).block();
+        if (mediaProbe == null || mediaProbe.getDuration() == null) {
+            throw new IllegalStateException("재생 시간을 읽을 수 없습니다 : " + videoPath);
+        }
+        return mediaProbe.getDuration();
+    }
+
     public Mono<Boolean> buildM3u8Content(Long fileId, Path videoPath) {
-        return Mono.fromCallable(() -> {
-            List<List<String>> keyFrameStrings = ffmpegService.getVideoKeyFrame(videoPath.toString());
-            double videoDuration = ffmpegService.getVideoDuration(videoPath.toString());
+        // ffprobe 는 호출자 Context 의 작업 우선순위로 실행 (적재는 BATCH)
+        return Mono.deferContextual(context -> Mono.fromCallable(() -> {
+            // 적재 시 키프레임 인덱스를 저장해서 이후 플레이리스트 생성, 세그먼트 구간 조회에 사용
+            long[] timeline = loadKeyFrameIndex(fileId, videoPath.toString(), videoPath, Files.size(videoPath),
+                    Files.getLastModifiedTime(videoPath).toMillis(), context).segmentTimeline(SEGMENT_LENGTH);
+            Double videoDuration = null; // 10초 단위 플레이리스트를 만들 때만 조회
 
             // 정의된 모든 해상도(enum)에 대해 반복
             for (VideoResolutionEnum resolution : VideoResolutionEnum.values()) {
                 String type = resolution.getType();
 
                 StringBuilder m3u8Builder;
-                final int SEGMENT_LENGTH = 10;
                 BigDecimal prevFrame = new BigDecimal("0.0");
                 BigDecimal nowFrame = new BigDecimal("0.0");
                 BigDecimal segmentLengthBD = new BigDecimal(SEGMENT_LENGTH);
                 BigDecimal duration;
 
                 try {
-                    // 각 해상도 타입에 맞는 M3U8 파일 내용을 생성.
-                    m3u8Builder = new StringBuilder()
-                            .append("#EXTM3U\n")
-                            .append("#EXT-X-VERSION:7\n")
-                            .append("#EXT-X-TARGETDURATION:10\n")
-                            .append("#EXT-X-PLAYLIST-TYPE:VOD\n")
-                            .append("#EXT-X-MEDIA-SEQUENCE:0\n");
-
-                    // 각 키프레임을 순회하며 세그먼트를 나눕니다.
-                    for (List<String> keyFrames : keyFrameStrings) {
-                        nowFrame = new BigDecimal(keyFrames.get(1));
-                        if (nowFrame.compareTo(prevFrame.add(segmentLengthBD)) >= 0) {
-                            duration = nowFrame.subtract(prevFrame);
-
-                            m3u8Builder.append("#EXTINF:")
-                                    .append(duration.setScale(6, RoundingMode.HALF_UP).toPlainString()).append(",\n")
-                                    .append(videoBaseUrl).append(hlstsUrl)
-                                    .append("?fileId=").append(fileId)
-                                    .append("&ss=").append(prevFrame.toPlainString())
-                                    .append("&to=").append(nowFrame.toPlainString())
-                                    .append("&type=").append(type) // 현재 해상도 타입 적용
-                                    .append('\n');
-                            prevFrame = nowFrame;
-                        }
-                    }
-                    // 마지막 남은 세그먼트를 처리
-                    if (nowFrame.compareTo(prevFrame) > 0) {
-                        duration = nowFrame.subtract(prevFrame);
-
-                        m3u8Builder.append("#EXTINF:")
-                                .append(duration.setScale(6, RoundingMode.HALF_UP).toPlainString()).append(",\n")
-                                .append(videoBaseUrl).append(hlstsUrl)
-                                .append("?fileId=").append(fileId)
-                                .append("&ss=").append(prevFrame.toPlainString())
-                                .append("&to=").append(nowFrame.toPlainString())
-                                .append("&type=").append(type) // 현재 해상도 타입 적용
-                                .append('\n');
-                    }
-                    m3u8Builder.append("#EXT-X-ENDLIST");
+                    // 키프레임 인덱스 기준으로 세그먼트를 나눈 M3U8 파일 내용을 생성.
+                    m3u8Builder = new StringBuilder(new String(
+                            PlaylistCache.render(timeline, videoBaseUrl + hlstsUrl, null, fileId, type), StandardCharsets.UTF_8));
 
                 } catch (Exception e){ // 키프레임 에러 시 10초 단위로 나누도록 설정
                     // 각 해상도 타입에 맞는 M3U8 파일 내용을 생성.
@@ -589,6 +926,9 @@ public class VideoService {
                             .append("#EXT-X-PLAYLIST-TYPE:VOD\n")
                             .append("#EXT-X-MEDIA-SEQUENCE:0\n");
 
+                    if (videoDuration == null) {
+                        videoDuration = loadDuration(fileId, videoPath, context);
+                    }
                     duration = new BigDecimal(videoDuration);
                     nowFrame = nowFrame.add(segmentLengthBD);
 
@@ -623,9 +963,7 @@ public class VideoService {
 
                 // 상위 디렉토리가 없으면 생성합니다.
                 try {
-                    Files.createDirectories(tempFile.getParent());
-                    Files.writeString(tempFile, m3u8Builder.toString(), StandardOpenOption.CREATE,
-                            StandardOpenOption.TRUNCATE_EXISTING);
+                    AtomicFileWriter.writeString(tempFile, m3u8Builder.toString());
                 } catch (IOException e) {
                     log.error("Error M3U8 파일 생성 실패 {}: {}", tempFile, e.getMessage());
                     return false;
@@ -634,7 +972,7 @@ public class VideoService {
 
             // 5. 모든 작업이 예외 없이 완료되면 true를 반환합니다.
             return true;
-        }).doOnError(error -> {
+        })).doOnError(error -> {
             // 에러 발생 시 로그를 남길 수 있습니다.
             System.err.println("M3U8 파일 생성 중 오류 발생: " + error.getMessage());
         });
@@ -109,6 +109,29 @@ CREATE TABLE `contents_file_entity` (
 ) ENGINE=InnoDB AUTO_INCREMENT=48766 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
 
 
+-- webflux.media_probe definition
+
+CREATE TABLE `media_probe` (
+                               `file_id` int NOT NULL COMMENT '파일 ID',
+                               `source_path` varchar(1000) NOT NULL COMMENT '원본 파일 경로',
+                               `source_size` bigint NOT NULL COMMENT '조회 시 원본 파일 크기',
+                               `source_last_modified` bigint NOT NULL COMMENT '조회 시 원본 파일 수정 시간 (epoch millis)',
+                               `format_name` varchar(100) DEFAULT NULL,
+                               `duration` double DEFAULT NULL COMMENT '재생 시간 (초)',
+                               `bitrate` bigint DEFAULT NULL,
+                               `width` int DEFAULT NULL,
+                               `height` int DEFAULT NULL,
+                               `video_codec` varchar(50) DEFAULT NULL,
+                               `pix_fmt` varchar(50) DEFAULT NULL,
+                               `audio_codec` varchar(50) DEFAULT NULL,
+                               `audio_languages` varchar(500) DEFAULT NULL COMMENT '오디오 스트림 언어 (쉼표 구분)',
+                               `subtitle_languages` varchar(500) DEFAULT NULL COMMENT '내장 자막 스트림 언어 (쉼표 구분)',
+                               `probed_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                               PRIMARY KEY (`file_id`),
+                               KEY `idx_media_probe_source_path` (`source_path`(255))
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+
 -- webflux.user_recently_watched_file definition
 
 CREATE TABLE `user_recently_watched_file` (
@@ -0,0 +1,114 @@
+package com.tankmilu.webflux.cache;
+
+import com.tankmilu.webflux.record.MediaProbeRecord;
+import com.tankmilu.webflux.record.SubtitleInfo;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FFprobeJsonParserTest {
+
+    // ffprobe 출력 순서 그대로 packets 가 streams 보다 먼저 나옴
+    private static final String OUTPUT = """
+            {
+                "packets": [
+                    { "codec_type": "audio", "stream_index": 1, "pts_time": "0.000000", "pos": "30", "flags": "K__" },
+                    { "codec_type": "video", "stream_index": 0, "pts_time": "0.000000", "pos": "48", "flags": "K__" },
+                    { "codec_type": "video", "stream_index": 0, "pts_time": "0.041708", "pos": "9000", "flags": "___" },
+                    { "codec_type": "video", "stream_index": 0, "pts_time": "N/A", "pos": "9500", "flags": "K__" },
+                    { "codec_type": "video", "stream_index": 0, "pts_time": "10.0100005", "pos": "500000", "flags": "K__",
+                      "side_data_list": [ { "side_data_type": "H.26[45] User Data Unregistered SEI message" } ] },
+                    { "codec_type": "video", "stream_index": 0, "pts_time": "4.004000", "flags": "K_" },
+                    { "codec_type": "video", "stream_index": 3, "pts_time": "0.000000", "pos": "1000", "flags": "K__" }
+                ],
+                "streams": [
+                    { "index": 0, "codec_name": "h264", "codec_type": "video", "width": 1920, "height": 1080, "pix_fmt": "yuv420p",
+                      "disposition": { "default": 1 }, "tags": { "language": "und", "title": "main" } },
+                    { "index": 1, "codec_name": "aac", "codec_type": "audio", "tags": { "language": "jpn" } },
+                    { "index": 2, "codec_name": "ass", "codec_type": "subtitle", "tags": { "language": "kor" } },
+                    { "index": 3, "codec_name": "mjpeg", "codec_type": "video", "width": 600, "height": 600 },
+                    { "index": 4, "codec_name": "subrip", "codec_type": "subtitle" }
+                ],
+                "format": {
+                    "filename": "video.mkv",
+                    "format_name": "matroska,webm",
+                    "duration": "1420.500000",
+                    "size": "800000000",
+                    "bit_rate": "4500000",
+                    "tags": { "title": "video" }
+                }
+            }
+            """;
+
+    @Test
+    void parsesMetaDataAndFirstVideoKeyFrames() throws IOException {
+        MediaProbeRecord probe = FFprobeJsonParser.parse(new ByteArrayInputStream(OUTPUT.getBytes(StandardCharsets.UTF_8)), 800_000_000L, 42);
+
+        assertThat(probe.format()).isEqualTo("matroska,webm");
+        assertThat(probe.duration()).isEqualTo(1420.5);
+        assertThat(probe.bitrate()).isEqualTo(4_500_000L);
+        assertThat(probe.width()).isEqualTo(1920);
+        assertThat(probe.height()).isEqualTo(1080);
+        assertThat(probe.videoCodec()).isEqualTo("h264");
+        assertThat(probe.pixFmt()).isEqualTo("yuv420p");
+        assertThat(probe.audioCodec()).isEqualTo("aac");
+        assertThat(probe.audioLanguages()).containsExactly("jpn");
+        assertThat(probe.subtitles()).containsExactly(new SubtitleInfo("v0", "kor"), new SubtitleInfo("v1", null));
+
+        // 첫 비디오 스트림의 키프레임만 pts 순서로 정렬 (N/A 는 제외, 위치가 없으면 -1)
+        KeyFrameIndex index = probe.keyFrameIndex();
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.ptsMicros(0)).isZero();
+        assertThat(index.position(0)).isEqualTo(48);
+        assertThat(index.ptsMicros(1)).isEqualTo(4_004_000L);
+        assertThat(index.position(1)).isEqualTo(-1);
+        assertThat(index.ptsMicros(2)).isEqualTo(KeyFrameIndex.toMicros("10.0100005"));
+        assertThat(index.position(2)).isEqualTo(500_000L);
+    }
+
+    @Test
+    void outputWithoutPacketsHasNoKeyFrameIndex() throws IOException {
+        String output = "{\"streams\": [{\"index\": 0, \"codec_name\": \"h264\", \"codec_type\": \"video\", \"width\": 1280, \"height\": 720}],"
+                + "\"format\": {\"format_name\": \"mpegts\", \"duration\": \"N/A\"}}";
+
+        MediaProbeRecord probe = FFprobeJsonParser.parse(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)), 0, 0);
+
+        assertThat(probe.height()).isEqualTo(720);
+        assertThat(probe.duration()).isZero();
+        assertThat(probe.audioCodec()).isNull();
+        assertThat(probe.keyFrameIndex()).isNull();
+    }
+
+    @Test
+    void negativeAndUnorderedPtsAreSorted() throws IOException {
+        // 패킷은 디코딩 순서로 출력되므로 pts 가 역전될 수 있음 (B 프레임 앞의 음수 pts 포함)
+        String output = "{\"packets\": ["
+                + "{\"stream_index\": 0, \"pts_time\": \"7265.123456\", \"pos\": \"987654321\", \"flags\": \"K__\"},"
+                + "{\"stream_index\": 0, \"pts_time\": \"-0.021333\", \"pos\": \"\", \"flags\": \"K__\"}],"
+                + "\"streams\": [{\"index\": 0, \"codec_type\": \"video\", \"width\": 1280, \"height\": 720}]}";
+
+        KeyFrameIndex index = FFprobeJsonParser.parse(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)), 0, 0)
+                .keyFrameIndex();
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.ptsMicros(0)).isEqualTo(-21_333L);
+        assertThat(index.position(0)).isEqualTo(-1);
+        assertThat(index.ptsMicros(1)).isEqualTo(7_265_123_456L);
+        assertThat(index.position(1)).isEqualTo(987_654_321L);
+    }
+
+    @Test
+    void emptyOutputIsRejected() {
+        // ffprobe 가 실패하면 표준 출력이 비어있음
+        assertThatThrownBy(() -> FFprobeJsonParser.parse(new ByteArrayInputStream(new byte[0]), 0, 0))
+                .isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> FFprobeJsonParser.parse(new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)), 0, 0))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("비디오 스트림");
+    }
+}
@@ -0,0 +1,82 @@
+package com.tankmilu.webflux.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileChannelPoolTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path videoFile;
+    private SimpleMeterRegistry meterRegistry;
+    private FileChannelPool pool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        videoFile = Files.write(tempDir.resolve("video.mp4"), new byte[100]);
+        meterRegistry = new SimpleMeterRegistry();
+        pool = new FileChannelPool(meterRegistry, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void concurrentReadersShareChannel() throws IOException {
+        try (FileChannelPool.Lease first = pool.acquire(videoFile, 1L);
+             FileChannelPool.Lease second = pool.acquire(videoFile, 1L)) {
+            assertThat(second.channel()).isSameAs(first.channel());
+            assertThat(pool.openChannelCount()).isEqualTo(1);
+        }
+        assertThat(meterRegistry.counter("video.channel.pool.hits").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("video.channel.pool.misses").count()).isEqualTo(1);
+    }
+
+    @Test
+    void idleChannelClosed() throws IOException {
+        FileChannelPool.Lease lease = pool.acquire(videoFile, 1L);
+        pool.closeIdleChannels();
+        assertThat(lease.channel().isOpen()).isTrue(); // 사용 중이면 닫지 않음
+
+        lease.close();
+        pool.closeIdleChannels();
+        assertThat(lease.channel().isOpen()).isFalse();
+        assertThat(pool.openChannelCount()).isZero();
+    }
+
+    @Test
+    void replacedFileOpensNewChannelAndClosesOldOnRelease() throws IOException {
+        FileChannelPool.Lease oldLease = pool.acquire(videoFile, 1L);
+        try (FileChannelPool.Lease newLease = pool.acquire(videoFile, 2L)) {
+            assertThat(newLease.channel()).isNotSameAs(oldLease.channel());
+            assertThat(oldLease.channel().isOpen()).isTrue(); // 기존 사용자가 읽는 중
+
+            oldLease.close();
+            assertThat(oldLease.channel().isOpen()).isFalse();
+        }
+    }
+
+    @Test
+    void invalidatedChannelClosedAfterLastRelease() throws IOException {
+        FileChannelPool.Lease lease = pool.acquire(videoFile, FileChannelPool.ANY_VERSION);
+        pool.invalidate(videoFile);
+        assertThat(lease.channel().isOpen()).isTrue();
+
+        lease.close();
+        lease.close(); // 중복 반납은 무시
+        assertThat(lease.channel().isOpen()).isFalse();
+        assertThat(pool.openChannelCount()).isZero();
+    }
+}
@@ -0,0 +1,72 @@
+package com.tankmilu.webflux.cache;
+
+import com.tankmilu.webflux.record.SegmentBoundaryRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeyFrameIndexStoreTest {
+
+    @TempDir
+    Path indexDir;
+
+    private KeyFrameIndexStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new KeyFrameIndexStore(indexDir.toString());
+    }
+
+    @Test
+    void savedIndexIsMappedAndValidatedAgainstSource() throws IOException {
+        KeyFrameIndex index = KeyFrameIndex.of(1000, 42,
+                new long[]{0, 4_004_000, 10_010_000},
+                new long[]{48, 5000, -1});
+        store.save(7L, index);
+
+        // 다른 인스턴스(배치 적재 후 웹 서버)에서도 디스크 인덱스를 매핑해서 사용
+        KeyFrameIndex mapped = new KeyFrameIndexStore(indexDir.toString()).find(7L, 1000, 42).orElseThrow();
+        assertThat(mapped.size()).isEqualTo(3);
+        assertThat(mapped.ptsMicros(2)).isEqualTo(10_010_000L);
+        assertThat(mapped.position(1)).isEqualTo(5000L);
+        assertThat(mapped.position(2)).isEqualTo(-1L);
+
+        // 원본이 바뀌면 사용하지 않음
+        assertThat(store.find(7L, 1000, 43)).isEmpty();
+        assertThat(store.find(7L, 1001, 42)).isEmpty();
+        assertThat(store.find(7L, -1, 42)).isPresent();
+
+        store.invalidate(7L);
+        assertThat(store.find(7L, 1000, 42)).isEmpty();
+        assertThat(Files.list(indexDir)).isEmpty();
+    }
+
+    @Test
+    void segmentBoundariesMatchPlaylistRule() {
+        KeyFrameIndex index = KeyFrameIndex.of(0, 0,
+                new long[]{0, 4_004_000, 10_010_000, 12_012_000, 20_020_000, 23_500_000},
+                new long[]{0, 10, 20, 30, 40, 50});
+
+        assertThat(index.segmentBoundaries(10)).containsExactly(
+                new SegmentBoundaryRecord("0.0", "10.010000"),
+                new SegmentBoundaryRecord("10.010000", "20.020000"),
+                new SegmentBoundaryRecord("20.020000", "23.500000"));
+    }
+
+    @Test
+    void floorIndexFindsKeyFrameAtOrBefore() {
+        KeyFrameIndex index = KeyFrameIndex.of(0, 0, new long[]{1_000, 5_000, 9_000}, new long[]{0, 10, 20});
+
+        assertThat(index.floorIndex(500)).isEqualTo(-1);
+        assertThat(index.floorIndex(1_000)).isZero();
+        assertThat(index.floorIndex(8_999)).isEqualTo(1);
+        assertThat(index.floorIndex(100_000)).isEqualTo(2);
+    }
+}
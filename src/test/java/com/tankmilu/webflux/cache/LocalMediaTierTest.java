@@ -0,0 +1,86 @@
+package com.tankmilu.webflux.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalMediaTierTest {
+
+    @TempDir
+    Path nasDir;
+
+    @TempDir
+    Path localDir;
+
+    private LocalMediaTier tier;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // 로컬 디스크 예산 250 바이트
+        tier = new LocalMediaTier(true, localDir.toString(), 250, 1);
+        tier.loadIndex();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tier.shutdown();
+    }
+
+    @Test
+    void firstResolveCopiesThenServesLocal() throws Exception {
+        Path source = createSource("a.mp4", 100);
+        long version = Files.getLastModifiedTime(source).toMillis();
+
+        assertThat(resolveAndWait(1L, source, version)).isEqualTo(source);
+
+        Path local = tier.resolve(1L, source, version, 100, () -> { });
+        assertThat(local.getParent()).isEqualTo(localDir);
+        assertThat(Files.readAllBytes(local)).isEqualTo(Files.readAllBytes(source));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedOverBudget() throws Exception {
+        Path first = createSource("a.mp4", 100);
+        Path second = createSource("b.mp4", 100);
+        Path third = createSource("c.mp4", 100);
+        long version1 = Files.getLastModifiedTime(first).toMillis();
+        long version2 = Files.getLastModifiedTime(second).toMillis();
+        long version3 = Files.getLastModifiedTime(third).toMillis();
+        List<Long> evicted = new CopyOnWriteArrayList<>();
+        tier.addEvictionListener(evicted::add); // 경로 캐시 무효화
+
+        resolveAndWait(1L, first, version1);
+        resolveAndWait(2L, second, version2);
+        tier.resolve(1L, first, version1, 100, () -> { }); // 1번 파일 사용 -> 2번이 가장 오래 사용하지 않은 파일
+        resolveAndWait(3L, third, version3);
+
+        assertThat(tier.resolve(1L, first, version1, 100, () -> { }).getParent()).isEqualTo(localDir);
+        assertThat(tier.resolve(3L, third, version3, 100, () -> { }).getParent()).isEqualTo(localDir);
+        try (var files = Files.list(localDir)) {
+            assertThat(files.map(path -> path.getFileName().toString())).noneMatch(name -> name.startsWith("2."));
+        }
+        assertThat(evicted).containsExactly(2L);
+    }
+
+    private Path resolveAndWait(Long fileId, Path source, long version) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(1);
+        Path resolved = tier.resolve(fileId, source, version, 100, ready::countDown);
+        assertThat(ready.await(5, TimeUnit.SECONDS)).isTrue();
+        return resolved;
+    }
+
+    private Path createSource(String name, int size) throws IOException {
+        return Files.write(nasDir.resolve(name), new byte[size]);
+    }
+}
@@ -0,0 +1,79 @@
+package com.tankmilu.webflux.cache;
+
+import com.tankmilu.webflux.enums.SegmentFormatEnum;
+import com.tankmilu.webflux.record.SegmentBoundaryRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PlaylistCacheTest {
+
+    private static final String SEGMENT_URL = "http://localhost/api/video/hlsts";
+
+    @Test
+    void renderMatchesDecimalPlaylist() {
+        KeyFrameIndex index = KeyFrameIndex.of(0, 0,
+                new long[]{0, 4_004_000, 10_010_000, 12_012_005, 20_020_040, 23_500_000},
+                new long[]{0, 10, 20, 30, 40, 50});
+
+        String rendered = new String(PlaylistCache.render(index.segmentTimeline(10), SEGMENT_URL, null, 3L, "1"), StandardCharsets.UTF_8);
+
+        // 기존 BigDecimal 방식으로 만든 플레이리스트와 같아야 함
+        StringBuilder expected = new StringBuilder()
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:7\n")
+                .append("#EXT-X-TARGETDURATION:10\n")
+                .append("#EXT-X-PLAYLIST-TYPE:VOD\n")
+                .append("#EXT-X-MEDIA-SEQUENCE:0\n");
+        for (SegmentBoundaryRecord segment : index.segmentBoundaries(10)) {
+            BigDecimal duration = new BigDecimal(segment.to()).subtract(new BigDecimal(segment.start()));
+            expected.append("#EXTINF:").append(duration.setScale(6, RoundingMode.HALF_UP).toPlainString()).append(",\n")
+                    .append(SEGMENT_URL)
+                    .append("?fileId=3&ss=").append(segment.start())
+                    .append("&to=").append(segment.to())
+                    .append("&type=1\n");
+        }
+        expected.append("#EXT-X-ENDLIST");
+
+        assertThat(rendered).isEqualTo(expected.toString());
+        assertThat(rendered).contains("#EXTINF:10.010000,\n" + SEGMENT_URL + "?fileId=3&ss=0.0&to=10.010000&type=1\n");
+        assertThat(KeyFrameIndex.formatSeconds(-21_000)).isEqualTo(BigDecimal.valueOf(-21_000, 6).toPlainString());
+        assertThat(KeyFrameIndex.formatSeconds(12_000_305)).isEqualTo("12.000305");
+    }
+
+    @Test
+    void timelineLoadedOncePerFileVersion() throws Exception {
+        PlaylistCache cache = new PlaylistCache(new SimpleMeterRegistry(), 1024 * 1024, 1024 * 1024);
+        AtomicInteger loads = new AtomicInteger();
+        PlaylistCache.TimelineLoader loader = () -> {
+            loads.incrementAndGet();
+            return new long[]{0, 10_000_000, 15_500_000};
+        };
+
+        byte[] original = cache.get(1L, 100, "0", SegmentFormatEnum.TS, SEGMENT_URL, null, loader);
+        byte[] low = cache.get(1L, 100, "1", SegmentFormatEnum.TS, SEGMENT_URL, null, loader);
+        assertThat(loads).hasValue(1);
+        assertThat(new String(low, StandardCharsets.UTF_8)).contains("&ss=10.000000&to=15.500000&type=1");
+        assertThat(cache.getIfPresent(1L, 100, "0", SegmentFormatEnum.TS)).isSameAs(original);
+
+        // CMAF 플레이리스트는 같은 구간에 초기화 세그먼트만 추가
+        String cmaf = new String(cache.get(1L, 100, "1", SegmentFormatEnum.CMAF, "/video/hls_fmp4", "/video/hls_init", loader), StandardCharsets.UTF_8);
+        assertThat(loads).hasValue(1);
+        assertThat(cmaf).contains("#EXT-X-MAP:URI=\"/video/hls_init?fileId=1&type=1\"\n")
+                .contains("/video/hls_fmp4?fileId=1&ss=10.000000&to=15.500000&type=1");
+
+        // 파일이 바뀌면 새로 조회
+        assertThat(cache.getIfPresent(1L, 101, "0", SegmentFormatEnum.TS)).isNull();
+        cache.get(1L, 101, "0", SegmentFormatEnum.TS, SEGMENT_URL, null, loader);
+        assertThat(loads).hasValue(2);
+
+        cache.invalidate(1L);
+        assertThat(cache.getIfPresent(1L, 101, "0", SegmentFormatEnum.TS)).isNull();
+    }
+}
@@ -0,0 +1,97 @@
+package com.tankmilu.webflux.cache;
+
+import com.tankmilu.webflux.record.SegmentKeyRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentCacheStoreTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private SegmentCacheStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // 디스크 예산 250 바이트
+        store = new SegmentCacheStore(true, cacheDir.toString(), 250);
+        store.loadIndex();
+    }
+
+    @Test
+    void publishedSegmentIsFound() throws IOException {
+        SegmentKeyRecord key = SegmentKeyRecord.of(1L, 100L, "10.000", "20.0", "2");
+
+        assertThat(store.find(key).block()).isNull();
+
+        Path published = publish(key, 100);
+        assertThat(published).isEqualTo(cacheDir.resolve(key.fileName()));
+        // 시간 표기가 달라도 같은 세그먼트
+        assertThat(store.find(SegmentKeyRecord.of(1L, 100L, "10", "20", "2")).block()).isEqualTo(published);
+        // 원본 파일이 교체되면 다른 세그먼트
+        assertThat(store.find(SegmentKeyRecord.of(1L, 200L, "10", "20", "2")).block()).isNull();
+        try (var files = Files.list(cacheDir)) {
+            assertThat(files.count()).isEqualTo(1); // 임시 파일이 남지 않음
+        }
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedOverBudget() throws IOException {
+        SegmentKeyRecord first = SegmentKeyRecord.of(1L, 1L, "0", "10", "0");
+        SegmentKeyRecord second = SegmentKeyRecord.of(1L, 1L, "10", "20", "0");
+        SegmentKeyRecord third = SegmentKeyRecord.of(1L, 1L, "20", "30", "0");
+
+        publish(first, 100);
+        publish(second, 100);
+        store.find(first).block(); // first 를 최근 사용으로 갱신
+        publish(third, 100);
+
+        assertThat(store.find(first).block()).isNotNull();
+        assertThat(store.find(second).block()).isNull();
+        assertThat(Files.exists(cacheDir.resolve(second.fileName()))).isFalse();
+        assertThat(store.find(third).block()).isNotNull();
+        assertThat(store.usedBytes()).isEqualTo(200);
+    }
+
+    @Test
+    void invalidateRemovesOnlyThatFile() throws IOException {
+        SegmentKeyRecord key1 = SegmentKeyRecord.of(1L, 1L, "0", "10", "0");
+        SegmentKeyRecord key11 = SegmentKeyRecord.of(11L, 1L, "0", "10", "0");
+        publish(key1, 50);
+        publish(key11, 50);
+
+        store.invalidate(1L);
+
+        assertThat(store.find(key1).block()).isNull();
+        assertThat(store.find(key11).block()).isNotNull();
+        assertThat(store.usedBytes()).isEqualTo(50);
+    }
+
+    @Test
+    void loadIndexRestoresSegmentsAndDropsPartFiles() throws IOException {
+        SegmentKeyRecord key = SegmentKeyRecord.of(1L, 1L, "0", "10", "0");
+        publish(key, 100);
+        Path part = store.newPartPath(key);
+        Files.write(part, new byte[10]);
+
+        SegmentCacheStore restarted = new SegmentCacheStore(true, cacheDir.toString(), 250);
+        restarted.loadIndex();
+
+        assertThat(restarted.find(key).block()).isNotNull();
+        assertThat(restarted.usedBytes()).isEqualTo(100);
+        assertThat(Files.exists(part)).isFalse();
+    }
+
+    private Path publish(SegmentKeyRecord key, int size) throws IOException {
+        Path part = store.newPartPath(key);
+        Files.write(part, new byte[size]);
+        return store.publish(key, part).block();
+    }
+}
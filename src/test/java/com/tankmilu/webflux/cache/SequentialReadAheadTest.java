@@ -0,0 +1,78 @@
+package com.tankmilu.webflux.cache;
+
+import com.tankmilu.webflux.record.VideoMetaRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class SequentialReadAheadTest {
+
+    private static final int FILE_LENGTH = 100_000;
+
+    @TempDir
+    Path tempDir;
+
+    private Path videoFile;
+    private SimpleMeterRegistry meterRegistry;
+    private SequentialReadAhead readAhead;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        videoFile = Files.write(tempDir.resolve("video.mp4"), new byte[FILE_LENGTH]);
+        meterRegistry = new SimpleMeterRegistry();
+        FileChannelPool channelPool = new FileChannelPool(meterRegistry, 30);
+        VideoBlockCache blockCache = new VideoBlockCache(DefaultDataBufferFactory.sharedInstance, channelPool, false, 1000, 1_000_000, 2, 1_000_000, 60);
+        // 순차 판단 거리 10000, 선읽기 5000 바이트, 연속 2회 순차 요청 시 선읽기
+        readAhead = new SequentialReadAhead(blockCache, channelPool, meterRegistry, true, 10_000, 5_000, 2);
+    }
+
+    @Test
+    void sequentialRequestsTriggerPrefetchAndHit() {
+        readAhead.onRangeRequest("user", range(0));
+        readAhead.onRangeRequest("user", range(4_000));
+        readAhead.onRangeRequest("user", range(8_000)); // 다음 구간 12000 ~ 16999 선읽기
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(meterRegistry.counter("video.readahead.prefetched.bytes").count()).isEqualTo(5_000));
+
+        readAhead.onRangeRequest("user", range(12_000));
+        assertThat(meterRegistry.counter("video.readahead.hits").count()).isEqualTo(1);
+        assertThat(meterRegistry.get("video.readahead.hit.ratio").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void seekAwayCountsMissAndWastedBytes() {
+        readAhead.onRangeRequest("user", range(0));
+        readAhead.onRangeRequest("user", range(4_000));
+        readAhead.onRangeRequest("user", range(8_000));
+
+        readAhead.onRangeRequest("user", range(60_000)); // 선읽기 구간을 지나쳐 탐색
+        assertThat(meterRegistry.counter("video.readahead.misses").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("video.readahead.wasted.bytes").count()).isEqualTo(5_000);
+    }
+
+    @Test
+    void usersTrackedSeparately() {
+        readAhead.onRangeRequest("user1", range(0));
+        readAhead.onRangeRequest("user2", range(4_000));
+        readAhead.onRangeRequest("user1", range(8_000));
+
+        assertThat(meterRegistry.counter("video.readahead.prefetched.bytes").count()).isZero();
+    }
+
+    // bytes=start- 형태의 끝을 지정하지 않은 요청
+    private VideoMetaRecord range(long start) {
+        return new VideoMetaRecord(1L, videoFile, "video/mp4", null, start, FILE_LENGTH - 1,
+                FILE_LENGTH - start, FILE_LENGTH, null, null, true, "\"1\"", 1L);
+    }
+}
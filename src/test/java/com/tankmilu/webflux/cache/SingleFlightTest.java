@@ -0,0 +1,95 @@
+package com.tankmilu.webflux.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SingleFlight singleFlight;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight(meterRegistry);
+    }
+
+    @Test
+    void concurrentCallersShareOneExecution() {
+        AtomicInteger executions = new AtomicInteger();
+        Sinks.One<String> result = Sinks.one();
+
+        Mono<String> first = singleFlight.execute("segment:a", () -> {
+            executions.incrementAndGet();
+            return result.asMono();
+        });
+        Mono<String> second = singleFlight.execute("segment:a", () -> {
+            executions.incrementAndGet();
+            return Mono.just("other");
+        });
+
+        StepVerifier.create(Mono.zip(first, second))
+                .then(() -> result.tryEmitValue("done"))
+                .assertNext(pair -> {
+                    assertThat(pair.getT1()).isEqualTo("done");
+                    assertThat(pair.getT2()).isEqualTo("done");
+                })
+                .verifyComplete();
+
+        assertThat(executions).hasValue(1);
+        assertThat(singleFlight.inFlightCount()).isZero();
+        assertThat(meterRegistry.counter("media.singleflight.joins").count()).isEqualTo(1);
+    }
+
+    @Test
+    void completedKeyRunsAgain() {
+        AtomicInteger executions = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(singleFlight.execute("probe:1", () -> Mono.just(executions.incrementAndGet())))
+                    .expectNext(i + 1)
+                    .verifyComplete();
+        }
+    }
+
+    @Test
+    void errorIsSharedAndKeyReleased() {
+        Sinks.One<String> result = Sinks.one();
+        Mono<String> first = singleFlight.execute("m3u8:1", result::asMono);
+        Mono<String> second = singleFlight.execute("m3u8:1", () -> Mono.just("unused"));
+
+        StepVerifier.create(Mono.zip(first.onErrorReturn("failed"), second.onErrorReturn("failed")))
+                .then(() -> result.tryEmitError(new IOException("ffmpeg")))
+                .assertNext(pair -> assertThat(pair.toList()).containsOnly("failed"))
+                .verifyComplete();
+
+        assertThat(singleFlight.inFlightCount()).isZero();
+    }
+
+    @Test
+    void cancelledCallerDoesNotCancelWork() {
+        Sinks.One<String> result = Sinks.one();
+        AtomicInteger cancelled = new AtomicInteger();
+        Mono<String> work = result.asMono().doOnCancel(cancelled::incrementAndGet);
+
+        StepVerifier.create(singleFlight.execute("subtitle:1", () -> work))
+                .thenCancel()
+                .verify(Duration.ofSeconds(1));
+
+        StepVerifier.create(singleFlight.execute("subtitle:1", () -> Mono.just("unused")))
+                .then(() -> result.tryEmitValue("done"))
+                .expectNext("done")
+                .verifyComplete();
+        assertThat(cancelled).hasValue(0);
+    }
+}
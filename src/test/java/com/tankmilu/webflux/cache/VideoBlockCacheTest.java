@@ -0,0 +1,62 @@
+package com.tankmilu.webflux.cache;
+
+import com.tankmilu.webflux.record.VideoMetaRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VideoBlockCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path videoFile;
+    private byte[] content;
+    private VideoBlockCache blockCache;
+    private VideoMetaRecord videoMetaRecord;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        content = new byte[10_000];
+        new Random(7).nextBytes(content);
+        videoFile = Files.write(tempDir.resolve("video.mkv"), content);
+        // 1000 바이트 블록, 앞 2개 블록은 고정 영역
+        blockCache = new VideoBlockCache(DefaultDataBufferFactory.sharedInstance, new FileChannelPool(new SimpleMeterRegistry(), 30), true, 1000, 1_000_000, 2, 1_000_000, 60);
+        videoMetaRecord = new VideoMetaRecord(1L, videoFile, "video/x-matroska", null, 0, content.length - 1,
+                content.length, content.length, null, null, false, "\"1\"", 1L);
+    }
+
+    @Test
+    void readRangeAcrossBlocks() {
+        assertThat(read(1500, 4499)).isEqualTo(Arrays.copyOfRange(content, 1500, 4500));
+        assertThat(read(9990, 9999)).isEqualTo(Arrays.copyOfRange(content, 9990, 10_000));
+    }
+
+    @Test
+    void cachedBlocksServedWithoutFile() throws IOException {
+        read(0, 5999);
+        Files.delete(videoFile);
+
+        assertThat(read(500, 5499)).isEqualTo(Arrays.copyOfRange(content, 500, 5500));
+    }
+
+    private byte[] read(long start, long end) {
+        DataBuffer joined = DataBufferUtils.join(blockCache.read(videoMetaRecord, start, end)).block();
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        DataBufferUtils.release(joined);
+        return bytes;
+    }
+}
@@ -0,0 +1,65 @@
+package com.tankmilu.webflux.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BandwidthShaperTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void tokenBucketAllowsBurstThenDelays() {
+        // 초당 1000 바이트, burst 2000 바이트
+        BandwidthShaper.TokenBucket bucket = new BandwidthShaper.TokenBucket(1000, 2000);
+
+        assertThat(bucket.reserve(1000, 0)).isZero();
+        assertThat(bucket.reserve(1000, 0)).isZero();
+        // burst 초과분부터 전송 속도만큼 지연
+        assertThat(bucket.reserve(1000, 0)).isEqualTo(SECOND);
+        assertThat(bucket.reserve(1000, 0)).isEqualTo(2 * SECOND);
+    }
+
+    @Test
+    void tokenBucketRefillsOverTime() {
+        BandwidthShaper.TokenBucket bucket = new BandwidthShaper.TokenBucket(1000, 0);
+
+        assertThat(bucket.reserve(1000, 0)).isEqualTo(SECOND);
+        // 충분히 시간이 지나면 다시 지연 없이 전송
+        assertThat(bucket.reserve(1000, 5 * SECOND)).isEqualTo(SECOND);
+        assertThat(bucket.reserve(500, 10 * SECOND)).isEqualTo(SECOND / 2);
+    }
+
+    @Test
+    void unshapedPlanPassesThrough() {
+        BandwidthShaper shaper = new BandwidthShaper(true, 4, 0, 0, 1000, 1000, 1000);
+        Flux<DataBuffer> source = Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(new byte[10]));
+
+        assertThat(shaper.isShaped("100")).isFalse();
+        assertThat(shaper.isShaped("103")).isTrue();
+        assertThat(shaper.shape(source, "100")).isSameAs(source);
+    }
+
+    @Test
+    void shapedPlanDelaysEmission() {
+        // 초당 1000 바이트, burst 없음
+        BandwidthShaper shaper = new BandwidthShaper(true, 0, 0, 0, 0, 0, 1000);
+        Flux<DataBuffer> source = Flux.range(0, 3).map(i -> DefaultDataBufferFactory.sharedInstance.wrap(new byte[100]));
+
+        StepVerifier.withVirtualTime(() -> shaper.shape(source, "103"))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(90))
+                .thenAwait(Duration.ofMillis(10))
+                .expectNextCount(1)
+                .thenAwait(Duration.ofSeconds(1))
+                .expectNextCount(2)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+}
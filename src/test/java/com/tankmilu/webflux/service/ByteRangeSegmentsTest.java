@@ -0,0 +1,140 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.cache.KeyFrameIndex;
+import com.tankmilu.webflux.cache.PlaylistCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteRangeSegmentsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void mpegTsSegmentsStartAtKeyFramePackets() throws Exception {
+        // SDT, PAT, PMT(0x1000) 다음에 미디어 패킷(0x100)
+        Path source = tempDir.resolve("source.ts");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(tsPacket(0x11, new byte[]{0x00, 0x42}));
+        out.writeBytes(tsPacket(0x00, new byte[]{0x00, 0x00, (byte) 0xB0, 0x0D, 0x00, 0x01, (byte) 0xC1, 0x00, 0x00,
+                0x00, 0x01, (byte) 0xF0, 0x00, 0x00, 0x00, 0x00, 0x00}));
+        out.writeBytes(tsPacket(0x1000, new byte[]{0x00, 0x02}));
+        while (out.size() < 100_000) {
+            out.writeBytes(tsPacket(0x100, new byte[0]));
+        }
+        Files.write(source, out.toByteArray());
+        long fileLength = Files.size(source);
+
+        KeyFrameIndex index = KeyFrameIndex.of(fileLength, 0,
+                new long[]{0, 5_000_000, 10_000_000, 15_000_000, 20_000_000, 22_000_000},
+                new long[]{564, 18_800, 37_600, 56_400, 75_200, 94_000});
+        long[] timeline = index.segmentTimeline(10);
+
+        ByteRangeSegments segments = ByteRangeSegments.mpegTs(index, timeline, source, fileLength);
+
+        // 경계 세그먼트에 PAT, PMT 가 없어도 재생할 수 있도록 파일 앞의 PSI 패킷을 초기화 구간으로 사용, 마지막 세그먼트는 파일 끝까지
+        assertThat(segments.initLength).isEqualTo(564);
+        assertThat(segments.offsets).containsExactly(564, 37_600, 75_200, fileLength);
+        assertThat(new String(PlaylistCache.renderByteRange(timeline, segments.offsets, segments.initLength,
+                "http://localhost/api/video/filerange", 3L), StandardCharsets.UTF_8))
+                .contains("#EXT-X-MAP:URI=\"http://localhost/api/video/filerange?fileId=3\",BYTERANGE=\"564@0\"\n")
+                .contains("#EXTINF:10.000000,\n#EXT-X-BYTERANGE:37036@564\nhttp://localhost/api/video/filerange?fileId=3\n")
+                .contains("#EXTINF:2.000000,\n#EXT-X-BYTERANGE:" + (fileLength - 75_200) + "@75200\n");
+
+        // 키프레임 위치를 모르면 사용하지 않음
+        KeyFrameIndex unknown = KeyFrameIndex.of(fileLength, 0,
+                new long[]{0, 10_000_000, 20_000_000}, new long[]{564, -1, 75_200});
+        assertThat(ByteRangeSegments.mpegTs(unknown, unknown.segmentTimeline(10), source, fileLength)).isNull();
+    }
+
+    @Test
+    void mpegTsWithoutLeadingProgramTablesIsNotSplit() throws Exception {
+        // PAT, PMT 없이 미디어 패킷으로 시작하면 초기화 구간을 만들 수 없으므로 세그먼트 플레이리스트 사용
+        Path source = tempDir.resolve("headless.ts");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (out.size() < 100_000) {
+            out.writeBytes(tsPacket(0x100, new byte[0]));
+        }
+        Files.write(source, out.toByteArray());
+
+        KeyFrameIndex index = KeyFrameIndex.of(0, 0, new long[]{0, 10_000_000, 12_000_000}, new long[]{0, 37_600, 56_400});
+
+        assertThat(ByteRangeSegments.mpegTs(index, index.segmentTimeline(10), source, Files.size(source))).isNull();
+    }
+
+    @Test
+    void fragmentedMp4SegmentsStartAtKeyFrameFragments() throws Exception {
+        Path source = tempDir.resolve("source.mp4");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        box(out, "ftyp", 24);
+        box(out, "moov", 76);   // 24 ~ 100
+        box(out, "moof", 50);   // 100, 키프레임 0초
+        box(out, "mdat", 950);  // 150 ~ 1100
+        box(out, "moof", 50);   // 1100, 키프레임 10초
+        box(out, "mdat", 950);  // 1150 ~ 2100
+        box(out, "moof", 50);   // 2100, 키프레임 20초
+        box(out, "mdat", 400);  // 2150 ~ 2550
+        box(out, "mfra", 16);
+        Files.write(source, out.toByteArray());
+
+        KeyFrameIndex index = KeyFrameIndex.of(0, 0,
+                new long[]{0, 10_000_000, 20_000_000, 24_000_000},
+                new long[]{150, 1150, 2150, 2400});
+        long[] timeline = index.segmentTimeline(10);
+
+        ByteRangeSegments segments = ByteRangeSegments.fragmentedMp4(index, timeline, source);
+
+        assertThat(segments.initLength).isEqualTo(100);
+        assertThat(segments.offsets).containsExactly(100, 1100, 2100, 2550);
+        assertThat(new String(PlaylistCache.renderByteRange(timeline, segments.offsets, segments.initLength,
+                "http://localhost/api/video/filerange", 3L), StandardCharsets.UTF_8))
+                .contains("#EXT-X-MAP:URI=\"http://localhost/api/video/filerange?fileId=3\",BYTERANGE=\"100@0\"\n")
+                .contains("#EXT-X-BYTERANGE:1000@100\n")
+                .contains("#EXT-X-BYTERANGE:450@2100\n");
+
+        // 경계 키프레임의 조각에 이전 키프레임이 함께 있으면 바이트 범위로 나눌 수 없음
+        KeyFrameIndex misaligned = KeyFrameIndex.of(0, 0,
+                new long[]{0, 5_000_000, 10_000_000, 20_000_000},
+                new long[]{150, 1150, 1400, 2150});
+        assertThat(ByteRangeSegments.fragmentedMp4(misaligned, misaligned.segmentTimeline(10), source)).isNull();
+    }
+
+    @Test
+    void nonFragmentedMp4IsNotSplit() throws Exception {
+        Path source = tempDir.resolve("progressive.mp4");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        box(out, "ftyp", 24);
+        box(out, "moov", 76);
+        box(out, "mdat", 1000);
+        Files.write(source, out.toByteArray());
+
+        KeyFrameIndex index = KeyFrameIndex.of(0, 0, new long[]{0, 10_000_000, 12_000_000}, new long[]{100, 600, 900});
+
+        assertThat(ByteRangeSegments.fragmentedMp4(index, index.segmentTimeline(10), source)).isNull();
+    }
+
+    // 188 바이트 TS 패킷 (payload_unit_start, payload 만 있음). 남는 공간은 0xFF
+    private static byte[] tsPacket(int pid, byte[] payload) {
+        byte[] packet = new byte[188];
+        Arrays.fill(packet, (byte) 0xFF);
+        packet[0] = 0x47;
+        packet[1] = (byte) (0x40 | (pid >> 8));
+        packet[2] = (byte) pid;
+        packet[3] = 0x10;
+        System.arraycopy(payload, 0, packet, 4, payload.length);
+        return packet;
+    }
+
+    private static void box(ByteArrayOutputStream out, String type, int size) {
+        out.writeBytes(ByteBuffer.allocate(size).putInt(size).put(type.getBytes(StandardCharsets.US_ASCII)).array());
+    }
+}
@@ -0,0 +1,108 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.cache.KeyFrameIndex;
+import com.tankmilu.webflux.cache.KeyFrameIndexStore;
+import com.tankmilu.webflux.cache.SegmentCacheStore;
+import com.tankmilu.webflux.cache.SingleFlight;
+import com.tankmilu.webflux.enums.FFmpegJobPriorityEnum;
+import com.tankmilu.webflux.enums.SegmentFormatEnum;
+import com.tankmilu.webflux.record.FileInfoRecord;
+import com.tankmilu.webflux.record.MediaDescriptorRecord;
+import com.tankmilu.webflux.record.MediaProbeRecord;
+import com.tankmilu.webflux.record.SegmentKeyRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CmafSegmentTranscoderTest {
+
+    @TempDir
+    Path hlsDir;
+
+    @TempDir
+    Path cacheDir;
+
+    private final MediaDescriptorRecord descriptor =
+            new MediaDescriptorRecord(new FileInfoRecord(1L, "video.mp4", "video.mp4", null, null, null, null, "", "0"),
+                    Path.of("video.mp4"), "0", true, 1, 1, "video/mp4");
+    private final List<String> transcoded = new CopyOnWriteArrayList<>();
+    private CmafSegmentTranscoder transcoder;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        KeyFrameIndexStore keyFrameIndexStore = new KeyFrameIndexStore(hlsDir.resolve("keyframe_index").toString());
+        keyFrameIndexStore.save(1L, KeyFrameIndex.of(1, 1,
+                new long[]{0, 10_010_000, 20_020_000, 25_000_000}, new long[]{0, 10, 20, 30}));
+        FFmpegService ffmpegService = new StubFFmpegService() {
+            @Override
+            public Mono<Void> transcodeFmp4(String videoPath, String start, String end, String type, boolean copy, Path outputFile) {
+                transcoded.add(start);
+                return Mono.fromRunnable(() -> writeFragmentedMp4(outputFile, start));
+            }
+
+            @Override
+            public MediaProbeRecord getMediaProbe(String videoPath, FFmpegJobPriorityEnum priority, String owner) {
+                return new MediaProbeRecord("matroska,webm", 25, 0, 1920, 1080, "hevc", "yuv420p10le", "opus", List.of(), List.of(), null);
+            }
+        };
+        SegmentCacheStore store = new SegmentCacheStore(true, cacheDir.toString(), 1_000_000);
+        transcoder = new CmafSegmentTranscoder(ffmpegService, store, new SingleFlight(new SimpleMeterRegistry()),
+                new StreamCopyPolicy(new MediaProbeService(InMemoryMediaProbeRepository.create(), ffmpegService,
+                        new SingleFlight(new SimpleMeterRegistry()), 100), true), new HlsPlaylistIndex(hlsDir.toString(), keyFrameIndexStore));
+    }
+
+    @Test
+    void outputIsSplitIntoSharedInitAndMediaSegments() throws IOException {
+        // 초기화 세그먼트가 없으면 첫 세그먼트를 만들면서 저장
+        Path init = transcoder.getInit(descriptor, "2").block();
+        assertThat(new String(Files.readAllBytes(init), StandardCharsets.US_ASCII)).endsWith("moovinit").doesNotContain("moof");
+
+        Path second = transcoder.getOrTranscode(descriptor,
+                SegmentKeyRecord.of(1L, 1, "10.010000", "20.020000", "2", SegmentFormatEnum.CMAF)).block();
+        byte[] media = Files.readAllBytes(second);
+        // 미디어 세그먼트는 moof 부터 시작하고, 64bit 크기 mdat 까지 그대로 복사됨
+        assertThat(new String(media, 4, 4, StandardCharsets.US_ASCII)).isEqualTo("moof");
+        assertThat(new String(media, StandardCharsets.US_ASCII)).endsWith("data10.01");
+        assertThat(second.getFileName().toString()).endsWith(".m4s");
+
+        // 이미 있는 세그먼트, 초기화 세그먼트는 다시 만들지 않음
+        transcoder.getOrTranscode(descriptor, SegmentKeyRecord.of(1L, 1, "0.0", "10.010", "2", SegmentFormatEnum.CMAF)).block();
+        assertThat(transcoder.getInit(descriptor, "2").block()).isEqualTo(init);
+        assertThat(transcoded).containsExactly("0", "10.01");
+    }
+
+    private static void writeFragmentedMp4(Path output, String start) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        box(out, "ftyp", "iso6");
+        box(out, "moov", "init");
+        box(out, "moof", "frag");
+        byte[] data = ("data" + start).getBytes(StandardCharsets.US_ASCII);
+        out.writeBytes(ByteBuffer.allocate(16).putInt(1).put("mdat".getBytes(StandardCharsets.US_ASCII)).putLong(16 + data.length).array());
+        out.writeBytes(data);
+        try {
+            Files.write(output, out.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void box(ByteArrayOutputStream out, String type, String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.US_ASCII);
+        out.writeBytes(ByteBuffer.allocate(8).putInt(8 + bytes.length).put(type.getBytes(StandardCharsets.US_ASCII)).array());
+        out.writeBytes(bytes);
+    }
+}
@@ -0,0 +1,81 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.enums.FFmpegJobPriorityEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FFmpegJobSchedulerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private FFmpegJobScheduler scheduler;
+    private final List<String> started = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // 동시 실행 1개
+        scheduler = new FFmpegJobScheduler(meterRegistry, 1);
+    }
+
+    @Test
+    void defaultConcurrencyDerivedFromCores() {
+        FFmpegJobScheduler derived = new FFmpegJobScheduler(new SimpleMeterRegistry(), 0);
+        assertThat(derived.maxConcurrency()).isEqualTo(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    @Test
+    void runsByPriorityThenRoundRobinPerUser() {
+        Sinks.Empty<Void> blocker = Sinks.empty();
+        submit("blocker", FFmpegJobPriorityEnum.INTERACTIVE, "a", blocker);
+
+        Sinks.Empty<Void> done = Sinks.empty();
+        submit("batch", FFmpegJobPriorityEnum.BATCH, "batch", done);
+        submit("prefetch", FFmpegJobPriorityEnum.PREFETCH, "a", done);
+        submit("a1", FFmpegJobPriorityEnum.INTERACTIVE, "a", done);
+        submit("a2", FFmpegJobPriorityEnum.INTERACTIVE, "a", done);
+        submit("b1", FFmpegJobPriorityEnum.INTERACTIVE, "b", done);
+
+        assertThat(started).containsExactly("blocker");
+        assertThat(scheduler.queuedCount()).isEqualTo(5);
+
+        blocker.tryEmitEmpty();
+        done.tryEmitEmpty(); // 이후 작업은 시작 즉시 완료
+
+        // 사용자 요청 우선, 같은 우선순위는 사용자별로 번갈아 실행
+        assertThat(started).containsExactly("blocker", "a1", "b1", "a2", "prefetch", "batch");
+        assertThat(scheduler.runningCount()).isZero();
+        assertThat(meterRegistry.timer("ffmpeg.job.queue.time", "priority", "batch").count()).isEqualTo(1);
+        assertThat(meterRegistry.timer("ffmpeg.job.run.time", "priority", "interactive").count()).isEqualTo(4);
+    }
+
+    @Test
+    void cancelledWaiterLeavesQueueAndRunningJobReleasesSlot() {
+        Sinks.Empty<Void> blocker = Sinks.empty();
+        Disposable running = submit("running", FFmpegJobPriorityEnum.INTERACTIVE, "a", blocker);
+        Disposable waiting = submit("waiting", FFmpegJobPriorityEnum.INTERACTIVE, "b", Sinks.empty());
+
+        waiting.dispose();
+        assertThat(scheduler.queuedCount()).isZero();
+
+        running.dispose(); // 실행 중 취소 시 슬롯 반납
+        assertThat(scheduler.runningCount()).isZero();
+
+        submit("next", FFmpegJobPriorityEnum.INTERACTIVE, "c", Sinks.empty());
+        assertThat(started).containsExactly("running", "next");
+    }
+
+    private Disposable submit(String name, FFmpegJobPriorityEnum priority, String owner, Sinks.Empty<Void> completion) {
+        return scheduler.submit(() -> Mono.fromRunnable(() -> started.add(name)).then(completion.asMono()))
+                .contextWrite(FFmpegJobScheduler.jobContext(priority, owner))
+                .subscribe();
+    }
+}
@@ -0,0 +1,135 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.record.SegmentBoundaryRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FFmpegServiceProcessImplTest {
+
+    private final LeakTrackingDataBufferFactory factory = new LeakTrackingDataBufferFactory();
+
+    @Test
+    void joinToStringReleasesBuffers() {
+        Flux<DataBuffer> subtitle = Flux.just("[Script Info]\n", "Style: Default,Arial,20\n", "한글 자막\n")
+                .map(this::toBuffer);
+
+        StepVerifier.create(FFmpegServiceProcessImpl.joinToString(subtitle))
+                .expectNext("[Script Info]\nStyle: Default,Arial,20\n한글 자막\n")
+                .verifyComplete();
+        factory.assertAllReleased();
+    }
+
+    @Test
+    void joinToStringReleasesBuffersOnError() {
+        Flux<DataBuffer> subtitle = Flux.just("[Script Info]\n", "Style: Default,Arial,20\n")
+                .map(this::toBuffer)
+                .concatWith(Flux.error(new IOException("ffmpeg 종료")));
+
+        StepVerifier.create(FFmpegServiceProcessImpl.joinToString(subtitle))
+                .verifyError(IOException.class);
+        factory.assertAllReleased();
+    }
+
+    @Test
+    void hlsSessionCommandCutsAtPlaylistBoundaries() {
+        FFmpegServiceProcessImpl service = new FFmpegServiceProcessImpl(factory, null, null);
+        ReflectionTestUtils.setField(service, "ffmpegDir", "ffmpeg");
+        ReflectionTestUtils.setField(service, "videoCodec", "libx264");
+        ReflectionTestUtils.setField(service, "audioCodec", "aac");
+        List<SegmentBoundaryRecord> segments = List.of(
+                new SegmentBoundaryRecord("0.0", "10.010"),
+                new SegmentBoundaryRecord("10.010", "20.020"),
+                new SegmentBoundaryRecord("20.020", "30.030"),
+                new SegmentBoundaryRecord("30.030", "35.000"));
+
+        List<String> command = service.hlsSessionCommand("video.mp4", segments, 1, "1", Path.of("out"), Path.of("out", "segments.csv"));
+
+        assertThat(command).containsSequence("-ss", "9.945999", "-i", "video.mp4", "-ss", "10.010", "-output_ts_offset", "10.010");
+        // 먹서는 원본 타임스탬프, 키프레임은 세션 시작 기준
+        assertThat(command).containsSequence("-force_key_frames", "10.010,20.020", "-f", "segment", "-segment_times", "20.020,30.030");
+        assertThat(command).containsSequence("-segment_start_number", "1");
+        assertThat(command.get(command.size() - 1)).isEqualTo(Path.of("out", "%d.ts").toString());
+    }
+
+    @Test
+    void remuxCommandCopiesBetweenKeyFrames() {
+        FFmpegServiceProcessImpl service = new FFmpegServiceProcessImpl(factory, null, null);
+        ReflectionTestUtils.setField(service, "ffmpegDir", "ffmpeg");
+
+        List<String> command = service.remuxTsCommand("video.mp4", "10.010", "20.020", "pipe:1");
+
+        // 경계 키프레임이 앞 세그먼트에 포함되지 않도록 1us 안쪽으로 자름
+        assertThat(command).containsSequence("-ss", "10.010001", "-i", "video.mp4", "-to", "20.019999", "-output_ts_offset", "10.010");
+        assertThat(command).containsSequence("-c", "copy", "-f", "mpegts", "pipe:1");
+        assertThat(command).doesNotContain("-c:v", "-vf");
+    }
+
+    @Test
+    void multiRenditionCommandDecodesOnce() {
+        FFmpegServiceProcessImpl service = new FFmpegServiceProcessImpl(factory, null, null);
+        ReflectionTestUtils.setField(service, "ffmpegDir", "ffmpeg");
+        ReflectionTestUtils.setField(service, "videoCodec", "libx264");
+        ReflectionTestUtils.setField(service, "audioCodec", "aac");
+        Map<String, Path> outputs = new LinkedHashMap<>();
+        outputs.put("1", Path.of("480.ts"));
+        outputs.put("0", Path.of("original.ts"));
+
+        List<String> command = service.multiRenditionTsCommand("video.mp4", "10.010", "20.020", outputs);
+
+        assertThat(command).containsOnlyOnce("-i");
+        assertThat(command).containsSequence("-ss", "9.945999", "-i", "video.mp4", "-copyts",
+                "-filter_complex", "[0:v:0]split=2[v0][v1];[v0]scale=-2:480[out0];[v1]null[out1]");
+        // 자르기, 타임스탬프 오프셋은 출력마다 단일 실행 명령어와 같음
+        assertThat(command).containsSequence("-map", "[out0]", "-map", "0:a:0?", "-ss", "10.010", "-to", "20.020",
+                "-output_ts_offset", "10.010");
+        assertThat(command).containsSequence("-f", "mpegts", "480.ts", "-map", "[out1]");
+        assertThat(command.get(command.size() - 1)).isEqualTo("original.ts");
+    }
+
+    @Test
+    void fmp4CommandKeepsSourceTimestampsInFragments() {
+        FFmpegServiceProcessImpl service = new FFmpegServiceProcessImpl(factory, null, null);
+        ReflectionTestUtils.setField(service, "ffmpegDir", "ffmpeg");
+        ReflectionTestUtils.setField(service, "videoCodec", "libx264");
+        ReflectionTestUtils.setField(service, "audioCodec", "aac");
+
+        List<String> command = service.fmp4Command("video.mp4", "10.010", "20.020", "2", false, "out.mp4");
+
+        assertThat(command).containsSequence("-ss", "9.945999", "-i", "video.mp4", "-ss", "10.010", "-to", "20.020", "-copyts");
+        assertThat(command).containsSequence("-vf", "scale=-2:720");
+        assertThat(command).containsSequence("-f", "mp4", "-movflags", "+frag_keyframe+empty_moov+default_base_moof+frag_discont",
+                "-use_editlist", "0", "out.mp4");
+        assertThat(service.fmp4Command("video.mp4", "10.010", "20.020", "0", true, "out.mp4"))
+                .containsSequence("-ss", "10.010001", "-i", "video.mp4", "-to", "20.019999", "-copyts", "-c", "copy", "-f", "mp4");
+    }
+
+    @Test
+    void probeCommandReadsStreamsAndPacketsInOneRun() {
+        FFmpegServiceProcessImpl service = new FFmpegServiceProcessImpl(factory, null, null);
+        ReflectionTestUtils.setField(service, "ffprobeDir", "ffprobe");
+
+        assertThat(service.probeCommand("video.mkv", true)).containsExactly("ffprobe", "-v", "error", "-print_format", "json",
+                "-show_format", "-show_streams", "-show_entries", "packet=codec_type,stream_index,pts_time,pos,flags", "video.mkv");
+        // 키프레임이 필요 없으면 패킷을 읽지 않음
+        assertThat(service.probeCommand("video.mkv", false)).doesNotContain("-show_entries");
+    }
+
+    private DataBuffer toBuffer(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        DataBuffer buffer = factory.allocateBuffer(bytes.length);
+        buffer.write(bytes);
+        return buffer;
+    }
+}
@@ -0,0 +1,179 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.cache.KeyFrameIndexStore;
+import com.tankmilu.webflux.cache.SegmentCacheStore;
+import com.tankmilu.webflux.record.MediaDescriptorRecord;
+import com.tankmilu.webflux.record.SegmentBoundaryRecord;
+import com.tankmilu.webflux.record.SegmentKeyRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class HlsSessionTranscoderTest {
+
+    private static final String PLAYLIST = """
+            #EXTM3U
+            #EXTINF:10.000000,
+            http://localhost/video/hls_ts?fileId=1&ss=0.0&to=10.010&type=2
+            #EXTINF:10.000000,
+            http://localhost/video/hls_ts?fileId=1&ss=10.010&to=20.020&type=2
+            #EXTINF:10.000000,
+            http://localhost/video/hls_ts?fileId=1&ss=20.020&to=30.030&type=2
+            #EXTINF:10.000000,
+            http://localhost/video/hls_ts?fileId=1&ss=30.030&to=40.040&type=2
+            #EXTINF:5.000000,
+            http://localhost/video/hls_ts?fileId=1&ss=40.040&to=45.000&type=2
+
+            #EXT-X-ENDLIST""";
+
+    @TempDir
+    Path hlsDir;
+
+    @TempDir
+    Path cacheDir;
+
+    private final MediaDescriptorRecord descriptor =
+            new MediaDescriptorRecord(null, Path.of("video.mp4"), "0", true, 1, 1, "video/mp4");
+    private final List<Integer> startedAt = new CopyOnWriteArrayList<>();
+    private final List<Integer> cancelled = new CopyOnWriteArrayList<>();
+    // 시작 세그먼트 -> 다음 세그먼트를 만드는 작업 (실행 중인 세션이 세그먼트를 더 만드는 경우)
+    private final Map<Integer, Runnable> producers = new ConcurrentHashMap<>();
+    // 세션이 만들 세그먼트 수 (이후에는 프로세스가 계속 실행 중인 상태)
+    private volatile int producedPerSession = Integer.MAX_VALUE;
+    private SimpleMeterRegistry meterRegistry;
+    private HlsSessionTranscoder transcoder;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.writeString(hlsDir.resolve("1.2.hls.m3u8"), PLAYLIST);
+        meterRegistry = new SimpleMeterRegistry();
+        FFmpegService ffmpegService = new StubFFmpegService() {
+            @Override
+            public Mono<Void> transcodeHlsSession(String videoPath, List<SegmentBoundaryRecord> segments, int startIndex, String type, Path outputDirectory, Path segmentList) {
+                startedAt.add(startIndex);
+                AtomicInteger next = new AtomicInteger(startIndex);
+                Runnable produce = () -> {
+                    int i = next.getAndIncrement();
+                    if (i < segments.size()) {
+                        writeSegment(outputDirectory, segmentList, segments.get(i), i);
+                    }
+                };
+                producers.put(startIndex, produce);
+                for (int i = 0; i < producedPerSession && next.get() < segments.size(); i++) {
+                    produce.run();
+                }
+                return next.get() >= segments.size() ? Mono.empty() : Mono.<Void>never().doOnCancel(() -> cancelled.add(startIndex));
+            }
+        };
+        SegmentCacheStore store = new SegmentCacheStore(true, cacheDir.toString(), 1_000_000);
+        transcoder = new HlsSessionTranscoder(ffmpegService, store, new HlsPlaylistIndex(hlsDir.toString(), new KeyFrameIndexStore(hlsDir.resolve("keyframe_index").toString())), meterRegistry,
+                true, 2, 1, 5, 60);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transcoder.shutdown();
+    }
+
+    @Test
+    void oneSessionProducesAllFollowingSegments() throws IOException {
+        Path first = transcoder.awaitSegment("user", descriptor, key("0", "10.01")).block();
+        assertThat(first).isNotNull();
+        assertThat(Files.readString(first)).isEqualTo("0.0-10.010");
+
+        // 나머지 세그먼트도 같은 세션 출력에서 제공, 완료된 세션은 제거
+        StepVerifier.create(transcoder.awaitSegment("user", descriptor, key("30.03", "40.04")))
+                .assertNext(path -> assertThat(path.getFileName().toString()).isEqualTo(key("30.03", "40.04").fileName()))
+                .verifyComplete();
+        assertThat(startedAt).containsExactly(0);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> transcoder.sessionCount() == 0);
+    }
+
+    @Test
+    void seekOutsideProducedWindowRestartsSession() {
+        producedPerSession = 1;
+
+        StepVerifier.create(transcoder.awaitSegment("user", descriptor, key("0", "10.01")))
+                .expectNextCount(1)
+                .verifyComplete();
+        // 마지막 완성 세그먼트(0) + 1 + lookahead(1) 보다 먼 위치로 이동
+        StepVerifier.create(transcoder.awaitSegment("user", descriptor, key("30.03", "40.04")))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(startedAt).containsExactly(0, 3);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> cancelled.contains(0));
+        assertThat(transcoder.sessionCount()).isEqualTo(1);
+        assertThat(meterRegistry.counter("video.hls.session.started").count()).isEqualTo(2);
+    }
+
+    @Test
+    void seekByOneViewerKeepsSessionUsedByAnother() {
+        producedPerSession = 1;
+
+        StepVerifier.create(transcoder.awaitSegment("user", descriptor, key("0", "10.01")))
+                .expectNextCount(1)
+                .verifyComplete();
+        // 다른 사용자가 같은 세션의 다음 세그먼트를 기다리는 중
+        Mono<Path> pending = transcoder.awaitSegment("other", descriptor, key("10.01", "20.02")).cache();
+        pending.subscribe();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> transcoder.viewerCount() == 2);
+
+        // 처음 사용자가 출력 범위 밖으로 탐색
+        StepVerifier.create(transcoder.awaitSegment("user", descriptor, key("30.03", "40.04")))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(startedAt).containsExactly(0, 3);
+        assertThat(cancelled).doesNotContain(0);
+        assertThat(transcoder.sessionCount()).isEqualTo(2);
+
+        // 기다리던 사용자는 기존 세션 출력을 그대로 받음
+        producers.get(0).run();
+        StepVerifier.create(pending)
+                .assertNext(path -> assertThat(path.getFileName().toString()).isEqualTo(key("10.01", "20.02").fileName()))
+                .verifyComplete();
+        assertThat(meterRegistry.counter("video.hls.session.fallbacks").count()).isZero();
+    }
+
+    @Test
+    void unknownSegmentFallsBack() {
+        StepVerifier.create(transcoder.awaitSegment("user", descriptor, key("5", "15")))
+                .verifyComplete();
+        assertThat(startedAt).isEmpty();
+        assertThat(meterRegistry.counter("video.hls.session.fallbacks").count()).isEqualTo(1);
+    }
+
+    private SegmentKeyRecord key(String start, String to) {
+        return SegmentKeyRecord.of(1L, 1L, start, to, "2");
+    }
+
+    // FFmpeg segment 먹서처럼 세그먼트 파일을 쓴 후 목록에 한 줄 추가
+    private static void writeSegment(Path outputDirectory, Path segmentList, SegmentBoundaryRecord segment, int index) {
+        try {
+            Files.writeString(outputDirectory.resolve(index + ".ts"), segment.start() + "-" + segment.to());
+            Files.writeString(segmentList, index + ".ts," + segment.start() + "," + segment.to() + "\n", StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.entity.MediaProbeEntity;
+import com.tankmilu.webflux.repository.MediaProbeRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 테스트용 media_probe 저장소. 테이블 대신 Map 에 저장 (findById, existsById, findBySourcePath, save 만 사용)
+ */
+final class InMemoryMediaProbeRepository {
+
+    private InMemoryMediaProbeRepository() {
+    }
+
+    static MediaProbeRepository create() {
+        return create(new ConcurrentHashMap<>());
+    }
+
+    static MediaProbeRepository create(Map<Long, MediaProbeEntity> table) {
+        return (MediaProbeRepository) Proxy.newProxyInstance(InMemoryMediaProbeRepository.class.getClassLoader(),
+                new Class<?>[]{MediaProbeRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findById" -> Mono.justOrEmpty(table.get((Long) args[0]));
+                    case "existsById" -> Mono.just(table.containsKey((Long) args[0]));
+                    case "findBySourcePath" -> Flux.fromIterable(table.values())
+                            .filter(entity -> Objects.equals(entity.getSourcePath(), args[0]));
+                    case "save" -> {
+                        MediaProbeEntity entity = (MediaProbeEntity) args[0];
+                        table.put(entity.getFileId(), entity);
+                        yield Mono.just(entity);
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
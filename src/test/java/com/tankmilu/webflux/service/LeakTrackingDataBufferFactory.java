@@ -0,0 +1,66 @@
+package com.tankmilu.webflux.service;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 할당한 풀링 버퍼를 기록해서 테스트 종료 시 모두 해제되었는지 검사하는 팩토리
+ */
+class LeakTrackingDataBufferFactory extends NettyDataBufferFactory {
+
+    private final List<NettyDataBuffer> allocated = new CopyOnWriteArrayList<>();
+
+    LeakTrackingDataBufferFactory() {
+        super(new PooledByteBufAllocator(true));
+    }
+
+    @Override
+    public NettyDataBuffer allocateBuffer(int initialCapacity) {
+        NettyDataBuffer buffer = super.allocateBuffer(initialCapacity);
+        allocated.add(buffer);
+        return buffer;
+    }
+
+    @Override
+    public NettyDataBuffer wrap(ByteBuffer byteBuffer) {
+        NettyDataBuffer buffer = super.wrap(byteBuffer);
+        allocated.add(buffer);
+        return buffer;
+    }
+
+    @Override
+    public DataBuffer wrap(byte[] bytes) {
+        DataBuffer buffer = super.wrap(bytes);
+        if (buffer instanceof NettyDataBuffer nettyDataBuffer) {
+            allocated.add(nettyDataBuffer);
+        }
+        return buffer;
+    }
+
+    @Override
+    public DataBuffer join(List<? extends DataBuffer> dataBuffers) {
+        DataBuffer joined = super.join(dataBuffers);
+        if (joined instanceof NettyDataBuffer nettyDataBuffer) {
+            allocated.add(nettyDataBuffer);
+        }
+        return joined;
+    }
+
+    int allocatedCount() {
+        return allocated.size();
+    }
+
+    void assertAllReleased() {
+        assertThat(allocated)
+                .as("해제되지 않은 버퍼가 존재함")
+                .allSatisfy(buffer -> assertThat(buffer.getNativeBuffer().refCnt()).isZero());
+    }
+}
@@ -0,0 +1,87 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.cache.FileChannelPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MediaFileReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path videoFile;
+    private byte[] content;
+    private LeakTrackingDataBufferFactory factory;
+    private MediaFileReader reader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        content = new byte[100_000];
+        new Random(42).nextBytes(content);
+        videoFile = Files.write(tempDir.resolve("video.mp4"), content);
+        factory = new LeakTrackingDataBufferFactory();
+        reader = new MediaFileReader(factory, new FileChannelPool(new SimpleMeterRegistry(), 30), 1024, 8192);
+    }
+
+    @Test
+    void readRangeGrowsChunkSize() {
+        List<Integer> chunkSizes = new ArrayList<>();
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        StepVerifier.create(reader.read(videoFile, 100, 50_000))
+                .thenConsumeWhile(buffer -> {
+                    chunkSizes.add(buffer.readableByteCount());
+                    received.writeBytes(toBytes(buffer));
+                    return true;
+                })
+                .verifyComplete();
+
+        assertThat(received.toByteArray()).isEqualTo(Arrays.copyOfRange(content, 100, 50_100));
+        assertThat(chunkSizes).startsWith(1024, 2048, 4096, 8192, 8192);
+        factory.assertAllReleased();
+    }
+
+    @Test
+    void readStopsAtEndOfFile() {
+        StepVerifier.create(reader.read(videoFile, content.length - 10, 1000).map(this::toBytes))
+                .assertNext(bytes -> assertThat(bytes).isEqualTo(Arrays.copyOfRange(content, content.length - 10, content.length)))
+                .verifyComplete();
+        factory.assertAllReleased();
+    }
+
+    @Test
+    void cancelReleasesBuffers() {
+        StepVerifier.create(reader.read(videoFile).take(2).map(this::toBytes))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        assertThat(factory.allocatedCount()).isGreaterThanOrEqualTo(2);
+        factory.assertAllReleased();
+    }
+
+    private byte[] toBytes(DataBuffer buffer) {
+        try {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            return bytes;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.cache.SingleFlight;
+import com.tankmilu.webflux.entity.MediaProbeEntity;
+import com.tankmilu.webflux.enums.FFmpegJobPriorityEnum;
+import com.tankmilu.webflux.record.FileInfoRecord;
+import com.tankmilu.webflux.record.MediaDescriptorRecord;
+import com.tankmilu.webflux.record.MediaProbeRecord;
+import com.tankmilu.webflux.record.SubtitleInfo;
+import com.tankmilu.webflux.repository.MediaProbeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MediaProbeServiceTest {
+
+    private final Map<Long, MediaProbeEntity> table = new ConcurrentHashMap<>();
+    private final AtomicInteger probeRuns = new AtomicInteger();
+    private final AtomicInteger inserts = new AtomicInteger();
+    private final List<String> probeJobs = new CopyOnWriteArrayList<>();
+
+    // media_probe 테이블 대신 Map 에 저장하는 저장소 (findById, findBySourcePath, save 만 사용)
+    private final MediaProbeRepository repository = (MediaProbeRepository) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[]{MediaProbeRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "findById" -> Mono.justOrEmpty(table.get((Long) args[0]));
+                case "findBySourcePath" -> Flux.fromIterable(table.values())
+                        .filter(entity -> entity.getSourcePath().equals(args[0]));
+                case "save" -> {
+                    MediaProbeEntity entity = (MediaProbeEntity) args[0];
+                    if (entity.isNew()) {
+                        inserts.incrementAndGet();
+                    }
+                    table.put(entity.getFileId(), entity);
+                    yield Mono.just(entity);
+                }
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+
+    private final MediaProbeService service = new MediaProbeService(repository, new StubFFmpegService() {
+        @Override
+        public MediaProbeRecord getMediaProbe(String videoPath, FFmpegJobPriorityEnum priority, String owner) {
+            probeRuns.incrementAndGet();
+            probeJobs.add(priority + ":" + owner);
+            return new MediaProbeRecord("matroska,webm", 1420.5, 4_500_000, 1920, 1080, "h264", "yuv420p", "aac",
+                    List.of("jpn"), List.of(new SubtitleInfo("v0", "kor"), new SubtitleInfo("v1", null)), null);
+        }
+    }, new SingleFlight(new SimpleMeterRegistry()), 100);
+
+    @Test
+    void probeIsStoredOnceAndReusedUntilSourceChanges() {
+        StepVerifier.create(service.get(descriptor(1000)))
+                .assertNext(probe -> {
+                    assertThat(probe.getResolution()).isEqualTo("1920x1080");
+                    assertThat(probe.getSubtitles()).containsExactly(new SubtitleInfo("v0", "kor"), new SubtitleInfo("v1", null));
+                })
+                .verifyComplete();
+        StepVerifier.create(service.get(descriptor(1000))).expectNextCount(1).verifyComplete();
+        assertThat(probeRuns).hasValue(1);
+        assertThat(inserts).hasValue(1);
+
+        // 저장된 값은 메모리 캐시가 비어도 ffprobe 없이 사용
+        service.invalidate(1L);
+        StepVerifier.create(service.get(descriptor(1000))).expectNextCount(1).verifyComplete();
+        assertThat(probeRuns).hasValue(1);
+
+        // 원본이 바뀌면 다시 조회해서 기존 행을 수정
+        StepVerifier.create(service.get(descriptor(2000)))
+                .assertNext(probe -> assertThat(probe.getSourceLastModified()).isEqualTo(2000))
+                .verifyComplete();
+        assertThat(probeRuns).hasValue(2);
+        assertThat(inserts).hasValue(1);
+    }
+
+    @Test
+    void probeRunsWithCallerJobPriority() {
+        StepVerifier.create(service.get(descriptor(1000))
+                        .contextWrite(FFmpegJobScheduler.jobContext(FFmpegJobPriorityEnum.BATCH, "batch")))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(probeJobs).containsExactly("BATCH:batch");
+    }
+
+    @Test
+    void unreadableSourceUsesStoredProbeOnly() {
+        MediaDescriptorRecord unreadable = new MediaDescriptorRecord(fileInfo(), Path.of("video.mkv"), "0", false, -1, -1, null);
+
+        StepVerifier.create(service.get(unreadable)).verifyComplete();
+        assertThat(probeRuns).hasValue(0);
+    }
+
+    @Test
+    void browsingResolutionIgnoresStaleRowsAndCachesUnregisteredFiles(@TempDir Path dir) throws IOException {
+        Path video = Files.writeString(dir.resolve("video.mkv"), "video");
+        String sourcePath = video.toString();
+
+        // 등록되지 않은 파일은 저장하지 않고 메모리 캐시에서 다시 사용
+        StepVerifier.create(service.getResolution(sourcePath)).expectNext("1920x1080").verifyComplete();
+        StepVerifier.create(service.getResolution(sourcePath)).expectNext("1920x1080").verifyComplete();
+        assertThat(probeRuns).hasValue(1);
+        assertThat(table).isEmpty();
+
+        // 원본이 바뀐 뒤의 저장된 값은 사용하지 않고 다시 조회해서 수정
+        table.put(2L, MediaProbeEntity.builder().fileId(2L).sourcePath(sourcePath).sourceSize(1L).sourceLastModified(1L)
+                .width(640).height(360).build());
+        StepVerifier.create(service.getResolution(sourcePath)).expectNext("1920x1080").verifyComplete();
+        assertThat(probeRuns).hasValue(2);
+        assertThat(table.get(2L).matches(Files.size(video), Files.getLastModifiedTime(video).toMillis())).isTrue();
+    }
+
+    private static MediaDescriptorRecord descriptor(long lastModified) {
+        return new MediaDescriptorRecord(fileInfo(), Path.of("video.mkv"), "0", true, 100, lastModified, "video/x-matroska");
+    }
+
+    private static FileInfoRecord fileInfo() {
+        return new FileInfoRecord(1L, "video", "video.mkv", null, null, null, null, "/media", "0");
+    }
+}
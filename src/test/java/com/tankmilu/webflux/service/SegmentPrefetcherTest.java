@@ -0,0 +1,107 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.cache.KeyFrameIndexStore;
+import com.tankmilu.webflux.cache.SegmentCacheStore;
+import com.tankmilu.webflux.record.MediaDescriptorRecord;
+import com.tankmilu.webflux.record.SegmentBoundaryRecord;
+import com.tankmilu.webflux.record.SegmentKeyRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class SegmentPrefetcherTest {
+
+    private static final String PLAYLIST = """
+            #EXTM3U
+            #EXT-X-VERSION:7
+            #EXTINF:10.000000,
+            http://localhost/video/hls_ts?fileId=1&ss=0.0&to=10.010&type=2
+            #EXTINF:10.000000,
+            http://localhost/video/hls_ts?fileId=1&ss=10.010&to=20.020&type=2
+            #EXTINF:10.000000,
+            http://localhost/video/hls_ts?fileId=1&ss=20.020&to=30.030&type=2
+            #EXTINF:5.000000,
+            http://localhost/video/hls_ts?fileId=1&ss=30.030&to=35.000&type=2
+
+            #EXT-X-ENDLIST""";
+
+    @TempDir
+    Path hlsDir;
+
+    @TempDir
+    Path cacheDir;
+
+    private final List<SegmentKeyRecord> transcoded = new CopyOnWriteArrayList<>();
+    private SimpleMeterRegistry meterRegistry;
+    private SegmentPrefetcher prefetcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.writeString(hlsDir.resolve("1.2.hls.m3u8"), PLAYLIST);
+        meterRegistry = new SimpleMeterRegistry();
+        SegmentTranscoder transcoder = new SegmentTranscoder(null, null, null, null, null) {
+            @Override
+            public Mono<Path> getOrTranscode(MediaDescriptorRecord descriptor, SegmentKeyRecord key) {
+                transcoded.add(key);
+                return Mono.just(cacheDir.resolve(key.fileName()));
+            }
+        };
+        SegmentCacheStore store = new SegmentCacheStore(true, cacheDir.toString(), 1_000_000);
+        // 다음 2개 세그먼트를 미리 트랜스코딩
+        prefetcher = new SegmentPrefetcher(transcoder, store, meterRegistry, true, 2, 1, 60, false, new HlsPlaylistIndex(hlsDir.toString(), new KeyFrameIndexStore(hlsDir.resolve("keyframe_index").toString())));
+    }
+
+    @AfterEach
+    void tearDown() {
+        prefetcher.shutdown();
+    }
+
+    @Test
+    void parsesBoundariesFromPlaylist() {
+        assertThat(HlsPlaylistIndex.parseSegmentBoundaries(PLAYLIST)).containsExactly(
+                new SegmentBoundaryRecord("0.0", "10.010"),
+                new SegmentBoundaryRecord("10.010", "20.020"),
+                new SegmentBoundaryRecord("20.020", "30.030"),
+                new SegmentBoundaryRecord("30.030", "35.000"));
+    }
+
+    @Test
+    void requestPrefetchesNextSegmentsAndCountsHit() {
+        prefetcher.onSegmentRequest("user", null, key("0", "10.01"));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> transcoded.size() == 2);
+        assertThat(transcoded).containsExactly(key("10.01", "20.02"), key("20.02", "30.03"));
+
+        // 다음 세그먼트 요청은 적중, 이미 등록된 세그먼트는 다시 등록하지 않음
+        prefetcher.onSegmentRequest("user", null, key("10.01", "20.02"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> transcoded.size() == 3);
+        assertThat(transcoded.get(2)).isEqualTo(key("30.03", "35"));
+        assertThat(meterRegistry.counter("video.segment.prefetch.hits").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("video.segment.prefetch.misses").count()).isEqualTo(1);
+    }
+
+    @Test
+    void unknownSegmentPrefetchesNothing() throws InterruptedException {
+        prefetcher.onSegmentRequest("user", null, key("5", "15"));
+
+        Thread.sleep(200);
+        assertThat(transcoded).isEmpty();
+    }
+
+    private SegmentKeyRecord key(String start, String to) {
+        return SegmentKeyRecord.of(1L, 100L, start, to, "2");
+    }
+}
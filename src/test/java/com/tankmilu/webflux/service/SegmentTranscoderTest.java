@@ -0,0 +1,223 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.cache.FileChannelPool;
+import com.tankmilu.webflux.cache.SegmentCacheStore;
+import com.tankmilu.webflux.cache.SingleFlight;
+import com.tankmilu.webflux.entity.MediaProbeEntity;
+import com.tankmilu.webflux.enums.FFmpegJobPriorityEnum;
+import com.tankmilu.webflux.record.FileInfoRecord;
+import com.tankmilu.webflux.record.MediaDescriptorRecord;
+import com.tankmilu.webflux.record.MediaProbeRecord;
+import com.tankmilu.webflux.record.SegmentKeyRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentTranscoderTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private final DefaultDataBufferFactory factory = DefaultDataBufferFactory.sharedInstance;
+    private final AtomicInteger processRuns = new AtomicInteger();
+    private final AtomicInteger remuxRuns = new AtomicInteger();
+    private final List<String> renditionTypes = new ArrayList<>();
+    private MediaProbeRecord metaData = probe("yuv420p", "aac", 720);
+    private Flux<String> ffmpegOutput;
+    private volatile CountDownLatch probeGate;
+    private SegmentCacheStore store;
+    private SegmentTranscoder transcoder;
+
+    private final MediaDescriptorRecord descriptor =
+            new MediaDescriptorRecord(new FileInfoRecord(1L, "video.mp4", "video.mp4", null, null, null, null, "", "0"),
+                    Path.of("video.mp4"), "0", true, 1, 1, "video/mp4");
+    private final SegmentKeyRecord key = SegmentKeyRecord.of(1L, 1, "0.0", "10.010", "2");
+
+    @BeforeEach
+    void setUp() {
+        store = new SegmentCacheStore(true, cacheDir.toString(), 1_000_000);
+        MediaFileReader reader = new MediaFileReader(factory, new FileChannelPool(new SimpleMeterRegistry(), 30), 1024, 8192);
+        FFmpegService ffmpegService = new StubFFmpegService() {
+            @Override
+            public Flux<DataBuffer> getTsData(String videoPath, String start, String end, String type) {
+                processRuns.incrementAndGet();
+                return ffmpegOutput.map(text -> factory.wrap(text.getBytes(StandardCharsets.UTF_8)));
+            }
+
+            @Override
+            public Flux<DataBuffer> getRemuxTsData(String videoPath, String start, String end) {
+                remuxRuns.incrementAndGet();
+                return ffmpegOutput.map(text -> factory.wrap(text.getBytes(StandardCharsets.UTF_8)));
+            }
+
+            @Override
+            public Mono<Void> transcodeTsRenditions(String videoPath, String start, String end, Map<String, Path> outputFiles) {
+                processRuns.incrementAndGet();
+                renditionTypes.addAll(outputFiles.keySet());
+                return Mono.fromRunnable(() -> outputFiles.forEach((type, output) -> {
+                    try {
+                        Files.writeString(output, "rendition" + type);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+
+            @Override
+            public MediaProbeRecord getMediaProbe(String videoPath, FFmpegJobPriorityEnum priority, String owner) throws IOException {
+                if (probeGate != null) {
+                    try {
+                        probeGate.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return metaData;
+            }
+        };
+        transcoder = new SegmentTranscoder(ffmpegService, store, new SingleFlight(new SimpleMeterRegistry()), reader,
+                new StreamCopyPolicy(new MediaProbeService(InMemoryMediaProbeRepository.create(), ffmpegService,
+                        new SingleFlight(new SimpleMeterRegistry()), 100), true));
+        ReflectionTestUtils.setField(transcoder, "tsMode", "pipe");
+    }
+
+    @Test
+    void pipeOutputIsStreamedAndCached() {
+        ffmpegOutput = Flux.just("seg", "ment");
+
+        StepVerifier.create(DataBufferUtils.join(transcoder.stream(descriptor, key)).map(this::text))
+                .expectNext("segment")
+                .verifyComplete();
+
+        // 두 번째 요청은 FFmpeg 실행 없이 캐시에서 전송
+        StepVerifier.create(DataBufferUtils.join(transcoder.stream(descriptor, key)).map(this::text))
+                .expectNext("segment")
+                .verifyComplete();
+        assertThat(processRuns).hasValue(1);
+    }
+
+    @Test
+    void failedTranscodeIsNotCached() throws IOException {
+        ffmpegOutput = Flux.concat(Flux.just("seg"), Flux.error(new IOException("exit 1")));
+
+        StepVerifier.create(transcoder.stream(descriptor, key).doOnNext(DataBufferUtils::release))
+                .expectNextCount(1)
+                .verifyError(IOException.class);
+
+        StepVerifier.create(store.find(key)).verifyComplete();
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void commandBuildFailureReleasesFlight() throws IOException {
+        // FFmpeg 실행 전 런타임 예외 (ffmpegOutput 미설정 -> NPE)
+        StepVerifier.create(transcoder.stream(descriptor, key))
+                .verifyError(NullPointerException.class);
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertThat(files).isEmpty();
+        }
+
+        // 실패한 세그먼트 키가 진행 중 상태로 남지 않아 다음 요청은 다시 트랜스코딩
+        ffmpegOutput = Flux.just("segment");
+        StepVerifier.create(DataBufferUtils.join(transcoder.stream(descriptor, key)).map(this::text))
+                .expectNext("segment")
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void cancelWhileCheckingCopyDoesNotHoldSegment() {
+        // 원본 정보 조회(ffprobe) 중 클라이언트가 취소
+        probeGate = new CountDownLatch(1);
+        SegmentKeyRecord original = SegmentKeyRecord.of(1L, 1, "0.0", "10.010", "0");
+        StepVerifier.create(transcoder.stream(descriptor, original))
+                .thenAwait(Duration.ofMillis(100))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        probeGate.countDown();
+
+        // 세그먼트 키가 진행 중 상태로 남지 않아 다음 요청은 바로 생성
+        ffmpegOutput = Flux.just("copy");
+        StepVerifier.create(DataBufferUtils.join(transcoder.stream(descriptor, original)).map(this::text))
+                .expectNext("copy")
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void compatibleOriginalIsCopiedWithoutEncoding() {
+        ffmpegOutput = Flux.just("copy");
+        SegmentKeyRecord original = SegmentKeyRecord.of(1L, 1, "0.0", "10.010", "0");
+
+        StepVerifier.create(DataBufferUtils.join(transcoder.stream(descriptor, original)).map(this::text))
+                .expectNext("copy")
+                .verifyComplete();
+        // 다른 해상도는 트랜스코딩
+        StepVerifier.create(DataBufferUtils.join(transcoder.stream(descriptor, key)).map(this::text))
+                .expectNext("copy")
+                .verifyComplete();
+        assertThat(remuxRuns).hasValue(1);
+        assertThat(processRuns).hasValue(1);
+
+        // 10bit 원본은 브라우저에서 디코딩할 수 없으므로 트랜스코딩
+        assertThat(StreamCopyPolicy.isBrowserCompatible(MediaProbeEntity.of(1L, "video.mp4", 1, 1, probe("yuv420p10le", "aac", 720)))).isFalse();
+        assertThat(StreamCopyPolicy.isBrowserCompatible(MediaProbeEntity.of(1L, "video.mp4", 1, 1, probe("yuv420p", null, 720)))).isTrue();
+    }
+
+    @Test
+    void renditionsAreTranscodedInOneRun() throws IOException {
+        metaData = probe("yuv420p10le", "aac", 1080);
+
+        List<String> types = transcoder.renditionTypes(descriptor).block();
+        assertThat(types).containsExactly("1", "2", "0");
+
+        StepVerifier.create(transcoder.getOrTranscodeRenditions(descriptor, key, types)).verifyComplete();
+
+        // 원본은 한 번만 디코딩하고 해상도별 세그먼트는 각각 캐시에 저장됨
+        assertThat(processRuns).hasValue(1);
+        assertThat(renditionTypes).containsExactly("1", "2", "0");
+        for (String type : types) {
+            Path cached = store.find(SegmentKeyRecord.of(1L, 1, "0.0", "10.010", type)).block();
+            assertThat(Files.readString(cached)).isEqualTo("rendition" + type);
+        }
+
+        // 모두 캐시에 있으면 FFmpeg 를 실행하지 않음
+        StepVerifier.create(transcoder.getOrTranscodeRenditions(descriptor, key, types)).verifyComplete();
+        assertThat(processRuns).hasValue(1);
+    }
+
+    private static MediaProbeRecord probe(String pixFmt, String audioCodec, int height) {
+        return new MediaProbeRecord("mpegts", 25, 0, height * 16 / 9, height, "h264", pixFmt, audioCodec, List.of(), List.of(), null);
+    }
+
+    private String text(DataBuffer buffer) {
+        String text = buffer.toString(StandardCharsets.UTF_8);
+        DataBufferUtils.release(buffer);
+        return text;
+    }
+}
@@ -0,0 +1,75 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.enums.FFmpegJobPriorityEnum;
+import com.tankmilu.webflux.record.MediaProbeRecord;
+import com.tankmilu.webflux.record.SegmentBoundaryRecord;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 테스트용 FFmpegService. 필요한 메서드만 재정의해서 사용
+ */
+class StubFFmpegService implements FFmpegService {
+
+    @Override
+    public MediaProbeRecord getMediaProbe(String videoPath, FFmpegJobPriorityEnum priority, String owner) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MediaProbeRecord getMediaProbe(String videoPath, long sourceLength, long sourceLastModified,
+                                          FFmpegJobPriorityEnum priority, String owner) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Flux<DataBuffer> getTsData(String videoPath, String start, String end) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Flux<DataBuffer> getTsData(String videoPath, String start, String end, String type) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Mono<Void> transcodeTs(String videoPath, String start, String end, String type, Path outputFile) {
+        return Mono.error(new UnsupportedOperationException());
+    }
+
+    @Override
+    public Mono<Void> remuxTs(String videoPath, String start, String end, Path outputFile) {
+        return Mono.error(new UnsupportedOperationException());
+    }
+
+    @Override
+    public Flux<DataBuffer> getRemuxTsData(String videoPath, String start, String end) {
+        return Flux.error(new UnsupportedOperationException());
+    }
+
+    @Override
+    public Mono<Void> transcodeTsRenditions(String videoPath, String start, String end, Map<String, Path> outputFiles) {
+        return Mono.error(new UnsupportedOperationException());
+    }
+
+    @Override
+    public Mono<Void> transcodeFmp4(String videoPath, String start, String end, String type, boolean copy, Path outputFile) {
+        return Mono.error(new UnsupportedOperationException());
+    }
+
+    @Override
+    public Mono<Void> transcodeHlsSession(String videoPath, List<SegmentBoundaryRecord> segments, int startIndex, String type, Path outputDirectory, Path segmentList) {
+        return Mono.error(new UnsupportedOperationException());
+    }
+
+    @Override
+    public Flux<DataBuffer> getSubtitleFromVideo(String videoPath, String subtitleId) {
+        throw new UnsupportedOperationException();
+    }
+}
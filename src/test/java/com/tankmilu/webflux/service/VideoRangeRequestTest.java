@@ -0,0 +1,167 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.cache.FileChannelPool;
+import com.tankmilu.webflux.cache.LocalMediaTier;
+import com.tankmilu.webflux.cache.MediaDescriptorCache;
+import com.tankmilu.webflux.cache.SequentialReadAhead;
+import com.tankmilu.webflux.cache.VideoBlockCache;
+import com.tankmilu.webflux.exception.RangeNotSatisfiableException;
+import com.tankmilu.webflux.record.ByteRangeRecord;
+import com.tankmilu.webflux.record.FileInfoRecord;
+import com.tankmilu.webflux.record.VideoMetaRecord;
+import com.tankmilu.webflux.repository.ContentsFileRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VideoRangeRequestTest {
+
+    private static final int FILE_LENGTH = 10_000;
+
+    @TempDir
+    Path mediaDir;
+
+    private byte[] content;
+
+    private LeakTrackingDataBufferFactory factory;
+
+    private VideoService videoService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        content = new byte[FILE_LENGTH];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        Files.write(mediaDir.resolve("video.mp4"), content);
+
+        ContentsFileRepository contentsFileRepository = (ContentsFileRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ContentsFileRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findFileWithContentInfo" -> Mono.just(new FileInfoRecord(1L, "video", "video.mp4", null, null, null, null,
+                            mediaDir.toString(), "100"));
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        LocalMediaTier localMediaTier = new LocalMediaTier(false, mediaDir.resolve("local").toString(), 0, 1); // 복사 스레드는 사용하지 않음
+
+        factory = new LeakTrackingDataBufferFactory();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FileChannelPool channelPool = new FileChannelPool(meterRegistry, 30);
+        // 블록 캐시, 선읽기를 사용하지 않고 원본 파일에서 바로 읽음
+        VideoBlockCache blockCache = new VideoBlockCache(factory, channelPool, false, 1000, 1_000_000, 2, 1_000_000, 60);
+        SequentialReadAhead readAhead = new SequentialReadAhead(blockCache, channelPool, meterRegistry, false, 10_000, 5_000, 2);
+
+        // 범위 요청은 HLS 관련 의존성을 사용하지 않음
+        videoService = new VideoService(null, contentsFileRepository, factory,
+                new MediaDescriptorCache(contentsFileRepository, localMediaTier, 100, 60),
+                new MediaFileReader(factory, channelPool, 1024, 8192),
+                new BandwidthShaper(false, 4, 0, 0, 0, 0, 0), blockCache, readAhead,
+                null, null, null, null, null, null, null, null, null, null, null);
+        ReflectionTestUtils.setField(videoService, "maxRanges", 8);
+    }
+
+    @Test
+    void overlappingAdjacentAndUnsortedRangesAreMerged() {
+        StepVerifier.create(videoService.getVideoMeta(1L, "user", "bytes=5000-5099,0-99,100-199,150-250,9000-9099,5050-5199", null))
+                .assertNext(meta -> {
+                    assertThat(meta.isMultipart()).isTrue();
+                    assertThat(meta.ranges()).containsExactly(
+                            new ByteRangeRecord(0, 250),
+                            new ByteRangeRecord(5000, 5199),
+                            new ByteRangeRecord(9000, 9099));
+                    assertThat(meta.boundary()).isNotNull();
+                })
+                .verifyComplete();
+
+        // 병합 결과가 하나의 범위면 단일 범위 206 응답
+        StepVerifier.create(videoService.getVideoMeta(1L, "user", "bytes=100-199,0-99", null))
+                .assertNext(meta -> {
+                    assertThat(meta.isMultipart()).isFalse();
+                    assertThat(meta.ranges()).containsExactly(new ByteRangeRecord(0, 199));
+                    assertThat(meta.contentRange()).isEqualTo("bytes 0-199/" + FILE_LENGTH);
+                    assertThat(meta.contentLength()).isEqualTo(200);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void rangeCountOverLimitIsNotSatisfiable() {
+        ReflectionTestUtils.setField(videoService, "maxRanges", 2);
+
+        StepVerifier.create(videoService.getVideoMeta(1L, "user", "bytes=0-9,100-109,200-209", null))
+                .expectError(RangeNotSatisfiableException.class)
+                .verify();
+        // 제한 이내는 정상 처리
+        StepVerifier.create(videoService.getVideoMeta(1L, "user", "bytes=0-9,100-109", null))
+                .assertNext(meta -> assertThat(meta.ranges()).hasSize(2))
+                .verifyComplete();
+    }
+
+    @Test
+    void suffixRangeIsResolvedFromFileEnd() {
+        StepVerifier.create(videoService.getVideoMeta(1L, "user", "bytes=-500", null))
+                .assertNext(meta -> {
+                    assertThat(meta.isMultipart()).isFalse();
+                    assertThat(meta.startByte()).isEqualTo(FILE_LENGTH - 500);
+                    assertThat(meta.endByte()).isEqualTo(FILE_LENGTH - 1);
+                    assertThat(meta.contentLength()).isEqualTo(500);
+                    assertThat(meta.contentRange()).isEqualTo("bytes 9500-9999/" + FILE_LENGTH);
+                })
+                .verifyComplete();
+
+        // 접미 범위가 앞의 범위와 겹치면 병합
+        StepVerifier.create(videoService.getVideoMeta(1L, "user", "bytes=9000-9600,-500", null))
+                .assertNext(meta -> assertThat(meta.ranges()).containsExactly(new ByteRangeRecord(9000, FILE_LENGTH - 1)))
+                .verifyComplete();
+    }
+
+    @Test
+    void multipartContentLengthMatchesEmittedBody() {
+        VideoMetaRecord meta = videoService.getVideoMeta(1L, "user", "bytes=2000-2099,-500,0-99", null).block();
+        assertThat(meta).isNotNull();
+        assertThat(meta.ranges()).hasSize(3);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        StepVerifier.create(videoService.getMultipartVideoDataBuffer("100", meta))
+                .thenConsumeWhile(buffer -> {
+                    byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    body.writeBytes(bytes);
+                    DataBufferUtils.release(buffer);
+                    return true;
+                })
+                .verifyComplete();
+
+        assertThat((long) body.size()).isEqualTo(meta.contentLength());
+        String text = body.toString(StandardCharsets.ISO_8859_1);
+        assertThat(text).contains("Content-Range: bytes 0-99/" + FILE_LENGTH + "\r\n\r\n",
+                "Content-Range: bytes 2000-2099/" + FILE_LENGTH + "\r\n\r\n",
+                "Content-Range: bytes 9500-9999/" + FILE_LENGTH + "\r\n\r\n");
+        assertThat(text).endsWith("\r\n--" + meta.boundary() + "--\r\n");
+
+        // 각 파트 본문이 원본 파일의 해당 구간과 일치하는지 확인
+        byte[] bytes = body.toByteArray();
+        for (ByteRangeRecord range : meta.ranges()) {
+            String header = "Content-Range: bytes " + range.startByte() + "-" + range.endByte() + "/" + FILE_LENGTH + "\r\n\r\n";
+            int partStart = text.indexOf(header) + header.length();
+            assertThat(Arrays.copyOfRange(bytes, partStart, partStart + (int) range.length()))
+                    .isEqualTo(Arrays.copyOfRange(content, (int) range.startByte(), (int) range.endByte() + 1));
+        }
+        factory.assertAllReleased();
+    }
+}
@@ -0,0 +1,93 @@
+package com.tankmilu.webflux.service;
+
+import com.tankmilu.webflux.cache.KeyFrameIndex;
+import com.tankmilu.webflux.cache.KeyFrameIndexStore;
+import com.tankmilu.webflux.cache.LocalMediaTier;
+import com.tankmilu.webflux.cache.MediaDescriptorCache;
+import com.tankmilu.webflux.record.FileInfoRecord;
+import com.tankmilu.webflux.repository.ContentsFileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VideoSegmentRequestTest {
+
+    @TempDir
+    Path mediaDir;
+
+    private VideoService videoService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path video = Files.write(mediaDir.resolve("video.ts"), new byte[1000]);
+        long version = Files.getLastModifiedTime(video).toMillis();
+
+        // 키프레임 0, 10.01, 20.02, 25초 -> 구간 (0.0, 10.010000), (10.010000, 20.020000), (20.020000, 25.000000)
+        KeyFrameIndexStore keyFrameIndexStore = new KeyFrameIndexStore(mediaDir.resolve("keyframe_index").toString());
+        keyFrameIndexStore.save(1L, KeyFrameIndex.of(1000, version,
+                new long[]{0, 10_010_000, 20_020_000, 25_000_000}, new long[]{0, 100, 200, 300}));
+
+        ContentsFileRepository contentsFileRepository = (ContentsFileRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ContentsFileRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findFileWithContentInfo" -> Mono.just(new FileInfoRecord(1L, "video", "video.ts", null, null, null, null,
+                            mediaDir.toString(), "103"));
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        LocalMediaTier localMediaTier = new LocalMediaTier(false, mediaDir.resolve("local").toString(), 0, 1); // 복사 스레드는 사용하지 않음
+
+        // 구간 검사에 실패하면 세그먼트 캐시, 트랜스코딩을 사용하지 않으므로 나머지 의존성은 사용하지 않음
+        videoService = new VideoService(null, contentsFileRepository, null,
+                new MediaDescriptorCache(contentsFileRepository, localMediaTier, 100, 60), null,
+                new BandwidthShaper(false, 4, 0, 0, 0, 0, 0), null, null, null, null, null, null, null,
+                keyFrameIndexStore, null, null, null, null,
+                new HlsPlaylistIndex(mediaDir.resolve("hls").toString(), keyFrameIndexStore));
+    }
+
+    @Test
+    void exponentAndNonNumericRangesAreRejected() {
+        // BigDecimal 로 변환하면 10억 자리 문자열을 만드는 값
+        StepVerifier.create(videoService.getHlsTs(1L, "1e999999999", "10.010000", "1", "user", "100"))
+                .expectError(ServerWebInputException.class)
+                .verify();
+        StepVerifier.create(videoService.getHlsTs(1L, "abc", "10.010000", "1", "user", "100"))
+                .expectError(ServerWebInputException.class)
+                .verify();
+        StepVerifier.create(videoService.getHlsFmp4(1L, "0.0", "1E+3", "1", "user", "100"))
+                .expectError(ServerWebInputException.class)
+                .verify();
+    }
+
+    @Test
+    void rangeFormatIsBoundedAndOrdered() {
+        assertThat(VideoService.isValidSegmentRange("0.0", "10.010000")).isTrue();
+        assertThat(VideoService.isValidSegmentRange("10", "20.02")).isTrue();
+        assertThat(VideoService.isValidSegmentRange("-1", "10")).isFalse();
+        assertThat(VideoService.isValidSegmentRange("10", "10.0")).isFalse();
+        assertThat(VideoService.isValidSegmentRange("20", "10")).isFalse();
+        assertThat(VideoService.isValidSegmentRange("NaN", "10")).isFalse();
+        assertThat(VideoService.isValidSegmentRange("0", null)).isFalse();
+        assertThat(VideoService.isValidSegmentRange("12345678", "12345679")).isFalse();
+        assertThat(VideoService.isValidSegmentRange("0", "1." + "0".repeat(65))).isFalse();
+    }
+
+    @Test
+    void rangeOutsidePlaylistBoundariesIsRejected() {
+        StepVerifier.create(videoService.getHlsTs(1L, "5", "15", "1", "user", "100"))
+                .expectError(ServerWebInputException.class)
+                .verify();
+        // 시작 시간은 경계와 같지만 종료 시간이 다른 경우
+        StepVerifier.create(videoService.getHlsTs(1L, "10.01", "25", "1", "user", "100"))
+                .expectError(ServerWebInputException.class)
+                .verify();
+    }
+}
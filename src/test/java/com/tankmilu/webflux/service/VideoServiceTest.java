@@ -1,11 +1,12 @@
 package com.tankmilu.webflux.service;
 
+import com.tankmilu.webflux.enums.FFmpegJobPriorityEnum;
+import com.tankmilu.webflux.record.MediaProbeRecord;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import java.io.IOException;
-import java.util.Map;
 
 @SpringBootTest
 public class VideoServiceTest {
@@ -18,7 +19,7 @@ public class VideoServiceTest {
 
     @Test
     void getHlsM3u8Test() throws IOException {
-        Map<String, String> metaData = ffmpegService.getVideoMetaData("video.mp4");
+        MediaProbeRecord metaData = ffmpegService.getMediaProbe("video.mp4", FFmpegJobPriorityEnum.INTERACTIVE, null);
 
         System.out.println(metaData);
 